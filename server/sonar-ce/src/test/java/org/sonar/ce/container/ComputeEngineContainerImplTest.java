@@ -90,11 +90,11 @@ public class ComputeEngineContainerImplTest {
         CONTAINER_ITSELF
           + 75 // level 4
           + 4 // content of CeConfigurationModule
-          + 5 // content of CeQueueModule
-          + 3 // content of CeHttpModule
-          + 3 // content of CeTaskCommonsModule
+          + 6 // content of CeQueueModule
+          + 4 // content of CeHttpModule
+          + 4 // content of CeTaskCommonsModule
           + 4 // content of ProjectAnalysisTaskModule
-          + 4 // content of CeTaskProcessorModule
+          + 5 // content of CeTaskProcessorModule
     );
     assertThat(picoContainer.getParent().getComponentAdapters()).hasSize(
       CONTAINER_ITSELF
@@ -109,7 +109,7 @@ public class ComputeEngineContainerImplTest {
       COMPONENTS_IN_LEVEL_1_AT_CONSTRUCTION
         + 23 // level 1
         + 47 // content of DaoModule
-        + 3 // content of EsSearchModule
+        + 4 // content of EsSearchModule
         + 57 // content of CorePropertyDefinitions
         + 1 // content of CePropertyDefinitions
     );
@@ -33,7 +33,11 @@ import static org.sonar.db.ce.CeQueueDto.Status.PENDING;
 
 public class CeQueueDao implements Dao {
 
-  private static final RowBounds ONE_ROW_LIMIT = new RowBounds(0, 1);
+  /**
+   * Maximum number of tasks considered by {@link #peek(DbSession)}. Tasks already claimed
+   * by concurrent workers are skipped.
+   */
+  private static final RowBounds PEEK_CANDIDATES_LIMIT = new RowBounds(0, 10);
 
   private final System2 system2;
 
@@ -108,14 +112,23 @@ public class CeQueueDao implements Dao {
     return mapper(dbSession).countByStatusAndComponentUuid(status, componentUuid);
   }
 
+  /**
+   * Claims the oldest pending task which can be processed, if any. Only the oldest pending task of each component
+   * is eligible, and only when no other task of the same component is in progress. As a consequence, tasks are
+   * served fairly across components and two tasks of the same component are never processed concurrently.
+   * <p/>
+   * The claim is an atomic update of the status of the task. When the task has been claimed by another worker
+   * in the meantime, the next eligible task is tried.
+   */
   public Optional<CeQueueDto> peek(DbSession session) {
-    List<String> taskUuids = mapper(session).selectEligibleForPeek(ONE_ROW_LIMIT);
-    if (taskUuids.isEmpty()) {
-      return Optional.absent();
+    List<String> taskUuids = mapper(session).selectEligibleForPeek(PEEK_CANDIDATES_LIMIT);
+    for (String taskUuid : taskUuids) {
+      Optional<CeQueueDto> task = tryToPeek(session, taskUuid);
+      if (task.isPresent()) {
+        return task;
+      }
     }
-
-    String taskUuid = taskUuids.get(0);
-    return tryToPeek(session, taskUuid);
+    return Optional.absent();
   }
 
   private Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
@@ -200,7 +200,29 @@ public class ComponentDao implements Dao {
       return emptyList();
     }
     ComponentDto component = componentOpt.get();
-    return mapper(dbSession).selectDescendants(query, componentOpt.get().uuid(), query.getUuidPath(component));
+    return mapper(dbSession).selectDescendants(query, componentOpt.get().uuid(), query.getUuidPath(component), new RowBounds());
+  }
+
+  /**
+   * Same as {@link #selectDescendants(DbSession, ComponentTreeQuery)}, but returns only the requested page of the
+   * descendants, sorted as defined by the query.
+   */
+  public List<ComponentDto> selectDescendants(DbSession dbSession, ComponentTreeQuery query, int offset, int limit) {
+    Optional<ComponentDto> componentOpt = selectByUuid(dbSession, query.getBaseUuid());
+    if (!componentOpt.isPresent()) {
+      return emptyList();
+    }
+    ComponentDto component = componentOpt.get();
+    return mapper(dbSession).selectDescendants(query, component.uuid(), query.getUuidPath(component), new RowBounds(offset, limit));
+  }
+
+  public int countDescendants(DbSession dbSession, ComponentTreeQuery query) {
+    Optional<ComponentDto> componentOpt = selectByUuid(dbSession, query.getBaseUuid());
+    if (!componentOpt.isPresent()) {
+      return 0;
+    }
+    ComponentDto component = componentOpt.get();
+    return mapper(dbSession).countDescendants(query, component.uuid(), query.getUuidPath(component));
   }
 
   public ComponentDto selectOrFailByKey(DbSession session, String key) {
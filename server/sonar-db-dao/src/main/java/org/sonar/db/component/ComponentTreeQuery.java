@@ -21,11 +21,13 @@ package org.sonar.db.component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.db.WildcardPosition;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Objects.requireNonNull;
 import static org.sonar.db.DaoDatabaseUtils.buildLikeValue;
@@ -37,6 +39,14 @@ public class ComponentTreeQuery {
     CHILDREN, LEAVES
   }
 
+  /**
+   * Fields the descendants can be sorted on. Components are sorted on the {@link #MEASURE_VALUE value} or on the
+   * {@link #MEASURE_VARIATION variation} of the measure defined by {@link MeasureSort}, if any.
+   */
+  public enum SortField {
+    NAME, QUALIFIER, PATH, MEASURE_VALUE, MEASURE_VARIATION
+  }
+
   @CheckForNull
   private final String nameOrKeyQuery;
   // SONAR-7681 a public implementation of List must be used in MyBatis - potential concurrency exceptions otherwise
@@ -44,12 +54,21 @@ public class ComponentTreeQuery {
   private final ArrayList<String> qualifiers;
   private final String baseUuid;
   private final Strategy strategy;
+  private final ArrayList<SortField> sortFields;
+  private final boolean asc;
+  @CheckForNull
+  private final MeasureSort measureSort;
 
   private ComponentTreeQuery(Builder builder) {
     this.nameOrKeyQuery = builder.nameOrKeyQuery;
     this.qualifiers = builder.qualifiers == null ? null : newArrayList(builder.qualifiers);
     this.baseUuid = builder.baseUuid;
     this.strategy = requireNonNull(builder.strategy);
+    this.sortFields = newArrayList(builder.sortFields);
+    this.asc = builder.asc;
+    this.measureSort = builder.measureSort;
+    checkArgument(measureSort != null || !(sortFields.contains(SortField.MEASURE_VALUE) || sortFields.contains(SortField.MEASURE_VARIATION)),
+      "A measure sort is required to sort on measures");
   }
 
   @CheckForNull
@@ -78,6 +97,19 @@ public class ComponentTreeQuery {
     return strategy;
   }
 
+  public List<SortField> getSortFields() {
+    return sortFields;
+  }
+
+  public boolean isAsc() {
+    return asc;
+  }
+
+  @CheckForNull
+  public MeasureSort getMeasureSort() {
+    return measureSort;
+  }
+
   public String getUuidPath(ComponentDto component) {
     switch (strategy) {
       case CHILDREN:
@@ -100,6 +132,10 @@ public class ComponentTreeQuery {
     private Collection<String> qualifiers;
     private String baseUuid;
     private Strategy strategy;
+    private List<SortField> sortFields = new ArrayList<>();
+    private boolean asc = true;
+    @CheckForNull
+    private MeasureSort measureSort;
 
     private Builder() {
       // private constructor
@@ -129,5 +165,178 @@ public class ComponentTreeQuery {
       this.strategy = requireNonNull(strategy);
       return this;
     }
+
+    /**
+     * Fields the descendants are sorted on, by order of precedence. Components having no value on a field are
+     * returned last.
+     */
+    public Builder setSortFields(List<SortField> sortFields) {
+      this.sortFields = requireNonNull(sortFields);
+      return this;
+    }
+
+    public Builder setAsc(boolean asc) {
+      this.asc = asc;
+      return this;
+    }
+
+    public Builder setMeasureSort(@Nullable MeasureSort measureSort) {
+      this.measureSort = measureSort;
+      return this;
+    }
+  }
+
+  /**
+   * The measure of the descendants which is loaded in the same query to sort them and, optionally, to keep only the
+   * ones which have a value.
+   * <p>
+   * Textual values are sorted on the column {@code text_value}: the few values which are too large to be stored in
+   * this column are sorted as missing values.
+   */
+  public static class MeasureSort {
+    public enum ValueType {
+      NUMERIC, TEXTUAL, LEVEL
+    }
+
+    private final int metricId;
+    private final String analysisUuid;
+    @CheckForNull
+    private final Long personId;
+    private final ValueType valueType;
+    @CheckForNull
+    private final Double bestValue;
+    @CheckForNull
+    private final Double bestVariation;
+    // SONAR-7681 a public implementation of List must be used in MyBatis - potential concurrency exceptions otherwise
+    private final ArrayList<String> bestValueQualifiers;
+    private final boolean withValueOnly;
+    private final boolean withVariationOnly;
+
+    private MeasureSort(Builder builder) {
+      this.metricId = requireNonNull(builder.metricId, "metricId can't be null");
+      this.analysisUuid = requireNonNull(builder.analysisUuid, "analysisUuid can't be null");
+      this.personId = builder.personId;
+      this.valueType = requireNonNull(builder.valueType, "valueType can't be null");
+      this.bestValue = builder.bestValue;
+      this.bestVariation = builder.bestVariation;
+      this.bestValueQualifiers = newArrayList(builder.bestValueQualifiers);
+      this.withValueOnly = builder.withValueOnly;
+      this.withVariationOnly = builder.withVariationOnly;
+    }
+
+    public int getMetricId() {
+      return metricId;
+    }
+
+    public String getAnalysisUuid() {
+      return analysisUuid;
+    }
+
+    @CheckForNull
+    public Long getPersonId() {
+      return personId;
+    }
+
+    public ValueType getValueType() {
+      return valueType;
+    }
+
+    @CheckForNull
+    public Double getBestValue() {
+      return bestValue;
+    }
+
+    @CheckForNull
+    public Double getBestVariation() {
+      return bestVariation;
+    }
+
+    public List<String> getBestValueQualifiers() {
+      return bestValueQualifiers;
+    }
+
+    public boolean isWithValueOnly() {
+      return withValueOnly;
+    }
+
+    public boolean isWithVariationOnly() {
+      return withVariationOnly;
+    }
+
+    public static Builder builder() {
+      return new Builder();
+    }
+
+    public static class Builder {
+      private Integer metricId;
+      private String analysisUuid;
+      @CheckForNull
+      private Long personId;
+      private ValueType valueType;
+      @CheckForNull
+      private Double bestValue;
+      @CheckForNull
+      private Double bestVariation;
+      private Collection<String> bestValueQualifiers = new ArrayList<>();
+      private boolean withValueOnly = false;
+      private boolean withVariationOnly = false;
+
+      private Builder() {
+        // private constructor
+      }
+
+      public Builder setMetricId(int metricId) {
+        this.metricId = metricId;
+        return this;
+      }
+
+      /**
+       * Analysis the measures belong to, usually the last analysis of the project
+       */
+      public Builder setAnalysisUuid(String analysisUuid) {
+        this.analysisUuid = analysisUuid;
+        return this;
+      }
+
+      public Builder setPersonId(@Nullable Long personId) {
+        this.personId = personId;
+        return this;
+      }
+
+      public Builder setValueType(ValueType valueType) {
+        this.valueType = valueType;
+        return this;
+      }
+
+      /**
+       * Value and variation used for the components which have one of the given qualifiers and which have no measure.
+       */
+      public Builder setBestValue(@Nullable Double bestValue, @Nullable Double bestVariation, Collection<String> qualifiers) {
+        this.bestValue = bestValue;
+        this.bestVariation = bestVariation;
+        this.bestValueQualifiers = requireNonNull(qualifiers);
+        return this;
+      }
+
+      /**
+       * Keep only the components which have a value, textual or numeric, for the metric.
+       */
+      public Builder setWithValueOnly(boolean withValueOnly) {
+        this.withValueOnly = withValueOnly;
+        return this;
+      }
+
+      /**
+       * Keep only the components which have a variation for the metric.
+       */
+      public Builder setWithVariationOnly(boolean withVariationOnly) {
+        this.withVariationOnly = withVariationOnly;
+        return this;
+      }
+
+      public MeasureSort build() {
+        return new MeasureSort(this);
+      }
+    }
   }
 }
@@ -24,6 +24,7 @@ import com.google.common.collect.Lists;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
@@ -120,6 +121,29 @@ public class MeasureDao implements Dao {
       ids -> mapper(dbSession).selectPastMeasuresOnSingleAnalysis(componentUuid, analysisUuid, ids));
   }
 
+  /**
+   * Streams the measures of all the components of the analysis, except files, which are not associated to any
+   * developer. Measures of files are not selected as they are purged from analyses which are not the last one.
+   * <p>
+   * {@link PastMeasureDto#getComponentUuid()} is loaded, so that measures of the whole project are read with
+   * a single query instead of one query per component.
+   * </p>
+   *
+   * @return the number of executed queries, as metrics are split in partitions of at most
+   * {@link org.sonar.db.DatabaseUtils#PARTITION_SIZE_FOR_ORACLE} ids
+   */
+  public int selectPastMeasuresOfAnalysis(DbSession dbSession, String analysisUuid, Collection<Integer> metricIds, ResultHandler resultHandler) {
+    AtomicInteger queries = new AtomicInteger();
+    executeLargeInputsWithoutOutput(
+      metricIds,
+      ids -> {
+        mapper(dbSession).selectPastMeasuresOfAnalysis(analysisUuid, ids, resultHandler);
+        queries.incrementAndGet();
+        return null;
+      });
+    return queries.get();
+  }
+
   /**
    * Select measures of:
    * - one component
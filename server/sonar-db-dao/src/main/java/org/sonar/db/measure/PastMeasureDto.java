@@ -28,6 +28,9 @@ public class PastMeasureDto {
 
   private int metricId;
 
+  @CheckForNull
+  private String componentUuid;
+
   @CheckForNull
   private Double value;
 
@@ -57,6 +60,19 @@ public class PastMeasureDto {
     return this;
   }
 
+  /**
+   * Only loaded by {@link MeasureDao#selectPastMeasuresOfAnalysis}
+   */
+  @CheckForNull
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  PastMeasureDto setComponentUuid(@Nullable String componentUuid) {
+    this.componentUuid = componentUuid;
+    return this;
+  }
+
   @CheckForNull
   public Long getPersonId() {
     return personId;
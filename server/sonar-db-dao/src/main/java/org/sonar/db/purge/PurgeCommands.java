@@ -22,6 +22,7 @@ package org.sonar.db.purge;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import java.util.List;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 import org.sonar.db.DbSession;
 
@@ -30,22 +31,27 @@ import static java.util.Arrays.asList;
 
 class PurgeCommands {
 
-  private static final int MAX_SNAPSHOTS_PER_QUERY = 1000;
   private static final int MAX_RESOURCES_PER_QUERY = 1000;
 
   private final DbSession session;
   private final PurgeMapper purgeMapper;
   private final PurgeProfiler profiler;
+  private final PurgeThrottle throttle;
 
-  PurgeCommands(DbSession session, PurgeMapper purgeMapper, PurgeProfiler profiler) {
+  PurgeCommands(DbSession session, PurgeMapper purgeMapper, PurgeProfiler profiler, PurgeThrottle throttle) {
     this.session = session;
     this.purgeMapper = purgeMapper;
     this.profiler = profiler;
+    this.throttle = throttle;
+  }
+
+  PurgeCommands(DbSession session, PurgeProfiler profiler, PurgeThrottle throttle) {
+    this(session, session.getMapper(PurgeMapper.class), profiler, throttle);
   }
 
   @VisibleForTesting
   PurgeCommands(DbSession session, PurgeProfiler profiler) {
-    this(session, session.getMapper(PurgeMapper.class), profiler);
+    this(session, profiler, PurgeThrottle.unlimited());
   }
 
   List<String> selectSnapshotUuids(PurgeSnapshotQuery query) {
@@ -125,16 +131,13 @@ class PurgeCommands {
       return;
     }
 
-    List<List<String>> analysisUuidsPartitions = Lists.partition(analysisUuids, MAX_SNAPSHOTS_PER_QUERY);
-    List<List<String>> componentUuidsPartitions = Lists.partition(componentUuids, MAX_RESOURCES_PER_QUERY);
+    List<List<String>> analysisUuidsPartitions = Lists.partition(analysisUuids, throttle.getChunkSize());
+    List<List<String>> componentUuidsPartitions = Lists.partition(componentUuids, throttle.getChunkSize());
 
     profiler.start("deleteComponentMeasures");
     for (List<String> analysisUuidsPartition : analysisUuidsPartitions) {
-      for (List<String> componentUuidsPartition : componentUuidsPartitions) {
-        purgeMapper.deleteComponentMeasures(analysisUuidsPartition, componentUuidsPartition);
-      }
+      deleteByChunks(componentUuidsPartitions, componentUuidsPartition -> purgeMapper.deleteComponentMeasures(analysisUuidsPartition, componentUuidsPartition));
     }
-    session.commit();
     profiler.stop();
   }
 
@@ -147,51 +150,57 @@ class PurgeCommands {
 
   @VisibleForTesting
   protected void deleteAnalyses(List<IdUuidPair> analysisIdUuids) {
-    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(analysisIdUuids), MAX_SNAPSHOTS_PER_QUERY);
+    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(analysisIdUuids), throttle.getChunkSize());
 
     deleteAnalysisDuplications(analysisUuidsPartitions);
 
     profiler.start("deleteAnalyses (events)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisEvents);
-    session.commit();
+    deleteByChunks(analysisUuidsPartitions, purgeMapper::deleteAnalysisEvents);
     profiler.stop();
 
     profiler.start("deleteAnalyses (project_measures)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisMeasures);
-    session.commit();
+    deleteByChunks(analysisUuidsPartitions, purgeMapper::deleteAnalysisMeasures);
     profiler.stop();
 
     profiler.start("deleteAnalyses (snapshots)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalyses);
-    session.commit();
+    deleteByChunks(analysisUuidsPartitions, purgeMapper::deleteAnalyses);
     profiler.stop();
   }
 
   public void purgeAnalyses(List<IdUuidPair> analysisUuids) {
-    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(analysisUuids), MAX_SNAPSHOTS_PER_QUERY);
+    List<List<String>> analysisUuidsPartitions = Lists.partition(IdUuidPairs.uuids(analysisUuids), throttle.getChunkSize());
 
     deleteAnalysisDuplications(analysisUuidsPartitions);
 
     profiler.start("deleteSnapshotWastedMeasures (project_measures)");
     List<Long> metricIdsWithoutHistoricalData = purgeMapper.selectMetricIdsWithoutHistoricalData();
-    analysisUuidsPartitions.stream()
-      .forEach(analysisUuidsPartition -> purgeMapper.deleteAnalysisWastedMeasures(analysisUuidsPartition, metricIdsWithoutHistoricalData));
-    session.commit();
+    deleteByChunks(analysisUuidsPartitions,
+      analysisUuidsPartition -> purgeMapper.deleteAnalysisWastedMeasures(analysisUuidsPartition, metricIdsWithoutHistoricalData));
     profiler.stop();
 
     profiler.start("updatePurgeStatusToOne (snapshots)");
-    analysisUuidsPartitions.forEach(purgeMapper::updatePurgeStatusToOne);
-    session.commit();
+    deleteByChunks(analysisUuidsPartitions, purgeMapper::updatePurgeStatusToOne);
     profiler.stop();
   }
 
   private void deleteAnalysisDuplications(List<List<String>> snapshotUuidsPartitions) {
     profiler.start("deleteAnalysisDuplications (duplications_index)");
-    snapshotUuidsPartitions.forEach(purgeMapper::deleteAnalysisDuplications);
-    session.commit();
+    deleteByChunks(snapshotUuidsPartitions, purgeMapper::deleteAnalysisDuplications);
     profiler.stop();
   }
 
+  /**
+   * Deletes data of each partition in its own transaction, so that a purge never holds long transactions and can be
+   * slowed down by {@link PurgeThrottle}.
+   */
+  private <T> void deleteByChunks(List<List<T>> partitions, ToIntFunction<List<T>> deleteFunction) {
+    for (List<T> partition : partitions) {
+      int rows = deleteFunction.applyAsInt(partition);
+      session.commit();
+      throttle.onChunkCommitted(rows);
+    }
+  }
+
   public void deleteFileSources(String rootUuid) {
     profiler.start("deleteFileSources (file_sources)");
     purgeMapper.deleteFileSourcesByProjectUuid(rootUuid);
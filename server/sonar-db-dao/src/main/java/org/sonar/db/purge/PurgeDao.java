@@ -19,8 +19,10 @@
  */
 package org.sonar.db.purge;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -35,9 +37,7 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.component.ComponentTreeQuery.Strategy;
 
-import static java.util.Collections.emptyList;
 import static org.sonar.api.utils.DateUtils.dateToLong;
-import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 
 /**
  * @since 2.14
@@ -55,14 +55,21 @@ public class PurgeDao implements Dao {
   }
 
   public void purge(DbSession session, PurgeConfiguration conf, PurgeListener listener, PurgeProfiler profiler) {
+    purge(session, conf, listener, profiler, PurgeThrottle.unlimited());
+  }
+
+  /**
+   * Data is deleted by chunks, each of them being committed, at the pace allowed by the specified {@link PurgeThrottle}.
+   */
+  public void purge(DbSession session, PurgeConfiguration conf, PurgeListener listener, PurgeProfiler profiler, PurgeThrottle throttle) {
     PurgeMapper mapper = session.getMapper(PurgeMapper.class);
-    PurgeCommands commands = new PurgeCommands(session, mapper, profiler);
+    PurgeCommands commands = new PurgeCommands(session, mapper, profiler, throttle);
     String rootUuid = conf.rootProjectIdUuid().getUuid();
     deleteAbortedAnalyses(rootUuid, commands);
     deleteDataOfComponentsWithoutHistoricalData(session, rootUuid, conf.scopesWithoutHistoricalData(), commands);
     purgeAnalyses(commands, rootUuid);
-    purgeDisabledComponents(session, conf, listener);
-    deleteOldClosedIssues(conf, mapper, listener);
+    purgeDisabledComponents(session, rootUuid, conf.getDisabledComponentUuids(), listener, throttle);
+    deleteOldClosedIssues(session, conf, listener, throttle);
   }
 
   private static void purgeAnalyses(PurgeCommands commands, String rootUuid) {
@@ -74,18 +81,17 @@ public class PurgeDao implements Dao {
     commands.purgeAnalyses(analysisUuids);
   }
 
-  private static void deleteOldClosedIssues(PurgeConfiguration conf, PurgeMapper mapper, PurgeListener listener) {
+  private static void deleteOldClosedIssues(DbSession session, PurgeConfiguration conf, PurgeListener listener, PurgeThrottle throttle) {
+    PurgeMapper mapper = mapper(session);
     Date toDate = conf.maxLiveDateOfClosedIssues();
     String rootUuid = conf.rootProjectIdUuid().getUuid();
     List<String> issueKeys = mapper.selectOldClosedIssueKeys(rootUuid, dateToLong(toDate));
-    executeLargeInputs(issueKeys, input -> {
-      mapper.deleteIssueChangesFromIssueKeys(input);
-      return emptyList();
-    });
-    executeLargeInputs(issueKeys, input -> {
-      mapper.deleteIssuesFromKeys(input);
-      return emptyList();
-    });
+    for (List<String> chunk : Lists.partition(issueKeys, throttle.getChunkSize())) {
+      int deletedChanges = mapper.deleteIssueChangesFromIssueKeys(chunk);
+      int deletedIssues = mapper.deleteIssuesFromKeys(chunk);
+      session.commit();
+      throttle.onChunkCommitted(deletedChanges, deletedIssues);
+    }
     listener.onIssuesRemoval(rootUuid, issueKeys);
   }
 
@@ -122,16 +128,25 @@ public class PurgeDao implements Dao {
     purgeCommands.deleteComponentMeasures(analysisUuids, componentWithoutHistoricalDataUuids);
   }
 
-  private void purgeDisabledComponents(DbSession session, PurgeConfiguration conf, PurgeListener listener) {
+  /**
+   * Deletes sources and resolves the issues of the specified components, which have been disabled by the last analysis
+   * of project {@code rootUuid}.
+   */
+  public void purgeDisabledComponents(DbSession session, String rootUuid, Collection<String> disabledComponentUuids, PurgeListener listener) {
+    purgeDisabledComponents(session, rootUuid, disabledComponentUuids, listener, PurgeThrottle.unlimited());
+  }
+
+  private void purgeDisabledComponents(DbSession session, String rootUuid, Collection<String> disabledComponentUuids, PurgeListener listener,
+    PurgeThrottle throttle) {
     PurgeMapper mapper = mapper(session);
-    executeLargeInputs(conf.getDisabledComponentUuids(),
-      input -> {
-        mapper.deleteFileSourcesByUuid(input);
-        mapper.resolveComponentIssuesNotAlreadyResolved(input, system2.now());
-        return emptyList();
-      });
+    for (List<String> chunk : Iterables.partition(disabledComponentUuids, throttle.getChunkSize())) {
+      int deletedSources = mapper.deleteFileSourcesByUuid(chunk);
+      int resolvedIssues = mapper.resolveComponentIssuesNotAlreadyResolved(chunk, system2.now());
+      session.commit();
+      throttle.onChunkCommitted(deletedSources, resolvedIssues);
+    }
 
-    listener.onComponentsDisabling(conf.rootProjectIdUuid().getUuid(), conf.getDisabledComponentUuids());
+    listener.onComponentsDisabling(rootUuid, disabledComponentUuids);
 
     session.commit();
   }
@@ -163,7 +178,11 @@ public class PurgeDao implements Dao {
   }
 
   public void deleteAnalyses(DbSession session, PurgeProfiler profiler, List<IdUuidPair> analysisIdUuids) {
-    new PurgeCommands(session, profiler).deleteAnalyses(analysisIdUuids);
+    deleteAnalyses(session, profiler, PurgeThrottle.unlimited(), analysisIdUuids);
+  }
+
+  public void deleteAnalyses(DbSession session, PurgeProfiler profiler, PurgeThrottle throttle, List<IdUuidPair> analysisIdUuids) {
+    new PurgeCommands(session, profiler, throttle).deleteAnalyses(analysisIdUuids);
   }
 
   private static PurgeMapper mapper(DbSession session) {
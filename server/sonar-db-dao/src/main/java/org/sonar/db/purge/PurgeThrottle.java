@@ -0,0 +1,167 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.purge;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.function.BooleanSupplier;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.config.PurgeConstants;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounds the work done by a purge: data is deleted by chunks of at most {@link #getChunkSize()} analyses, components
+ * or issues, changes are committed after each chunk and, when a maximum number of rows per second is configured,
+ * the purge pauses between chunks so that it does not exceed it.
+ * <p>
+ * Progress is logged every {@link #PROGRESS_LOG_INTERVAL_MS} milliseconds.
+ * </p>
+ * <p>
+ * A purge can be asked to give way to more urgent work with {@link #setYieldCondition(BooleanSupplier)}: the
+ * condition is evaluated after each chunk and the purge stops with a {@link YieldException} as soon as it is met.
+ * Chunks being committed, the data deleted so far is not restored.
+ * </p>
+ */
+public class PurgeThrottle {
+  private static final Logger LOG = Loggers.get(PurgeThrottle.class);
+
+  /**
+   * Chunks are used as inputs of "in" clauses, which are limited to 1000 elements by Oracle
+   */
+  public static final int MAX_CHUNK_SIZE = 1000;
+  static final long PROGRESS_LOG_INTERVAL_MS = 10_000L;
+
+  private final int chunkSize;
+  private final int maxRowsPerSecond;
+  private final Clock clock;
+  private final long startedAt;
+  private long lastProgressLogAt;
+  private long chunks = 0;
+  private long deletedRows = 0;
+  private BooleanSupplier yieldCondition = () -> false;
+
+  /**
+   * @param maxRowsPerSecond 0 for no limit
+   */
+  public PurgeThrottle(int chunkSize, int maxRowsPerSecond) {
+    this(chunkSize, maxRowsPerSecond, new Clock());
+  }
+
+  @VisibleForTesting
+  PurgeThrottle(int chunkSize, int maxRowsPerSecond, Clock clock) {
+    checkArgument(chunkSize > 0 && chunkSize <= MAX_CHUNK_SIZE, "Chunk size must be between 1 and %s: %s", MAX_CHUNK_SIZE, chunkSize);
+    checkArgument(maxRowsPerSecond >= 0, "Maximum number of rows per second can't be negative: %s", maxRowsPerSecond);
+    this.chunkSize = chunkSize;
+    this.maxRowsPerSecond = maxRowsPerSecond;
+    this.clock = clock;
+    this.startedAt = clock.now();
+    this.lastProgressLogAt = startedAt;
+  }
+
+  public static PurgeThrottle unlimited() {
+    return new PurgeThrottle(MAX_CHUNK_SIZE, 0);
+  }
+
+  public static PurgeThrottle fromSettings(Settings settings) {
+    int chunkSize = settings.getInt(PurgeConstants.CHUNK_SIZE);
+    if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+      chunkSize = MAX_CHUNK_SIZE;
+    }
+    return new PurgeThrottle(chunkSize, Math.max(0, settings.getInt(PurgeConstants.MAX_ROWS_PER_SECOND)));
+  }
+
+  /**
+   * @param yieldCondition evaluated after each chunk, before pausing. When it returns {@code true}, the purge is stopped.
+   */
+  public PurgeThrottle setYieldCondition(BooleanSupplier yieldCondition) {
+    this.yieldCondition = yieldCondition;
+    return this;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public long getChunks() {
+    return chunks;
+  }
+
+  public long getDeletedRows() {
+    return deletedRows;
+  }
+
+  /**
+   * Must be called once a chunk has been deleted and committed.
+   *
+   * @param rowCounts number of rows deleted or updated by each statement of the chunk. Negative values, returned by
+   *                  statements executed in batch mode, are ignored.
+   * @throws YieldException if the purge must stop to give way to more urgent work
+   */
+  void onChunkCommitted(int... rowCounts) {
+    chunks++;
+    for (int rowCount : rowCounts) {
+      if (rowCount > 0) {
+        deletedRows += rowCount;
+      }
+    }
+    if (yieldCondition.getAsBoolean()) {
+      throw new YieldException(deletedRows, chunks);
+    }
+    long now = clock.now();
+    if (maxRowsPerSecond > 0) {
+      long minElapsed = deletedRows * 1_000L / maxRowsPerSecond;
+      long elapsed = now - startedAt;
+      if (minElapsed > elapsed) {
+        clock.sleep(minElapsed - elapsed);
+        now = clock.now();
+      }
+    }
+    if (now - lastProgressLogAt >= PROGRESS_LOG_INTERVAL_MS) {
+      lastProgressLogAt = now;
+      LOG.info("Purge in progress: {} rows deleted in {} chunks", deletedRows, chunks);
+    }
+  }
+
+  /**
+   * Thrown at a chunk boundary when the yield condition of the throttle is met.
+   */
+  public static class YieldException extends RuntimeException {
+    public YieldException(long deletedRows, long chunks) {
+      super(String.format("Purge stopped after %d rows deleted in %d chunks", deletedRows, chunks));
+    }
+  }
+
+  static class Clock {
+    long now() {
+      return System.currentTimeMillis();
+    }
+
+    void sleep(long ms) {
+      try {
+        Thread.sleep(ms);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Purge has been interrupted", e);
+      }
+    }
+  }
+}
@@ -32,6 +32,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.purge.IdUuidPair;
 import org.sonar.db.purge.PurgeDao;
 import org.sonar.db.purge.PurgeProfiler;
+import org.sonar.db.purge.PurgeThrottle;
 import org.sonar.db.purge.PurgeableAnalysisDto;
 
 import static org.sonar.core.util.stream.Collectors.toList;
@@ -47,20 +48,20 @@ public class DefaultPeriodCleaner {
     this.profiler = profiler;
   }
 
-  public void clean(DbSession session, String rootUuid, Settings settings) {
-    doClean(rootUuid, new Filters(settings).all(), session);
+  public void clean(DbSession session, String rootUuid, Settings settings, PurgeThrottle throttle) {
+    doClean(rootUuid, new Filters(settings).all(), session, throttle);
   }
 
   @VisibleForTesting
-  void doClean(String rootUuid, List<Filter> filters, DbSession session) {
+  void doClean(String rootUuid, List<Filter> filters, DbSession session, PurgeThrottle throttle) {
     List<PurgeableAnalysisDto> history = new ArrayList<>(selectAnalysesOfComponent(rootUuid, session));
     for (Filter filter : filters) {
       filter.log();
-      history.removeAll(delete(rootUuid, filter.filter(history), session));
+      history.removeAll(delete(rootUuid, filter.filter(history), session, throttle));
     }
   }
 
-  private List<PurgeableAnalysisDto> delete(String rootUuid, List<PurgeableAnalysisDto> snapshots, DbSession session) {
+  private List<PurgeableAnalysisDto> delete(String rootUuid, List<PurgeableAnalysisDto> snapshots, DbSession session, PurgeThrottle throttle) {
     if (LOG.isDebugEnabled()) {
       LOG.debug("<- Delete analyses of component {}: {}",
         rootUuid,
@@ -70,7 +71,7 @@ public class DefaultPeriodCleaner {
             .collect(Collectors.toArrayList(snapshots.size()))));
     }
     purgeDao.deleteAnalyses(
-      session, profiler,
+      session, profiler, throttle,
       snapshots.stream().map(DefaultPeriodCleaner::toIdUuidPair).collect(Collectors.toList(snapshots.size())));
     return snapshots;
   }
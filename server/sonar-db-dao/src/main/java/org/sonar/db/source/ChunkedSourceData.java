@@ -0,0 +1,210 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Storage format of the source lines of a file in column FILE_SOURCES.BINARY_DATA, which allows to read a range of
+ * lines without decompressing and deserializing the whole file.
+ * <p>
+ * Lines are split into chunks of {@link #LINES_PER_CHUNK} lines. Each chunk is a {@link DbFileSources.Data} which is
+ * serialized and compressed on its own. The chunks are preceded by an index which gives, for each chunk, its length
+ * in bytes and the highest line number it contains:
+ * <pre>
+ *   magic number (int)
+ *   number of chunks (int)
+ *   for each chunk: length in bytes (int), highest line number (int)
+ *   chunks
+ * </pre>
+ * Data persisted before this format was introduced is a single compressed {@link DbFileSources.Data}. It does not start
+ * with the magic number and is still supported by {@link FileSourceDto}.
+ * </p>
+ */
+class ChunkedSourceData {
+
+  static final int LINES_PER_CHUNK = 100;
+
+  /**
+   * "SQC1". Compressed data of the previous format starts with the magic number of LZ4 blocks, "LZ4Block".
+   */
+  private static final int MAGIC_NUMBER = 0x53514331;
+  private static final int CHUNK_HEADER_BYTES = 2 * Integer.BYTES;
+  private static final int NO_LINE = Integer.MIN_VALUE;
+
+  private ChunkedSourceData() {
+    // only static methods
+  }
+
+  static boolean isChunked(byte[] binaryData) {
+    return binaryData.length >= Integer.BYTES && ByteBuffer.wrap(binaryData).getInt() == MAGIC_NUMBER;
+  }
+
+  static byte[] encode(DbFileSources.Data data) throws IOException {
+    List<DbFileSources.Line> lines = data.getLinesList();
+    int chunkCount = (lines.size() + LINES_PER_CHUNK - 1) / LINES_PER_CHUNK;
+    List<byte[]> chunks = new ArrayList<>(chunkCount);
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(byteOutput);
+    output.writeInt(MAGIC_NUMBER);
+    output.writeInt(chunkCount);
+    for (int start = 0; start < lines.size(); start += LINES_PER_CHUNK) {
+      List<DbFileSources.Line> chunkLines = lines.subList(start, Math.min(start + LINES_PER_CHUNK, lines.size()));
+      byte[] chunk = compress(DbFileSources.Data.newBuilder().addAllLines(chunkLines).build());
+      chunks.add(chunk);
+      output.writeInt(chunk.length);
+      output.writeInt(highestLine(chunkLines));
+    }
+    for (byte[] chunk : chunks) {
+      output.write(chunk);
+    }
+    output.flush();
+    return byteOutput.toByteArray();
+  }
+
+  private static byte[] compress(DbFileSources.Data chunk) throws IOException {
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput)) {
+      chunk.writeTo(compressedOutput);
+    }
+    return byteOutput.toByteArray();
+  }
+
+  private static int highestLine(List<DbFileSources.Line> lines) {
+    int highest = NO_LINE;
+    for (DbFileSources.Line line : lines) {
+      if (line.hasLine()) {
+        highest = Math.max(highest, line.getLine());
+      }
+    }
+    return highest;
+  }
+
+  static DbFileSources.Data decode(byte[] binaryData) throws IOException {
+    Index index = new Index(binaryData);
+    DbFileSources.Data.Builder builder = DbFileSources.Data.newBuilder();
+    for (int i = 0; i < index.chunkCount; i++) {
+      try (LZ4BlockInputStream chunkInput = index.openChunk(i)) {
+        // lines of the chunk are appended to the ones of previous chunks
+        builder.mergeFrom(chunkInput);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Same as filtering the lines of {@link #decode(byte[])} on line numbers greater than or equal to {@code from}, and
+   * keeping at most {@code limit} of them, but only the chunks which contain such lines are decompressed.
+   */
+  static List<DbFileSources.Line> decodeLines(byte[] binaryData, int from, int limit) throws IOException {
+    Index index = new Index(binaryData);
+    List<DbFileSources.Line> result = new ArrayList<>(Math.min(limit, LINES_PER_CHUNK));
+    for (int i = 0; i < index.chunkCount && result.size() < limit; i++) {
+      if (index.highestLines[i] == NO_LINE || index.highestLines[i] < from) {
+        // none of the lines of the chunk would be kept
+        continue;
+      }
+      for (DbFileSources.Line line : decodeChunk(index, i)) {
+        if (line.hasLine() && line.getLine() >= from) {
+          result.add(line);
+          if (result.size() == limit) {
+            break;
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Highest line number of each chunk, {@link Integer#MIN_VALUE} for the chunks without line numbers
+   */
+  static int[] highestLines(byte[] binaryData) throws IOException {
+    return new Index(binaryData).highestLines;
+  }
+
+  static List<DbFileSources.Line> decodeChunk(byte[] binaryData, int chunk) throws IOException {
+    Index index = new Index(binaryData);
+    checkArgument(chunk >= 0 && chunk < index.chunkCount, "Chunk %s does not exist, source data has %s chunks", chunk, index.chunkCount);
+    return decodeChunk(index, chunk);
+  }
+
+  private static List<DbFileSources.Line> decodeChunk(Index index, int chunk) throws IOException {
+    try (LZ4BlockInputStream chunkInput = index.openChunk(chunk)) {
+      return DbFileSources.Data.parseFrom(chunkInput).getLinesList();
+    }
+  }
+
+  private static class Index {
+    private final byte[] binaryData;
+    private final int chunkCount;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int[] highestLines;
+
+    private Index(byte[] binaryData) throws IOException {
+      this.binaryData = binaryData;
+      try {
+        ByteBuffer buffer = ByteBuffer.wrap(binaryData);
+        if (buffer.getInt() != MAGIC_NUMBER) {
+          throw new IOException("Source data is not chunked");
+        }
+        this.chunkCount = buffer.getInt();
+        if (chunkCount < 0 || (long) chunkCount * CHUNK_HEADER_BYTES > buffer.remaining()) {
+          throw new IOException("Invalid number of chunks: " + chunkCount);
+        }
+        this.offsets = new int[chunkCount];
+        this.lengths = new int[chunkCount];
+        this.highestLines = new int[chunkCount];
+        long offset = buffer.position() + (long) chunkCount * CHUNK_HEADER_BYTES;
+        for (int i = 0; i < chunkCount; i++) {
+          offsets[i] = (int) offset;
+          lengths[i] = buffer.getInt();
+          highestLines[i] = buffer.getInt();
+          if (lengths[i] < 0 || offset + lengths[i] > binaryData.length) {
+            throw new IOException("Invalid length of chunk: " + lengths[i]);
+          }
+          offset += lengths[i];
+        }
+        if (offset != binaryData.length) {
+          throw new IOException("Invalid length of chunks");
+        }
+      } catch (BufferUnderflowException e) {
+        throw new IOException("Truncated index of source data", e);
+      }
+    }
+
+    private LZ4BlockInputStream openChunk(int i) {
+      return new LZ4BlockInputStream(new ByteArrayInputStream(binaryData, offsets[i], lengths[i]));
+    }
+  }
+}
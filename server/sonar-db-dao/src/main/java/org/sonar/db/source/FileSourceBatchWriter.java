@@ -0,0 +1,113 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import org.sonar.db.DbSession;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Writes rows of table FILE_SOURCES by batches. As rows can be very large, the batch is not bounded by a number of rows
+ * but by the number of bytes of binary data and line hashes it holds: pending statements are flushed and committed as
+ * soon as this number reaches the budget given at construction.
+ * <p>
+ * The {@link DbSession} is expected to be a batch session (see {@link org.sonar.db.DbClient#openSession(boolean)}),
+ * so that statements are sent to the database only when the batch is flushed.
+ * </p>
+ * <p>
+ * {@link #flush()} must be called once all rows have been written.
+ * </p>
+ */
+public class FileSourceBatchWriter {
+
+  private final FileSourceDao dao;
+  private final DbSession session;
+  private final long maxBatchBytes;
+
+  private long pendingBytes = 0L;
+  private int pendingRows = 0;
+  private int flushCount = 0;
+
+  FileSourceBatchWriter(FileSourceDao dao, DbSession session, long maxBatchBytes) {
+    checkArgument(maxBatchBytes > 0, "Maximum size of batch must be strictly positive (got %s)", maxBatchBytes);
+    this.dao = dao;
+    this.session = session;
+    this.maxBatchBytes = maxBatchBytes;
+  }
+
+  public void insert(FileSourceDto dto) {
+    dao.insert(session, dto);
+    added(sizeOf(dto));
+  }
+
+  public void update(FileSourceDto dto) {
+    dao.update(session, dto);
+    added(sizeOf(dto));
+  }
+
+  /**
+   * @see FileSourceDao#updateInputsHash(DbSession, long, String)
+   */
+  public void updateInputsHash(FileSourceDto dto) {
+    dao.updateInputsHash(session, dto.getId(), dto.getInputsHash());
+    added(0L);
+  }
+
+  private void added(long bytes) {
+    pendingRows++;
+    pendingBytes += bytes;
+    if (pendingBytes >= maxBatchBytes) {
+      flush();
+    }
+  }
+
+  /**
+   * Sends pending statements to the database and commits them. Does nothing if there is no pending statement.
+   */
+  public void flush() {
+    if (pendingRows > 0) {
+      session.commit();
+      flushCount++;
+      pendingRows = 0;
+      pendingBytes = 0L;
+    }
+  }
+
+  /**
+   * Number of times pending statements have been flushed to the database.
+   */
+  public int getFlushCount() {
+    return flushCount;
+  }
+
+  private static long sizeOf(FileSourceDto dto) {
+    long size = 0L;
+    byte[] binaryData = dto.getBinaryData();
+    if (binaryData != null) {
+      size += binaryData.length;
+    }
+    String lineHashes = dto.getLineHashes();
+    if (lineHashes != null) {
+      // two bytes per char
+      size += 2L * lineHashes.length();
+    }
+    return size;
+  }
+}
@@ -44,6 +44,14 @@ public class FileSourceDao implements Dao {
     return mapper(session).select(fileUuid, Type.SOURCE);
   }
 
+  /**
+   * Same as {@link #selectSourceByFileUuid(DbSession, String)} but without the data of the file, only the hashes.
+   */
+  @CheckForNull
+  public FileSourceDto selectSourceHashesByFileUuid(DbSession session, String fileUuid) {
+    return mapper(session).selectHashes(fileUuid, Type.SOURCE);
+  }
+
   @CheckForNull
   public FileSourceDto selectTest(DbSession dbSession, String fileUuid) {
     return mapper(dbSession).select(fileUuid, Type.TEST);
@@ -106,6 +114,23 @@ public class FileSourceDao implements Dao {
     mapper(session).update(dto);
   }
 
+  /**
+   * Updates only the column INPUTS_HASH of the row, without sending its data again. Date of update is kept unchanged.
+   */
+  public void updateInputsHash(DbSession session, long id, String inputsHash) {
+    mapper(session).updateInputsHash(id, inputsHash);
+  }
+
+  /**
+   * Creates a writer which inserts and updates rows through the specified session by batches of at most
+   * {@code maxBatchBytes} bytes of data.
+   *
+   * @see FileSourceBatchWriter
+   */
+  public FileSourceBatchWriter newBatchWriter(DbSession session, long maxBatchBytes) {
+    return new FileSourceBatchWriter(this, session, maxBatchBytes);
+  }
+
   private static FileSourceMapper mapper(DbSession session) {
     return session.getMapper(FileSourceMapper.class);
   }
@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import net.jpountz.lz4.LZ4BlockInputStream;
@@ -34,6 +35,7 @@ import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.apache.commons.io.IOUtils;
 import org.sonar.db.protobuf.DbFileSources;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
 
 public class FileSourceDto {
@@ -52,6 +54,7 @@ public class FileSourceDto {
   private String dataType;
   private String dataHash;
   private String revision;
+  private String inputsHash;
 
   public Long getId() {
     return id;
@@ -93,16 +96,89 @@ public class FileSourceDto {
     return this;
   }
 
+  @CheckForNull
+  public String getInputsHash() {
+    return inputsHash;
+  }
+
+  /**
+   * MD5 of the analysis inputs (source lines, coverage, highlighting, symbols, duplications and SCM) from which
+   * column BINARY_DATA has been built. Used to skip building data of files that did not change.
+   */
+  public FileSourceDto setInputsHash(@Nullable String s) {
+    this.inputsHash = s;
+    return this;
+  }
+
   public DbFileSources.Data decodeSourceData(byte[] binaryData) {
     try {
+      if (ChunkedSourceData.isChunked(binaryData)) {
+        return ChunkedSourceData.decode(binaryData);
+      }
       return decodeRegularSourceData(binaryData);
     } catch (IOException e) {
-      throw new IllegalStateException(
-        format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
-        e);
+      throw failToDecodeSourceData(e);
+    }
+  }
+
+  /**
+   * Lines of {@link #decodeSourceData(byte[])} with a line number greater than or equal to {@code from}, limited to
+   * {@code toInclusive - from + 1} lines. Only the chunks of data which contain these lines are decompressed and
+   * deserialized, unless data has been persisted before the introduction of {@link ChunkedSourceData}.
+   */
+  public List<DbFileSources.Line> decodeSourceLines(byte[] binaryData, int from, int toInclusive) {
+    int limit = toInclusive - from + 1;
+    try {
+      if (ChunkedSourceData.isChunked(binaryData)) {
+        return ChunkedSourceData.decodeLines(binaryData, from, limit);
+      }
+      return decodeRegularSourceData(binaryData).getLinesList().stream()
+        .filter(line -> line.hasLine() && line.getLine() >= from)
+        .limit(limit)
+        .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw failToDecodeSourceData(e);
+    }
+  }
+
+  /**
+   * Highest line number of each chunk of lines of the source data, {@link Integer#MIN_VALUE} for the chunks without
+   * line numbers. Data persisted before the introduction of {@link ChunkedSourceData} is considered as a single chunk
+   * which may contain any line.
+   */
+  public int[] getSourceChunkHighestLines() {
+    try {
+      if (ChunkedSourceData.isChunked(binaryData)) {
+        return ChunkedSourceData.highestLines(binaryData);
+      }
+      return new int[] {Integer.MAX_VALUE};
+    } catch (IOException e) {
+      throw failToDecodeSourceData(e);
+    }
+  }
+
+  /**
+   * Lines of a chunk of the source data
+   * @param chunk index of the chunk, see {@link #getSourceChunkHighestLines()}
+   */
+  public List<DbFileSources.Line> getSourceChunk(int chunk) {
+    try {
+      if (ChunkedSourceData.isChunked(binaryData)) {
+        return ChunkedSourceData.decodeChunk(binaryData, chunk);
+      }
+      checkArgument(chunk == 0, "Chunk %s does not exist, source data has 1 chunk", chunk);
+      return decodeRegularSourceData(binaryData).getLinesList();
+    } catch (IOException e) {
+      throw failToDecodeSourceData(e);
     }
   }
 
+  private IllegalStateException failToDecodeSourceData(IOException e) {
+    return new IllegalStateException(
+      format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
+      e);
+  }
+
   private static DbFileSources.Data decodeRegularSourceData(byte[] binaryData) throws IOException {
     try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
       return DbFileSources.Data.parseFrom(lz4Input);
@@ -124,19 +200,13 @@ public class FileSourceDto {
 
   /**
    * Serialize and compress protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
-   * in the column BINARY_DATA.
+   * in the column BINARY_DATA, by chunks of lines. See {@link ChunkedSourceData}.
    */
   public static byte[] encodeSourceData(DbFileSources.Data data) {
-    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-    LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput);
     try {
-      data.writeTo(compressedOutput);
-      compressedOutput.close();
-      return byteOutput.toByteArray();
+      return ChunkedSourceData.encode(data);
     } catch (IOException e) {
       throw new IllegalStateException("Fail to serialize and compress source data", e);
-    } finally {
-      IOUtils.closeQuietly(compressedOutput);
     }
   }
 
@@ -212,6 +282,13 @@ public class FileSourceDto {
     return decodeSourceData(binaryData);
   }
 
+  /**
+   * @see #decodeSourceLines(byte[], int, int)
+   */
+  public List<DbFileSources.Line> getSourceLines(int from, int toInclusive) {
+    return decodeSourceLines(binaryData, from, toInclusive);
+  }
+
   public FileSourceDto setSourceData(DbFileSources.Data data) {
     this.dataType = Type.SOURCE;
     this.binaryData = encodeSourceData(data);
@@ -27,10 +27,15 @@ public interface FileSourceMapper {
 
   List<FileSourceDto> selectHashesForProject(@Param("projectUuid") String projectUuid, @Param("dataType") String dataType);
 
+  @CheckForNull
+  FileSourceDto selectHashes(@Param("fileUuid") String fileUuid, @Param("dataType") String dataType);
+
   @CheckForNull
   FileSourceDto select(@Param("fileUuid") String fileUuid, @Param("dataType") String dataType);
 
   void insert(FileSourceDto dto);
 
   void update(FileSourceDto dto);
+
+  void updateInputsHash(@Param("id") long id, @Param("inputsHash") String inputsHash);
 }
@@ -182,6 +182,22 @@ public class CeQueueDaoTest {
     assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_2);
   }
 
+  @Test
+  public void peek_oldest_pending_task_of_each_project_in_turn() throws Exception {
+    // two pending tasks on project 1 submitted before the task of project 2
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 2_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+
+    assertThat(underTest.peek(db.getSession()).get().getUuid()).isEqualTo(TASK_UUID_1);
+    // second task of project 1 is not eligible, task of project 2 is claimed
+    assertThat(underTest.peek(db.getSession()).get().getUuid()).isEqualTo(TASK_UUID_3);
+    assertThat(underTest.peek(db.getSession()).isPresent()).isFalse();
+    verifyCeQueueStatuses(TASK_UUID_1, IN_PROGRESS, TASK_UUID_2, PENDING, TASK_UUID_3, IN_PROGRESS);
+  }
+
   @Test
   public void select_by_query() {
     // task status not in query
@@ -26,6 +26,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
@@ -40,6 +41,8 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.RowNotFoundException;
+import org.sonar.db.component.ComponentTreeQuery.MeasureSort;
+import org.sonar.db.measure.MeasureDto;
 import org.sonar.db.organization.OrganizationDto;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -58,8 +61,14 @@ import static org.sonar.db.component.ComponentTesting.newProjectCopy;
 import static org.sonar.db.component.ComponentTesting.newProjectDto;
 import static org.sonar.db.component.ComponentTesting.newSubView;
 import static org.sonar.db.component.ComponentTesting.newView;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.MEASURE_VALUE;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.MEASURE_VARIATION;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.NAME;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.PATH;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.QUALIFIER;
 import static org.sonar.db.component.ComponentTreeQuery.Strategy.CHILDREN;
 import static org.sonar.db.component.ComponentTreeQuery.Strategy.LEAVES;
+import static org.sonar.db.component.SnapshotTesting.newAnalysis;
 
 public class ComponentDaoTest {
 
@@ -69,6 +78,8 @@ public class ComponentDaoTest {
   private static final String FILE_2_UUID = "file-2-uuid";
   private static final String FILE_3_UUID = "file-3-uuid";
   private static final String A_VIEW_UUID = "view-uuid";
+  private static final int METRIC_ID = 10;
+  private static final long DEVELOPER_ID = 20L;
   private static final ComponentQuery ALL_PROJECTS_COMPONENT_QUERY = ComponentQuery.builder().setQualifiers("TRK").build();
 
   @Rule
@@ -1120,6 +1131,186 @@ public class ComponentDaoTest {
     assertThat(components).extracting("organizationUuid").containsOnly(organizationDto.getUuid());
   }
 
+  @Test
+  public void select_descendants_sorted_and_paginated() {
+    ComponentDto project = newProjectDto(db.getDefaultOrganization(), PROJECT_UUID);
+    db.components().insertProjectAndSnapshot(project);
+    db.components().insertComponent(newFileDto(project, null, "file-c-uuid").setName("File c").setPath("path-1"));
+    db.components().insertComponent(newFileDto(project, null, "file-b-uuid").setName("file B").setPath("path-3"));
+    db.components().insertComponent(newFileDto(project, null, "file-a-uuid").setName("File a").setPath("path-2"));
+    db.commit();
+
+    ComponentTreeQuery byName = newTreeQuery(PROJECT_UUID).setSortFields(singletonList(NAME)).build();
+    assertThat(underTest.selectDescendants(dbSession, byName, 0, 10)).extracting("name").containsExactly("File a", "file B", "File c");
+    assertThat(underTest.selectDescendants(dbSession, byName, 1, 1)).extracting("name").containsExactly("file B");
+    assertThat(underTest.selectDescendants(dbSession, byName, 3, 1)).isEmpty();
+    assertThat(underTest.countDescendants(dbSession, byName)).isEqualTo(3);
+
+    ComponentTreeQuery byPathDesc = newTreeQuery(PROJECT_UUID).setSortFields(singletonList(PATH)).setAsc(false).build();
+    assertThat(underTest.selectDescendants(dbSession, byPathDesc, 0, 10)).extracting("path").containsExactly("path-3", "path-2", "path-1");
+  }
+
+  @Test
+  public void select_descendants_sorted_on_multiple_fields() {
+    ComponentDto project = newProjectDto(db.getDefaultOrganization(), PROJECT_UUID);
+    db.components().insertProjectAndSnapshot(project);
+    db.components().insertComponent(newFileDto(project, null, "file-2-uuid").setName("name").setPath("path-2"));
+    db.components().insertComponent(newFileDto(project, null, "file-3-uuid").setName("name").setPath("path-3"));
+    db.components().insertComponent(newFileDto(project, null, "file-1-uuid").setName("name").setPath("path-1"));
+    db.commit();
+
+    ComponentTreeQuery query = newTreeQuery(PROJECT_UUID).setSortFields(asList(NAME, QUALIFIER, PATH)).build();
+
+    assertThat(underTest.selectDescendants(dbSession, query, 0, 10)).extracting("path").containsExactly("path-1", "path-2", "path-3");
+  }
+
+  @Test
+  public void select_descendants_sorted_on_numeric_measure() {
+    SnapshotDto analysis = insertProjectWithFiles("file-1-uuid", "file-2-uuid", "file-3-uuid", "file-4-uuid");
+    insertMeasure(analysis, "file-1-uuid", new MeasureDto().setValue(3d));
+    insertMeasure(analysis, "file-2-uuid", new MeasureDto().setValue(1d));
+    insertMeasure(analysis, "file-4-uuid", new MeasureDto().setValue(2d));
+    // measures of other analyses and of developers are ignored
+    insertMeasure(db.components().insertSnapshot(newAnalysis(project()).setLast(false)), "file-3-uuid", new MeasureDto().setValue(0d));
+    insertMeasure(analysis, "file-3-uuid", new MeasureDto().setValue(0d).setDeveloperId(DEVELOPER_ID));
+    db.commit();
+
+    MeasureSort measureSort = newMeasureSort(analysis, MeasureSort.ValueType.NUMERIC).build();
+
+    assertThat(selectDescendantsSortedOn(MEASURE_VALUE, measureSort, true)).containsExactly("file-2-uuid", "file-4-uuid", "file-1-uuid", "file-3-uuid");
+    assertThat(selectDescendantsSortedOn(MEASURE_VALUE, measureSort, false)).containsExactly("file-1-uuid", "file-4-uuid", "file-2-uuid", "file-3-uuid");
+  }
+
+  @Test
+  public void select_descendants_sorted_on_numeric_measure_of_developer() {
+    SnapshotDto analysis = insertProjectWithFiles("file-1-uuid", "file-2-uuid");
+    insertMeasure(analysis, "file-1-uuid", new MeasureDto().setValue(1d));
+    insertMeasure(analysis, "file-1-uuid", new MeasureDto().setValue(2d).setDeveloperId(DEVELOPER_ID));
+    insertMeasure(analysis, "file-2-uuid", new MeasureDto().setValue(1d).setDeveloperId(DEVELOPER_ID));
+    db.commit();
+
+    MeasureSort measureSort = newMeasureSort(analysis, MeasureSort.ValueType.NUMERIC).setPersonId(DEVELOPER_ID).build();
+
+    assertThat(selectDescendantsSortedOn(MEASURE_VALUE, measureSort, true)).containsExactly("file-2-uuid", "file-1-uuid");
+  }
+
+  @Test
+  public void select_descendants_sorted_on_measure_variation() {
+    SnapshotDto analysis = insertProjectWithFiles("file-1-uuid", "file-2-uuid", "file-3-uuid");
+    insertMeasure(analysis, "file-1-uuid", new MeasureDto().setValue(1d).setVariation(-1d));
+    insertMeasure(analysis, "file-2-uuid", new MeasureDto().setValue(2d).setVariation(-2d));
+    insertMeasure(analysis, "file-3-uuid", new MeasureDto().setValue(3d));
+    db.commit();
+
+    MeasureSort measureSort = newMeasureSort(analysis, MeasureSort.ValueType.NUMERIC).build();
+
+    assertThat(selectDescendantsSortedOn(MEASURE_VARIATION, measureSort, true)).containsExactly("file-2-uuid", "file-1-uuid", "file-3-uuid");
+    assertThat(selectDescendantsSortedOn(MEASURE_VARIATION, measureSort, false)).containsExactly("file-1-uuid", "file-2-uuid", "file-3-uuid");
+  }
+
+  @Test
+  public void select_descendants_sorted_on_textual_measure() {
+    SnapshotDto analysis = insertProjectWithFiles("file-1-uuid", "file-2-uuid", "file-3-uuid");
+    insertMeasure(analysis, "file-1-uuid", new MeasureDto().setData("b"));
+    insertMeasure(analysis, "file-2-uuid", new MeasureDto().setData("A"));
+    db.commit();
+
+    MeasureSort measureSort = newMeasureSort(analysis, MeasureSort.ValueType.TEXTUAL).build();
+
+    assertThat(selectDescendantsSortedOn(MEASURE_VALUE, measureSort, true)).containsExactly("file-2-uuid", "file-1-uuid", "file-3-uuid");
+    assertThat(selectDescendantsSortedOn(MEASURE_VALUE, measureSort, false)).containsExactly("file-1-uuid", "file-2-uuid", "file-3-uuid");
+  }
+
+  @Test
+  public void select_descendants_sorted_on_level_measure_from_error_to_ok_when_ascending() {
+    SnapshotDto analysis = insertProjectWithFiles("file-ok-uuid", "file-warn-uuid", "file-error-uuid", "file-none-uuid");
+    insertMeasure(analysis, "file-ok-uuid", new MeasureDto().setData("OK"));
+    insertMeasure(analysis, "file-warn-uuid", new MeasureDto().setData("WARN"));
+    insertMeasure(analysis, "file-error-uuid", new MeasureDto().setData("ERROR"));
+    db.commit();
+
+    MeasureSort measureSort = newMeasureSort(analysis, MeasureSort.ValueType.LEVEL).build();
+
+    assertThat(selectDescendantsSortedOn(MEASURE_VALUE, measureSort, true)).containsExactly("file-error-uuid", "file-warn-uuid", "file-ok-uuid", "file-none-uuid");
+    assertThat(selectDescendantsSortedOn(MEASURE_VALUE, measureSort, false)).containsExactly("file-ok-uuid", "file-warn-uuid", "file-error-uuid", "file-none-uuid");
+  }
+
+  @Test
+  public void select_descendants_sorted_on_measure_with_best_value_of_files_without_measure() {
+    SnapshotDto analysis = insertProjectWithFiles("file-1-uuid", "file-2-uuid");
+    ComponentDto directory = db.components().insertComponent(newDirectory(project(), "dir-uuid", "src"));
+    insertMeasure(analysis, "file-1-uuid", new MeasureDto().setValue(2d));
+    db.commit();
+
+    MeasureSort measureSort = newMeasureSort(analysis, MeasureSort.ValueType.NUMERIC)
+      .setBestValue(1d, null, asList(Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE))
+      .build();
+
+    assertThat(selectDescendantsSortedOn(MEASURE_VALUE, measureSort, true)).containsExactly("file-2-uuid", "file-1-uuid", directory.uuid());
+  }
+
+  @Test
+  public void select_descendants_with_measure_only() {
+    SnapshotDto analysis = insertProjectWithFiles("file-1-uuid", "file-2-uuid", "file-3-uuid");
+    insertMeasure(analysis, "file-1-uuid", new MeasureDto().setValue(1d));
+    insertMeasure(analysis, "file-2-uuid", new MeasureDto().setValue(2d).setVariation(1d));
+    db.commit();
+
+    ComponentTreeQuery withValueOnly = newTreeQuery(PROJECT_UUID)
+      .setMeasureSort(newMeasureSort(analysis, MeasureSort.ValueType.NUMERIC).setWithValueOnly(true).build())
+      .build();
+    assertThat(underTest.selectDescendants(dbSession, withValueOnly, 0, 10)).extracting("uuid").containsOnly("file-1-uuid", "file-2-uuid");
+    assertThat(underTest.countDescendants(dbSession, withValueOnly)).isEqualTo(2);
+
+    ComponentTreeQuery withVariationOnly = newTreeQuery(PROJECT_UUID)
+      .setMeasureSort(newMeasureSort(analysis, MeasureSort.ValueType.NUMERIC).setWithVariationOnly(true).build())
+      .build();
+    assertThat(underTest.selectDescendants(dbSession, withVariationOnly, 0, 10)).extracting("uuid").containsOnly("file-2-uuid");
+    assertThat(underTest.countDescendants(dbSession, withVariationOnly)).isEqualTo(1);
+
+    ComponentTreeQuery withBestValue = newTreeQuery(PROJECT_UUID)
+      .setMeasureSort(newMeasureSort(analysis, MeasureSort.ValueType.NUMERIC).setWithValueOnly(true)
+        .setBestValue(0d, null, singletonList(Qualifiers.FILE)).build())
+      .build();
+    assertThat(underTest.countDescendants(dbSession, withBestValue)).isEqualTo(3);
+  }
+
+  private SnapshotDto insertProjectWithFiles(String... fileUuids) {
+    ComponentDto project = newProjectDto(db.getDefaultOrganization(), PROJECT_UUID);
+    SnapshotDto analysis = db.components().insertProjectAndSnapshot(project);
+    for (String fileUuid : fileUuids) {
+      db.components().insertComponent(newFileDto(project, null, fileUuid));
+    }
+    return analysis;
+  }
+
+  private ComponentDto project() {
+    return underTest.selectOrFailByUuid(dbSession, PROJECT_UUID);
+  }
+
+  private void insertMeasure(SnapshotDto analysis, String componentUuid, MeasureDto measure) {
+    db.getDbClient().measureDao().insert(dbSession, measure
+      .setMetricId(METRIC_ID)
+      .setComponentUuid(componentUuid)
+      .setAnalysisUuid(analysis.getUuid()));
+  }
+
+  private static MeasureSort.Builder newMeasureSort(SnapshotDto analysis, MeasureSort.ValueType valueType) {
+    return MeasureSort.builder()
+      .setMetricId(METRIC_ID)
+      .setAnalysisUuid(analysis.getUuid())
+      .setValueType(valueType);
+  }
+
+  private List<String> selectDescendantsSortedOn(ComponentTreeQuery.SortField sortField, MeasureSort measureSort, boolean asc) {
+    ComponentTreeQuery query = newTreeQuery(PROJECT_UUID)
+      .setSortFields(singletonList(sortField))
+      .setAsc(asc)
+      .setMeasureSort(measureSort)
+      .build();
+    return underTest.selectDescendants(dbSession, query, 0, 10).stream().map(ComponentDto::uuid).collect(Collectors.toList());
+  }
+
   @Test
   public void select_projects_by_name_query() {
     OrganizationDto organizationDto = db.organizations().insert();
@@ -22,10 +22,14 @@ package org.sonar.db.component;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.db.component.ComponentTreeQuery.MeasureSort;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.db.component.ComponentTesting.newProjectDto;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.MEASURE_VALUE;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.MEASURE_VARIATION;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.NAME;
 import static org.sonar.db.component.ComponentTreeQuery.Strategy.CHILDREN;
 import static org.sonar.db.component.ComponentTreeQuery.Strategy.LEAVES;
 import static org.sonar.db.organization.OrganizationTesting.newOrganizationDto;
@@ -65,6 +69,52 @@ public class ComponentTreeQueryTest {
     assertThat(query.getQualifiers()).isNull();
     assertThat(query.getNameOrKeyQuery()).isNull();
     assertThat(query.getNameOrKeyUpperLikeQuery()).isNull();
+    assertThat(query.getSortFields()).isEmpty();
+    assertThat(query.isAsc()).isTrue();
+    assertThat(query.getMeasureSort()).isNull();
+  }
+
+  @Test
+  public void create_query_sorted_on_measure() throws Exception {
+    ComponentTreeQuery query = ComponentTreeQuery.builder()
+      .setBaseUuid(BASE_UUID)
+      .setStrategy(CHILDREN)
+      .setSortFields(asList(MEASURE_VALUE, NAME))
+      .setAsc(false)
+      .setMeasureSort(MeasureSort.builder()
+        .setMetricId(10)
+        .setAnalysisUuid("U1")
+        .setPersonId(20L)
+        .setValueType(MeasureSort.ValueType.NUMERIC)
+        .setBestValue(0d, null, asList("FIL", "UTS"))
+        .setWithValueOnly(true)
+        .build())
+      .build();
+
+    assertThat(query.getSortFields()).containsExactly(MEASURE_VALUE, NAME);
+    assertThat(query.isAsc()).isFalse();
+    MeasureSort measureSort = query.getMeasureSort();
+    assertThat(measureSort.getMetricId()).isEqualTo(10);
+    assertThat(measureSort.getAnalysisUuid()).isEqualTo("U1");
+    assertThat(measureSort.getPersonId()).isEqualTo(20L);
+    assertThat(measureSort.getValueType()).isEqualTo(MeasureSort.ValueType.NUMERIC);
+    assertThat(measureSort.getBestValue()).isEqualTo(0d);
+    assertThat(measureSort.getBestVariation()).isNull();
+    assertThat(measureSort.getBestValueQualifiers()).containsExactly("FIL", "UTS");
+    assertThat(measureSort.isWithValueOnly()).isTrue();
+    assertThat(measureSort.isWithVariationOnly()).isFalse();
+  }
+
+  @Test
+  public void fail_when_sorted_on_measure_without_measure_sort() throws Exception {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("A measure sort is required to sort on measures");
+
+    ComponentTreeQuery.builder()
+      .setBaseUuid(BASE_UUID)
+      .setStrategy(CHILDREN)
+      .setSortFields(asList(MEASURE_VARIATION))
+      .build();
   }
 
   @Test
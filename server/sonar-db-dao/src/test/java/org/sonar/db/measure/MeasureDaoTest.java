@@ -23,6 +23,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
@@ -42,6 +44,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.api.resources.Qualifiers.FILE;
 import static org.sonar.api.resources.Qualifiers.PROJECT;
 import static org.sonar.api.resources.Qualifiers.UNIT_TEST_FILE;
@@ -470,6 +473,57 @@ public class MeasureDaoTest {
     assertThat(result).hasSize(2).extracting(MeasureDto::getData).containsOnly("PROJECT_M1", "PROJECT_M2");
   }
 
+  @Test
+  public void select_past_measures_of_all_components_of_analysis() {
+    ComponentDto project = db.components().insertProject();
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    ComponentDto file = db.components().insertComponent(newFileDto(module));
+    insertAnalysis(LAST_ANALYSIS_UUID, project.uuid(), true);
+    insertAnalysis(OTHER_ANALYSIS_UUID, project.uuid(), false);
+    insertMeasure("P1", OTHER_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("P2", OTHER_ANALYSIS_UUID, project.uuid(), COVERAGE_METRIC_ID);
+    insertMeasure("P3", OTHER_ANALYSIS_UUID, project.uuid(), COMPLEXITY_METRIC_ID);
+    insertMeasure("P4", LAST_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("M1", OTHER_ANALYSIS_UUID, module.uuid(), NCLOC_METRIC_ID);
+    insertMeasureOnPerson("M2", OTHER_ANALYSIS_UUID, module.uuid(), NCLOC_METRIC_ID, A_PERSON_ID);
+    insertMeasure("F1", OTHER_ANALYSIS_UUID, file.uuid(), NCLOC_METRIC_ID);
+    db.commit();
+
+    List<PastMeasureDto> result = new ArrayList<>();
+    int queries = underTest.selectPastMeasuresOfAnalysis(db.getSession(), OTHER_ANALYSIS_UUID, asList(NCLOC_METRIC_ID, COVERAGE_METRIC_ID),
+      context -> result.add((PastMeasureDto) context.getResultObject()));
+
+    // measures of files, of developers, of other analyses and of other metrics are not selected
+    assertThat(result).extracting(PastMeasureDto::getComponentUuid, PastMeasureDto::getMetricId)
+      .containsOnly(
+        tuple(project.uuid(), NCLOC_METRIC_ID),
+        tuple(project.uuid(), COVERAGE_METRIC_ID),
+        tuple(module.uuid(), NCLOC_METRIC_ID));
+    assertThat(result).extracting(PastMeasureDto::getPersonId).containsOnly((Long) null);
+    assertThat(queries).isEqualTo(1);
+  }
+
+  @Test
+  public void select_past_measures_of_analysis_by_partitions_of_metrics() {
+    List<Integer> metricIds = IntStream.rangeClosed(1, 2_500).boxed().collect(Collectors.toList());
+
+    int queries = underTest.selectPastMeasuresOfAnalysis(db.getSession(), OTHER_ANALYSIS_UUID, metricIds, context -> {
+    });
+
+    assertThat(queries).isEqualTo(3);
+  }
+
+  @Test
+  public void select_past_measures_of_analysis_does_nothing_if_no_metric() {
+    List<PastMeasureDto> result = new ArrayList<>();
+
+    int queries = underTest.selectPastMeasuresOfAnalysis(db.getSession(), OTHER_ANALYSIS_UUID, emptyList(),
+      context -> result.add((PastMeasureDto) context.getResultObject()));
+
+    assertThat(result).isEmpty();
+    assertThat(queries).isZero();
+  }
+
   private Optional<MeasureDto> selectSingle(MeasureQuery.Builder query) {
     return underTest.selectSingle(db.getSession(), query.build());
   }
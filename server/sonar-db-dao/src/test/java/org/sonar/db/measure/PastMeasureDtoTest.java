@@ -30,11 +30,13 @@ public class PastMeasureDtoTest {
     PastMeasureDto dto = new PastMeasureDto()
       .setValue(1d)
       .setMetricId(2)
+      .setComponentUuid("C1")
       .setPersonId(5L);
 
     assertThat(dto.hasValue()).isTrue();
     assertThat(dto.getValue()).isEqualTo(1d);
     assertThat(dto.getMetricId()).isEqualTo(2);
+    assertThat(dto.getComponentUuid()).isEqualTo("C1");
     assertThat(dto.getPersonId()).isEqualTo(5L);
   }
 
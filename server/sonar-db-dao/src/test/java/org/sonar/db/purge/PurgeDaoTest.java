@@ -224,6 +224,19 @@ public class PurgeDaoTest {
     assertThat(issueKeys.getValue()).containsOnly("ISSUE-1", "ISSUE-2");
   }
 
+  @Test
+  public void delete_old_closed_issues_by_chunks() {
+    dbTester.prepareDbUnit(getClass(), "should_delete_old_closed_issues.xml");
+    PurgeThrottle throttle = new PurgeThrottle(1, 0);
+
+    underTest.purge(dbSession, newConfigurationWith30Days(), PurgeListener.EMPTY, new PurgeProfiler(), throttle);
+
+    dbTester.assertDbUnit(getClass(), "should_delete_old_closed_issues-result.xml", "issues", "issue_changes");
+    // one chunk per issue, each of them deleting an issue and its single change
+    assertThat(throttle.getChunks()).isGreaterThanOrEqualTo(2);
+    assertThat(throttle.getDeletedRows()).isGreaterThanOrEqualTo(4);
+  }
+
   @Test
   public void should_delete_all_closed_issues() {
     dbTester.prepareDbUnit(getClass(), "should_delete_all_closed_issues.xml");
@@ -0,0 +1,143 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.purge;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.core.config.PurgeConstants;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PurgeThrottleTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private FakeClock clock = new FakeClock();
+
+  @Test
+  public void count_chunks_and_rows_ignoring_counts_of_batched_statements() {
+    PurgeThrottle underTest = new PurgeThrottle(10, 0, clock);
+
+    underTest.onChunkCommitted(5);
+    underTest.onChunkCommitted(3, 2);
+    underTest.onChunkCommitted(Integer.MIN_VALUE + 1002, Integer.MIN_VALUE + 1002);
+
+    assertThat(underTest.getChunks()).isEqualTo(3);
+    assertThat(underTest.getDeletedRows()).isEqualTo(10);
+    assertThat(clock.sleeps).isEmpty();
+  }
+
+  @Test
+  public void pause_between_chunks_to_not_exceed_max_rows_per_second() {
+    PurgeThrottle underTest = new PurgeThrottle(10, 100, clock);
+
+    // 50 rows are allowed in 500ms, 200ms have elapsed
+    clock.now += 200;
+    underTest.onChunkCommitted(50);
+    // 100 rows are allowed in 1000ms, 500ms have elapsed
+    underTest.onChunkCommitted(50);
+    // 110 rows are allowed in 1100ms, 3000ms have elapsed
+    clock.now += 2_000;
+    underTest.onChunkCommitted(10);
+
+    assertThat(clock.sleeps).containsExactly(300L, 500L);
+  }
+
+  @Test
+  public void stop_without_pausing_at_the_first_chunk_boundary_where_yield_condition_is_met() {
+    List<Boolean> conditions = new ArrayList<>(asList(false, true));
+    PurgeThrottle underTest = new PurgeThrottle(10, 100, clock).setYieldCondition(() -> conditions.remove(0));
+    clock.now += 1_000;
+    underTest.onChunkCommitted(100);
+
+    expectedException.expect(PurgeThrottle.YieldException.class);
+    expectedException.expectMessage("Purge stopped after 150 rows deleted in 2 chunks");
+
+    try {
+      underTest.onChunkCommitted(50);
+    } finally {
+      assertThat(clock.sleeps).isEmpty();
+    }
+  }
+
+  @Test
+  public void log_progress_periodically() {
+    PurgeThrottle underTest = new PurgeThrottle(10, 0, clock);
+
+    underTest.onChunkCommitted(5);
+    assertThat(logTester.logs(LoggerLevel.INFO)).isEmpty();
+
+    clock.now += PurgeThrottle.PROGRESS_LOG_INTERVAL_MS;
+    underTest.onChunkCommitted(7);
+    assertThat(logTester.logs(LoggerLevel.INFO)).containsExactly("Purge in progress: 12 rows deleted in 2 chunks");
+  }
+
+  @Test
+  public void create_from_settings() {
+    Settings settings = new MapSettings()
+      .setProperty(PurgeConstants.CHUNK_SIZE, 50)
+      .setProperty(PurgeConstants.MAX_ROWS_PER_SECOND, 2_000);
+
+    assertThat(PurgeThrottle.fromSettings(settings).getChunkSize()).isEqualTo(50);
+  }
+
+  @Test
+  public void chunk_size_from_settings_is_bounded_by_the_limit_of_oracle() {
+    Settings settings = new MapSettings().setProperty(PurgeConstants.CHUNK_SIZE, 5_000);
+
+    assertThat(PurgeThrottle.fromSettings(settings).getChunkSize()).isEqualTo(PurgeThrottle.MAX_CHUNK_SIZE);
+    assertThat(PurgeThrottle.fromSettings(new MapSettings()).getChunkSize()).isEqualTo(PurgeThrottle.MAX_CHUNK_SIZE);
+  }
+
+  @Test
+  public void fail_if_chunk_size_is_zero() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Chunk size must be between 1 and 1000: 0");
+
+    new PurgeThrottle(0, 0);
+  }
+
+  private static class FakeClock extends PurgeThrottle.Clock {
+    private long now = 1_000L;
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @Override
+    long now() {
+      return now;
+    }
+
+    @Override
+    void sleep(long ms) {
+      sleeps.add(ms);
+      now += ms;
+    }
+  }
+}
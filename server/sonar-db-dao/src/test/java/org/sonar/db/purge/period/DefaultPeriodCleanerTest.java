@@ -31,6 +31,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.purge.IdUuidPair;
 import org.sonar.db.purge.PurgeDao;
 import org.sonar.db.purge.PurgeProfiler;
+import org.sonar.db.purge.PurgeThrottle;
 import org.sonar.db.purge.PurgeableAnalysisDto;
 
 import static org.mockito.Mockito.anyListOf;
@@ -54,13 +55,14 @@ public class DefaultPeriodCleanerTest {
 
     PurgeProfiler profiler = new PurgeProfiler();
     DefaultPeriodCleaner cleaner = new DefaultPeriodCleaner(dao, profiler);
-    cleaner.doClean("uuid_123", Arrays.asList(filter1, filter2), session);
+    PurgeThrottle throttle = PurgeThrottle.unlimited();
+    cleaner.doClean("uuid_123", Arrays.asList(filter1, filter2), session, throttle);
 
     InOrder inOrder = Mockito.inOrder(dao, filter1, filter2);
     inOrder.verify(filter1).log();
-    inOrder.verify(dao, times(1)).deleteAnalyses(eq(session), eq(profiler), eq(ImmutableList.of(new IdUuidPair(999, "u999"))));
+    inOrder.verify(dao, times(1)).deleteAnalyses(eq(session), eq(profiler), eq(throttle), eq(ImmutableList.of(new IdUuidPair(999, "u999"))));
     inOrder.verify(filter2).log();
-    inOrder.verify(dao, times(1)).deleteAnalyses(eq(session), eq(profiler), eq(ImmutableList.of(new IdUuidPair(456, "u456"))));
+    inOrder.verify(dao, times(1)).deleteAnalyses(eq(session), eq(profiler), eq(throttle), eq(ImmutableList.of(new IdUuidPair(456, "u456"))));
     inOrder.verifyNoMoreInteractions();
   }
 
@@ -0,0 +1,136 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.source.FileSourceDto.Type;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileSourceBatchWriterTest {
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private DbSession batchSession = dbTester.getDbClient().openSession(true);
+  private FileSourceDao dao = dbTester.getDbClient().fileSourceDao();
+
+  @After
+  public void tearDown() {
+    batchSession.close();
+  }
+
+  @Test
+  public void flush_when_size_of_pending_data_reaches_budget() {
+    FileSourceBatchWriter underTest = dao.newBatchWriter(batchSession, 10);
+
+    underTest.insert(newDto("FILE1", 4));
+    underTest.insert(newDto("FILE2", 4));
+    assertThat(underTest.getFlushCount()).isEqualTo(0);
+
+    underTest.insert(newDto("FILE3", 4));
+    assertThat(underTest.getFlushCount()).isEqualTo(1);
+
+    underTest.insert(newDto("FILE4", 4));
+    underTest.flush();
+    assertThat(underTest.getFlushCount()).isEqualTo(2);
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(4);
+  }
+
+  @Test
+  public void line_hashes_are_part_of_pending_data() {
+    FileSourceBatchWriter underTest = dao.newBatchWriter(batchSession, 10);
+
+    underTest.insert(newDto("FILE1", 0).setLineHashes("abcde"));
+
+    assertThat(underTest.getFlushCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void flush_does_nothing_if_no_pending_statements() {
+    FileSourceBatchWriter underTest = dao.newBatchWriter(batchSession, 10);
+
+    underTest.flush();
+    underTest.insert(newDto("FILE1", 10));
+    underTest.flush();
+
+    assertThat(underTest.getFlushCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void update_rows() {
+    FileSourceBatchWriter underTest = dao.newBatchWriter(batchSession, 1024);
+    underTest.insert(newDto("FILE1", 4));
+    underTest.flush();
+
+    FileSourceDto dto = dao.selectSourceByFileUuid(batchSession, "FILE1");
+    underTest.update(dto.setDataHash("updated").setUpdatedAt(2_000L));
+    underTest.flush();
+
+    FileSourceDto reloaded = dao.selectSourceByFileUuid(dbTester.getSession(), "FILE1");
+    assertThat(reloaded.getDataHash()).isEqualTo("updated");
+    assertThat(reloaded.getUpdatedAt()).isEqualTo(2_000L);
+    assertThat(underTest.getFlushCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void update_inputs_hash_only() {
+    FileSourceBatchWriter underTest = dao.newBatchWriter(batchSession, 1024);
+    underTest.insert(newDto("FILE1", 4));
+    underTest.flush();
+
+    FileSourceDto dto = dao.selectSourceByFileUuid(batchSession, "FILE1");
+    underTest.updateInputsHash(dto.setInputsHash("new_inputs_hash").setDataHash("ignored").setBinaryData(new byte[0]));
+    underTest.flush();
+
+    FileSourceDto reloaded = dao.selectSourceByFileUuid(dbTester.getSession(), "FILE1");
+    assertThat(reloaded.getInputsHash()).isEqualTo("new_inputs_hash");
+    assertThat(reloaded.getDataHash()).isNotEqualTo("ignored");
+    assertThat(reloaded.getBinaryData()).hasSize(4);
+    assertThat(underTest.getFlushCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void fail_if_budget_is_not_strictly_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Maximum size of batch must be strictly positive (got 0)");
+
+    dao.newBatchWriter(batchSession, 0);
+  }
+
+  private static FileSourceDto newDto(String fileUuid, int dataSize) {
+    return new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid(fileUuid)
+      .setDataType(Type.SOURCE)
+      .setBinaryData(new byte[dataSize])
+      .setDataHash("hash")
+      .setCreatedAt(1_000L)
+      .setUpdatedAt(1_000L);
+  }
+}
@@ -19,13 +19,18 @@
  */
 package org.sonar.db.source;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.db.protobuf.DbFileSources;
 
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class FileSourceDtoTest {
@@ -80,6 +85,107 @@ public class FileSourceDtoTest {
     assertThat(data.getLinesCount()).isEqualTo(build.getLinesCount());
   }
 
+  @Test
+  public void encode_and_decode_source_data_by_chunks_of_lines() {
+    DbFileSources.Data data = createData(ChunkedSourceData.LINES_PER_CHUNK * 2 + 5);
+
+    byte[] bytes = FileSourceDto.encodeSourceData(data);
+
+    assertThat(ChunkedSourceData.isChunked(bytes)).isTrue();
+    assertThat(new FileSourceDto().decodeSourceData(bytes)).isEqualTo(data);
+  }
+
+  @Test
+  public void encode_and_decode_empty_source_data() {
+    DbFileSources.Data data = DbFileSources.Data.newBuilder().build();
+
+    assertThat(new FileSourceDto().decodeSourceData(FileSourceDto.encodeSourceData(data))).isEqualTo(data);
+    assertThat(new FileSourceDto().setSourceData(data).getSourceLines(1, 10)).isEmpty();
+  }
+
+  @Test
+  public void getSourceLines_returns_range_of_lines_spread_over_several_chunks() {
+    FileSourceDto underTest = new FileSourceDto().setSourceData(createData(ChunkedSourceData.LINES_PER_CHUNK * 3));
+
+    List<DbFileSources.Line> lines = underTest.getSourceLines(ChunkedSourceData.LINES_PER_CHUNK - 1, ChunkedSourceData.LINES_PER_CHUNK * 2 + 1);
+
+    assertThat(lines).extracting(DbFileSources.Line::getLine)
+      .containsExactlyElementsOf(IntStream.rangeClosed(ChunkedSourceData.LINES_PER_CHUNK - 1, ChunkedSourceData.LINES_PER_CHUNK * 2 + 1).boxed().collect(toList()));
+  }
+
+  @Test
+  public void getSourceLines_stops_at_last_line() {
+    FileSourceDto underTest = new FileSourceDto().setSourceData(createData(150));
+
+    assertThat(underTest.getSourceLines(140, Integer.MAX_VALUE)).extracting(DbFileSources.Line::getLine)
+      .containsExactly(140, 141, 142, 143, 144, 145, 146, 147, 148, 149, 150);
+    assertThat(underTest.getSourceLines(151, Integer.MAX_VALUE)).isEmpty();
+  }
+
+  @Test
+  public void read_source_data_chunk_by_chunk() {
+    FileSourceDto underTest = new FileSourceDto().setSourceData(createData(ChunkedSourceData.LINES_PER_CHUNK + 3));
+
+    assertThat(underTest.getSourceChunkHighestLines()).containsExactly(ChunkedSourceData.LINES_PER_CHUNK, ChunkedSourceData.LINES_PER_CHUNK + 3);
+    assertThat(underTest.getSourceChunk(0)).hasSize(ChunkedSourceData.LINES_PER_CHUNK);
+    assertThat(underTest.getSourceChunk(1)).extracting(DbFileSources.Line::getLine)
+      .containsExactly(ChunkedSourceData.LINES_PER_CHUNK + 1, ChunkedSourceData.LINES_PER_CHUNK + 2, ChunkedSourceData.LINES_PER_CHUNK + 3);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Chunk 2 does not exist, source data has 2 chunks");
+
+    underTest.getSourceChunk(2);
+  }
+
+  @Test
+  public void read_source_data_persisted_without_chunks_as_a_single_chunk() throws IOException {
+    FileSourceDto underTest = new FileSourceDto().setBinaryData(encodeWithoutChunks(createData(250)));
+
+    assertThat(underTest.getSourceChunkHighestLines()).containsExactly(Integer.MAX_VALUE);
+    assertThat(underTest.getSourceChunk(0)).hasSize(250);
+  }
+
+  @Test
+  public void decode_source_data_persisted_without_chunks() throws IOException {
+    DbFileSources.Data data = createData(250);
+    FileSourceDto underTest = new FileSourceDto().setBinaryData(encodeWithoutChunks(data));
+
+    assertThat(ChunkedSourceData.isChunked(underTest.getBinaryData())).isFalse();
+    assertThat(underTest.getSourceData()).isEqualTo(data);
+    assertThat(underTest.getSourceLines(99, 102)).extracting(DbFileSources.Line::getLine).containsExactly(99, 100, 101, 102);
+  }
+
+  @Test
+  public void getSourceLines_throws_ISE_when_chunks_are_truncated() {
+    byte[] bytes = FileSourceDto.encodeSourceData(createData(250));
+    FileSourceDto underTest = new FileSourceDto()
+      .setBinaryData(Arrays.copyOf(bytes, bytes.length - 10))
+      .setFileUuid("file uuid");
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to decompress and deserialize source data [id=null,fileUuid=file uuid,projectUuid=null]");
+
+    underTest.getSourceLines(1, 10);
+  }
+
+  private static DbFileSources.Data createData(int numberOfLines) {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= numberOfLines; i++) {
+      dataBuilder.addLinesBuilder()
+        .setLine(i)
+        .setSource("line " + i);
+    }
+    return dataBuilder.build();
+  }
+
+  private static byte[] encodeWithoutChunks(DbFileSources.Data data) throws IOException {
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput)) {
+      data.writeTo(compressedOutput);
+    }
+    return byteOutput.toByteArray();
+  }
+
   private static DbFileSources.Data createOver64MBDataStructure() {
     DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
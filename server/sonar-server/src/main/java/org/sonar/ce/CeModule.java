@@ -20,8 +20,10 @@
 package org.sonar.ce;
 
 import org.sonar.ce.http.CeHttpClient;
+import org.sonar.ce.http.CeWorkersWakeUpNotifier;
 import org.sonar.ce.log.CeLogging;
 import org.sonar.ce.queue.CeQueueImpl;
+import org.sonar.ce.taskprocessor.PurgeTaskProcessorDeclaration;
 import org.sonar.ce.taskprocessor.ReportTaskProcessorDeclaration;
 import org.sonar.core.platform.Module;
 import org.sonar.server.computation.queue.ReportSubmitter;
@@ -31,12 +33,14 @@ public class CeModule extends Module {
   protected void configureModule() {
     add(CeLogging.class,
       CeHttpClient.class,
+      CeWorkersWakeUpNotifier.class,
 
       // Queue
       CeQueueImpl.class,
       ReportSubmitter.class,
 
       // Core tasks processors
-      ReportTaskProcessorDeclaration.class);
+      ReportTaskProcessorDeclaration.class,
+      PurgeTaskProcessorDeclaration.class);
   }
 }
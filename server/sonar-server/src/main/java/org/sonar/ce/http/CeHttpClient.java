@@ -25,6 +25,7 @@ import java.net.URI;
 import java.util.Optional;
 import okhttp3.OkHttpClient;
 import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.LoggerLevel;
@@ -42,6 +43,12 @@ public class CeHttpClient {
 
   private static final String PATH_CHANGE_LOG_LEVEL = "changeLogLevel";
   private static final String PATH_SYSTEM_INFO = "systemInfo";
+  private static final String PATH_WAKE_UP_WORKERS = "wakeUpWorkers";
+
+  /**
+   * Shared by all the calls, so that connections and threads of the client are reused.
+   */
+  private static final OkHttpClient HTTP_CLIENT = new OkHttpClient();
 
   private final File ipcSharedDir;
 
@@ -106,14 +113,58 @@ public class CeHttpClient {
         .post(RequestBody.create(null, new byte[0]))
         .url(url + "?level=" + newLogLevel.name())
         .build();
-      okhttp3.Response response = new OkHttpClient().newCall(request).execute();
-      if (response.code() != 200) {
-        throw new IOException(
-          String.format(
-            "Failed to change log level in Compute Engine. Code was '%s' and response was '%s' for url '%s'",
-            response.code(),
-            response.body().string(),
-            url));
+      okhttp3.Response response = HTTP_CLIENT.newCall(request).execute();
+      try (ResponseBody body = response.body()) {
+        if (response.code() != 200) {
+          throw new IOException(
+            String.format(
+              "Failed to change log level in Compute Engine. Code was '%s' and response was '%s' for url '%s'",
+              response.code(),
+              body.string(),
+              url));
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Asks the Compute Engine to make its idle workers look for pending tasks immediately. Does nothing if
+   * the Compute Engine is not up.
+   */
+  public void wakeUpWorkers() {
+    call(WakeUpWorkersActionClient.INSTANCE);
+  }
+
+  private enum WakeUpWorkersActionClient implements ActionClient<Void> {
+    INSTANCE;
+
+    @Override
+    public String getPath() {
+      return PATH_WAKE_UP_WORKERS;
+    }
+
+    @Override
+    public Void getDefault() {
+      return null;
+    }
+
+    @Override
+    public Void call(String url) throws Exception {
+      okhttp3.Request request = new okhttp3.Request.Builder()
+        .post(RequestBody.create(null, new byte[0]))
+        .url(url)
+        .build();
+      okhttp3.Response response = HTTP_CLIENT.newCall(request).execute();
+      try (ResponseBody body = response.body()) {
+        if (response.code() != 200) {
+          throw new IOException(
+            String.format(
+              "Failed to wake up workers of Compute Engine. Code was '%s' and response was '%s' for url '%s'",
+              response.code(),
+              body.string(),
+              url));
+        }
       }
       return null;
     }
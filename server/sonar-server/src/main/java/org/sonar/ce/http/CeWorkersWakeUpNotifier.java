@@ -0,0 +1,85 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.http;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.picocontainer.Startable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.queue.CeQueueListener;
+
+/**
+ * Forwards the submission of tasks in the Web Server to the Compute Engine, so that its idle workers
+ * don't wait for the end of their polling delay.
+ * <p>
+ * Calls are made by a background thread so that submissions never wait for the Compute Engine. At most one call
+ * is queued while another one is in progress: further notifications are discarded as the queued call will wake
+ * up the workers anyway.
+ */
+public class CeWorkersWakeUpNotifier implements CeQueueListener, Startable {
+
+  private static final Logger LOG = Loggers.get(CeWorkersWakeUpNotifier.class);
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 60L;
+
+  private final CeHttpClient ceHttpClient;
+  private final ExecutorService executor;
+
+  public CeWorkersWakeUpNotifier(CeHttpClient ceHttpClient) {
+    this(ceHttpClient, new ThreadPoolExecutor(0, 1,
+      THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1),
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("CE_workers_wake_up-%d").build(),
+      new ThreadPoolExecutor.DiscardPolicy()));
+  }
+
+  @VisibleForTesting
+  CeWorkersWakeUpNotifier(CeHttpClient ceHttpClient, ExecutorService executor) {
+    this.ceHttpClient = ceHttpClient;
+    this.executor = executor;
+  }
+
+  @Override
+  public void onSubmit() {
+    executor.execute(this::wakeUpWorkers);
+  }
+
+  private void wakeUpWorkers() {
+    try {
+      ceHttpClient.wakeUpWorkers();
+    } catch (RuntimeException e) {
+      // workers will pick up the tasks at next poll anyway
+      LOG.debug("Failed to wake up workers of Compute Engine", e);
+    }
+  }
+
+  @Override
+  public void start() {
+    // nothing to do at startup
+  }
+
+  @Override
+  public void stop() {
+    executor.shutdownNow();
+  }
+}
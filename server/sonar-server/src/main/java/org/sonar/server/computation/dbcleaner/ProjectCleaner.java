@@ -20,6 +20,8 @@
 package org.sonar.server.computation.dbcleaner;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.function.BooleanSupplier;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.config.Settings;
@@ -33,6 +35,7 @@ import org.sonar.db.purge.PurgeConfiguration;
 import org.sonar.db.purge.PurgeDao;
 import org.sonar.db.purge.PurgeListener;
 import org.sonar.db.purge.PurgeProfiler;
+import org.sonar.db.purge.PurgeThrottle;
 import org.sonar.db.purge.period.DefaultPeriodCleaner;
 
 import static org.sonar.db.purge.PurgeConfiguration.newDefaultPurgeConfiguration;
@@ -54,20 +57,50 @@ public class ProjectCleaner {
     this.purgeListener = purgeListener;
   }
 
-  public ProjectCleaner purge(DbSession session, IdUuidPair idUuidPair, Settings projectSettings, Collection<String> disabledComponentUuids) {
+  /**
+   * Deletes the data of the project which is not needed anymore, by chunks at the pace configured by
+   * {@link org.sonar.core.config.PurgeConstants#MAX_ROWS_PER_SECOND}.
+   */
+  public ProjectCleaner purge(DbSession session, IdUuidPair idUuidPair, Settings projectSettings) {
+    return purge(session, idUuidPair, projectSettings, () -> false);
+  }
+
+  /**
+   * Same as {@link #purge(DbSession, IdUuidPair, Settings)}, but stops at the first chunk boundary where
+   * {@code yieldCondition} is met.
+   *
+   * @throws PurgeThrottle.YieldException if the purge has been stopped before completion
+   */
+  public ProjectCleaner purge(DbSession session, IdUuidPair idUuidPair, Settings projectSettings, BooleanSupplier yieldCondition) {
     long start = System.currentTimeMillis();
     profiler.reset();
 
-    PurgeConfiguration configuration = newDefaultPurgeConfiguration(projectSettings, idUuidPair, disabledComponentUuids);
+    PurgeConfiguration configuration = newDefaultPurgeConfiguration(projectSettings, idUuidPair, Collections.emptyList());
+    PurgeThrottle throttle = PurgeThrottle.fromSettings(projectSettings).setYieldCondition(yieldCondition);
 
-    cleanHistoricalData(session, configuration.rootProjectIdUuid().getUuid(), projectSettings);
-    doPurge(session, configuration);
+    cleanHistoricalData(session, configuration.rootProjectIdUuid().getUuid(), projectSettings, throttle);
+    doPurge(session, configuration, throttle);
 
     session.commit();
+    LOG.info("Purge of project {} done: {} rows deleted in {} chunks | time={}ms",
+      idUuidPair.getUuid(), throttle.getDeletedRows(), throttle.getChunks(), System.currentTimeMillis() - start);
     logProfiling(start, projectSettings);
     return this;
   }
 
+  /**
+   * Deletes sources and resolves issues of the components disabled by the analysis of a project.
+   */
+  public ProjectCleaner purgeDisabledComponents(DbSession session, String rootUuid, Collection<String> disabledComponentUuids) {
+    try {
+      purgeDao.purgeDisabledComponents(session, rootUuid, disabledComponentUuids, purgeListener);
+    } catch (Exception e) {
+      // purge errors must no fail the report analysis
+      LOG.error("Fail to purge disabled components [uuid=" + rootUuid + "]", e);
+    }
+    return this;
+  }
+
   private void logProfiling(long start, Settings settings) {
     if (settings.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY)) {
       long duration = System.currentTimeMillis() - start;
@@ -77,18 +110,22 @@ public class ProjectCleaner {
     }
   }
 
-  private void cleanHistoricalData(DbSession session, String rootUuid, Settings settings) {
+  private void cleanHistoricalData(DbSession session, String rootUuid, Settings settings, PurgeThrottle throttle) {
     try {
-      periodCleaner.clean(session, rootUuid, settings);
+      periodCleaner.clean(session, rootUuid, settings, throttle);
+    } catch (PurgeThrottle.YieldException e) {
+      throw e;
     } catch (Exception e) {
       // purge errors must no fail the batch
       LOG.error("Fail to clean historical data [uuid=" + rootUuid + "]", e);
     }
   }
 
-  private void doPurge(DbSession session, PurgeConfiguration configuration) {
+  private void doPurge(DbSession session, PurgeConfiguration configuration, PurgeThrottle throttle) {
     try {
-      purgeDao.purge(session, configuration, purgeListener, profiler);
+      purgeDao.purge(session, configuration, purgeListener, profiler, throttle);
+    } catch (PurgeThrottle.YieldException e) {
+      throw e;
     } catch (Exception e) {
       // purge errors must no fail the report analysis
       LOG.error("Fail to purge data [id=" + configuration.rootProjectIdUuid().getId() + "]", e);
@@ -0,0 +1,116 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.dbcleaner;
+
+import com.google.common.base.Optional;
+import java.util.Collections;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTask;
+import org.sonar.ce.queue.CeTaskResult;
+import org.sonar.ce.queue.CeTaskSubmit;
+import org.sonar.ce.settings.ProjectSettingsFactory;
+import org.sonar.ce.taskprocessor.CeTaskProcessor;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.purge.IdUuidPair;
+import org.sonar.db.purge.PurgeThrottle;
+import org.sonar.server.setting.ThreadLocalSettings;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Purges the data of a project outside of the analysis of its reports. Tasks are submitted by
+ * {@link org.sonar.server.computation.task.projectanalysis.step.PurgeDatastoresStep}.
+ * <p>
+ * As tasks of a project are processed in order, a purge would delay the next analysis report of the project. To
+ * prevent that, the purge stops at the first chunk boundary where a report of the project is pending, and a new purge
+ * task is submitted after it.
+ * </p>
+ */
+public class PurgeTaskProcessor implements CeTaskProcessor {
+  private static final Logger LOG = Loggers.get(PurgeTaskProcessor.class);
+  private static final Set<String> HANDLED_TYPES = Collections.singleton(CeTaskTypes.PURGE);
+
+  private final DbClient dbClient;
+  private final ProjectCleaner projectCleaner;
+  private final ProjectSettingsFactory projectSettingsFactory;
+  private final ThreadLocalSettings threadLocalSettings;
+  private final CeQueue ceQueue;
+
+  public PurgeTaskProcessor(DbClient dbClient, ProjectCleaner projectCleaner, ProjectSettingsFactory projectSettingsFactory, ThreadLocalSettings threadLocalSettings,
+    CeQueue ceQueue) {
+    this.dbClient = dbClient;
+    this.ceQueue = ceQueue;
+    this.projectCleaner = projectCleaner;
+    this.projectSettingsFactory = projectSettingsFactory;
+    this.threadLocalSettings = threadLocalSettings;
+  }
+
+  @Override
+  public Set<String> getHandledCeTaskTypes() {
+    return HANDLED_TYPES;
+  }
+
+  @Override
+  @CheckForNull
+  public CeTaskResult process(CeTask task) {
+    String projectUuid = requireNonNull(task.getComponentUuid(), "Purge task must be associated to a project");
+    threadLocalSettings.load();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      Optional<ComponentDto> project = dbClient.componentDao().selectByUuid(dbSession, projectUuid);
+      if (!project.isPresent()) {
+        LOG.info("Project {} does not exist anymore, nothing to purge", projectUuid);
+        return null;
+      }
+      ComponentDto projectDto = project.get();
+      try {
+        projectCleaner.purge(dbSession, new IdUuidPair(projectDto.getId(), projectDto.uuid()), projectSettingsFactory.newProjectSettings(projectDto.getKey()),
+          () -> isReportPending(dbSession, projectUuid));
+      } catch (PurgeThrottle.YieldException e) {
+        LOG.info("{} to process the pending analysis report of project {} first", e.getMessage(), projectUuid);
+        if (!ceQueue.isSubmitPaused()) {
+          resubmit(projectUuid);
+        }
+      }
+      return null;
+    } finally {
+      threadLocalSettings.unload();
+    }
+  }
+
+  private boolean isReportPending(DbSession dbSession, String projectUuid) {
+    return dbClient.ceQueueDao().selectByComponentUuid(dbSession, projectUuid).stream()
+      .anyMatch(task -> CeTaskTypes.REPORT.equals(task.getTaskType()) && task.getStatus() == CeQueueDto.Status.PENDING);
+  }
+
+  private void resubmit(String projectUuid) {
+    CeTaskSubmit.Builder submit = ceQueue.prepareSubmit();
+    submit.setType(CeTaskTypes.PURGE);
+    submit.setComponentUuid(projectUuid);
+    ceQueue.submit(submit.build());
+  }
+}
@@ -52,4 +52,11 @@ public interface CeTasksMBean {
    * Configured number of Workers.
    */
   int getWorkerCount();
+
+  /**
+   * Statistics of the workers which polled the queue since startup, one entry per worker sorted by worker name,
+   * for example "ce-worker-0: idleTime=700ms, claimLatency=5ms". All the entries are built from a single
+   * snapshot of the statistics.
+   */
+  String[] getWorkerStatistics();
 }
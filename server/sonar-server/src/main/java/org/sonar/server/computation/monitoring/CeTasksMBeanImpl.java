@@ -19,20 +19,24 @@
  */
 package org.sonar.server.computation.monitoring;
 
+import java.util.Map;
 import org.picocontainer.Startable;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.process.Jmx;
 import org.sonar.process.systeminfo.SystemInfoSection;
 import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
 import org.sonar.server.computation.configuration.CeConfiguration;
+import org.sonar.server.computation.monitoring.CeWorkerStatistics.WorkerStatistics;
 
 public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSection {
   private final CEQueueStatus queueStatus;
   private final CeConfiguration ceConfiguration;
+  private final CeWorkerStatistics workerStatistics;
 
-  public CeTasksMBeanImpl(CEQueueStatus queueStatus, CeConfiguration ceConfiguration) {
+  public CeTasksMBeanImpl(CEQueueStatus queueStatus, CeConfiguration ceConfiguration, CeWorkerStatistics workerStatistics) {
     this.queueStatus = queueStatus;
     this.ceConfiguration = ceConfiguration;
+    this.workerStatistics = workerStatistics;
   }
 
   @Override
@@ -78,6 +82,14 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     return ceConfiguration.getWorkerCount();
   }
 
+  @Override
+  public String[] getWorkerStatistics() {
+    return workerStatistics.getByWorker().entrySet().stream()
+      .map(worker -> String.format("%s: idleTime=%dms, claimLatency=%dms",
+        worker.getKey(), worker.getValue().getIdleTime(), worker.getValue().getClaimLatency()))
+      .toArray(String[]::new);
+  }
+
   @Override
   public ProtobufSystemInfo.Section toProtobuf() {
     ProtobufSystemInfo.Section.Builder builder = ProtobufSystemInfo.Section.newBuilder();
@@ -88,6 +100,10 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     builder.addAttributesBuilder().setKey("Processed With Success").setLongValue(getSuccessCount()).build();
     builder.addAttributesBuilder().setKey("Processing Time (ms)").setLongValue(getProcessingTime()).build();
     builder.addAttributesBuilder().setKey("Worker Count").setLongValue(getWorkerCount()).build();
+    for (Map.Entry<String, WorkerStatistics> worker : workerStatistics.getByWorker().entrySet()) {
+      builder.addAttributesBuilder().setKey("Worker " + worker.getKey() + " Idle Time (ms)").setLongValue(worker.getValue().getIdleTime()).build();
+      builder.addAttributesBuilder().setKey("Worker " + worker.getKey() + " Claim Latency (ms)").setLongValue(worker.getValue().getClaimLatency()).build();
+    }
     return builder.build();
   }
 }
@@ -0,0 +1,142 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sonar.api.utils.System2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Statistics of the Compute Engine workers since startup: time spent to claim tasks from the queue
+ * and time spent processing them. Workers are identified by the name of their thread.
+ */
+public class CeWorkerStatistics {
+
+  private final System2 system2;
+  private final ConcurrentMap<String, Counters> byWorker = new ConcurrentHashMap<>();
+
+  public CeWorkerStatistics(System2 system2) {
+    this.system2 = system2;
+  }
+
+  /**
+   * @param claimTime duration of the attempt to claim a task, in ms
+   * @param claimed whether a task could be claimed
+   */
+  public void addClaim(String worker, long claimTime, boolean claimed) {
+    checkArgument(claimTime >= 0, "Claim time can not be < 0");
+    Counters counters = get(worker);
+    counters.claimAttempts.incrementAndGet();
+    counters.claimTime.addAndGet(claimTime);
+    if (claimed) {
+      counters.claimedTasks.incrementAndGet();
+    }
+  }
+
+  /**
+   * @param processingTime duration of the processing of a task, in ms
+   */
+  public void addProcessing(String worker, long processingTime) {
+    checkArgument(processingTime >= 0, "Processing time can not be < 0");
+    get(worker).processingTime.addAndGet(processingTime);
+  }
+
+  /**
+   * Statistics of each worker, sorted by worker name. Values are captured at once, so that they are consistent
+   * with each other and do not change afterwards.
+   */
+  public SortedMap<String, WorkerStatistics> getByWorker() {
+    long now = system2.now();
+    SortedMap<String, WorkerStatistics> snapshot = new TreeMap<>();
+    byWorker.forEach((worker, counters) -> snapshot.put(worker, new WorkerStatistics(counters, now)));
+    return snapshot;
+  }
+
+  private Counters get(String worker) {
+    Counters counters = byWorker.get(worker);
+    if (counters == null) {
+      Counters created = new Counters(system2.now());
+      counters = byWorker.putIfAbsent(worker, created);
+      if (counters == null) {
+        counters = created;
+      }
+    }
+    return counters;
+  }
+
+  private static class Counters {
+    private final long startedAt;
+    private final AtomicLong claimAttempts = new AtomicLong(0);
+    private final AtomicLong claimedTasks = new AtomicLong(0);
+    private final AtomicLong claimTime = new AtomicLong(0);
+    private final AtomicLong processingTime = new AtomicLong(0);
+
+    private Counters(long startedAt) {
+      this.startedAt = startedAt;
+    }
+  }
+
+  public static class WorkerStatistics {
+    private final long claimAttempts;
+    private final long claimedTasks;
+    private final long claimLatency;
+    private final long processingTime;
+    private final long idleTime;
+
+    private WorkerStatistics(Counters counters, long now) {
+      this.claimAttempts = counters.claimAttempts.get();
+      this.claimedTasks = counters.claimedTasks.get();
+      this.claimLatency = claimAttempts == 0 ? 0 : (counters.claimTime.get() / claimAttempts);
+      this.processingTime = counters.processingTime.get();
+      this.idleTime = Math.max(0, now - counters.startedAt - processingTime);
+    }
+
+    public long getClaimAttempts() {
+      return claimAttempts;
+    }
+
+    public long getClaimedTasks() {
+      return claimedTasks;
+    }
+
+    /**
+     * Average duration of the attempts to claim a task, in ms.
+     */
+    public long getClaimLatency() {
+      return claimLatency;
+    }
+
+    public long getProcessingTime() {
+      return processingTime;
+    }
+
+    /**
+     * Time during which the worker was not processing any task since its first claim, in ms.
+     */
+    public long getIdleTime() {
+      return idleTime;
+    }
+  }
+}
@@ -32,6 +32,7 @@ import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.utils.System2;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.ce.queue.CeQueueImpl;
+import org.sonar.ce.queue.CeQueueListener;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.ce.queue.CeTaskResult;
 import org.sonar.core.util.UuidFactory;
@@ -54,9 +55,17 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
   // state
   private AtomicBoolean peekPaused = new AtomicBoolean(false);
 
+  /**
+   * Used by Pico if no {@link CeQueueListener} is found
+   */
   public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus,
     DefaultOrganizationProvider defaultOrganizationProvider) {
-    super(dbClient, uuidFactory, defaultOrganizationProvider);
+    this(system2, dbClient, uuidFactory, queueStatus, defaultOrganizationProvider, new CeQueueListener[0]);
+  }
+
+  public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus,
+    DefaultOrganizationProvider defaultOrganizationProvider, CeQueueListener[] listeners) {
+    super(dbClient, uuidFactory, defaultOrganizationProvider, listeners);
     this.system2 = system2;
     this.dbClient = dbClient;
     this.queueStatus = queueStatus;
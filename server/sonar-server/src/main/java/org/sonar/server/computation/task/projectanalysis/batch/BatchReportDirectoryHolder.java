@@ -19,15 +19,16 @@
  */
 package org.sonar.server.computation.task.projectanalysis.batch;
 
-import java.io.File;
 import org.sonar.ce.queue.CeTask;
+import org.sonar.scanner.protocol.output.ReportArchive;
 
 public interface BatchReportDirectoryHolder {
   /**
-   * The File of the directory where the Batch report files for the current {@link CeTask} are stored.
+   * The archive of the Batch report for the current {@link CeTask}. Report is read from the archive, without being
+   * extracted to a directory.
    *
-   * @throws IllegalStateException if the holder is empty (ie. there is no directory yet)
+   * @throws IllegalStateException if the holder is empty (ie. there is no archive yet)
    */
-  File getDirectory();
+  ReportArchive getArchive();
 
 }
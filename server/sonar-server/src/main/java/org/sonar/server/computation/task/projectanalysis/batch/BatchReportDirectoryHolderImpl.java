@@ -19,23 +19,52 @@
  */
 package org.sonar.server.computation.task.projectanalysis.batch;
 
-import java.io.File;
+import java.io.IOException;
 import java.util.Objects;
+import org.apache.commons.io.FileUtils;
+import org.picocontainer.Startable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.scanner.protocol.output.ReportArchive;
 
-public class BatchReportDirectoryHolderImpl implements MutableBatchReportDirectoryHolder {
+public class BatchReportDirectoryHolderImpl implements MutableBatchReportDirectoryHolder, Startable {
 
-  private File directory;
+  private static final Logger LOG = Loggers.get(BatchReportDirectoryHolderImpl.class);
+
+  private ReportArchive archive;
 
   @Override
-  public void setDirectory(File newDirectory) {
-    this.directory = Objects.requireNonNull(newDirectory);
+  public void setArchive(ReportArchive archive) {
+    this.archive = Objects.requireNonNull(archive);
+  }
+
+  @Override
+  public ReportArchive getArchive() {
+    if (this.archive == null) {
+      throw new IllegalStateException("Archive has not been set yet");
+    }
+    return this.archive;
   }
 
   @Override
-  public File getDirectory() {
-    if (this.directory == null) {
-      throw new IllegalStateException("Directory has not been set yet");
+  public void start() {
+    // nothing to do
+  }
+
+  /**
+   * Closes the archive, if any, and logs how much of it has been read
+   */
+  @Override
+  public void stop() {
+    if (archive == null) {
+      return;
+    }
+    LOG.info("Analysis report read: {} entries, {} of {}", archive.getEntriesRead(),
+      FileUtils.byteCountToDisplaySize(archive.getBytesRead()), FileUtils.byteCountToDisplaySize(archive.length()));
+    try {
+      archive.close();
+    } catch (IOException e) {
+      LOG.warn("Fail to close analysis report " + archive.getFile(), e);
     }
-    return this.directory;
   }
 }
@@ -19,16 +19,14 @@
  */
 package org.sonar.server.computation.task.projectanalysis.batch;
 
-import java.io.File;
+import org.sonar.scanner.protocol.output.ReportArchive;
 
 public interface MutableBatchReportDirectoryHolder extends BatchReportDirectoryHolder {
   /**
-   * Sets the File of the directory in the BatchReportDirectoryHolder. Settings a File more than once is allowed but it
-   * can never be set to {@code null}.
+   * Sets the archive of the report. The archive is closed when the processing of the
+   * {@link org.sonar.ce.queue.CeTask} ends.
    *
-   * @param newDirectory a {@link File}, can not be {@code null}
-   *
-   * @throws NullPointerException if {@code newDirectory} is {@code null}
+   * @throws NullPointerException if {@code archive} is {@code null}
    */
-  void setDirectory(File newDirectory);
+  void setArchive(ReportArchive archive);
 }
@@ -0,0 +1,50 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+/**
+ * A {@link TypeAwareVisitor} of which the visit of files is split in two parts, so that {@link VisitorsCrawler} can
+ * execute the expensive one concurrently for several files:
+ * <ul>
+ *   <li>{@link #prepareFile(Component)} may be called from any thread, concurrently for distinct files, and before
+ *   any other component of the tree is visited. It must not modify any state shared with other files or visitors.</li>
+ *   <li>{@link #visitFile(Component, Object)} is called by the crawling thread, in place of
+ *   {@link TypeAwareVisitor#visitAny(Component)} and {@link TypeAwareVisitor#visitFile(Component)}, in the order of
+ *   the crawl.</li>
+ * </ul>
+ * When files are not visited concurrently, {@link TypeAwareVisitor#visitAny(Component)} and
+ * {@link TypeAwareVisitor#visitFile(Component)} are called as usual and are together expected to be equivalent to
+ * {@code visitFile(file, prepareFile(file))}.
+ *
+ * @param <T> type of the result of the preparation of a file
+ */
+public interface ConcurrentFileVisitor<T> extends TypeAwareVisitor {
+
+  /**
+   * Computes everything the visit of the specified file needs without modifying any shared state.
+   */
+  T prepareFile(Component file);
+
+  /**
+   * Called on the crawling thread when encountering a Component of type {@link Component.Type#FILE}, with the result of
+   * {@link #prepareFile(Component)} for this file.
+   */
+  void visitFile(Component file, T prepared);
+}
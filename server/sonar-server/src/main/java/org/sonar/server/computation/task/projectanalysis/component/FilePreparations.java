@@ -0,0 +1,127 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Prepares files for some {@link ConcurrentFileVisitor}s on an {@link ExecutorService}.
+ * <p>
+ * Files are submitted in the order they are crawled, at most {@code lookAhead} files ahead of the crawl, so that the
+ * number of preparations held in memory is bounded whatever the number of files.
+ * </p>
+ */
+class FilePreparations {
+
+  private final ExecutorService executor;
+  private final List<ConcurrentFileVisitor<?>> visitors;
+  private final Iterator<Component> filesToSubmit;
+  private final Deque<PreparedFile> submitted = new ArrayDeque<>();
+  @CheckForNull
+  private PreparedFile current;
+
+  FilePreparations(ExecutorService executor, List<ConcurrentFileVisitor<?>> visitors, List<Component> files, int lookAhead) {
+    this.executor = executor;
+    this.visitors = visitors;
+    this.filesToSubmit = files.iterator();
+    for (int i = 0; i < lookAhead; i++) {
+      submitNext();
+    }
+  }
+
+  private void submitNext() {
+    if (filesToSubmit.hasNext()) {
+      Component file = filesToSubmit.next();
+      submitted.add(new PreparedFile(file, executor.submit(() -> prepare(file))));
+    }
+  }
+
+  private Map<ConcurrentFileVisitor<?>, Object> prepare(Component file) {
+    Map<ConcurrentFileVisitor<?>, Object> res = new HashMap<>();
+    for (ConcurrentFileVisitor<?> visitor : visitors) {
+      res.put(visitor, visitor.prepareFile(file));
+    }
+    return res;
+  }
+
+  /**
+   * Waits for the preparation of the specified file by the specified visitor. Files must be requested in the order
+   * they have been submitted.
+   */
+  @SuppressWarnings("unchecked")
+  <T> T get(ConcurrentFileVisitor<T> visitor, Component file) {
+    if (current == null || current.file != file) {
+      current = submitted.poll();
+      checkState(current != null && current.file == file, "File %s is not visited in the order it has been prepared", file.getKey());
+      submitNext();
+    }
+    return (T) current.getResult().get(visitor);
+  }
+
+  /**
+   * Cancels the preparations which have not been consumed yet
+   */
+  void cancel() {
+    for (PreparedFile preparedFile : submitted) {
+      preparedFile.future.cancel(true);
+    }
+    submitted.clear();
+    current = null;
+  }
+
+  private static class PreparedFile {
+    private final Component file;
+    private final Future<Map<ConcurrentFileVisitor<?>, Object>> future;
+
+    private PreparedFile(Component file, Future<Map<ConcurrentFileVisitor<?>, Object>> future) {
+      this.file = file;
+      this.future = future;
+    }
+
+    Map<ConcurrentFileVisitor<?>, Object> getResult() {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for preparation of file " + file.getKey(), e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException("Fail to prepare file " + file.getKey(), cause);
+      }
+    }
+  }
+}
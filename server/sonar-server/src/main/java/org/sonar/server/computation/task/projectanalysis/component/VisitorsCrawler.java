@@ -23,9 +23,12 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Loggers;
@@ -37,6 +40,11 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * This crawler make any number of {@link TypeAwareVisitor} or {@link PathAwareVisitor} defined in a list visit a component tree, component per component, in the order of the list
+ * <p>
+ * When an {@link ExecutorService} is provided, files are prepared by the {@link ConcurrentFileVisitor}s concurrently on
+ * this executor, ahead of the crawl. Everything else, including {@link ConcurrentFileVisitor#visitFile(Component, Object)},
+ * is still executed by the crawling thread in the same order as without executor.
+ * </p>
  */
 public class VisitorsCrawler implements ComponentCrawler {
 
@@ -44,17 +52,45 @@ public class VisitorsCrawler implements ComponentCrawler {
   private final Map<ComponentVisitor, VisitorDuration> visitorCumulativeDurations;
   private final List<VisitorWrapper> preOrderVisitorWrappers;
   private final List<VisitorWrapper> postOrderVisitorWrappers;
+  private final List<ConcurrentFileVisitor<?>> concurrentFileVisitors;
+  @CheckForNull
+  private final ExecutorService fileExecutor;
+  private final int lookAhead;
+  @CheckForNull
+  private FilePreparations filePreparations;
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors) {
     this(visitors, false);
   }
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors, boolean computeDuration) {
+    this(visitors, computeDuration, null, 0);
+  }
+
+  /**
+   * @param fileExecutor executor on which files are prepared by {@link ConcurrentFileVisitor}s. If {@code null}, files
+   *                     are visited by the crawling thread only.
+   * @param lookAhead maximum number of files being prepared or waiting to be visited
+   */
+  public VisitorsCrawler(Iterable<ComponentVisitor> visitors, boolean computeDuration, @Nullable ExecutorService fileExecutor, int lookAhead) {
     List<VisitorWrapper> visitorWrappers = from(visitors).transform(ToVisitorWrapper.INSTANCE).toList();
     this.preOrderVisitorWrappers = from(visitorWrappers).filter(MathPreOrderVisitor.INSTANCE).toList();
     this.postOrderVisitorWrappers = from(visitorWrappers).filter(MatchPostOrderVisitor.INSTANCE).toList();
+    this.concurrentFileVisitors = concurrentFileVisitors(visitorWrappers);
     this.computeDuration = computeDuration;
     this.visitorCumulativeDurations = computeDuration ? from(visitors).toMap(VisitorWrapperToInitialDuration.INSTANCE) : Collections.emptyMap();
+    this.fileExecutor = fileExecutor;
+    this.lookAhead = lookAhead;
+  }
+
+  private static List<ConcurrentFileVisitor<?>> concurrentFileVisitors(List<VisitorWrapper> visitorWrappers) {
+    List<ConcurrentFileVisitor<?>> res = new ArrayList<>();
+    for (VisitorWrapper visitorWrapper : from(visitorWrappers).filter(MatchVisitorMaxDepth.forType(Component.Type.FILE))) {
+      if (visitorWrapper.getWrappedVisitor() instanceof ConcurrentFileVisitor) {
+        res.add((ConcurrentFileVisitor<?>) visitorWrapper.getWrappedVisitor());
+      }
+    }
+    return res;
   }
 
   public Map<ComponentVisitor, Long> getCumulativeDurations() {
@@ -68,6 +104,35 @@ public class VisitorsCrawler implements ComponentCrawler {
 
   @Override
   public void visit(final Component component) {
+    if (fileExecutor == null || concurrentFileVisitors.isEmpty() || filePreparations != null) {
+      visitAndWrapException(component);
+      return;
+    }
+
+    List<Component> files = new ArrayList<>();
+    collectFiles(component, files);
+    filePreparations = new FilePreparations(fileExecutor, concurrentFileVisitors, files, Math.max(1, lookAhead));
+    try {
+      visitAndWrapException(component);
+    } finally {
+      filePreparations.cancel();
+      filePreparations = null;
+    }
+  }
+
+  /**
+   * Files in the order they are visited by {@link #visitChildren(Component)}
+   */
+  private static void collectFiles(Component component, List<Component> files) {
+    if (component.getType() == Component.Type.FILE) {
+      files.add(component);
+    }
+    for (Component child : component.getChildren()) {
+      collectFiles(child, files);
+    }
+  }
+
+  private void visitAndWrapException(Component component) {
     try {
       visitImpl(component);
     } catch (RuntimeException e) {
@@ -107,13 +172,23 @@ public class VisitorsCrawler implements ComponentCrawler {
 
   private void visitChildren(Component component) {
     for (Component child : component.getChildren()) {
-      visit(child);
+      visitAndWrapException(child);
     }
   }
 
   private void visitNode(Component component, VisitorWrapper visitor) {
     Profiler profiler = Profiler.create(Loggers.get(visitor.getWrappedVisitor().getClass()))
       .startTrace("Visiting component {}", component.getKey());
+    if (filePreparations != null && component.getType() == Component.Type.FILE && visitor.getWrappedVisitor() instanceof ConcurrentFileVisitor) {
+      visitPreparedFile(component, (ConcurrentFileVisitor<?>) visitor.getWrappedVisitor());
+    } else {
+      visitByType(component, visitor);
+    }
+    long duration = profiler.stopTrace();
+    incrementDuration(visitor, duration);
+  }
+
+  private static void visitByType(Component component, VisitorWrapper visitor) {
     visitor.visitAny(component);
     switch (component.getType()) {
       case PROJECT:
@@ -140,8 +215,10 @@ public class VisitorsCrawler implements ComponentCrawler {
       default:
         throw new IllegalStateException(String.format("Unknown type %s", component.getType().name()));
     }
-    long duration = profiler.stopTrace();
-    incrementDuration(visitor, duration);
+  }
+
+  private <T> void visitPreparedFile(Component file, ConcurrentFileVisitor<T> visitor) {
+    visitor.visitFile(file, filePreparations.get(visitor, file));
   }
 
   private void incrementDuration(VisitorWrapper visitorWrapper, long duration) {
@@ -182,7 +259,11 @@ public class VisitorsCrawler implements ComponentCrawler {
     }
 
     public static MatchVisitorMaxDepth forComponent(Component component) {
-      return INSTANCES.get(component.getType());
+      return forType(component.getType());
+    }
+
+    public static MatchVisitorMaxDepth forType(Component.Type type) {
+      return INSTANCES.get(type);
     }
 
     @Override
@@ -25,15 +25,21 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -64,6 +70,11 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 
 public class FileMoveDetectionStep implements ComputationStep {
   protected static final int MIN_REQUIRED_SCORE = 85;
+  /**
+   * Number of threads on which the similarity of removed and added files is computed. Scores are computed by the
+   * thread executing the step when lower or equal to 1, which is the default.
+   */
+  public static final String SCORE_THREADS_PROPERTY = "sonar.ce.fileMoveThreads";
   private static final Logger LOG = Loggers.get(FileMoveDetectionStep.class);
   private static final List<String> FILE_QUALIFIERS = asList(Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE);
   private static final Splitter LINES_HASHES_SPLITTER = on('\n');
@@ -74,15 +85,18 @@ public class FileMoveDetectionStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final FileSimilarity fileSimilarity;
   private final MutableMovedFilesRepository movedFilesRepository;
+  private final int scoreThreads;
 
   public FileMoveDetectionStep(AnalysisMetadataHolder analysisMetadataHolder, TreeRootHolder rootHolder, DbClient dbClient,
-    SourceLinesRepository sourceLinesRepository, FileSimilarity fileSimilarity, MutableMovedFilesRepository movedFilesRepository) {
+    SourceLinesRepository sourceLinesRepository, FileSimilarity fileSimilarity, MutableMovedFilesRepository movedFilesRepository,
+    Settings settings) {
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.rootHolder = rootHolder;
     this.dbClient = dbClient;
     this.sourceLinesRepository = sourceLinesRepository;
     this.fileSimilarity = fileSimilarity;
     this.movedFilesRepository = movedFilesRepository;
+    this.scoreThreads = settings.getInt(SCORE_THREADS_PROPERTY);
   }
 
   @Override
@@ -120,11 +134,14 @@ public class FileMoveDetectionStep implements ComputationStep {
       return;
     }
 
+    // line hashes of files from report and from DB are compared as int ids
+    LineHashesInterner lineHashesInterner = new LineHashesInterner();
+
     // retrieve file data from report
-    Map<String, File> reportFileSourcesByKey = getReportFileSourcesByKey(reportFilesByKey, addedFileKeys);
+    Map<String, File> reportFileSourcesByKey = getReportFileSourcesByKey(reportFilesByKey, addedFileKeys, lineHashesInterner);
 
     // compute score matrix
-    ScoreMatrix scoreMatrix = computeScoreMatrix(dbFilesByKey, removedFileKeys, reportFileSourcesByKey);
+    ScoreMatrix scoreMatrix = computeScoreMatrix(dbFilesByKey, removedFileKeys, reportFileSourcesByKey, lineHashesInterner);
     printIfDebug(scoreMatrix);
 
     // not a single match with score higher than MIN_REQUIRED_SCORE => abort
@@ -178,7 +195,8 @@ public class FileMoveDetectionStep implements ComputationStep {
     return builder.build();
   }
 
-  private Map<String, File> getReportFileSourcesByKey(Map<String, Component> reportFilesByKey, Set<String> addedFileKeys) {
+  private Map<String, File> getReportFileSourcesByKey(Map<String, Component> reportFilesByKey, Set<String> addedFileKeys,
+    LineHashesInterner lineHashesInterner) {
     ImmutableMap.Builder<String, File> builder = ImmutableMap.builder();
     for (String fileKey : addedFileKeys) {
       // FIXME computation of sourceHash and lineHashes might be done multiple times for some files: here, in ComputeFileSourceData, in
@@ -191,42 +209,92 @@ public class FileMoveDetectionStep implements ComputationStep {
           linesHashesComputer.addLine(line);
         }
       }
-      builder.put(fileKey, new File(component.getReportAttributes().getPath(), linesHashesComputer.getLineHashes()));
+      List<String> lineHashes = linesHashesComputer.getLineHashes();
+      builder.put(fileKey, new File(component.getReportAttributes().getPath(), lineHashes, lineHashesInterner.intern(lineHashes)));
     }
     return builder.build();
   }
 
-  private ScoreMatrix computeScoreMatrix(Map<String, DbComponent> dtosByKey, Set<String> dbFileKeys, Map<String, File> reportFileSourcesByKey) {
-    int[][] scoreMatrix = new int[dbFileKeys.size()][reportFileSourcesByKey.size()];
-    int maxScore = 0;
-
+  private ScoreMatrix computeScoreMatrix(Map<String, DbComponent> dtosByKey, Set<String> dbFileKeys, Map<String, File> reportFileSourcesByKey,
+    LineHashesInterner lineHashesInterner) {
+    List<File> dbFiles = new ArrayList<>(dbFileKeys.size());
     try (DbSession dbSession = dbClient.openSession(false)) {
-      int dbFileIndex = 0;
       for (String removedFileKey : dbFileKeys) {
-        File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
-        if (fileInDb == null) {
-          continue;
-        }
+        dbFiles.add(getFile(dbSession, dtosByKey.get(removedFileKey), lineHashesInterner));
+      }
+    }
+    File[] reportFiles = reportFileSourcesByKey.values().toArray(new File[reportFileSourcesByKey.size()]);
 
-        int reportFileIndex = 0;
-        for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-          File unmatchedFile = reportFileSourceAndKey.getValue();
-          int score = fileSimilarity.score(fileInDb, unmatchedFile);
-          scoreMatrix[dbFileIndex][reportFileIndex] = score;
-          if (score > maxScore) {
-            maxScore = score;
-          }
-          reportFileIndex++;
-        }
-        dbFileIndex++;
+    int[][] scoreMatrix = new int[dbFiles.size()][];
+    if (scoreThreads <= 1) {
+      for (int dbFileIndex = 0; dbFileIndex < dbFiles.size(); dbFileIndex++) {
+        scoreMatrix[dbFileIndex] = computeScores(dbFiles.get(dbFileIndex), reportFiles);
       }
+    } else {
+      computeScoresConcurrently(dbFiles, reportFiles, scoreMatrix);
     }
 
+    int maxScore = 0;
+    for (int[] scores : scoreMatrix) {
+      for (int score : scores) {
+        maxScore = Math.max(maxScore, score);
+      }
+    }
     return new ScoreMatrix(dbFileKeys, reportFileSourcesByKey, scoreMatrix, maxScore);
   }
 
+  private void computeScoresConcurrently(List<File> dbFiles, File[] reportFiles, int[][] scoreMatrix) {
+    ExecutorService executor = Executors.newFixedThreadPool(scoreThreads, new ThreadFactoryBuilder()
+      .setNameFormat("FileMoveScore-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      List<Future<int[]>> rows = new ArrayList<>(dbFiles.size());
+      for (File dbFile : dbFiles) {
+        rows.add(executor.submit(() -> computeScores(dbFile, reportFiles)));
+      }
+      for (int dbFileIndex = 0; dbFileIndex < rows.size(); dbFileIndex++) {
+        scoreMatrix[dbFileIndex] = getScores(rows.get(dbFileIndex));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static int[] getScores(Future<int[]> row) {
+    try {
+      return row.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while computing similarity of files", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Fail to compute similarity of files", cause);
+    }
+  }
+
+  /**
+   * Scores lower than {@link #MIN_REQUIRED_SCORE} are not exact, as they can not make a match anyway.
+   */
+  private int[] computeScores(@Nullable File dbFile, File[] reportFiles) {
+    int[] scores = new int[reportFiles.length];
+    if (dbFile == null) {
+      return scores;
+    }
+    for (int reportFileIndex = 0; reportFileIndex < reportFiles.length; reportFileIndex++) {
+      scores[reportFileIndex] = fileSimilarity.score(dbFile, reportFiles[reportFileIndex], MIN_REQUIRED_SCORE);
+    }
+    return scores;
+  }
+
   @CheckForNull
-  private File getFile(DbSession dbSession, DbComponent dbComponent) {
+  private File getFile(DbSession dbSession, DbComponent dbComponent, LineHashesInterner lineHashesInterner) {
     if (dbComponent.getPath() == null) {
       return null;
     }
@@ -235,7 +303,8 @@ public class FileMoveDetectionStep implements ComputationStep {
       return null;
     }
     String lineHashes = firstNonNull(fileSourceDto.getLineHashes(), "");
-    return new File(dbComponent.getPath(), LINES_HASHES_SPLITTER.splitToList(lineHashes));
+    List<String> lineHashesList = LINES_HASHES_SPLITTER.splitToList(lineHashes);
+    return new File(dbComponent.getPath(), lineHashesList, lineHashesInterner.intern(lineHashesList));
   }
 
   private static void printIfDebug(ScoreMatrix scoreMatrix) {
@@ -20,6 +20,10 @@
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
 import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 import static java.util.Objects.requireNonNull;
 
@@ -28,10 +32,18 @@ public interface FileSimilarity {
   final class File {
     private final String path;
     private final List<String> lineHashes;
+    @CheckForNull
+    private final int[] lineHashIds;
 
     public File(String path, List<String> lineHashes) {
+      this(path, lineHashes, null);
+    }
+
+    public File(String path, List<String> lineHashes, @Nullable int[] lineHashIds) {
       this.path = requireNonNull(path, "path can not be null");
       this.lineHashes = requireNonNull(lineHashes, "lineHashes can not be null");
+      checkArgument(lineHashIds == null || lineHashIds.length == lineHashes.size(), "lineHashIds must have the same size as lineHashes");
+      this.lineHashIds = lineHashIds;
     }
 
     public String getPath() {
@@ -45,7 +57,22 @@ public interface FileSimilarity {
     public List<String> getLineHashes() {
       return lineHashes;
     }
+
+    /**
+     * Id of the hash of each line, if provided. Equal hashes have equal ids in all the files which are
+     * compared together.
+     */
+    @CheckForNull
+    public int[] getLineHashIds() {
+      return lineHashIds;
+    }
   }
 
   int score(File file1, File file2);
+
+  /**
+   * Same as {@link #score(File, File)}, except that the exact score is guaranteed only when it is greater or equal to
+   * {@code minScore}. Lower scores are reported by a value lower than {@code minScore}.
+   */
+  int score(File file1, File file2, int minScore);
 }
@@ -35,4 +35,14 @@ public class FileSimilarityImpl implements FileSimilarity {
 
     return sourceSimilarity.score(file1.getLineHashes(), file2.getLineHashes());
   }
+
+  @Override
+  public int score(File file1, File file2, int minScore) {
+    int[] lineHashIds1 = file1.getLineHashIds();
+    int[] lineHashIds2 = file2.getLineHashIds();
+    if (lineHashIds1 == null || lineHashIds2 == null) {
+      return score(file1, file2);
+    }
+    return sourceSimilarity.score(lineHashIds1, lineHashIds2, minScore);
+  }
 }
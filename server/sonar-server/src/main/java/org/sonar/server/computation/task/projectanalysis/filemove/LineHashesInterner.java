@@ -0,0 +1,47 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives the same int id to equal line hashes, so that sources can be compared on primitive values.
+ * Not thread safe.
+ */
+final class LineHashesInterner {
+  private final Map<String, Integer> idsByLineHash = new HashMap<>();
+
+  int[] intern(List<String> lineHashes) {
+    int[] res = new int[lineHashes.size()];
+    int i = 0;
+    for (String lineHash : lineHashes) {
+      Integer id = idsByLineHash.get(lineHash);
+      if (id == null) {
+        id = idsByLineHash.size();
+        idsByLineHash.put(lineHash, id);
+      }
+      res[i] = id;
+      i++;
+    }
+    return res;
+  }
+}
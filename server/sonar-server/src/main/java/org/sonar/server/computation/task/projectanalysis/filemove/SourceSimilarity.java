@@ -28,4 +28,11 @@ public interface SourceSimilarity {
    * Range: between 0 and 100
    */
   <T extends Object> int score(List<T> left, List<T> right);
+
+  /**
+   * Same as {@link #score(List, List)} on sources whose lines are identified by int ids (equal lines having equal ids).
+   * The exact score is returned when it is greater or equal to {@code minScore}. Otherwise, the returned value is
+   * lower than {@code minScore} but may be greater than the exact score, which allows to stop computation early.
+   */
+  int score(int[] left, int[] right, int minScore);
 }
@@ -21,6 +21,7 @@ package org.sonar.server.computation.task.projectanalysis.filemove;
 
 import java.util.List;
 
+import static java.lang.Math.abs;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 
@@ -32,7 +33,109 @@ public class SourceSimilarityImpl implements SourceSimilarity {
       return 0;
     }
     int distance = levenshteinDistance(left, right);
-    return (int) (100 * (1.0 - ((double) distance) / (max(left.size(), right.size()))));
+    return toScore(distance, max(left.size(), right.size()));
+  }
+
+  @Override
+  public int score(int[] left, int[] right, int minScore) {
+    if (left.length == 0 && right.length == 0) {
+      return 0;
+    }
+    int maxSize = max(left.length, right.length);
+    int maxDistance = maxDistance(maxSize, minScore);
+    if (maxDistance < 0) {
+      return 0;
+    }
+    int distance = boundedLevenshteinDistance(left, right, maxDistance);
+    return toScore(distance, maxSize);
+  }
+
+  private static int toScore(int distance, int maxSize) {
+    return (int) (100 * (1.0 - ((double) distance) / maxSize));
+  }
+
+  /**
+   * Greatest distance which gives a score greater or equal to {@code minScore}, -1 if there is none.
+   */
+  private static int maxDistance(int maxSize, int minScore) {
+    if (minScore <= 0) {
+      return maxSize;
+    }
+    // start from an approximation and fix it against toScore to be subject to the same rounding
+    int distance = min(maxSize, max(0, maxSize * (100 - minScore) / 100));
+    while (distance < maxSize && toScore(distance + 1, maxSize) >= minScore) {
+      distance++;
+    }
+    while (distance >= 0 && toScore(distance, maxSize) < minScore) {
+      distance--;
+    }
+    return distance;
+  }
+
+  /**
+   * Levenshtein distance of the two arrays if it is lower or equal to {@code maxDistance}, {@code maxDistance + 1} otherwise.
+   * <p>
+   * Only the diagonal band of width {@code 2 * maxDistance + 1} of the matrix of distances is computed, as cells out of
+   * it are greater than {@code maxDistance} anyway, and computation stops as soon as a whole row exceeds {@code maxDistance}.
+   * Common prefix and suffix, which are frequent in moved files, are skipped as they don't change the distance.
+   */
+  static int boundedLevenshteinDistance(int[] left, int[] right, int maxDistance) {
+    int exceeded = maxDistance + 1;
+    if (abs(left.length - right.length) > maxDistance) {
+      return exceeded;
+    }
+
+    int start = 0;
+    int leftEnd = left.length;
+    int rightEnd = right.length;
+    while (start < leftEnd && start < rightEnd && left[start] == right[start]) {
+      start++;
+    }
+    while (leftEnd > start && rightEnd > start && left[leftEnd - 1] == right[rightEnd - 1]) {
+      leftEnd--;
+      rightEnd--;
+    }
+    int leftSize = leftEnd - start;
+    int rightSize = rightEnd - start;
+    if (leftSize == 0 || rightSize == 0) {
+      // remaining lines are either all inserted or all deleted
+      return max(leftSize, rightSize);
+    }
+
+    // cost[j] is the distance between the i first lines of left and the j first lines of right, capped to exceeded
+    int[] cost = new int[rightSize + 1];
+    int[] newcost = new int[rightSize + 1];
+    for (int j = 0; j <= rightSize; j++) {
+      cost[j] = min(j, exceeded);
+    }
+
+    for (int i = 1; i <= leftSize; i++) {
+      int from = max(1, i - maxDistance);
+      int to = min(rightSize, i + maxDistance);
+      newcost[from - 1] = from == 1 ? min(i, exceeded) : exceeded;
+      int rowMin = newcost[from - 1];
+      int leftLine = left[start + i - 1];
+      for (int j = from; j <= to; j++) {
+        int costReplace = cost[j - 1] + (leftLine == right[start + j - 1] ? 0 : 1);
+        int costInsert = cost[j] + 1;
+        int costDelete = newcost[j - 1] + 1;
+        int value = min(min(min(costInsert, costDelete), costReplace), exceeded);
+        newcost[j] = value;
+        rowMin = min(rowMin, value);
+      }
+      if (to < rightSize) {
+        // next row reads this cell, which is out of the band
+        newcost[to + 1] = exceeded;
+      }
+      if (rowMin >= exceeded) {
+        return exceeded;
+      }
+
+      int[] swap = cost;
+      cost = newcost;
+      newcost = swap;
+    }
+    return cost[rightSize];
   }
 
   private static <T> int levenshteinDistance(List<T> left, List<T> right) {
@@ -0,0 +1,475 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.RecordCodec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compact binary encoding of {@link DefaultIssue}, including its changes and comments, used by {@link IssueCache}.
+ * Nullable values are prefixed by a marker, lengths and counts are written as variable-length integers.
+ */
+public class DefaultIssueCodec implements RecordCodec<DefaultIssue> {
+
+  private static final int MANUAL_SEVERITY = 1;
+  private static final int NEW = 1 << 1;
+  private static final int BEING_CLOSED = 1 << 2;
+  private static final int ON_DISABLED_RULE = 1 << 3;
+  private static final int CHANGED = 1 << 4;
+  private static final int SEND_NOTIFICATIONS = 1 << 5;
+
+  private static final int NO_VALUE = 0;
+  private static final int STRING_VALUE = 1;
+  private static final int LONG_VALUE = 2;
+  private static final int INTEGER_VALUE = 3;
+  private static final int DOUBLE_VALUE = 4;
+  private static final int SERIALIZED_VALUE = 5;
+
+  private static final int NO_LOCATIONS = 0;
+  private static final int PROTOBUF_LOCATIONS = 1;
+  private static final int SERIALIZED_LOCATIONS = 2;
+
+  private static final int NO_CURRENT_CHANGE = -1;
+  private static final int DETACHED_CURRENT_CHANGE = -2;
+
+  @Override
+  public void write(DefaultIssue issue, DataOutput output) throws IOException {
+    writeString(output, issue.key());
+    RuleType type = issue.type();
+    writeVarInt(output, type == null ? 0 : (type.getDbConstant() + 1));
+    writeString(output, issue.componentUuid());
+    writeString(output, issue.componentKey());
+    writeString(output, issue.moduleUuid());
+    writeString(output, issue.moduleUuidPath());
+    writeString(output, issue.projectUuid());
+    writeString(output, issue.projectKey());
+    RuleKey ruleKey = issue.ruleKey();
+    writeString(output, ruleKey == null ? null : ruleKey.repository());
+    writeString(output, ruleKey == null ? null : ruleKey.rule());
+    writeString(output, issue.language());
+    writeString(output, issue.severity());
+    writeString(output, issue.message());
+    Integer line = issue.line();
+    writeVarInt(output, line == null ? 0 : line);
+    writeDouble(output, issue.gap());
+    writeLong(output, issue.effortInMinutes());
+    writeString(output, issue.status());
+    writeString(output, issue.resolution());
+    writeString(output, issue.assignee());
+    writeString(output, issue.checksum());
+    writeString(output, issue.authorLogin());
+    writeDate(output, issue.creationDate());
+    writeDate(output, issue.updateDate());
+    writeDate(output, issue.closeDate());
+    writeLong(output, issue.selectedAt());
+    output.writeByte(flags(issue));
+
+    Map<String, String> attributes = issue.attributes();
+    writeVarInt(output, attributes.size());
+    for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+      writeString(output, attribute.getKey());
+      writeString(output, attribute.getValue());
+    }
+    Set<String> tags = issue.tags();
+    writeVarInt(output, tags.size());
+    for (String tag : tags) {
+      writeString(output, tag);
+    }
+    List<IssueComment> comments = issue.comments();
+    writeVarInt(output, comments.size());
+    for (IssueComment comment : comments) {
+      writeComment(output, (DefaultIssueComment) comment);
+    }
+    writeChanges(output, issue.changes(), issue.currentChange());
+    writeLocations(output, issue.getLocations());
+  }
+
+  @Override
+  public DefaultIssue read(DataInput input) throws IOException {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(readString(input));
+    int type = readVarInt(input);
+    issue.setType(type == 0 ? null : RuleType.valueOf(type - 1));
+    issue.setComponentUuid(readString(input));
+    issue.setComponentKey(readString(input));
+    issue.setModuleUuid(readString(input));
+    issue.setModuleUuidPath(readString(input));
+    issue.setProjectUuid(readString(input));
+    issue.setProjectKey(readString(input));
+    String ruleRepository = readString(input);
+    String rule = readString(input);
+    if (ruleRepository != null && rule != null) {
+      issue.setRuleKey(RuleKey.of(ruleRepository, rule));
+    }
+    issue.setLanguage(readString(input));
+    issue.setSeverity(readString(input));
+    issue.setMessage(readString(input));
+    int line = readVarInt(input);
+    issue.setLine(line == 0 ? null : line);
+    issue.setGap(readDouble(input));
+    Long effort = readLong(input);
+    issue.setEffort(effort == null ? null : Duration.create(effort));
+    String status = readString(input);
+    if (status != null) {
+      issue.setStatus(status);
+    }
+    issue.setResolution(readString(input));
+    issue.setAssignee(readString(input));
+    issue.setChecksum(readString(input));
+    issue.setAuthorLogin(readString(input));
+    issue.setCreationDate(readDate(input));
+    issue.setUpdateDate(readDate(input));
+    issue.setCloseDate(readDate(input));
+    issue.setSelectedAt(readLong(input));
+    int flags = input.readUnsignedByte();
+    issue.setManualSeverity((flags & MANUAL_SEVERITY) != 0);
+    issue.setNew((flags & NEW) != 0);
+    issue.setBeingClosed((flags & BEING_CLOSED) != 0);
+    issue.setOnDisabledRule((flags & ON_DISABLED_RULE) != 0);
+    issue.setChanged((flags & CHANGED) != 0);
+    issue.setSendNotifications((flags & SEND_NOTIFICATIONS) != 0);
+
+    int attributeCount = readVarInt(input);
+    if (attributeCount > 0) {
+      Map<String, String> attributes = new LinkedHashMap<>(attributeCount);
+      for (int i = 0; i < attributeCount; i++) {
+        attributes.put(readString(input), readString(input));
+      }
+      issue.setAttributes(attributes);
+    }
+    int tagCount = readVarInt(input);
+    if (tagCount > 0) {
+      List<String> tags = new ArrayList<>(tagCount);
+      for (int i = 0; i < tagCount; i++) {
+        tags.add(readString(input));
+      }
+      issue.setTags(tags);
+    }
+    int commentCount = readVarInt(input);
+    for (int i = 0; i < commentCount; i++) {
+      issue.addComment(readComment(input));
+    }
+    readChanges(input, issue);
+    issue.setLocations(readLocations(input));
+    return issue;
+  }
+
+  private static int flags(DefaultIssue issue) {
+    int flags = 0;
+    flags |= issue.manualSeverity() ? MANUAL_SEVERITY : 0;
+    flags |= issue.isNew() ? NEW : 0;
+    flags |= issue.isBeingClosed() ? BEING_CLOSED : 0;
+    flags |= issue.isOnDisabledRule() ? ON_DISABLED_RULE : 0;
+    flags |= issue.isChanged() ? CHANGED : 0;
+    flags |= issue.mustSendNotifications() ? SEND_NOTIFICATIONS : 0;
+    return flags;
+  }
+
+  private static void writeComment(DataOutput output, DefaultIssueComment comment) throws IOException {
+    writeString(output, comment.key());
+    writeString(output, comment.issueKey());
+    writeString(output, comment.userLogin());
+    writeString(output, comment.markdownText());
+    writeDate(output, comment.createdAt());
+    writeDate(output, comment.updatedAt());
+    output.writeBoolean(comment.isNew());
+  }
+
+  private static DefaultIssueComment readComment(DataInput input) throws IOException {
+    return new DefaultIssueComment()
+      .setKey(readString(input))
+      .setIssueKey(readString(input))
+      .setUserLogin(readString(input))
+      .setMarkdownText(readString(input))
+      .setCreatedAt(readDate(input))
+      .setUpdatedAt(readDate(input))
+      .setNew(input.readBoolean());
+  }
+
+  /**
+   * The same {@link FieldDiffs} instance can be referenced many times by the list of changes and
+   * by the current change. References are kept so that instances are shared again once decoded.
+   */
+  private static void writeChanges(DataOutput output, List<FieldDiffs> changes, @Nullable FieldDiffs currentChange) throws IOException {
+    Map<FieldDiffs, Integer> indexes = new IdentityHashMap<>();
+    writeVarInt(output, changes.size());
+    for (int i = 0; i < changes.size(); i++) {
+      FieldDiffs change = changes.get(i);
+      Integer reference = indexes.get(change);
+      if (reference == null) {
+        indexes.put(change, i);
+        writeVarInt(output, 0);
+        writeFieldDiffs(output, change);
+      } else {
+        writeVarInt(output, reference + 1);
+      }
+    }
+    if (currentChange == null) {
+      output.writeInt(NO_CURRENT_CHANGE);
+    } else {
+      Integer reference = indexes.get(currentChange);
+      if (reference == null) {
+        output.writeInt(DETACHED_CURRENT_CHANGE);
+        writeFieldDiffs(output, currentChange);
+      } else {
+        output.writeInt(reference);
+      }
+    }
+  }
+
+  private static void readChanges(DataInput input, DefaultIssue issue) throws IOException {
+    int changeCount = readVarInt(input);
+    List<FieldDiffs> changes = new ArrayList<>(changeCount);
+    for (int i = 0; i < changeCount; i++) {
+      int reference = readVarInt(input);
+      changes.add(reference == 0 ? readFieldDiffs(input) : changes.get(reference - 1));
+    }
+    int currentChange = input.readInt();
+    if (currentChange == DETACHED_CURRENT_CHANGE) {
+      issue.setCurrentChange(readFieldDiffs(input));
+    } else if (currentChange != NO_CURRENT_CHANGE) {
+      issue.setCurrentChange(changes.get(currentChange));
+    }
+    // overrides the change registered by setCurrentChange()
+    issue.setChanges(changeCount == 0 ? null : changes);
+  }
+
+  private static void writeFieldDiffs(DataOutput output, FieldDiffs diffs) throws IOException {
+    writeString(output, diffs.issueKey());
+    writeString(output, diffs.userLogin());
+    writeDate(output, diffs.creationDate());
+    writeVarInt(output, diffs.diffs().size());
+    for (Map.Entry<String, FieldDiffs.Diff> entry : diffs.diffs().entrySet()) {
+      writeString(output, entry.getKey());
+      writeDiffValue(output, entry.getValue().oldValue());
+      writeDiffValue(output, entry.getValue().newValue());
+    }
+  }
+
+  private static FieldDiffs readFieldDiffs(DataInput input) throws IOException {
+    FieldDiffs diffs = new FieldDiffs()
+      .setIssueKey(readString(input))
+      .setUserLogin(readString(input))
+      .setCreationDate(readDate(input));
+    int diffCount = readVarInt(input);
+    for (int i = 0; i < diffCount; i++) {
+      diffs.setDiff(readString(input), readDiffValue(input), readDiffValue(input));
+    }
+    return diffs;
+  }
+
+  private static void writeDiffValue(DataOutput output, @Nullable Object value) throws IOException {
+    if (value == null) {
+      output.writeByte(NO_VALUE);
+    } else if (value instanceof String) {
+      output.writeByte(STRING_VALUE);
+      writeString(output, (String) value);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG_VALUE);
+      output.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      output.writeByte(INTEGER_VALUE);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Double) {
+      output.writeByte(DOUBLE_VALUE);
+      output.writeDouble((Double) value);
+    } else {
+      output.writeByte(SERIALIZED_VALUE);
+      writeBytes(output, serialize(value));
+    }
+  }
+
+  @CheckForNull
+  private static Serializable readDiffValue(DataInput input) throws IOException {
+    int kind = input.readUnsignedByte();
+    switch (kind) {
+      case NO_VALUE:
+        return null;
+      case STRING_VALUE:
+        return readString(input);
+      case LONG_VALUE:
+        return input.readLong();
+      case INTEGER_VALUE:
+        return input.readInt();
+      case DOUBLE_VALUE:
+        return input.readDouble();
+      case SERIALIZED_VALUE:
+        return (Serializable) deserialize(readBytes(input));
+      default:
+        throw new IllegalStateException("Unsupported kind of field diff value: " + kind);
+    }
+  }
+
+  private static void writeLocations(DataOutput output, @Nullable Object locations) throws IOException {
+    if (locations == null) {
+      output.writeByte(NO_LOCATIONS);
+    } else if (locations instanceof DbIssues.Locations) {
+      output.writeByte(PROTOBUF_LOCATIONS);
+      writeBytes(output, ((DbIssues.Locations) locations).toByteArray());
+    } else {
+      output.writeByte(SERIALIZED_LOCATIONS);
+      writeBytes(output, serialize(locations));
+    }
+  }
+
+  @CheckForNull
+  private static Object readLocations(DataInput input) throws IOException {
+    int kind = input.readUnsignedByte();
+    switch (kind) {
+      case NO_LOCATIONS:
+        return null;
+      case PROTOBUF_LOCATIONS:
+        return DbIssues.Locations.parseFrom(readBytes(input));
+      case SERIALIZED_LOCATIONS:
+        return deserialize(readBytes(input));
+      default:
+        throw new IllegalStateException("Unsupported kind of locations: " + kind);
+    }
+  }
+
+  private static byte[] serialize(Object o) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+      objectOutput.writeObject(o);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Object deserialize(byte[] bytes) throws IOException {
+    try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return objectInput.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Fail to deserialize object", e);
+    }
+  }
+
+  private static void writeString(DataOutput output, @Nullable String s) throws IOException {
+    if (s == null) {
+      writeVarInt(output, 0);
+    } else {
+      byte[] bytes = s.getBytes(UTF_8);
+      writeVarInt(output, bytes.length + 1);
+      output.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  private static String readString(DataInput input) throws IOException {
+    int length = readVarInt(input);
+    if (length == 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length - 1];
+    input.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void writeBytes(DataOutput output, byte[] bytes) throws IOException {
+    writeVarInt(output, bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput input) throws IOException {
+    byte[] bytes = new byte[readVarInt(input)];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  private static void writeLong(DataOutput output, @Nullable Long l) throws IOException {
+    output.writeBoolean(l != null);
+    if (l != null) {
+      output.writeLong(l);
+    }
+  }
+
+  @CheckForNull
+  private static Long readLong(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readLong() : null;
+  }
+
+  private static void writeDouble(DataOutput output, @Nullable Double d) throws IOException {
+    output.writeBoolean(d != null);
+    if (d != null) {
+      output.writeDouble(d);
+    }
+  }
+
+  @CheckForNull
+  private static Double readDouble(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readDouble() : null;
+  }
+
+  private static void writeDate(DataOutput output, @Nullable Date date) throws IOException {
+    writeLong(output, date == null ? null : date.getTime());
+  }
+
+  @CheckForNull
+  private static Date readDate(DataInput input) throws IOException {
+    Long time = readLong(input);
+    return time == null ? null : new Date(time);
+  }
+
+  private static void writeVarInt(DataOutput output, int value) throws IOException {
+    int i = value;
+    while ((i & ~0x7F) != 0) {
+      output.writeByte((i & 0x7F) | 0x80);
+      i >>>= 7;
+    }
+    output.writeByte(i);
+  }
+
+  private static int readVarInt(DataInput input) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = input.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
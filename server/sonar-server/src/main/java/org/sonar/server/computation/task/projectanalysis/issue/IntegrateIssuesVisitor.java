@@ -26,14 +26,20 @@ import java.util.Map;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Tracking;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ConcurrentFileVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
-import org.sonar.server.util.cache.DiskCache;
+import org.sonar.server.util.cache.RecordDiskCache;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
-public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
+/**
+ * Tracks issues of each component and integrates them into the issue cache. Tracking of files, which loads issues and
+ * line hashes from the analysis report and from database, can be executed concurrently (see
+ * {@link ConcurrentFileVisitor}).
+ */
+public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter implements ConcurrentFileVisitor<Tracking<DefaultIssue, DefaultIssue>> {
 
   private final TrackerExecution tracker;
   private final IssueCache issueCache;
@@ -59,8 +65,30 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
 
   @Override
   public void visitAny(Component component) {
+    integrate(component, track(component));
+  }
+
+  @Override
+  public Tracking<DefaultIssue, DefaultIssue> prepareFile(Component file) {
+    return track(file);
+  }
+
+  @Override
+  public void visitFile(Component file, Tracking<DefaultIssue, DefaultIssue> tracking) {
+    integrate(file, tracking);
+  }
+
+  private Tracking<DefaultIssue, DefaultIssue> track(Component component) {
+    try {
+      return tracker.track(component);
+    } catch (Exception e) {
+      throw new IllegalStateException(String.format("Fail to process issues of component '%s'", component.getKey()), e);
+    }
+  }
+
+  private void integrate(Component component, Tracking<DefaultIssue, DefaultIssue> tracking) {
     componentIssues.clear();
-    processIssues(component);
+    processIssues(component, tracking);
 
     componentsWithUnprocessedIssues.remove(component.getUuid());
     Optional<MovedFilesRepository.OriginalFile> originalFile = movedFilesRepository.getOriginalFile(component);
@@ -70,10 +98,9 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     componentIssuesRepository.setIssues(component, componentIssues);
   }
 
-  private void processIssues(Component component) {
-    DiskCache<DefaultIssue>.DiskAppender cacheAppender = issueCache.newAppender();
+  private void processIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking) {
+    RecordDiskCache<DefaultIssue>.DiskAppender cacheAppender = issueCache.newAppender();
     try {
-      Tracking<DefaultIssue, DefaultIssue> tracking = tracker.track(component);
       issueVisitors.beforeComponent(component);
       fillNewOpenIssues(component, tracking, cacheAppender);
       fillExistingOpenIssues(component, tracking, cacheAppender);
@@ -86,14 +113,14 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     }
   }
 
-  private void fillNewOpenIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
+  private void fillNewOpenIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, RecordDiskCache<DefaultIssue>.DiskAppender cacheAppender) {
     for (DefaultIssue issue : tracking.getUnmatchedRaws()) {
       issueLifecycle.initNewOpenIssue(issue);
       process(component, issue, cacheAppender);
     }
   }
 
-  private void fillExistingOpenIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
+  private void fillExistingOpenIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, RecordDiskCache<DefaultIssue>.DiskAppender cacheAppender) {
     for (Map.Entry<DefaultIssue, DefaultIssue> entry : tracking.getMatchedRaws().entrySet()) {
       DefaultIssue raw = entry.getKey();
       DefaultIssue base = entry.getValue();
@@ -102,7 +129,7 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     }
   }
 
-  private void closeUnmatchedBaseIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
+  private void closeUnmatchedBaseIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, RecordDiskCache<DefaultIssue>.DiskAppender cacheAppender) {
     for (DefaultIssue issue : tracking.getUnmatchedBases()) {
       // TODO should replace flag "beingClosed" by express call to transition "automaticClose"
       issue.setBeingClosed(true);
@@ -111,7 +138,7 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     }
   }
 
-  private void process(Component component, DefaultIssue issue, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
+  private void process(Component component, DefaultIssue issue, RecordDiskCache<DefaultIssue>.DiskAppender cacheAppender) {
     issueLifecycle.doAutomaticTransition(issue);
     issueVisitors.onIssue(component, issue);
     cacheAppender.append(issue);
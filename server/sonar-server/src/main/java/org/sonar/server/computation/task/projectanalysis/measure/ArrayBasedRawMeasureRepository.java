@@ -0,0 +1,325 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.checkValueTypeConsistency;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures and stores them by column: for each metric,
+ * the measures of all components are stored in arrays indexed by an int key of the component (its report ref).
+ * <p>
+ * Instead of a {@link Measure} object and a map entry per component and metric, a measure costs one byte for its value
+ * type, 8 bytes for its numeric value (only in columns of numeric or level measures) and 8 bytes for its variation
+ * (only in columns where at least one measure has a variation). Data, description and QualityGate status, which only a
+ * few measures have, are stored in a side table. Measures are recreated each time they are read, hence instances
+ * returned by this repository are never the ones which have been added to it.
+ * </p>
+ * Measures associated to a developer are rare and are stored in a {@link MapBasedRawMeasureRepository}.
+ *
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ */
+public final class ArrayBasedRawMeasureRepository implements MeasureRepository {
+  private static final Measure.ValueType[] VALUE_TYPES = Measure.ValueType.values();
+  private static final Measure.Level[] LEVELS = Measure.Level.values();
+
+  private final Function<Component, Integer> componentToKey;
+  private final Map<String, MetricColumn> columnsByMetricKey = new LinkedHashMap<>();
+  private final MapBasedRawMeasureRepository<Integer> developerMeasures;
+
+  public ArrayBasedRawMeasureRepository(Function<Component, Integer> componentToKey) {
+    this.componentToKey = requireNonNull(componentToKey);
+    this.developerMeasures = new MapBasedRawMeasureRepository<>(componentToKey);
+  }
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    return Optional.fromNullable(find(componentToKey.apply(component), metric.getKey()));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (exists(component, metric, measure)) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (!exists(component, metric, measure)) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+    Measure measure = find(componentToKey.apply(component), metric.getKey());
+    Set<Measure> measuresOfDevelopers = developerMeasures.getRawMeasures(component, metric);
+    if (measure == null) {
+      return measuresOfDevelopers;
+    }
+    return ImmutableSet.<Measure>builder().add(measure).addAll(measuresOfDevelopers).build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int componentKey = componentToKey.apply(component);
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (MetricColumn column : columnsByMetricKey.values()) {
+      Measure measure = column.get(componentKey);
+      if (measure != null) {
+        builder.put(column.metricKey, measure);
+      }
+    }
+    builder.putAll(developerMeasures.getRawMeasures(component));
+    return builder.build();
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    if (measure.getDeveloper() != null) {
+      developerMeasures.add(component, metric, measure, overridePolicy);
+      return;
+    }
+    int componentKey = componentToKey.apply(component);
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    if (column == null) {
+      column = new MetricColumn(metric.getKey());
+      columnsByMetricKey.put(metric.getKey(), column);
+    }
+    if (overridePolicy == OverridePolicy.OVERRIDE || !column.contains(componentKey)) {
+      column.put(componentKey, measure);
+    }
+  }
+
+  private boolean exists(Component component, Metric metric, Measure measure) {
+    if (measure.getDeveloper() != null) {
+      // measures are equal when they are associated to the same developer
+      return developerMeasures.getRawMeasures(component, metric).contains(measure);
+    }
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    return column != null && column.contains(componentToKey.apply(component));
+  }
+
+  @CheckForNull
+  private Measure find(int componentKey, String metricKey) {
+    MetricColumn column = columnsByMetricKey.get(metricKey);
+    return column == null ? null : column.get(componentKey);
+  }
+
+  /**
+   * Measures of a single metric, indexed by component key.
+   */
+  private static final class MetricColumn {
+    private static final int VALUE_TYPE_MASK = 0x07;
+    private static final int HAS_VARIATION = 0x08;
+    private static final int HAS_EXTRAS = 0x10;
+    private static final int MIN_CAPACITY = 16;
+
+    private final String metricKey;
+    /**
+     * Ordinal of the value type of the measure plus one, 0 when the component has no measure, combined with
+     * {@link #HAS_VARIATION} and {@link #HAS_EXTRAS} flags.
+     */
+    private byte[] flags = new byte[0];
+    /**
+     * Numeric value or ordinal of the level of the measures, allocated on first measure which has one
+     */
+    @CheckForNull
+    private double[] values;
+    /**
+     * Allocated on first measure which has a variation
+     */
+    @CheckForNull
+    private double[] variations;
+    private final Map<Integer, Extras> extras = new HashMap<>();
+
+    private MetricColumn(String metricKey) {
+      this.metricKey = metricKey;
+    }
+
+    boolean contains(int componentKey) {
+      return componentKey >= 0 && componentKey < flags.length && flags[componentKey] != 0;
+    }
+
+    @CheckForNull
+    Measure get(int componentKey) {
+      if (!contains(componentKey)) {
+        return null;
+      }
+      int flag = flags[componentKey];
+      Measure.ValueType valueType = VALUE_TYPES[(flag & VALUE_TYPE_MASK) - 1];
+      Double value = null;
+      Measure.Level level = null;
+      if (valueType == Measure.ValueType.LEVEL) {
+        level = LEVELS[(int) values[componentKey]];
+      } else if (isNumeric(valueType)) {
+        value = values[componentKey];
+      }
+      Double variation = (flag & HAS_VARIATION) == 0 ? null : variations[componentKey];
+      Extras extra = (flag & HAS_EXTRAS) == 0 ? Extras.NONE : extras.get(componentKey);
+      return Measure.fromFields(valueType, value, extra.data, level, extra.description, extra.qualityGateStatus, variation);
+    }
+
+    void put(int componentKey, Measure measure) {
+      ensureCapacity(componentKey);
+      Measure.ValueType valueType = measure.getValueType();
+      int flag = valueType.ordinal() + 1;
+      if (valueType == Measure.ValueType.LEVEL) {
+        valuesArray()[componentKey] = measure.getLevelValue().ordinal();
+      } else if (isNumeric(valueType)) {
+        valuesArray()[componentKey] = numericValueOf(measure);
+      }
+      if (measure.hasVariation()) {
+        variationsArray()[componentKey] = measure.getVariation();
+        flag |= HAS_VARIATION;
+      }
+      if (measure.getData() != null || measure.getDescription() != null || measure.hasQualityGateStatus()) {
+        extras.put(componentKey, new Extras(measure));
+        flag |= HAS_EXTRAS;
+      } else if ((flags[componentKey] & HAS_EXTRAS) != 0) {
+        extras.remove(componentKey);
+      }
+      flags[componentKey] = (byte) flag;
+    }
+
+    private void ensureCapacity(int componentKey) {
+      if (componentKey < 0) {
+        throw new IllegalArgumentException(format("Component key must be positive: %s", componentKey));
+      }
+      if (componentKey < flags.length) {
+        return;
+      }
+      int capacity = Math.max(Math.max(componentKey + 1, flags.length + (flags.length >> 1)), MIN_CAPACITY);
+      flags = Arrays.copyOf(flags, capacity);
+      if (values != null) {
+        values = Arrays.copyOf(values, capacity);
+      }
+      if (variations != null) {
+        variations = Arrays.copyOf(variations, capacity);
+      }
+    }
+
+    private double[] valuesArray() {
+      if (values == null) {
+        values = new double[flags.length];
+      }
+      return values;
+    }
+
+    private double[] variationsArray() {
+      if (variations == null) {
+        variations = new double[flags.length];
+      }
+      return variations;
+    }
+
+    private static boolean isNumeric(Measure.ValueType valueType) {
+      return valueType == Measure.ValueType.BOOLEAN || valueType == Measure.ValueType.INT
+        || valueType == Measure.ValueType.LONG || valueType == Measure.ValueType.DOUBLE;
+    }
+
+    private static double numericValueOf(Measure measure) {
+      switch (measure.getValueType()) {
+        case BOOLEAN:
+          return measure.getBooleanValue() ? 1.0d : 0.0d;
+        case INT:
+          return measure.getIntValue();
+        case LONG:
+          return measure.getLongValue();
+        case DOUBLE:
+          return measure.getDoubleValue();
+        default:
+          throw new IllegalArgumentException("Unsupported numeric value type " + measure.getValueType());
+      }
+    }
+  }
+
+  private static final class Extras {
+    private static final Extras NONE = new Extras(null, null, null);
+
+    @CheckForNull
+    private final String data;
+    @CheckForNull
+    private final String description;
+    @CheckForNull
+    private final QualityGateStatus qualityGateStatus;
+
+    private Extras(Measure measure) {
+      this(measure.getData(), measure.getDescription(), measure.hasQualityGateStatus() ? measure.getQualityGateStatus() : null);
+    }
+
+    private Extras(@Nullable String data, @Nullable String description, @Nullable QualityGateStatus qualityGateStatus) {
+      this.data = data;
+      this.description = description;
+      this.qualityGateStatus = qualityGateStatus;
+    }
+  }
+}
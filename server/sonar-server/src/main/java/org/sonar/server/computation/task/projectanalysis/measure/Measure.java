@@ -95,6 +95,15 @@ public final class Measure {
     this.variation = variation;
   }
 
+  /**
+   * Recreates a measure without developer from the values of its fields, as stored by
+   * {@link ArrayBasedRawMeasureRepository}.
+   */
+  static Measure fromFields(ValueType valueType, @Nullable Double value, @Nullable String data, @Nullable Level dataLevel,
+    @Nullable String description, @Nullable QualityGateStatus qualityGateStatus, @Nullable Double variation) {
+    return new Measure(valueType, null, value, data, dataLevel, description, qualityGateStatus, variation);
+  }
+
   public static NewMeasureBuilder newMeasureBuilder() {
     return new NewMeasureBuilder();
   }
@@ -21,7 +21,9 @@ package org.sonar.server.computation.task.projectanalysis.measure;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.SetMultimap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
@@ -39,8 +41,12 @@ import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricVali
 import static java.util.Objects.requireNonNull;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
 
+/**
+ * Raw measures are read and written under the lock of this instance as files can be visited concurrently
+ * (see {@link org.sonar.server.computation.task.projectanalysis.component.ConcurrentFileVisitor}).
+ */
 public class MeasureRepositoryImpl implements MeasureRepository {
-  private final MapBasedRawMeasureRepository<Integer> delegate = new MapBasedRawMeasureRepository<>(toReportRef());
+  private final ArrayBasedRawMeasureRepository delegate = new ArrayBasedRawMeasureRepository(toReportRef());
   private final DbClient dbClient;
   private final BatchReportReader reportReader;
   private final BatchMeasureToMeasure batchMeasureToMeasure;
@@ -49,6 +55,7 @@ public class MeasureRepositoryImpl implements MeasureRepository {
 
   private MeasureDtoToMeasure underTest = new MeasureDtoToMeasure();
   private final Set<Integer> loadedComponents = new HashSet<>();
+  private final Map<String, Map<Integer, MeasureDto>> baseMeasuresByComponentUuid = new HashMap<>();
 
   public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator) {
     this.dbClient = dbClient;
@@ -58,24 +65,37 @@ public class MeasureRepositoryImpl implements MeasureRepository {
     this.metricRepository = metricRepository;
   }
 
+  /**
+   * Base measures of all the metrics of the component are loaded by the first call for this component, rather than
+   * running a query per metric.
+   */
   @Override
-  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+  public synchronized Optional<Measure> getBaseMeasure(Component component, Metric metric) {
     // fail fast
     requireNonNull(component);
     requireNonNull(metric);
 
+    Map<Integer, MeasureDto> measureDtos = baseMeasuresByComponentUuid.computeIfAbsent(component.getUuid(), this::loadBaseMeasures);
+    MeasureDto measureDto = measureDtos.get(metric.getId());
+    if (measureDto != null) {
+      return underTest.toMeasure(measureDto, metric);
+    }
+    return Optional.absent();
+  }
+
+  private Map<Integer, MeasureDto> loadBaseMeasures(String componentUuid) {
     try (DbSession dbSession = dbClient.openSession(false)) {
-      MeasureQuery query = MeasureQuery.builder().setComponentUuid(component.getUuid()).setMetricKey(metric.getKey()).build();
-      java.util.Optional<MeasureDto> measureDto = dbClient.measureDao().selectSingle(dbSession, query);
-      if (measureDto.isPresent()) {
-        return underTest.toMeasure(measureDto.get(), metric);
+      MeasureQuery query = MeasureQuery.builder().setComponentUuid(componentUuid).build();
+      Map<Integer, MeasureDto> measureDtos = new HashMap<>();
+      for (MeasureDto measureDto : dbClient.measureDao().selectByQuery(dbSession, query)) {
+        measureDtos.put(measureDto.getMetricId(), measureDto);
       }
-      return Optional.absent();
+      return measureDtos;
     }
   }
 
   @Override
-  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+  public synchronized Optional<Measure> getRawMeasure(Component component, Metric metric) {
     Optional<Measure> local = delegate.getRawMeasure(component, metric);
     if (local.isPresent()) {
       return local;
@@ -87,23 +107,23 @@ public class MeasureRepositoryImpl implements MeasureRepository {
   }
 
   @Override
-  public void add(Component component, Metric metric, Measure measure) {
+  public synchronized void add(Component component, Metric metric, Measure measure) {
     delegate.add(component, metric, measure);
   }
 
   @Override
-  public void update(Component component, Metric metric, Measure measure) {
+  public synchronized void update(Component component, Metric metric, Measure measure) {
     delegate.update(component, metric, measure);
   }
 
   @Override
-  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+  public synchronized Set<Measure> getRawMeasures(Component component, Metric metric) {
     loadBatchMeasuresForComponent(component);
     return delegate.getRawMeasures(component, metric);
   }
 
   @Override
-  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+  public synchronized SetMultimap<String, Measure> getRawMeasures(Component component) {
     loadBatchMeasuresForComponent(component);
     return delegate.getRawMeasures(component);
   }
@@ -0,0 +1,112 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Numeric values of the measures of a past analysis, by component and metric, so that the measures of a whole project
+ * are loaded at once rather than component by component.
+ * <p>
+ * Values of a component are stored in primitive arrays sorted by metric id instead of one object per measure. This
+ * class is not thread-safe.
+ * </p>
+ */
+public class PastMeasureValues {
+
+  private final Map<String, ComponentValues> valuesByComponentUuid = new HashMap<>();
+  private int size = 0;
+
+  public PastMeasureValues add(String componentUuid, int metricId, double value) {
+    requireNonNull(componentUuid);
+    valuesByComponentUuid.computeIfAbsent(componentUuid, uuid -> new ComponentValues()).add(metricId, value);
+    size++;
+    return this;
+  }
+
+  /**
+   * Value of the measure, or {@code defaultValue} if there is no such measure
+   */
+  public double getValue(String componentUuid, int metricId, double defaultValue) {
+    ComponentValues values = valuesByComponentUuid.get(componentUuid);
+    if (values == null) {
+      return defaultValue;
+    }
+    return values.get(metricId, defaultValue);
+  }
+
+  /**
+   * Number of values
+   */
+  public int size() {
+    return size;
+  }
+
+  private static final class ComponentValues {
+    private int[] metricIds = new int[8];
+    private double[] values = new double[8];
+    private int size = 0;
+    private boolean sorted = true;
+
+    private void add(int metricId, double value) {
+      if (size == metricIds.length) {
+        metricIds = Arrays.copyOf(metricIds, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      sorted &= size == 0 || metricIds[size - 1] < metricId;
+      metricIds[size] = metricId;
+      values[size] = value;
+      size++;
+    }
+
+    private double get(int metricId, double defaultValue) {
+      if (!sorted) {
+        sort();
+      }
+      int index = Arrays.binarySearch(metricIds, 0, size, metricId);
+      return index >= 0 ? values[index] : defaultValue;
+    }
+
+    /**
+     * Insertion sort, as a component has at most a few hundred measures which are usually returned ordered by metric
+     */
+    private void sort() {
+      for (int i = 1; i < size; i++) {
+        int metricId = metricIds[i];
+        double value = values[i];
+        int j = i - 1;
+        while (j >= 0 && metricIds[j] > metricId) {
+          metricIds[j + 1] = metricIds[j];
+          values[j + 1] = values[j];
+          j--;
+        }
+        metricIds[j + 1] = metricId;
+        values[j + 1] = value;
+      }
+      metricIds = Arrays.copyOf(metricIds, size);
+      values = Arrays.copyOf(values, size);
+      sorted = true;
+    }
+  }
+}
@@ -21,7 +21,7 @@ package org.sonar.server.computation.task.projectanalysis.metric;
 
 import com.google.common.base.Function;
 import com.google.common.collect.FluentIterable;
-import java.util.HashSet;
+import com.google.common.collect.Sets;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nonnull;
@@ -35,7 +35,7 @@ public class ReportMetricValidatorImpl implements ReportMetricValidator {
   private static final Logger LOG = Loggers.get(ReportMetricValidatorImpl.class);
 
   private Map<String, org.sonar.api.measures.Metric> metricByKey;
-  private Set<String> alreadyLoggedMetricKeys = new HashSet<>();
+  private Set<String> alreadyLoggedMetricKeys = Sets.newConcurrentHashSet();
 
   public ReportMetricValidatorImpl(ScannerMetrics scannerMetrics) {
     this.metricByKey = FluentIterable.from(scannerMetrics.getMetrics()).uniqueIndex(MetricToKey.INSTANCE);
@@ -45,9 +45,8 @@ public class ReportMetricValidatorImpl implements ReportMetricValidator {
   public boolean validate(String metricKey) {
     org.sonar.api.measures.Metric metric = metricByKey.get(metricKey);
     if (metric == null) {
-      if (!alreadyLoggedMetricKeys.contains(metricKey)) {
+      if (alreadyLoggedMetricKeys.add(metricKey)) {
         LOG.debug("The metric '{}' is ignored and should not be send in the batch report", metricKey);
-        alreadyLoggedMetricKeys.add(metricKey);
       }
       return false;
     }
@@ -0,0 +1,182 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import com.google.common.base.Optional;
+import com.google.protobuf.MessageLite;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
+import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepository;
+import org.sonar.server.computation.task.projectanalysis.duplication.InProjectDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
+import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
+import org.sonar.server.computation.task.projectanalysis.scm.ScmInfo;
+import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepository;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Computes a MD5 fingerprint of everything {@link ComputeFileSourceData} is built from for a given file: source lines,
+ * coverage, syntax highlighting, symbols, duplications and SCM changesets.
+ * <p>
+ * Reading these inputs is much cheaper than building, serializing and compressing the resulting
+ * {@link org.sonar.db.protobuf.DbFileSources.Data}, so comparing this fingerprint with the one of the previous analysis
+ * allows to skip files which did not change.
+ * </p>
+ */
+public class FileSourceInputsHashComputer {
+
+  /**
+   * Must be incremented whenever the way data is built from the inputs changes, so that the data of all files is rebuilt
+   * on next analysis. Version 2 stores data by chunks of lines, see {@link org.sonar.db.source.FileSourceDto#encodeSourceData}.
+   */
+  private static final int VERSION = 2;
+
+  private static final byte LINE = 1;
+  private static final byte COVERAGE = 2;
+  private static final byte HIGHLIGHTING = 3;
+  private static final byte SYMBOL = 4;
+  private static final byte DUPLICATION = 5;
+  private static final byte CHANGESET = 6;
+
+  private final BatchReportReader reportReader;
+  private final SourceLinesRepository sourceLinesRepository;
+  private final ScmInfoRepository scmInfoRepository;
+  private final DuplicationRepository duplicationRepository;
+
+  public FileSourceInputsHashComputer(BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository, ScmInfoRepository scmInfoRepository,
+    DuplicationRepository duplicationRepository) {
+    this.reportReader = reportReader;
+    this.sourceLinesRepository = sourceLinesRepository;
+    this.scmInfoRepository = scmInfoRepository;
+    this.duplicationRepository = duplicationRepository;
+  }
+
+  public String compute(Component file) {
+    Digest digest = new Digest();
+    digest.add(VERSION);
+    digest.add(file.getFileAttributes().getLines());
+    try (CloseableIterator<String> lines = sourceLinesRepository.readLines(file)) {
+      while (lines.hasNext()) {
+        digest.add(LINE, lines.next());
+      }
+    }
+    int ref = file.getReportAttributes().getRef();
+    addMessages(digest, COVERAGE, reportReader.readComponentCoverage(ref));
+    addMessages(digest, HIGHLIGHTING, reportReader.readComponentSyntaxHighlighting(ref));
+    addMessages(digest, SYMBOL, reportReader.readComponentSymbols(ref));
+    addDuplications(digest, duplicationRepository.getDuplications(file));
+    Optional<ScmInfo> scmInfo = scmInfoRepository.getScmInfo(file);
+    if (scmInfo.isPresent()) {
+      for (Changeset changeset : scmInfo.get().getAllChangesets()) {
+        digest.add(CHANGESET, changeset.getRevision());
+        digest.add(CHANGESET, changeset.getAuthor());
+        digest.add(changeset.getDate());
+      }
+    }
+    return digest.hex();
+  }
+
+  private static void addMessages(Digest digest, byte type, CloseableIterator<? extends MessageLite> messages) {
+    try {
+      while (messages.hasNext()) {
+        digest.add(type, messages.next().toByteArray());
+      }
+    } finally {
+      messages.close();
+    }
+  }
+
+  /**
+   * Duplications are not guaranteed to be returned in the same order from one analysis to another, so they are
+   * sorted on their textual representation before being added to the fingerprint.
+   */
+  private static void addDuplications(Digest digest, Iterable<Duplication> duplications) {
+    List<String> serialized = new ArrayList<>();
+    for (Duplication duplication : duplications) {
+      StringBuilder sb = new StringBuilder();
+      append(sb, duplication.getOriginal());
+      for (Duplicate duplicate : duplication.getDuplicates()) {
+        sb.append('|');
+        if (duplicate instanceof InProjectDuplicate) {
+          sb.append(((InProjectDuplicate) duplicate).getFile().getKey()).append(':');
+        } else if (duplicate instanceof CrossProjectDuplicate) {
+          sb.append(((CrossProjectDuplicate) duplicate).getFileKey()).append(':');
+        }
+        append(sb, duplicate.getTextBlock());
+      }
+      serialized.add(sb.toString());
+    }
+    Collections.sort(serialized);
+    for (String s : serialized) {
+      digest.add(DUPLICATION, s);
+    }
+  }
+
+  private static void append(StringBuilder sb, TextBlock textBlock) {
+    sb.append(textBlock.getStart()).append('-').append(textBlock.getEnd());
+  }
+
+  /**
+   * Every value is prefixed by its type and length so that distinct sequences of values can not produce the same
+   * stream of bytes.
+   */
+  private static class Digest {
+    private final MessageDigest md5 = DigestUtils.getMd5Digest();
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    void add(long l) {
+      buffer.clear();
+      buffer.putLong(l);
+      md5.update(buffer.array(), 0, Long.BYTES);
+    }
+
+    void add(byte type, @Nullable String s) {
+      if (s == null) {
+        md5.update(type);
+        add(-1L);
+      } else {
+        add(type, s.getBytes(UTF_8));
+      }
+    }
+
+    void add(byte type, byte[] bytes) {
+      md5.update(type);
+      add(bytes.length);
+      md5.update(bytes);
+    }
+
+    String hex() {
+      return Hex.encodeHexString(md5.digest());
+    }
+  }
+}
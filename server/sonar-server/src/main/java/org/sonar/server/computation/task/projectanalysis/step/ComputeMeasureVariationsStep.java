@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.projectanalysis.step;
 import com.google.common.base.Optional;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,6 +42,7 @@ import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisi
 import org.sonar.server.computation.task.projectanalysis.measure.Measure;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureKey;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository;
+import org.sonar.server.computation.task.projectanalysis.measure.PastMeasureValues;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
 import org.sonar.server.computation.task.projectanalysis.period.Period;
@@ -49,8 +51,6 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
-import static java.util.function.Function.identity;
-import static org.sonar.core.util.stream.Collectors.uniqueIndex;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.SUBVIEW;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
@@ -61,13 +61,14 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
  * <p/>
  * Note that measures on developer are not handle yet.
  */
-public class ComputeMeasureVariationsStep implements ComputationStep {
+public class ComputeMeasureVariationsStep implements ComputationStep, ComputationStep.WithStatistics {
 
   private final DbClient dbClient;
   private final TreeRootHolder treeRootHolder;
   private final PeriodHolder periodHolder;
   private final MetricRepository metricRepository;
   private final MeasureRepository measureRepository;
+  private final Map<String, Object> statistics = new LinkedHashMap<>();
 
   public ComputeMeasureVariationsStep(DbClient dbClient, TreeRootHolder treeRootHolder, PeriodHolder periodHolder, MetricRepository metricRepository,
                                       MeasureRepository measureRepository) {
@@ -80,24 +81,50 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
 
   @Override
   public void execute() {
+    statistics.clear();
+    if (!periodHolder.hasPeriod()) {
+      return;
+    }
+    List<Metric> metrics = StreamSupport.stream(metricRepository.getAll().spliterator(), false).filter(isNumeric()).collect(Collectors.toList());
+    PastMeasureValues pastMeasureValues = loadPastMeasureValues(periodHolder.getPeriod(), metrics);
+    new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(pastMeasureValues, metrics))
+      .visit(treeRootHolder.getRoot());
+  }
+
+  /**
+   * Past measures of all the components are loaded at once, instead of running a query per component
+   */
+  private PastMeasureValues loadPastMeasureValues(Period period, List<Metric> metrics) {
+    PastMeasureValues pastMeasureValues = new PastMeasureValues();
+    Set<Integer> metricIds = metrics.stream().map(Metric::getId).collect(Collectors.toSet());
+    int queries;
     try (DbSession dbSession = dbClient.openSession(false)) {
-      List<Metric> metrics = StreamSupport.stream(metricRepository.getAll().spliterator(), false).filter(isNumeric()).collect(Collectors.toList());
-      new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(dbSession, metrics))
-        .visit(treeRootHolder.getRoot());
+      queries = dbClient.measureDao().selectPastMeasuresOfAnalysis(dbSession, period.getAnalysisUuid(), metricIds, context -> {
+        PastMeasureDto pastMeasure = (PastMeasureDto) context.getResultObject();
+        if (pastMeasure.hasValue()) {
+          pastMeasureValues.add(pastMeasure.getComponentUuid(), pastMeasure.getMetricId(), pastMeasure.getValue());
+        }
+      });
     }
+    statistics.put("pastMeasuresQueries", queries);
+    statistics.put("pastMeasures", pastMeasureValues.size());
+    return pastMeasureValues;
+  }
+
+  @Override
+  public Map<String, Object> getStatistics() {
+    return statistics;
   }
 
   private class VariationMeasuresVisitor extends TypeAwareVisitorAdapter {
 
-    private final DbSession session;
-    private final Set<Integer> metricIds;
+    private final PastMeasureValues pastMeasureValues;
     private final List<Metric> metrics;
 
-    VariationMeasuresVisitor(DbSession session, List<Metric> metrics) {
+    VariationMeasuresVisitor(PastMeasureValues pastMeasureValues, List<Metric> metrics) {
       // measures on files are currently purged, so past measures are not available on files
       super(CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW), PRE_ORDER);
-      this.session = session;
-      this.metricIds = metrics.stream().map(Metric::getId).collect(Collectors.toSet());
+      this.pastMeasureValues = pastMeasureValues;
       this.metrics = metrics;
     }
 
@@ -109,27 +136,14 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
 
     private MeasuresWithVariationRepository computeMeasuresWithVariations(Component component) {
       MeasuresWithVariationRepository measuresWithVariationRepository = new MeasuresWithVariationRepository();
-      if (periodHolder.hasPeriod()) {
-        Period period = periodHolder.getPeriod();
-        List<PastMeasureDto> pastMeasures = dbClient.measureDao()
-          .selectPastMeasures(session, component.getUuid(), period.getAnalysisUuid(), metricIds);
-        setVariationMeasures(component, pastMeasures, measuresWithVariationRepository);
-      }
-      return measuresWithVariationRepository;
-    }
-
-    private void setVariationMeasures(Component component, List<PastMeasureDto> pastMeasures, MeasuresWithVariationRepository measuresWithVariationRepository) {
-      Map<MeasureKey, PastMeasureDto> pastMeasuresByMeasureKey = pastMeasures
-        .stream()
-        .collect(uniqueIndex(m -> new MeasureKey(metricRepository.getById((long) m.getMetricId()).getKey(), null), identity()));
       for (Metric metric : metrics) {
         Optional<Measure> measure = measureRepository.getRawMeasure(component, metric);
         if (measure.isPresent() && !measure.get().hasVariation()) {
-          PastMeasureDto pastMeasure = pastMeasuresByMeasureKey.get(new MeasureKey(metric.getKey(), null));
-          double pastValue = (pastMeasure != null && pastMeasure.hasValue()) ? pastMeasure.getValue() : 0d;
+          double pastValue = pastMeasureValues.getValue(component.getUuid(), metric.getId(), 0d);
           measuresWithVariationRepository.add(metric, measure.get(), computeVariation(measure.get(), pastValue));
         }
       }
+      return measuresWithVariationRepository;
     }
 
     private double computeVariation(Measure measure, double pastValue) {
@@ -19,8 +19,12 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
@@ -30,14 +34,26 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 public class ExecuteVisitorsStep implements ComputationStep {
 
+  /**
+   * Number of threads on which files are prepared by {@link org.sonar.server.computation.task.projectanalysis.component.ConcurrentFileVisitor}s.
+   * Files are visited by the thread executing the step only when lower or equal to 1, which is the default.
+   */
+  public static final String FILE_THREADS_PROPERTY = "sonar.ce.visitorThreads";
+  /**
+   * Number of files prepared ahead of the crawl, per thread
+   */
+  private static final int LOOK_AHEAD_PER_THREAD = 4;
+
   private static final Logger LOGGER = Loggers.get(ExecuteVisitorsStep.class);
 
   private final TreeRootHolder treeRootHolder;
   private final List<ComponentVisitor> visitors;
+  private final int fileThreads;
 
-  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors) {
+  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors, Settings settings) {
     this.treeRootHolder = treeRootHolder;
     this.visitors = visitors;
+    this.fileThreads = settings.getInt(FILE_THREADS_PROPERTY);
   }
 
   @Override
@@ -47,9 +63,24 @@ public class ExecuteVisitorsStep implements ComputationStep {
 
   @Override
   public void execute() {
-    VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled());
-    visitorsCrawler.visit(treeRootHolder.getRoot());
-    logVisitorExecutionDurations(visitors, visitorsCrawler);
+    if (fileThreads <= 1) {
+      VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled());
+      visitorsCrawler.visit(treeRootHolder.getRoot());
+      logVisitorExecutionDurations(visitors, visitorsCrawler);
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(fileThreads, new ThreadFactoryBuilder()
+      .setNameFormat("FileVisitor-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled(), executor, fileThreads * LOOK_AHEAD_PER_THREAD);
+      visitorsCrawler.visit(treeRootHolder.getRoot());
+      logVisitorExecutionDurations(visitors, visitorsCrawler);
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
   private static void logVisitorExecutionDurations(List<ComponentVisitor> visitors, VisitorsCrawler visitorsCrawler) {
@@ -24,19 +24,26 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
+import org.apache.commons.io.FileUtils;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeTaskInputDao;
+import org.sonar.scanner.protocol.output.ReportArchive;
+import org.sonar.scanner.protocol.output.ReportContainer;
+import org.sonar.scanner.protocol.output.ZipReportArchive;
 import org.sonar.server.computation.task.projectanalysis.batch.MutableBatchReportDirectoryHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 /**
- * Extracts the content zip file of the {@link CeTask} to a temp directory and adds a {@link File}
- * representing that temp directory to the {@link MutableBatchReportDirectoryHolder}.
+ * Copies the report of the {@link CeTask} from database to a temp file and adds the {@link ReportArchive} read from
+ * that file to the {@link MutableBatchReportDirectoryHolder}.
+ * <p>
+ * Report is not extracted: entries are read from the temp file when steps request them, whether the report has
+ * been uploaded as a {@link ReportContainer} or as a zip.
+ * </p>
  */
 public class ExtractReportStep implements ComputationStep {
 
@@ -58,14 +65,15 @@ public class ExtractReportStep implements ComputationStep {
     try (DbSession dbSession = dbClient.openSession(false)) {
       Optional<CeTaskInputDao.DataStream> opt = dbClient.ceTaskInputDao().selectData(dbSession, task.getUuid());
       if (opt.isPresent()) {
-        File unzippedDir = tempFolder.newDir();
         try (CeTaskInputDao.DataStream reportStream = opt.get();
-             InputStream zipStream = new BufferedInputStream(reportStream.getInputStream())) {
-          ZipUtils.unzip(zipStream, unzippedDir);
+             InputStream input = new BufferedInputStream(reportStream.getInputStream())) {
+          boolean container = ReportContainer.isContainer(input);
+          File reportFile = tempFolder.newFile();
+          FileUtils.copyInputStreamToFile(input, reportFile);
+          reportDirectoryHolder.setArchive(container ? ReportContainer.open(reportFile) : ZipReportArchive.open(reportFile));
         } catch (IOException e) {
-          throw new IllegalStateException("Fail to extract report " + task.getUuid() + " from database", e);
+          throw new IllegalStateException("Fail to copy report " + task.getUuid() + " from database", e);
         }
-        reportDirectoryHolder.setDirectory(unzippedDir);
       } else {
         throw MessageException.of("Analysis report " + task.getUuid() + " is missing in database");
       }
@@ -29,11 +29,15 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceBatchWriter;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.db.source.FileSourceDto.Type;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -50,6 +54,7 @@ import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepository;
 import org.sonar.server.computation.task.projectanalysis.source.ComputeFileSourceData;
 import org.sonar.server.computation.task.projectanalysis.source.CoverageLineReader;
 import org.sonar.server.computation.task.projectanalysis.source.DuplicationLineReader;
+import org.sonar.server.computation.task.projectanalysis.source.FileSourceInputsHashComputer;
 import org.sonar.server.computation.task.projectanalysis.source.HighlightingLineReader;
 import org.sonar.server.computation.task.projectanalysis.source.LineReader;
 import org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConverter;
@@ -62,6 +67,14 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 
 public class PersistFileSourcesStep implements ComputationStep {
 
+  /**
+   * Maximum number of bytes of data held in memory by a batch of inserts and updates of FILE_SOURCES
+   */
+  public static final String MAX_BATCH_BYTES_PROPERTY = "sonar.ce.fileSources.maxBatchBytes";
+  static final long DEFAULT_MAX_BATCH_BYTES = 16L * 1024 * 1024;
+
+  private static final Logger LOGGER = Loggers.get(PersistFileSourcesStep.class);
+
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
@@ -69,9 +82,11 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final FileSourceInputsHashComputer inputsHashComputer;
+  private final long maxBatchBytes;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Settings settings) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -79,27 +94,39 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.inputsHashComputer = new FileSourceInputsHashComputer(reportReader, sourceLinesRepository, scmInfoRepository, duplicationRepository);
+    this.maxBatchBytes = settings.hasKey(MAX_BATCH_BYTES_PROPERTY) ? settings.getLong(MAX_BATCH_BYTES_PROPERTY) : DEFAULT_MAX_BATCH_BYTES;
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession))
+    // Batch is bounded by the size of data rather than by the number of rows, as keeping data of many big files in memory
+    // could produce OOM
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      FileSourceBatchWriter writer = dbClient.fileSourceDao().newBatchWriter(dbSession, maxBatchBytes);
+      FileSourceVisitor visitor = new FileSourceVisitor(dbSession, writer);
+      new DepthTraversalTypeAwareCrawler(visitor)
         .visit(treeRootHolder.getRoot());
+      writer.flush();
+      LOGGER.info("{} files persisted, {} files skipped as their sources did not change", visitor.persistedFiles, visitor.skippedFiles);
+      LOGGER.debug("Sources written in {} batches", writer.getFlushCount());
     }
   }
 
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final FileSourceBatchWriter writer;
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
+    private int persistedFiles = 0;
+    private int skippedFiles = 0;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, FileSourceBatchWriter writer) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.writer = writer;
     }
 
     @Override
@@ -114,12 +141,22 @@ public class PersistFileSourcesStep implements ComputationStep {
 
     @Override
     public void visitFile(Component file) {
+      String inputsHash = inputsHashComputer.compute(file);
+      // each file is visited once: removing its previous row releases the data written for it once it is flushed
+      FileSourceDto previousDto = previousFileSourcesByUuid.remove(file.getUuid());
+      if (previousDto != null && inputsHash.equals(previousDto.getInputsHash())) {
+        // data would be rebuilt from exactly the same inputs, hence would be identical to the persisted one
+        skippedFiles++;
+        return;
+      }
+      persistedFiles++;
+
       CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
       LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
       try {
         ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
         ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
+        persistSource(fileSourceData, file.getUuid(), previousDto, inputsHash, lineReaders.getLatestChange());
       } catch (Exception e) {
         throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
       } finally {
@@ -128,14 +165,14 @@ public class PersistFileSourcesStep implements ComputationStep {
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
+    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable FileSourceDto previousDto, String inputsHash,
+      @Nullable Changeset latestChange) {
       DbFileSources.Data fileData = fileSourceData.getFileSourceData();
 
       byte[] data = FileSourceDto.encodeSourceData(fileData);
       String dataHash = DigestUtils.md5Hex(data);
       String srcHash = fileSourceData.getSrcHash();
       String lineHashes = fileSourceData.getLineHashes();
-      FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
 
       if (previousDto == null) {
         FileSourceDto dto = new FileSourceDto()
@@ -145,12 +182,12 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setBinaryData(data)
           .setSrcHash(srcHash)
           .setDataHash(dataHash)
+          .setInputsHash(inputsHash)
           .setLineHashes(lineHashes)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
           .setRevision(computeRevision(latestChange));
-        dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
+        writer.insert(dto);
       } else {
         // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
         boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
@@ -161,12 +198,16 @@ public class PersistFileSourcesStep implements ComputationStep {
           previousDto
             .setBinaryData(data)
             .setDataHash(dataHash)
+            .setInputsHash(inputsHash)
             .setSrcHash(srcHash)
             .setLineHashes(lineHashes)
             .setRevision(revision)
             .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
+          writer.update(previousDto);
+        } else if (!inputsHash.equals(previousDto.getInputsHash())) {
+          // data did not change, only store the hash of its inputs (progressive migration). Date of update is kept unchanged.
+          previousDto.setInputsHash(inputsHash);
+          writer.updateInputsHash(previousDto);
         }
       }
     }
@@ -19,17 +19,18 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTaskSubmit;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.purge.IdUuidPair;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.server.computation.dbcleaner.ProjectCleaner;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
-import org.sonar.server.computation.task.projectanalysis.component.DbIdsRepository;
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.DisabledComponentsHolder;
-import org.sonar.server.computation.task.projectanalysis.component.SettingsRepository;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
-import org.sonar.server.computation.dbcleaner.ProjectCleaner;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
@@ -37,22 +38,24 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 import static org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit.reportMaxDepth;
 
+/**
+ * Cleans the data of the components disabled by the analysis, which are known only during the analysis, and submits a
+ * {@link CeTaskTypes#PURGE} task for the rest of the housekeeping, so that it does not delay the analysis.
+ */
 public class PurgeDatastoresStep implements ComputationStep {
 
   private final ProjectCleaner projectCleaner;
   private final DbClient dbClient;
-  private final DbIdsRepository dbIdsRepository;
+  private final CeQueue ceQueue;
   private final TreeRootHolder treeRootHolder;
-  private final SettingsRepository settingsRepository;
   private final DisabledComponentsHolder disabledComponentsHolder;
 
-  public PurgeDatastoresStep(DbClient dbClient, ProjectCleaner projectCleaner, DbIdsRepository dbIdsRepository, TreeRootHolder treeRootHolder,
-    SettingsRepository settingsRepository, DisabledComponentsHolder disabledComponentsHolder) {
+  public PurgeDatastoresStep(DbClient dbClient, ProjectCleaner projectCleaner, CeQueue ceQueue, TreeRootHolder treeRootHolder,
+    DisabledComponentsHolder disabledComponentsHolder) {
     this.projectCleaner = projectCleaner;
     this.dbClient = dbClient;
-    this.dbIdsRepository = dbIdsRepository;
+    this.ceQueue = ceQueue;
     this.treeRootHolder = treeRootHolder;
-    this.settingsRepository = settingsRepository;
     this.disabledComponentsHolder = disabledComponentsHolder;
   }
 
@@ -74,12 +77,26 @@ public class PurgeDatastoresStep implements ComputationStep {
 
   private void execute(Component root) {
     try (DbSession dbSession = dbClient.openSession(true)) {
-      IdUuidPair idUuidPair = new IdUuidPair(dbIdsRepository.getComponentId(root), root.getUuid());
-      projectCleaner.purge(dbSession, idUuidPair, settingsRepository.getSettings(root), disabledComponentsHolder.getUuids());
+      projectCleaner.purgeDisabledComponents(dbSession, root.getUuid(), disabledComponentsHolder.getUuids());
       dbSession.commit();
+      if (!ceQueue.isSubmitPaused() && !isPurgePending(dbSession, root)) {
+        submitPurge(root);
+      }
     }
   }
 
+  private boolean isPurgePending(DbSession dbSession, Component root) {
+    return dbClient.ceQueueDao().selectByComponentUuid(dbSession, root.getUuid()).stream()
+      .anyMatch(task -> CeTaskTypes.PURGE.equals(task.getTaskType()) && task.getStatus() == CeQueueDto.Status.PENDING);
+  }
+
+  private void submitPurge(Component root) {
+    CeTaskSubmit.Builder submit = ceQueue.prepareSubmit();
+    submit.setType(CeTaskTypes.PURGE);
+    submit.setComponentUuid(root.getUuid());
+    ceQueue.submit(submit.build());
+  }
+
   @Override
   public String getDescription() {
     return "Purge db";
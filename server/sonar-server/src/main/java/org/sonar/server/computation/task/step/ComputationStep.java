@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.task.step;
 
+import java.util.Map;
 import org.sonar.server.computation.task.projectanalysis.step.ReportComputationSteps;
 
 /**
@@ -29,4 +30,15 @@ public interface ComputationStep {
   void execute();
 
   String getDescription();
+
+  /**
+   * Implemented by steps which provide statistics about their execution, for example a number of database queries.
+   * Statistics are logged with the duration of the step.
+   */
+  interface WithStatistics {
+    /**
+     * Statistics of the last execution of the step, by name
+     */
+    Map<String, Object> getStatistics();
+  }
 }
@@ -62,6 +62,9 @@ public final class ComputationStepExecutor {
     for (ComputationStep step : steps.instances()) {
       stepProfiler.start();
       step.execute();
+      if (step instanceof ComputationStep.WithStatistics) {
+        ((ComputationStep.WithStatistics) step).getStatistics().forEach(stepProfiler::addContext);
+      }
       stepProfiler.stopDebug(step.getDescription());
     }
   }
@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableScheduledFuture;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
@@ -37,18 +38,22 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable {
   private static final Logger LOG = Loggers.get(CeProcessingSchedulerImpl.class);
+  // delay between polls of an empty queue is at most 8 times the polling delay
+  private static final int MAX_DELAY_FACTOR_EXPONENT = 3;
 
   private final CeProcessingSchedulerExecutorService executorService;
   private final CeWorkerCallable workerRunnable;
+  private final CeWorkersWakeUp workersWakeUp;
 
   private final long delayBetweenTasks;
   private final TimeUnit timeUnit;
   private final ChainingCallback[] chainingCallbacks;
 
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
-    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable) {
+    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable, CeWorkersWakeUp workersWakeUp) {
     this.executorService = processingExecutorService;
     this.workerRunnable = workerRunnable;
+    this.workersWakeUp = workersWakeUp;
 
     this.delayBetweenTasks = ceConfiguration.getQueuePollingDelay();
     this.timeUnit = MILLISECONDS;
@@ -71,6 +76,13 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
       addCallback(future, chainingCallback, executorService);
     }
+    workersWakeUp.addListener(this::wakeUpIdleWorkers);
+  }
+
+  private void wakeUpIdleWorkers() {
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      chainingCallback.wakeUp();
+    }
   }
 
   @Override
@@ -80,46 +92,87 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
     }
   }
 
+  /**
+   * Chains the calls to {@link CeWorkerCallable} of a worker. When no task was processed, the next call is delayed
+   * by the polling delay, doubled after each new empty poll up to 8 times the polling delay.
+   * The delayed call is replaced by an immediate call when the worker is woken up by {@link CeWorkersWakeUp}.
+   */
   private class ChainingCallback implements FutureCallback<Boolean> {
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
+    private final AtomicBoolean waitingForDelay = new AtomicBoolean(false);
+    private volatile int consecutiveEmptyPolls = 0;
+    @CheckForNull
+    private volatile ListenableFuture<Boolean> workerFuture;
     @CheckForNull
-    private ListenableFuture<Boolean> workerFuture;
+    private volatile ListenableScheduledFuture<Boolean> delayedFuture;
 
     @Override
     public void onSuccess(@Nullable Boolean result) {
+      waitingForDelay.set(false);
       if (result != null && result) {
+        consecutiveEmptyPolls = 0;
         chainWithoutDelay();
       } else {
+        consecutiveEmptyPolls++;
         chainWithDelay();
       }
     }
 
     @Override
     public void onFailure(Throwable t) {
+      if (t instanceof CancellationException) {
+        // call was cancelled because worker has been stopped or woken up, next call is already chained if needed
+        return;
+      }
+      waitingForDelay.set(false);
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else {
+        consecutiveEmptyPolls = 0;
         chainWithoutDelay();
       }
     }
 
     private void chainWithoutDelay() {
       if (keepRunning()) {
-        workerFuture = executorService.submit(workerRunnable);
+        ListenableFuture<Boolean> future = executorService.submit(workerRunnable);
+        workerFuture = future;
+        addCallback(future);
       }
-      addCallback();
     }
 
     private void chainWithDelay() {
       if (keepRunning()) {
-        workerFuture = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
+        ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, computeDelay(), timeUnit);
+        delayedFuture = future;
+        workerFuture = future;
+        // callback must be registered on this very future before wakeUp() is allowed to replace it, otherwise it could
+        // be registered twice on the replacing future
+        addCallback(future);
+        waitingForDelay.set(true);
       }
-      addCallback();
     }
 
-    private void addCallback() {
-      if (workerFuture != null && keepRunning()) {
-        Futures.addCallback(workerFuture, this, executorService);
+    private long computeDelay() {
+      int factor = 1 << Math.min(consecutiveEmptyPolls - 1, MAX_DELAY_FACTOR_EXPONENT);
+      return delayBetweenTasks * factor;
+    }
+
+    private void addCallback(ListenableFuture<Boolean> future) {
+      Futures.addCallback(future, this, executorService);
+    }
+
+    /**
+     * Replaces the pending delayed call, if any, by an immediate one. The delayed call is left untouched once its
+     * delay has elapsed: {@link java.util.concurrent.Future#cancel(boolean) cancelling} a call which already started
+     * does not stop it, so chaining an immediate call would make two calls of the same worker run at the same time.
+     */
+    private void wakeUp() {
+      ListenableScheduledFuture<Boolean> future = delayedFuture;
+      if (keepRunning() && waitingForDelay.compareAndSet(true, false) && future != null
+        && future.getDelay(timeUnit) > 0 && future.cancel(false)) {
+        consecutiveEmptyPolls = 0;
+        chainWithoutDelay();
       }
     }
 
@@ -129,8 +182,9 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
     public void stop() {
       this.keepRunning.set(false);
-      if (workerFuture != null) {
-        workerFuture.cancel(false);
+      ListenableFuture<Boolean> future = workerFuture;
+      if (future != null) {
+        future.cancel(false);
       }
     }
   }
@@ -21,6 +21,7 @@ package org.sonar.server.computation.taskprocessor;
 
 import com.google.common.base.Optional;
 import javax.annotation.Nullable;
+import org.sonar.api.utils.System2;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.ce.log.CeLogging;
@@ -29,6 +30,7 @@ import org.sonar.ce.queue.CeTaskResult;
 import org.sonar.ce.taskprocessor.CeTaskProcessor;
 import org.sonar.core.util.logs.Profiler;
 import org.sonar.db.ce.CeActivityDto;
+import org.sonar.server.computation.monitoring.CeWorkerStatistics;
 import org.sonar.server.computation.queue.InternalCeQueue;
 
 import static java.lang.String.format;
@@ -40,24 +42,35 @@ public class CeWorkerCallableImpl implements CeWorkerCallable {
   private final InternalCeQueue queue;
   private final CeLogging ceLogging;
   private final CeTaskProcessorRepository taskProcessorRepository;
+  private final CeWorkerStatistics workerStatistics;
+  private final System2 system2;
 
-  public CeWorkerCallableImpl(InternalCeQueue queue, CeLogging ceLogging, CeTaskProcessorRepository taskProcessorRepository) {
+  public CeWorkerCallableImpl(InternalCeQueue queue, CeLogging ceLogging, CeTaskProcessorRepository taskProcessorRepository,
+    CeWorkerStatistics workerStatistics, System2 system2) {
     this.queue = queue;
     this.ceLogging = ceLogging;
     this.taskProcessorRepository = taskProcessorRepository;
+    this.workerStatistics = workerStatistics;
+    this.system2 = system2;
   }
 
   @Override
   public Boolean call() throws Exception {
+    String workerName = Thread.currentThread().getName();
+    long claimStartedAt = system2.now();
     Optional<CeTask> ceTask = tryAndFindTaskToExecute();
+    workerStatistics.addClaim(workerName, system2.now() - claimStartedAt, ceTask.isPresent());
     if (!ceTask.isPresent()) {
       return false;
     }
 
+    long processingStartedAt = system2.now();
     try {
       executeTask(ceTask.get());
     } catch (Exception e) {
       LOG.error(format("An error occurred while executing task with uuid '%s'", ceTask.get().getUuid()), e);
+    } finally {
+      workerStatistics.addProcessing(workerName, system2.now() - processingStartedAt);
     }
     return true;
   }
@@ -0,0 +1,49 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.taskprocessor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.sonar.ce.queue.CeQueueListener;
+
+/**
+ * Signal used to wake up the idle workers of the Compute Engine as soon as tasks are submitted, either
+ * by the Compute Engine itself (as a {@link CeQueueListener}) or by the Web Server (through the HTTP
+ * server of the Compute Engine), instead of waiting for the end of their polling delay.
+ */
+public class CeWorkersWakeUp implements CeQueueListener {
+
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+  public void addListener(Runnable listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void onSubmit() {
+    wakeUp();
+  }
+
+  public void wakeUp() {
+    for (Runnable listener : listeners) {
+      listener.run();
+    }
+  }
+}
@@ -21,10 +21,14 @@ package org.sonar.server.es;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
@@ -39,6 +43,8 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.sort.SortOrder;
@@ -52,10 +58,14 @@ import static java.lang.String.format;
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
- *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk request is sent on the wire when its size is higher than 1Mb</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
+ *   <li>on large table indexing, size of bulk requests and number of concurrent requests are tuned
+ *   according to response times and rejections of Elasticsearch (see {@link BulkTuning})</li>
+ *   <li>documents rejected by Elasticsearch because its queues are full are sent again</li>
  *   <li>index refresh is optional (enabled by default)</li>
  * </ul>
+ * Throughput is recorded in {@link BulkIndexerStatistics}.
  */
 public class BulkIndexer implements Startable {
 
@@ -63,6 +73,8 @@ public class BulkIndexer implements Startable {
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
+  static final int MAX_RETRIES = 5;
+  private static final long RETRY_DELAY_MS = 50L;
 
   private final EsClient client;
   private final String indexName;
@@ -72,18 +84,24 @@ public class BulkIndexer implements Startable {
   private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
   private final int concurrentRequests;
-  private final Semaphore semaphore;
+  private final int maxConcurrentRequests;
+  private BulkTuning tuning;
+  private final Object lock = new Object();
+  private int pendingRequests = 0;
+  private final Queue<Retry> retries = new ConcurrentLinkedQueue<>();
+  private final BulkIndexerStatistics statistics;
   private final ProgressLogger progress;
 
   public BulkIndexer(EsClient client, String indexName) {
     this.client = client;
     this.indexName = indexName;
+    this.statistics = client.getBulkIndexerStatistics().forIndex(indexName);
     this.progress = new ProgressLogger(format("Progress[BulkIndexer[%s]]", indexName), counter, LOGGER)
       .setPluralLabel("requests");
 
     // see https://jira.sonarsource.com/browse/SONAR-8075
     this.concurrentRequests = Math.max(1, Runtime.getRuntime().availableProcessors() / 5);
-    this.semaphore = new Semaphore(concurrentRequests);
+    this.maxConcurrentRequests = Math.max(concurrentRequests, Runtime.getRuntime().availableProcessors() / 2);
   }
 
   public enum Size {
@@ -91,12 +109,20 @@ public class BulkIndexer implements Startable {
     REGULAR,
 
     /** Use this size for initial indexing and if you expect unusual huge numbers of documents. */
-    LARGE;
+    LARGE,
+
+    /**
+     * Use this size when a huge number of documents is split in partitions that are indexed concurrently.
+     * Requests are tuned as for {@link #LARGE}, but index settings are not changed and index is not refreshed.
+     * Caller is expected to wrap the indexing of all the partitions in a {@link #LARGE} bulk indexer.
+     */
+    LARGE_PARTITION;
   }
 
   /**
    * Large indexing is an heavy operation that populates an index generally from scratch. Replicas and
    * automatic refresh are disabled during bulk indexing and lucene segments are optimized at the end.
+   * Size and concurrency of bulk requests are adapted to the load of Elasticsearch.
    */
   public BulkIndexer setSize(Size size) {
     Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
@@ -104,6 +130,9 @@ public class BulkIndexer implements Startable {
     return this;
   }
 
+  /**
+   * Size of bulk requests. It's the initial size when indexing is {@link Size#LARGE}.
+   */
   public BulkIndexer setFlushByteSize(long flushByteSize) {
     this.flushByteSize = flushByteSize;
     return this;
@@ -130,17 +159,24 @@ public class BulkIndexer implements Startable {
       bulkSettings.put(REFRESH_INTERVAL_SETTING, "-1");
 
       updateSettings(bulkSettings);
+      tuning = BulkTuning.adaptive(flushByteSize, concurrentRequests, maxConcurrentRequests);
+    } else if (size == Size.LARGE_PARTITION) {
+      tuning = BulkTuning.adaptive(flushByteSize, concurrentRequests, maxConcurrentRequests);
+    } else {
+      tuning = BulkTuning.fixed(flushByteSize, concurrentRequests);
     }
     bulkRequest = client.prepareBulk().setRefresh(false);
     counter.set(0L);
+    statistics.onStart(System.currentTimeMillis());
     progress.start();
   }
 
   public void add(ActionRequest<?> request) {
     bulkRequest.request().add(request);
-    if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
+    if (bulkRequest.request().estimatedSizeInBytes() >= tuning.flushByteSize()) {
       executeBulk();
     }
+    executeRetries();
   }
 
   public void addDeletion(SearchRequestBuilder searchRequest) {
@@ -153,7 +189,7 @@ public class BulkIndexer implements Startable {
 
     // this search is synchronous. An optimization would be to be non-blocking,
     // but it requires to tracking pending requests in close().
-    // Same semaphore can't be reused because of potential deadlock (requires to acquire
+    // Same lock can't be reused because of potential deadlock (requires to acquire
     // two locks)
     SearchResponse searchResponse = searchRequest.get();
 
@@ -203,15 +239,12 @@ public class BulkIndexer implements Startable {
     if (bulkRequest.numberOfActions() > 0) {
       executeBulk();
     }
-    try {
-      if (semaphore.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
-        semaphore.release(concurrentRequests);
-      }
-    } catch (InterruptedException e) {
-      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
-    }
+    awaitPendingRequests();
     progress.stop();
-    client.prepareRefresh(indexName).get();
+    statistics.onStop(System.currentTimeMillis());
+    if (size != Size.LARGE_PARTITION) {
+      client.prepareRefresh(indexName).get();
+    }
     if (size == Size.LARGE) {
       // optimize lucene segments and revert index settings
       // Optimization must be done before re-applying replicas:
@@ -223,6 +256,33 @@ public class BulkIndexer implements Startable {
     bulkRequest = null;
   }
 
+  /**
+   * Waits for the responses of pending requests, including the retries of rejected documents.
+   */
+  private void awaitPendingRequests() {
+    long timeoutAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
+    while (true) {
+      executeRetries();
+      synchronized (lock) {
+        if (pendingRequests == 0 && retries.isEmpty()) {
+          return;
+        }
+        long remaining = timeoutAt - System.currentTimeMillis();
+        if (remaining <= 0L) {
+          throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes");
+        }
+        try {
+          if (retries.isEmpty()) {
+            lock.wait(remaining);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while waiting for Elasticsearch bulk requests", e);
+        }
+      }
+    }
+  }
+
   private void updateSettings(Map<String, Object> settings) {
     UpdateSettingsRequestBuilder req = client.nativeClient().admin().indices().prepareUpdateSettings(indexName);
     req.setSettings(settings);
@@ -232,33 +292,130 @@ public class BulkIndexer implements Startable {
   private void executeBulk() {
     final BulkRequestBuilder req = this.bulkRequest;
     this.bulkRequest = client.prepareBulk().setRefresh(false);
-    semaphore.acquireUninterruptibly();
-    req.execute(new BulkResponseActionListener(req));
+    execute(req, 0);
+  }
+
+  private void executeRetries() {
+    Retry retry = retries.poll();
+    while (retry != null) {
+      sleep(RETRY_DELAY_MS << (retry.attempt - 1));
+      statistics.onRetry();
+      BulkRequestBuilder req = client.prepareBulk().setRefresh(false);
+      retry.requests.forEach(req.request()::add);
+      execute(req, retry.attempt);
+      retry = retries.poll();
+    }
+  }
+
+  private void execute(BulkRequestBuilder req, int attempt) {
+    acquire();
+    req.execute(new BulkResponseActionListener(req, attempt, System.currentTimeMillis()));
+  }
+
+  /**
+   * Blocks until the number of pending requests is lower than the limit defined by {@link BulkTuning}
+   */
+  private void acquire() {
+    boolean interrupted = false;
+    synchronized (lock) {
+      while (pendingRequests >= tuning.concurrentRequests()) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      pendingRequests++;
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void release() {
+    synchronized (lock) {
+      pendingRequests--;
+      lock.notifyAll();
+    }
+  }
+
+  private static void sleep(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static boolean isRejection(Throwable e) {
+    return ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException;
+  }
+
+  private static class Retry {
+    private final List<ActionRequest> requests;
+    private final int attempt;
+
+    Retry(List<ActionRequest> requests, int attempt) {
+      this.requests = requests;
+      this.attempt = attempt;
+    }
   }
 
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
     private final BulkRequestBuilder req;
+    private final int attempt;
+    private final long startedAt;
+    private final long bytes;
 
-    BulkResponseActionListener(BulkRequestBuilder req) {
+    BulkResponseActionListener(BulkRequestBuilder req, int attempt, long startedAt) {
       this.req = req;
+      this.attempt = attempt;
+      this.startedAt = startedAt;
+      this.bytes = req.request().estimatedSizeInBytes();
     }
 
     @Override
     public void onResponse(BulkResponse response) {
-      semaphore.release();
-      counter.addAndGet(response.getItems().length);
-
-      for (BulkItemResponse item : response.getItems()) {
-        if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+      try {
+        List<ActionRequest> rejected = new ArrayList<>();
+        int failures = 0;
+        for (BulkItemResponse item : response.getItems()) {
+          if (!item.isFailed()) {
+            continue;
+          }
+          if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS && attempt < MAX_RETRIES) {
+            rejected.add(req.request().requests().get(item.getItemId()));
+          } else {
+            failures++;
+            LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          }
         }
+        int items = response.getItems().length;
+        counter.addAndGet(items - rejected.size());
+        statistics.onBulkResponse(items - rejected.size() - failures, bytes, rejected.size(), failures);
+        tuning.onResponse(System.currentTimeMillis() - startedAt, rejected.size());
+        if (!rejected.isEmpty()) {
+          retries.add(new Retry(rejected, attempt + 1));
+        }
+      } finally {
+        release();
       }
     }
 
     @Override
     public void onFailure(Throwable e) {
-      semaphore.release();
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+      try {
+        if (isRejection(e) && attempt < MAX_RETRIES) {
+          tuning.onResponse(System.currentTimeMillis() - startedAt, req.request().numberOfActions());
+          statistics.onBulkResponse(0, 0, req.request().numberOfActions(), 0);
+          retries.add(new Retry(new ArrayList<>(req.request().requests()), attempt + 1));
+        } else {
+          statistics.onFailure(req.request().numberOfActions());
+          LOGGER.error("Fail to execute bulk index request: " + req, e);
+        }
+      } finally {
+        release();
+      }
     }
   }
 }
@@ -0,0 +1,132 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of {@link BulkIndexer} on an index, since startup of the process. Statistics are
+ * shared by all the instances of {@link BulkIndexer} of the index, see {@link BulkIndexerStatisticsRegistry}.
+ */
+public class BulkIndexerStatistics {
+
+  private final String indexName;
+  private final AtomicLong docs = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong rejections = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong durationMs = new AtomicLong();
+  private int activeIndexers = 0;
+  private long activeSince = 0L;
+
+  BulkIndexerStatistics(String indexName) {
+    this.indexName = indexName;
+  }
+
+  void onBulkResponse(long docs, long bytes, long rejections, long failures) {
+    this.requests.incrementAndGet();
+    this.docs.addAndGet(docs);
+    this.bytes.addAndGet(bytes);
+    this.rejections.addAndGet(rejections);
+    this.failures.addAndGet(failures);
+  }
+
+  void onRetry() {
+    retries.incrementAndGet();
+  }
+
+  void onFailure(long docs) {
+    requests.incrementAndGet();
+    failures.addAndGet(docs);
+  }
+
+  /**
+   * Duration is the wall-clock time during which at least one {@link BulkIndexer} of the index
+   * is started, so that concurrent indexers are not counted twice.
+   */
+  synchronized void onStart(long now) {
+    if (activeIndexers == 0) {
+      activeSince = now;
+    }
+    activeIndexers++;
+  }
+
+  synchronized void onStop(long now) {
+    activeIndexers--;
+    if (activeIndexers == 0) {
+      durationMs.addAndGet(now - activeSince);
+    }
+  }
+
+  public String getIndexName() {
+    return indexName;
+  }
+
+  /**
+   * Number of documents successfully indexed or deleted
+   */
+  public long getDocs() {
+    return docs.get();
+  }
+
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  /**
+   * Number of bulk requests, including retries
+   */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * Number of documents rejected by Elasticsearch because its queues are full (HTTP status 429)
+   */
+  public long getRejections() {
+    return rejections.get();
+  }
+
+  public long getRetries() {
+    return retries.get();
+  }
+
+  public long getFailures() {
+    return failures.get();
+  }
+
+  public long getDocsPerSecond() {
+    return perSecond(docs.get());
+  }
+
+  public long getBytesPerSecond() {
+    return perSecond(bytes.get());
+  }
+
+  private long perSecond(long value) {
+    long duration = durationMs.get();
+    if (duration <= 0L) {
+      return 0L;
+    }
+    return value * 1_000L / duration;
+  }
+}
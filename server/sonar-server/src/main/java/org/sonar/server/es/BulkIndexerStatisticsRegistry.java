@@ -0,0 +1,52 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.server.ServerSide;
+
+/**
+ * Throughput of {@link BulkIndexer} per index, since startup of the process. The registry is shared
+ * by all the instances of {@link BulkIndexer} through the {@link EsClient} they use.
+ */
+@ComputeEngineSide
+@ServerSide
+public class BulkIndexerStatisticsRegistry {
+
+  private final ConcurrentMap<String, BulkIndexerStatistics> statisticsPerIndex = new ConcurrentHashMap<>();
+
+  public BulkIndexerStatistics forIndex(String indexName) {
+    return statisticsPerIndex.computeIfAbsent(indexName, BulkIndexerStatistics::new);
+  }
+
+  /**
+   * Statistics of all the indices that have been fed by {@link BulkIndexer}, sorted by index name
+   */
+  public List<BulkIndexerStatistics> all() {
+    List<BulkIndexerStatistics> result = new ArrayList<>(statisticsPerIndex.values());
+    result.sort(Comparator.comparing(BulkIndexerStatistics::getIndexName));
+    return result;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Size and concurrency of the bulk requests sent by {@link BulkIndexer}. When adaptive, values are
+ * tuned after each response:
+ * <ul>
+ *   <li>rejections by Elasticsearch halve both the size of requests and the number of concurrent requests</li>
+ *   <li>slow responses decrease the size of requests</li>
+ *   <li>fast responses increase the size of requests and the number of concurrent requests</li>
+ * </ul>
+ * Methods are called from both the thread feeding the indexer and the Elasticsearch response threads.
+ */
+class BulkTuning {
+
+  static final long MIN_FLUSH_BYTE_SIZE = 256L * 1024;
+  static final long MAX_FLUSH_BYTE_SIZE = 16L * 1024 * 1024;
+  static final long FAST_RESPONSE_TIME_MS = 500L;
+  static final long SLOW_RESPONSE_TIME_MS = 2_000L;
+
+  private final boolean adaptive;
+  private final long minFlushByteSize;
+  private final long maxFlushByteSize;
+  private final int maxConcurrentRequests;
+  private long flushByteSize;
+  private int concurrentRequests;
+
+  private BulkTuning(boolean adaptive, long flushByteSize, int concurrentRequests, int maxConcurrentRequests) {
+    this.adaptive = adaptive;
+    this.flushByteSize = flushByteSize;
+    this.minFlushByteSize = min(flushByteSize, MIN_FLUSH_BYTE_SIZE);
+    this.maxFlushByteSize = max(flushByteSize, MAX_FLUSH_BYTE_SIZE);
+    this.concurrentRequests = concurrentRequests;
+    this.maxConcurrentRequests = max(concurrentRequests, maxConcurrentRequests);
+  }
+
+  static BulkTuning fixed(long flushByteSize, int concurrentRequests) {
+    return new BulkTuning(false, flushByteSize, concurrentRequests, concurrentRequests);
+  }
+
+  static BulkTuning adaptive(long initialFlushByteSize, int initialConcurrentRequests, int maxConcurrentRequests) {
+    return new BulkTuning(true, initialFlushByteSize, initialConcurrentRequests, maxConcurrentRequests);
+  }
+
+  boolean isAdaptive() {
+    return adaptive;
+  }
+
+  synchronized long flushByteSize() {
+    return flushByteSize;
+  }
+
+  synchronized int concurrentRequests() {
+    return concurrentRequests;
+  }
+
+  synchronized void onResponse(long responseTimeMs, int rejections) {
+    if (!adaptive) {
+      return;
+    }
+    if (rejections > 0) {
+      flushByteSize = max(minFlushByteSize, flushByteSize / 2);
+      concurrentRequests = max(1, concurrentRequests / 2);
+    } else if (responseTimeMs >= SLOW_RESPONSE_TIME_MS) {
+      flushByteSize = max(minFlushByteSize, flushByteSize * 3 / 4);
+    } else if (responseTimeMs <= FAST_RESPONSE_TIME_MS) {
+      flushByteSize = min(maxFlushByteSize, flushByteSize * 5 / 4);
+      concurrentRequests = min(maxConcurrentRequests, concurrentRequests + 1);
+    }
+  }
+}
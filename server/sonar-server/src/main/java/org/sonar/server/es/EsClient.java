@@ -79,9 +79,15 @@ public class EsClient implements Closeable {
   public static final Logger LOGGER = Loggers.get("es");
 
   private final Client nativeClient;
+  private final BulkIndexerStatisticsRegistry bulkIndexerStatistics;
 
   public EsClient(Client nativeClient) {
+    this(nativeClient, new BulkIndexerStatisticsRegistry());
+  }
+
+  public EsClient(Client nativeClient, BulkIndexerStatisticsRegistry bulkIndexerStatistics) {
     this.nativeClient = requireNonNull(nativeClient);
+    this.bulkIndexerStatistics = requireNonNull(bulkIndexerStatistics);
   }
 
   public RefreshRequestBuilder prepareRefresh(String... indices) {
@@ -202,6 +208,13 @@ public class EsClient implements Closeable {
     return nativeClient;
   }
 
+  /**
+   * Statistics recorded by the instances of {@link BulkIndexer} using this client.
+   */
+  public BulkIndexerStatisticsRegistry getBulkIndexerStatistics() {
+    return bulkIndexerStatistics;
+  }
+
   /**
    * Checks whether there is any document in any mentioned type.
    */
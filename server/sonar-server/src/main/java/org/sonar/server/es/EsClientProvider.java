@@ -43,7 +43,7 @@ public class EsClientProvider extends ProviderAdapter {
 
   private EsClient cache;
 
-  public EsClient provide(Settings settings) {
+  public EsClient provide(Settings settings, BulkIndexerStatisticsRegistry bulkIndexerStatistics) {
     if (cache == null) {
       TransportClient nativeClient;
       org.elasticsearch.common.settings.Settings.Builder esSettings = org.elasticsearch.common.settings.Settings.builder();
@@ -66,7 +66,7 @@ public class EsClientProvider extends ProviderAdapter {
         LOGGER.info("Connected to local Elasticsearch: [{}]", displayedAddresses(nativeClient));
       }
 
-      cache = new EsClient(nativeClient);
+      cache = new EsClient(nativeClient, bulkIndexerStatistics);
     }
     return cache;
   }
@@ -0,0 +1,89 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contiguous range of project UUIDs, in the order returned by the database, which issues
+ * are indexed together during startup indexing.
+ */
+class IssueIndexPartition {
+
+  private final String firstProjectUuid;
+  private final String lastProjectUuid;
+  private final long issues;
+
+  IssueIndexPartition(String firstProjectUuid, String lastProjectUuid, long issues) {
+    this.firstProjectUuid = firstProjectUuid;
+    this.lastProjectUuid = lastProjectUuid;
+    this.issues = issues;
+  }
+
+  String getFirstProjectUuid() {
+    return firstProjectUuid;
+  }
+
+  String getLastProjectUuid() {
+    return lastProjectUuid;
+  }
+
+  long getIssues() {
+    return issues;
+  }
+
+  /**
+   * Splits projects in at most {@code maxPartitions} partitions with roughly the same number of issues.
+   *
+   * @param issuesPerProject number of issues per project UUID, ordered by project UUID
+   */
+  static List<IssueIndexPartition> split(Map<String, Long> issuesPerProject, int maxPartitions) {
+    long total = issuesPerProject.values().stream().mapToLong(Long::longValue).sum();
+    long target = Math.max(1L, (total + maxPartitions - 1) / maxPartitions);
+
+    List<IssueIndexPartition> partitions = new ArrayList<>();
+    String first = null;
+    String last = null;
+    long issues = 0L;
+    for (Map.Entry<String, Long> entry : issuesPerProject.entrySet()) {
+      if (first == null) {
+        first = entry.getKey();
+      }
+      last = entry.getKey();
+      issues += entry.getValue();
+      if (issues >= target) {
+        partitions.add(new IssueIndexPartition(first, last, issues));
+        first = null;
+        issues = 0L;
+      }
+    }
+    if (first != null) {
+      partitions.add(new IssueIndexPartition(first, last, issues));
+    }
+    return partitions;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + firstProjectUuid + ".." + lastProjectUuid + "]";
+  }
+}
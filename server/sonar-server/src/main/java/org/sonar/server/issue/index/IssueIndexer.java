@@ -20,15 +20,27 @@
 package org.sonar.server.issue.index;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.BulkIndexer.Size;
 import org.sonar.server.es.EsClient;
@@ -46,16 +58,22 @@ import static org.sonar.server.issue.index.IssueIndexDefinition.INDEX_TYPE_ISSUE
 
 public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, StartupIndexer {
 
+  private static final Logger LOGGER = Loggers.get(IssueIndexer.class);
   private static final String DELETE_ERROR_MESSAGE = "Fail to delete some issues of project [%s]";
   private static final int MAX_BATCH_SIZE = 1000;
   private static final AuthorizationScope AUTHORIZATION_SCOPE = new AuthorizationScope(INDEX_TYPE_ISSUE, project -> Qualifiers.PROJECT.equals(project.getQualifier()));
+  private static final int PARTITIONS_PER_THREAD = 4;
 
   private final EsClient esClient;
+  private final DbClient dbClient;
   private final IssueIteratorFactory issueIteratorFactory;
+  private final int threads;
 
-  public IssueIndexer(EsClient esClient, IssueIteratorFactory issueIteratorFactory) {
+  public IssueIndexer(EsClient esClient, DbClient dbClient, IssueIteratorFactory issueIteratorFactory) {
     this.esClient = esClient;
+    this.dbClient = dbClient;
     this.issueIteratorFactory = issueIteratorFactory;
+    this.threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
   }
 
   @Override
@@ -70,7 +88,66 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, S
 
   @Override
   public void indexOnStartup(Set<IndexType> emptyIndexTypes) {
-    doIndex(createBulkIndexer(Size.LARGE), (String) null);
+    indexAll();
+  }
+
+  /**
+   * Indexes all the issues. Issues are split in partitions of projects that are read from database and indexed
+   * concurrently, each one with its own DB connection and bulk indexer. Completed partitions are recorded
+   * by {@link IssueIndexingProgress}, so that indexing continues where it stopped if the server is restarted.
+   */
+  public void indexAll() {
+    IssueIndexingProgress progress = IssueIndexingProgress.load(dbClient, indexUuid());
+    Map<String, Long> issuesPerProject = progress.removeCompleted(issueIteratorFactory.countIssuesPerProject());
+    List<IssueIndexPartition> partitions = IssueIndexPartition.split(issuesPerProject, threads * PARTITIONS_PER_THREAD);
+    if (progress.hasCompletedPartitions()) {
+      LOGGER.info("Resume indexing of issues: {} projects remaining", issuesPerProject.size());
+    }
+
+    // disables replicas and refresh of index during indexing of partitions
+    BulkIndexer bulk = createBulkIndexer(Size.LARGE);
+    bulk.start();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("IssueIndexer-%d").build());
+    try {
+      AtomicInteger done = new AtomicInteger();
+      List<Future<?>> futures = new ArrayList<>();
+      for (IssueIndexPartition partition : partitions) {
+        futures.add(executor.submit(() -> {
+          indexPartition(partition);
+          progress.markCompleted(partition);
+          LOGGER.info("{}/{} partitions of issues indexed", done.incrementAndGet(), partitions.size());
+        }));
+      }
+      awaitTermination(futures);
+    } finally {
+      executor.shutdownNow();
+      bulk.stop();
+    }
+    progress.clear();
+  }
+
+  private void indexPartition(IssueIndexPartition partition) {
+    try (IssueIterator issues = issueIteratorFactory.createForPartition(partition)) {
+      doIndex(createBulkIndexer(Size.LARGE_PARTITION), issues);
+    }
+  }
+
+  private static void awaitTermination(List<Future<?>> futures) {
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while indexing issues", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to index issues", e.getCause());
+    }
+  }
+
+  private String indexUuid() {
+    String index = INDEX_TYPE_ISSUE.getIndex();
+    return esClient.nativeClient().admin().indices().prepareGetSettings(index).get().getSetting(index, IndexMetaData.SETTING_INDEX_UUID);
   }
 
   @Override
@@ -0,0 +1,124 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Partitions already indexed by a startup indexing that did not complete, for example because the server
+ * was stopped. Progress is persisted in table INTERNAL_PROPERTIES, so that a restart continues where indexing
+ * stopped. It's valid only for the index it was recorded for, identified by the UUID of the index, so that
+ * progress is ignored if index is dropped and re-created.
+ */
+class IssueIndexingProgress {
+
+  static final String PROPERTY_KEY = "issues.startupIndexing.progress";
+  private static final String INDEX_SEPARATOR = ";";
+  private static final String PARTITION_SEPARATOR = ",";
+  private static final String UUID_SEPARATOR = ":";
+
+  private final DbClient dbClient;
+  private final String indexUuid;
+  private final List<IssueIndexPartition> completed;
+
+  private IssueIndexingProgress(DbClient dbClient, String indexUuid, List<IssueIndexPartition> completed) {
+    this.dbClient = dbClient;
+    this.indexUuid = indexUuid;
+    this.completed = completed;
+  }
+
+  static IssueIndexingProgress load(DbClient dbClient, String indexUuid) {
+    Optional<String> value;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      value = dbClient.internalPropertiesDao().selectByKey(dbSession, PROPERTY_KEY);
+    }
+    List<IssueIndexPartition> completed = new ArrayList<>();
+    if (value.isPresent() && value.get().startsWith(indexUuid + INDEX_SEPARATOR)) {
+      String partitions = value.get().substring(indexUuid.length() + INDEX_SEPARATOR.length());
+      for (String partition : partitions.split(PARTITION_SEPARATOR)) {
+        String[] uuids = partition.split(UUID_SEPARATOR);
+        if (uuids.length == 2) {
+          completed.add(new IssueIndexPartition(uuids[0], uuids[1], 0L));
+        }
+      }
+    }
+    return new IssueIndexingProgress(dbClient, indexUuid, completed);
+  }
+
+  boolean hasCompletedPartitions() {
+    return !completed.isEmpty();
+  }
+
+  /**
+   * Removes the projects that are included in completed partitions. Bounds of partitions are located by
+   * position in {@code issuesPerProject}, so the comparison of UUIDs does not depend on the collation of the database.
+   * A partition which bounds do not exist anymore is considered as not completed.
+   *
+   * @param issuesPerProject number of issues per project UUID, ordered by project UUID
+   */
+  Map<String, Long> removeCompleted(Map<String, Long> issuesPerProject) {
+    List<String> projectUuids = new ArrayList<>(issuesPerProject.keySet());
+    boolean[] done = new boolean[projectUuids.size()];
+    for (IssueIndexPartition partition : completed) {
+      int first = projectUuids.indexOf(partition.getFirstProjectUuid());
+      int last = projectUuids.lastIndexOf(partition.getLastProjectUuid());
+      if (first >= 0 && last >= first) {
+        for (int i = first; i <= last; i++) {
+          done[i] = true;
+        }
+      }
+    }
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (int i = 0; i < done.length; i++) {
+      if (!done[i]) {
+        String projectUuid = projectUuids.get(i);
+        result.put(projectUuid, issuesPerProject.get(projectUuid));
+      }
+    }
+    return result;
+  }
+
+  synchronized void markCompleted(IssueIndexPartition partition) {
+    completed.add(partition);
+    String value = indexUuid + INDEX_SEPARATOR + completed.stream()
+      .map(p -> p.getFirstProjectUuid() + UUID_SEPARATOR + p.getLastProjectUuid())
+      .collect(joining(PARTITION_SEPARATOR));
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.internalPropertiesDao().save(dbSession, PROPERTY_KEY, value);
+      dbSession.commit();
+    }
+  }
+
+  synchronized void clear() {
+    completed.clear();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.internalPropertiesDao().saveAsEmpty(dbSession, PROPERTY_KEY);
+      dbSession.commit();
+    }
+  }
+}
@@ -19,12 +19,20 @@
  */
 package org.sonar.server.issue.index;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.annotation.Nullable;
 import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
 
 public class IssueIteratorFactory {
 
+  private static final String SQL_COUNT_PER_PROJECT = "select i.project_uuid, count(i.id) from issues i group by i.project_uuid order by i.project_uuid";
+
   private final DbClient dbClient;
 
   public IssueIteratorFactory(DbClient dbClient) {
@@ -42,4 +50,28 @@ public class IssueIteratorFactory {
   public IssueIterator createForIssueKeys(Collection<String> issueKeys) {
     return new IssueIteratorForMultipleChunks(dbClient, issueKeys);
   }
+
+  IssueIterator createForPartition(IssueIndexPartition partition) {
+    return new IssueIteratorForSingleChunk(dbClient, partition);
+  }
+
+  /**
+   * Number of issues per project UUID, ordered by project UUID as sorted by the database
+   */
+  Map<String, Long> countIssuesPerProject() {
+    Map<String, Long> result = new LinkedHashMap<>();
+    try (DbSession dbSession = dbClient.openSession(false);
+      PreparedStatement stmt = dbSession.getConnection().prepareStatement(SQL_COUNT_PER_PROJECT);
+      ResultSet rs = stmt.executeQuery()) {
+      while (rs.next()) {
+        String projectUuid = rs.getString(1);
+        if (projectUuid != null) {
+          result.put(projectUuid, rs.getLong(2));
+        }
+      }
+      return result;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to count issues per project", e);
+    }
+  }
 }
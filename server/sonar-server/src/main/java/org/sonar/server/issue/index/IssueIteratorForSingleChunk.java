@@ -93,6 +93,7 @@ class IssueIteratorForSingleChunk implements IssueIterator {
     "inner join projects root on root.uuid=i.project_uuid";
 
   private static final String PROJECT_FILTER = " AND root.uuid=?";
+  private static final String PARTITION_FILTER = " AND root.uuid>=? AND root.uuid<=?";
   private static final String ISSUE_KEY_FILTER_PREFIX = " AND i.kee IN (";
   private static final String ISSUE_KEY_FILTER_SUFFIX = ")";
 
@@ -107,14 +108,27 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   @CheckForNull
   private final Collection<String> issueKeys;
 
+  @CheckForNull
+  private final IssueIndexPartition partition;
+
   private final PreparedStatement stmt;
   private final ResultSetIterator<IssueDoc> iterator;
 
   IssueIteratorForSingleChunk(DbClient dbClient, @Nullable String projectUuid, @Nullable Collection<String> issueKeys) {
+    this(dbClient, projectUuid, issueKeys, null);
+  }
+
+  IssueIteratorForSingleChunk(DbClient dbClient, IssueIndexPartition partition) {
+    this(dbClient, null, null, partition);
+  }
+
+  private IssueIteratorForSingleChunk(DbClient dbClient, @Nullable String projectUuid, @Nullable Collection<String> issueKeys,
+    @Nullable IssueIndexPartition partition) {
     checkArgument(issueKeys == null || issueKeys.size() <= DatabaseUtils.PARTITION_SIZE_FOR_ORACLE,
       "Cannot search for more than " + DatabaseUtils.PARTITION_SIZE_FOR_ORACLE + " issue keys at once. Please provide the keys in smaller chunks.");
     this.projectUuid = projectUuid;
     this.issueKeys = issueKeys;
+    this.partition = partition;
     this.session = dbClient.openSession(false);
 
     try {
@@ -150,6 +164,7 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   private String createSql() {
     String sql = SQL_ALL;
     sql += projectUuid == null ? "" : PROJECT_FILTER;
+    sql += partition == null ? "" : PARTITION_FILTER;
     if (issueKeys != null && !issueKeys.isEmpty()) {
       sql += ISSUE_KEY_FILTER_PREFIX;
       sql += IntStream.range(0, issueKeys.size()).mapToObj(i -> "?").collect(Collectors.joining(","));
@@ -164,6 +179,12 @@ class IssueIteratorForSingleChunk implements IssueIterator {
       stmt.setString(index, projectUuid);
       index++;
     }
+    if (partition != null) {
+      stmt.setString(index, partition.getFirstProjectUuid());
+      index++;
+      stmt.setString(index, partition.getLastProjectUuid());
+      index++;
+    }
     if (issueKeys != null) {
       for (String key : issueKeys) {
         stmt.setString(index, key);
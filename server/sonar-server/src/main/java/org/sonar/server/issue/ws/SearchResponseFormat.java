@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -65,13 +66,15 @@ public class SearchResponseFormat {
     this.languages = languages;
   }
 
+  /**
+   * Response of api/issues/search without the issues, see {@link #formatSearchIssues(Set, SearchResponseData)}
+   */
   public Issues.SearchWsResponse formatSearch(Set<SearchAdditionalField> fields, SearchResponseData data,
     Paging paging, @Nullable Facets facets) {
     Issues.SearchWsResponse.Builder response = Issues.SearchWsResponse.newBuilder();
 
     formatPaging(paging, response);
     formatEffortTotal(data, response);
-    response.addAllIssues(formatIssues(fields, data));
     response.addAllComponents(formatComponents(data));
     if (facets != null) {
       formatFacets(facets, response);
@@ -121,24 +124,28 @@ public class SearchResponseFormat {
     response.setPaging(commonFormat.formatPaging(paging));
   }
 
-  private List<Issues.Issue> formatIssues(Set<SearchAdditionalField> fields, SearchResponseData data) {
-    List<Issues.Issue> result = new ArrayList<>();
+  /**
+   * Issues of api/issues/search. They are formatted one by one while being iterated, so that they can be written
+   * to the response without being all kept in memory.
+   */
+  public Iterator<Issues.Issue> formatSearchIssues(Set<SearchAdditionalField> fields, SearchResponseData data) {
     Issues.Issue.Builder issueBuilder = Issues.Issue.newBuilder();
-    for (IssueDto dto : data.getIssues()) {
-      issueBuilder.clear();
-      formatIssue(issueBuilder, dto, data);
-      if (fields.contains(SearchAdditionalField.ACTIONS)) {
-        formatIssueActions(data, issueBuilder, dto);
-      }
-      if (fields.contains(SearchAdditionalField.TRANSITIONS)) {
-        formatIssueTransitions(data, issueBuilder, dto);
-      }
-      if (fields.contains(SearchAdditionalField.COMMENTS)) {
-        formatIssueComments(data, issueBuilder, dto);
-      }
-      result.add(issueBuilder.build());
-    }
-    return result;
+    return data.getIssues().stream()
+      .map(dto -> {
+        issueBuilder.clear();
+        formatIssue(issueBuilder, dto, data);
+        if (fields.contains(SearchAdditionalField.ACTIONS)) {
+          formatIssueActions(data, issueBuilder, dto);
+        }
+        if (fields.contains(SearchAdditionalField.TRANSITIONS)) {
+          formatIssueTransitions(data, issueBuilder, dto);
+        }
+        if (fields.contains(SearchAdditionalField.COMMENTS)) {
+          formatIssueComments(data, issueBuilder, dto);
+        }
+        return issueBuilder.build();
+      })
+      .iterator();
   }
 
   private void formatIssue(Issues.Issue.Builder issueBuilder, IssueDto dto, SearchResponseData data) {
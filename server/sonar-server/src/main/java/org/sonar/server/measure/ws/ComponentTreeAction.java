@@ -21,6 +21,7 @@ package org.sonar.server.measure.ws;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import org.sonar.api.i18n.I18n;
@@ -185,23 +186,28 @@ public class ComponentTreeAction implements MeasuresWsAction {
 
   @Override
   public void handle(Request request, Response response) throws Exception {
-    ComponentTreeWsResponse componentTreeWsResponse = doHandle(toComponentTreeWsRequest(request));
-    writeProtobuf(componentTreeWsResponse, request, response);
-  }
-
-  private ComponentTreeWsResponse doHandle(ComponentTreeWsRequest request) {
-    ComponentTreeData data = dataLoader.load(request);
+    ComponentTreeWsRequest wsRequest = toComponentTreeWsRequest(request);
+    ComponentTreeData data = dataLoader.load(wsRequest);
     if (data.getComponents() == null) {
-      return emptyResponse(data.getBaseComponent(), request);
+      writeProtobuf(emptyResponse(data.getBaseComponent(), wsRequest), request, response);
+      return;
     }
 
-    return buildResponse(
-      request,
+    ComponentTreeWsResponse componentTreeWsResponse = buildResponse(
+      wsRequest,
       data,
       Paging.forPageIndex(
-        request.getPage())
-        .withPageSize(request.getPageSize())
+        wsRequest.getPage())
+        .withPageSize(wsRequest.getPageSize())
         .andTotal(data.getComponentCount()));
+    // components are the largest part of the response, they are converted while being written
+    Iterator<WsMeasures.Component> components = data.getComponents().stream()
+      .map(componentDto -> componentDtoToWsComponent(
+        componentDto,
+        data.getMeasuresByComponentUuidAndMetric().row(componentDto.uuid()),
+        data.getReferenceComponentsByUuid()))
+      .iterator();
+    writeProtobuf(componentTreeWsResponse, ComponentTreeWsResponse.COMPONENTS_FIELD_NUMBER, components, request, response);
   }
 
   private static ComponentTreeWsResponse buildResponse(ComponentTreeWsRequest request, ComponentTreeData data, Paging paging) {
@@ -218,13 +224,6 @@ public class ComponentTreeAction implements MeasuresWsAction {
         data.getMeasuresByComponentUuidAndMetric().row(data.getBaseComponent().uuid()),
         data.getReferenceComponentsByUuid()));
 
-    for (ComponentDto componentDto : data.getComponents()) {
-      response.addComponents(componentDtoToWsComponent(
-        componentDto,
-        data.getMeasuresByComponentUuidAndMetric().row(componentDto.uuid()),
-        data.getReferenceComponentsByUuid()));
-    }
-
     if (areMetricsInResponse(request)) {
       WsMeasures.Metrics.Builder metricsBuilder = response.getMetricsBuilder();
       for (MetricDto metricDto : data.getMetrics()) {
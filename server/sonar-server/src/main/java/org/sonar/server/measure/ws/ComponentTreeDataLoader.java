@@ -50,9 +50,10 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
+import org.sonar.db.component.ComponentTreeQuery.MeasureSort;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.measure.MeasureDto;
-import org.sonar.db.measure.MeasureTreeQuery;
+import org.sonar.db.measure.MeasureQuery;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricDtoFunctions;
 import org.sonar.server.component.ComponentFinder;
@@ -69,6 +70,8 @@ import static org.sonar.api.utils.Paging.offset;
 import static org.sonar.server.component.ComponentFinder.ParamNames.BASE_COMPONENT_ID_AND_KEY;
 import static org.sonar.server.component.ComponentFinder.ParamNames.DEVELOPER_ID_AND_KEY;
 import static org.sonar.server.measure.ws.ComponentTreeAction.LEAVES_STRATEGY;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_PERIOD_SORT;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.STRATEGIES;
 import static org.sonar.server.measure.ws.ComponentTreeAction.WITH_MEASURES_ONLY_METRIC_SORT_FILTER;
 import static org.sonar.server.measure.ws.SnapshotDtoToWsPeriods.snapshotToWsPeriods;
@@ -100,17 +103,12 @@ public class ComponentTreeDataLoader {
       }
       Long developerId = searchDeveloperId(dbSession, wsRequest);
 
-      ComponentTreeQuery componentTreeQuery = toComponentTreeQuery(wsRequest, baseComponent);
-      List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery);
       List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
-      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery, components,
-        metrics, developerId);
-
-      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
-      components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
-
-      int componentCount = components.size();
-      components = paginateComponents(components, wsRequest);
+      ComponentTreeQuery componentTreeQuery = toComponentTreeQuery(wsRequest, baseComponent, baseSnapshot.get(), metrics, developerId);
+      int componentCount = countComponents(dbSession, componentTreeQuery);
+      List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery, wsRequest);
+      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, components, metrics,
+        developerId);
 
       return ComponentTreeData.builder()
         .setBaseComponent(baseComponent)
@@ -146,12 +144,24 @@ public class ComponentTreeDataLoader {
       .uniqueIndex(ComponentDto::uuid);
   }
 
-  private List<ComponentDto> searchComponents(DbSession dbSession, ComponentTreeQuery componentTreeQuery) {
+  private int countComponents(DbSession dbSession, ComponentTreeQuery componentTreeQuery) {
+    Collection<String> qualifiers = componentTreeQuery.getQualifiers();
+    if (qualifiers != null && qualifiers.isEmpty()) {
+      return 0;
+    }
+    return dbClient.componentDao().countDescendants(dbSession, componentTreeQuery);
+  }
+
+  /**
+   * Components are filtered, sorted and paginated by the database, so that only the components of the requested page
+   * are loaded.
+   */
+  private List<ComponentDto> searchComponents(DbSession dbSession, ComponentTreeQuery componentTreeQuery, ComponentTreeWsRequest wsRequest) {
     Collection<String> qualifiers = componentTreeQuery.getQualifiers();
     if (qualifiers != null && qualifiers.isEmpty()) {
       return Collections.emptyList();
     }
-    return dbClient.componentDao().selectDescendants(dbSession, componentTreeQuery);
+    return dbClient.componentDao().selectDescendants(dbSession, componentTreeQuery, offset(wsRequest.getPage(), wsRequest.getPageSize()), wsRequest.getPageSize());
   }
 
   private List<MetricDto> searchMetrics(DbSession dbSession, ComponentTreeWsRequest request) {
@@ -169,20 +179,59 @@ public class ComponentTreeDataLoader {
     return metrics;
   }
 
-  private Table<String, MetricDto, MeasureDto> searchMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent, ComponentTreeQuery componentTreeQuery,
-    List<ComponentDto> components, List<MetricDto> metrics, @Nullable Long developerId) {
+  private static Optional<MetricDto> searchMetricToSort(List<MetricDto> metrics, ComponentTreeWsRequest wsRequest) {
+    String metricKeyToSort = wsRequest.getMetricSort();
+    List<String> sorts = wsRequest.getSort();
+    boolean isSortedByMetric = sorts != null && (sorts.contains(METRIC_SORT) || sorts.contains(METRIC_PERIOD_SORT));
+    if (metricKeyToSort == null || !(isSortedByMetric || componentWithMeasuresOnly(wsRequest))) {
+      return Optional.empty();
+    }
+    return metrics.stream().filter(m -> metricKeyToSort.equals(m.getKey())).findFirst();
+  }
+
+  /**
+   * The measure of the metric used to filter and sort the components is joined to the components in the query, with the
+   * same best value as the one returned for files, see {@link #addBestValuesToMeasures}.
+   */
+  @CheckForNull
+  private static MeasureSort toMeasureSort(ComponentTreeWsRequest wsRequest, Optional<MetricDto> metricToSort, SnapshotDto baseSnapshot, @Nullable Long developerId) {
+    if (!metricToSort.isPresent()) {
+      checkState(!componentWithMeasuresOnly(wsRequest), "Metric '%s' not found", wsRequest.getMetricSort());
+      return null;
+    }
+
+    MetricDto metric = metricToSort.get();
+    boolean withMeasuresOnly = componentWithMeasuresOnly(wsRequest);
+    boolean onPeriod = wsRequest.getMetricPeriodSort() != null;
+    MeasureSort.Builder measureSort = MeasureSort.builder()
+      .setMetricId(metric.getId())
+      .setAnalysisUuid(baseSnapshot.getUuid())
+      .setPersonId(developerId)
+      .setValueType(ComponentTreeSort.toMeasureSortValueType(metric))
+      .setWithValueOnly(withMeasuresOnly && !onPeriod)
+      .setWithVariationOnly(withMeasuresOnly && onPeriod);
+    if (MetricDtoFunctions.isOptimizedForBestValue().test(metric)) {
+      MeasureDto bestValue = new MetricDtoWithBestValue(metric).getBestValue();
+      measureSort.setBestValue(bestValue.getValue(), bestValue.getVariation(), QUALIFIERS_ELIGIBLE_FOR_BEST_VALUE);
+    }
+    return measureSort.build();
+  }
+
+  private Table<String, MetricDto, MeasureDto> searchMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent, List<ComponentDto> components,
+    List<MetricDto> metrics, @Nullable Long developerId) {
 
     Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDto::getId);
-    MeasureTreeQuery measureQuery = MeasureTreeQuery.builder()
-      .setStrategy(MeasureTreeQuery.Strategy.valueOf(componentTreeQuery.getStrategy().name()))
-      .setNameOrKeyQuery(componentTreeQuery.getNameOrKeyQuery())
-      .setQualifiers(componentTreeQuery.getQualifiers())
+    List<String> componentUuids = new ArrayList<>(components.size() + 1);
+    componentUuids.add(baseComponent.uuid());
+    components.forEach(component -> componentUuids.add(component.uuid()));
+    MeasureQuery measureQuery = MeasureQuery.builder()
+      .setComponentUuids(baseComponent.projectUuid(), componentUuids)
       .setPersonId(developerId)
       .setMetricIds(new ArrayList<>(metricsById.keySet()))
       .build();
-    List<MeasureDto> measureDtos = dbClient.measureDao().selectTreeByQuery(dbSession, baseComponent, measureQuery);
+    List<MeasureDto> measureDtos = dbClient.measureDao().selectByQuery(dbSession, measureQuery);
 
-    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = HashBasedTable.create(components.size(), metrics.size());
+    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = HashBasedTable.create(componentUuids.size(), metrics.size());
     for (MeasureDto measureDto : measureDtos) {
       measuresByComponentUuidAndMetric.put(
         measureDto.getComponentUuid(),
@@ -222,38 +271,10 @@ public class ComponentTreeDataLoader {
     });
   }
 
-  private static List<ComponentDto> filterComponents(List<ComponentDto> components,
-    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric, List<MetricDto> metrics, ComponentTreeWsRequest wsRequest) {
-    if (!componentWithMeasuresOnly(wsRequest)) {
-      return components;
-    }
-
-    String metricKeyToSort = wsRequest.getMetricSort();
-    Optional<MetricDto> metricToSort = metrics.stream().filter(m -> metricKeyToSort.equals(m.getKey())).findFirst();
-    checkState(metricToSort.isPresent(), "Metric '%s' not found", metricKeyToSort, wsRequest.getMetricKeys());
-
-    return components
-      .stream()
-      .filter(new HasMeasure(measuresByComponentUuidAndMetric, metricToSort.get(), wsRequest))
-      .collect(Collectors.toList(components.size()));
-  }
-
   private static boolean componentWithMeasuresOnly(ComponentTreeWsRequest wsRequest) {
     return WITH_MEASURES_ONLY_METRIC_SORT_FILTER.equals(wsRequest.getMetricSortFilter());
   }
 
-  private static List<ComponentDto> sortComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
-    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-    return ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
-  }
-
-  private static List<ComponentDto> paginateComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest) {
-    return components.stream()
-      .skip(offset(wsRequest.getPage(), wsRequest.getPageSize()))
-      .limit(wsRequest.getPageSize())
-      .collect(Collectors.toList(wsRequest.getPageSize()));
-  }
-
   @CheckForNull
   private List<String> childrenQualifiers(ComponentTreeWsRequest request, String baseQualifier) {
     List<String> requestQualifiers = request.getQualifiers();
@@ -275,12 +296,17 @@ public class ComponentTreeDataLoader {
     return new ArrayList<>(qualifiersIntersection);
   }
 
-  private ComponentTreeQuery toComponentTreeQuery(ComponentTreeWsRequest wsRequest, ComponentDto baseComponent) {
+  private ComponentTreeQuery toComponentTreeQuery(ComponentTreeWsRequest wsRequest, ComponentDto baseComponent, SnapshotDto baseSnapshot, List<MetricDto> metrics,
+    @Nullable Long developerId) {
     List<String> childrenQualifiers = childrenQualifiers(wsRequest, baseComponent.qualifier());
+    Optional<MetricDto> metricToSort = searchMetricToSort(metrics, wsRequest);
 
     ComponentTreeQuery.Builder componentTreeQueryBuilder = ComponentTreeQuery.builder()
       .setBaseUuid(baseComponent.uuid())
-      .setStrategy(STRATEGIES.get(wsRequest.getStrategy()));
+      .setStrategy(STRATEGIES.get(wsRequest.getStrategy()))
+      .setSortFields(ComponentTreeSort.toSortFields(wsRequest, metricToSort))
+      .setAsc(!Boolean.FALSE.equals(wsRequest.getAsc()))
+      .setMeasureSort(toMeasureSort(wsRequest, metricToSort, baseSnapshot, developerId));
 
     if (wsRequest.getQuery() != null) {
       componentTreeQueryBuilder.setNameOrKeyQuery(wsRequest.getQuery());
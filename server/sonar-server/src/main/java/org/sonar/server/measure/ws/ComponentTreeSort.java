@@ -19,27 +19,21 @@
  */
 package org.sonar.server.measure.ws;
 
-import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Ordering;
-import com.google.common.collect.Table;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
-import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.Metric.ValueType;
-import org.sonar.db.component.ComponentDto;
-import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.component.ComponentTreeQuery.MeasureSort;
+import org.sonar.db.component.ComponentTreeQuery.SortField;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonarqube.ws.client.measure.ComponentTreeWsRequest;
 
-import static java.lang.String.CASE_INSENSITIVE_ORDER;
 import static java.lang.String.format;
+import static java.util.Collections.emptyList;
 import static org.sonar.api.measures.Metric.ValueType.BOOL;
 import static org.sonar.api.measures.Metric.ValueType.DATA;
 import static org.sonar.api.measures.Metric.ValueType.DISTRIB;
@@ -50,223 +44,75 @@ import static org.sonar.api.measures.Metric.ValueType.PERCENT;
 import static org.sonar.api.measures.Metric.ValueType.RATING;
 import static org.sonar.api.measures.Metric.ValueType.STRING;
 import static org.sonar.api.measures.Metric.ValueType.WORK_DUR;
+import static org.sonar.core.util.stream.Collectors.toList;
 import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_PERIOD_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.NAME_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.PATH_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.QUALIFIER_SORT;
 
+/**
+ * Translates the sort parameters of the WS into the sort of {@link org.sonar.db.component.ComponentTreeQuery}, so that
+ * components are sorted and paginated by the database:
+ * <ul>
+ *   <li>names, qualifiers, paths and textual measures are sorted case insensitively</li>
+ *   <li>components without value are returned last</li>
+ *   <li>levels are sorted from ERROR to OK when ascending</li>
+ *   <li>sorting on a metric which is not provided falls back to sorting on names</li>
+ * </ul>
+ */
 public class ComponentTreeSort {
 
   private static final Set<ValueType> NUMERIC_VALUE_TYPES = EnumSet.of(BOOL, FLOAT, INT, MILLISEC, WORK_DUR, PERCENT, RATING);
   private static final Set<ValueType> TEXTUAL_VALUE_TYPES = EnumSet.of(DATA, DISTRIB, STRING);
+  private static final Map<String, SortField> SORT_FIELDS_BY_PARAMETER = ImmutableMap.of(
+    NAME_SORT, SortField.NAME,
+    QUALIFIER_SORT, SortField.QUALIFIER,
+    PATH_SORT, SortField.PATH,
+    METRIC_SORT, SortField.MEASURE_VALUE,
+    METRIC_PERIOD_SORT, SortField.MEASURE_VARIATION);
 
   private ComponentTreeSort() {
     // static method only
   }
 
-  public static List<ComponentDto> sortComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
-    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
+  public static List<SortField> toSortFields(ComponentTreeWsRequest wsRequest, Optional<MetricDto> metricToSort) {
     List<String> sortParameters = wsRequest.getSort();
     if (sortParameters == null || sortParameters.isEmpty()) {
-      return components;
+      return emptyList();
     }
-    boolean isAscending = wsRequest.getAsc();
-    Map<String, Ordering<ComponentDto>> orderingsBySortField = ImmutableMap.<String, Ordering<ComponentDto>>builder()
-      .put(NAME_SORT, componentNameOrdering(isAscending))
-      .put(QUALIFIER_SORT, componentQualifierOrdering(isAscending))
-      .put(PATH_SORT, componentPathOrdering(isAscending))
-      .put(METRIC_SORT, metricValueOrdering(wsRequest, metrics, measuresByComponentUuidAndMetric))
-      .put(METRIC_PERIOD_SORT, metricPeriodOrdering(wsRequest, metrics, measuresByComponentUuidAndMetric))
-      .build();
-
-    String firstSortParameter = sortParameters.get(0);
-    Ordering<ComponentDto> primaryOrdering = orderingsBySortField.get(firstSortParameter);
-    if (sortParameters.size() > 1) {
-      for (int i = 1; i < sortParameters.size(); i++) {
-        String secondarySortParameter = sortParameters.get(i);
-        Ordering<ComponentDto> secondaryOrdering = orderingsBySortField.get(secondarySortParameter);
-        primaryOrdering = primaryOrdering.compound(secondaryOrdering);
-      }
-    }
-
-    return primaryOrdering.immutableSortedCopy(components);
-  }
-
-  private static Ordering<ComponentDto> componentNameOrdering(boolean isAscending) {
-    return stringOrdering(isAscending, ComponentDto::name);
-  }
-
-  private static Ordering<ComponentDto> componentQualifierOrdering(boolean isAscending) {
-    return stringOrdering(isAscending, ComponentDto::qualifier);
+    return sortParameters.stream()
+      .map(sortParameter -> toSortField(sortParameter, wsRequest, metricToSort))
+      .collect(toList(sortParameters.size()));
   }
 
-  private static Ordering<ComponentDto> componentPathOrdering(boolean isAscending) {
-    return stringOrdering(isAscending, ComponentDto::path);
-  }
-
-  private static Ordering<ComponentDto> stringOrdering(boolean isAscending, Function<ComponentDto, String> function) {
-    Ordering<String> ordering = Ordering.from(CASE_INSENSITIVE_ORDER);
-    if (!isAscending) {
-      ordering = ordering.reverse();
+  private static SortField toSortField(String sortParameter, ComponentTreeWsRequest wsRequest, Optional<MetricDto> metricToSort) {
+    SortField sortField = SORT_FIELDS_BY_PARAMETER.get(sortParameter);
+    if (sortField == SortField.MEASURE_VALUE && !metricToSort.isPresent()) {
+      return SortField.NAME;
     }
-
-    return ordering.nullsLast().onResultOf(function);
-  }
-
-  private static Ordering<ComponentDto> metricValueOrdering(ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
-    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-    if (wsRequest.getMetricSort() == null) {
-      return componentNameOrdering(wsRequest.getAsc());
+    if (sortField == SortField.MEASURE_VARIATION) {
+      if (!metricToSort.isPresent() || wsRequest.getMetricPeriodSort() == null) {
+        return SortField.NAME;
+      }
+      MetricDto metric = metricToSort.get();
+      if (!NUMERIC_VALUE_TYPES.contains(ValueType.valueOf(metric.getValueType()))) {
+        throw BadRequestException.create(format("Impossible to sort metric '%s' by measure period.", metric.getKey()));
+      }
     }
-    Map<String, MetricDto> metricsByKey = Maps.uniqueIndex(metrics, MetricDto::getKey);
-    MetricDto metric = metricsByKey.get(wsRequest.getMetricSort());
+    return sortField;
+  }
 
-    boolean isAscending = wsRequest.getAsc();
+  public static MeasureSort.ValueType toMeasureSortValueType(MetricDto metric) {
     ValueType metricValueType = ValueType.valueOf(metric.getValueType());
     if (NUMERIC_VALUE_TYPES.contains(metricValueType)) {
-      return numericalMetricOrdering(isAscending, metric, measuresByComponentUuidAndMetric);
+      return MeasureSort.ValueType.NUMERIC;
     } else if (TEXTUAL_VALUE_TYPES.contains(metricValueType)) {
-      return stringOrdering(isAscending, new ComponentDtoToTextualMeasureValue(metric, measuresByComponentUuidAndMetric));
-    } else if (ValueType.LEVEL.equals(ValueType.valueOf(metric.getValueType()))) {
-      return levelMetricOrdering(isAscending, metric, measuresByComponentUuidAndMetric);
+      return MeasureSort.ValueType.TEXTUAL;
+    } else if (ValueType.LEVEL.equals(metricValueType)) {
+      return MeasureSort.ValueType.LEVEL;
     }
 
     throw new IllegalStateException("Unrecognized metric value type: " + metric.getValueType());
   }
-
-  private static Ordering<ComponentDto> metricPeriodOrdering(ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
-    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-    if (wsRequest.getMetricSort() == null || wsRequest.getMetricPeriodSort() == null) {
-      return componentNameOrdering(wsRequest.getAsc());
-    }
-    Map<String, MetricDto> metricsByKey = Maps.uniqueIndex(metrics, MetricDto::getKey);
-    MetricDto metric = metricsByKey.get(wsRequest.getMetricSort());
-
-    ValueType metricValueType = ValueType.valueOf(metric.getValueType());
-    if (NUMERIC_VALUE_TYPES.contains(metricValueType)) {
-      return numericalMetricPeriodOrdering(wsRequest, metric, measuresByComponentUuidAndMetric);
-    }
-
-    throw BadRequestException.create(format("Impossible to sort metric '%s' by measure period.", metric.getKey()));
-  }
-
-  private static Ordering<ComponentDto> numericalMetricOrdering(boolean isAscending, @Nullable MetricDto metric,
-    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-    Ordering<Double> ordering = Ordering.natural();
-
-    if (!isAscending) {
-      ordering = ordering.reverse();
-    }
-
-    return ordering.nullsLast().onResultOf(new ComponentDtoToNumericalMeasureValue(metric, measuresByComponentUuidAndMetric));
-  }
-
-  private static Ordering<ComponentDto> numericalMetricPeriodOrdering(ComponentTreeWsRequest request, @Nullable MetricDto metric,
-    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-    Ordering<Double> ordering = Ordering.natural();
-
-    if (!request.getAsc()) {
-      ordering = ordering.reverse();
-    }
-
-    return ordering.nullsLast().onResultOf(new ComponentDtoToMeasureVariationValue(metric, measuresByComponentUuidAndMetric));
-  }
-
-  private static Ordering<ComponentDto> levelMetricOrdering(boolean isAscending, @Nullable MetricDto metric,
-    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-    Ordering<Integer> ordering = Ordering.natural();
-
-    // inverse the order of org.sonar.api.measures.Metric.Level
-    if (isAscending) {
-      ordering = ordering.reverse();
-    }
-
-    return ordering.nullsLast().onResultOf(new ComponentDtoToLevelIndex(metric, measuresByComponentUuidAndMetric));
-  }
-
-  private static class ComponentDtoToNumericalMeasureValue implements Function<ComponentDto, Double> {
-    private final MetricDto metric;
-    private final Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric;
-
-    private ComponentDtoToNumericalMeasureValue(@Nullable MetricDto metric,
-      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-      this.metric = metric;
-      this.measuresByComponentUuidAndMetric = measuresByComponentUuidAndMetric;
-    }
-
-    @Override
-    public Double apply(@Nonnull ComponentDto input) {
-      MeasureDto measure = measuresByComponentUuidAndMetric.get(input.uuid(), metric);
-      if (measure == null || measure.getValue() == null) {
-        return null;
-      }
-
-      return measure.getValue();
-    }
-  }
-
-  private static class ComponentDtoToLevelIndex implements Function<ComponentDto, Integer> {
-    private final MetricDto metric;
-    private final Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric;
-
-    private ComponentDtoToLevelIndex(@Nullable MetricDto metric,
-      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-      this.metric = metric;
-      this.measuresByComponentUuidAndMetric = measuresByComponentUuidAndMetric;
-    }
-
-    @Override
-    public Integer apply(@Nonnull ComponentDto input) {
-      MeasureDto measure = measuresByComponentUuidAndMetric.get(input.uuid(), metric);
-      if (measure == null || measure.getData() == null) {
-        return null;
-      }
-
-      return Metric.Level.names().indexOf(measure.getData());
-    }
-  }
-
-  private static class ComponentDtoToMeasureVariationValue implements Function<ComponentDto, Double> {
-    private final MetricDto metric;
-    private final Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric;
-
-    private ComponentDtoToMeasureVariationValue(@Nullable MetricDto metric,
-      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-      this.metric = metric;
-      this.measuresByComponentUuidAndMetric = measuresByComponentUuidAndMetric;
-    }
-
-    @Override
-    public Double apply(@Nonnull ComponentDto input) {
-      MeasureDto measure = measuresByComponentUuidAndMetric.get(input.uuid(), metric);
-      if (measure == null) {
-        return null;
-      }
-      Double variation = measure.getVariation();
-      return (variation == null) ? null : variation;
-    }
-  }
-
-  private static class ComponentDtoToTextualMeasureValue implements Function<ComponentDto, String> {
-    private final MetricDto metric;
-    private final Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric;
-
-    private ComponentDtoToTextualMeasureValue(@Nullable MetricDto metric,
-      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-      this.metric = metric;
-      this.measuresByComponentUuidAndMetric = measuresByComponentUuidAndMetric;
-    }
-
-    @Override
-    public String apply(@Nonnull ComponentDto input) {
-      MeasureDto measure = measuresByComponentUuidAndMetric.get(input.uuid(), metric);
-      if (measure == null || measure.getData() == null) {
-        return null;
-      }
-
-      return measure.getData();
-    }
-  }
-
 }
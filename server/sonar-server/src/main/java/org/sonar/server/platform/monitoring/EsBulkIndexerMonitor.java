@@ -0,0 +1,96 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import org.sonar.server.es.BulkIndexerStatistics;
+import org.sonar.server.es.BulkIndexerStatisticsRegistry;
+
+import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
+
+/**
+ * Throughput of bulk indexing of Elasticsearch indices, as recorded by {@link org.sonar.server.es.BulkIndexer}
+ */
+public class EsBulkIndexerMonitor extends BaseMonitorMBean implements EsBulkIndexerMonitorMBean {
+
+  private final BulkIndexerStatisticsRegistry statisticsRegistry;
+
+  public EsBulkIndexerMonitor(BulkIndexerStatisticsRegistry statisticsRegistry) {
+    this.statisticsRegistry = statisticsRegistry;
+  }
+
+  @Override
+  public String name() {
+    return "Elasticsearch Bulk Indexing";
+  }
+
+  @Override
+  public Map<String, Long> getDocsPerSecond() {
+    return perIndex(BulkIndexerStatistics::getDocsPerSecond);
+  }
+
+  @Override
+  public Map<String, Long> getBytesPerSecond() {
+    return perIndex(BulkIndexerStatistics::getBytesPerSecond);
+  }
+
+  @Override
+  public Map<String, Long> getRejections() {
+    return perIndex(BulkIndexerStatistics::getRejections);
+  }
+
+  @Override
+  public Map<String, Long> getRetries() {
+    return perIndex(BulkIndexerStatistics::getRetries);
+  }
+
+  @Override
+  public Map<String, Long> getFailures() {
+    return perIndex(BulkIndexerStatistics::getFailures);
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    for (BulkIndexerStatistics statistics : statisticsRegistry.all()) {
+      LinkedHashMap<String, Object> indexAttributes = new LinkedHashMap<>();
+      indexAttributes.put("Docs", statistics.getDocs());
+      indexAttributes.put("Docs per Second", statistics.getDocsPerSecond());
+      indexAttributes.put("Size", byteCountToDisplaySize(statistics.getBytes()));
+      indexAttributes.put("Size per Second", byteCountToDisplaySize(statistics.getBytesPerSecond()));
+      indexAttributes.put("Requests", statistics.getRequests());
+      indexAttributes.put("Rejections", statistics.getRejections());
+      indexAttributes.put("Retries", statistics.getRetries());
+      indexAttributes.put("Failures", statistics.getFailures());
+      attributes.put(statistics.getIndexName(), indexAttributes);
+    }
+    return attributes;
+  }
+
+  private Map<String, Long> perIndex(ToLongFunction<BulkIndexerStatistics> value) {
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (BulkIndexerStatistics statistics : statisticsRegistry.all()) {
+      result.put(statistics.getIndexName(), value.applyAsLong(statistics));
+    }
+    return result;
+  }
+}
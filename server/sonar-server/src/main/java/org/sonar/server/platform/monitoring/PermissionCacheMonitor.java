@@ -0,0 +1,71 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.user.PermissionCache;
+
+/**
+ * Efficiency of the cache of permissions shared by web requests
+ */
+public class PermissionCacheMonitor extends BaseMonitorMBean implements PermissionCacheMonitorMBean {
+
+  private final PermissionCache permissionCache;
+
+  public PermissionCacheMonitor(PermissionCache permissionCache) {
+    this.permissionCache = permissionCache;
+  }
+
+  @Override
+  public String name() {
+    return "Permission Cache";
+  }
+
+  @Override
+  public long getHits() {
+    return permissionCache.getHits();
+  }
+
+  @Override
+  public long getMisses() {
+    return permissionCache.getMisses();
+  }
+
+  @Override
+  public long getEvictions() {
+    return permissionCache.getEvictions();
+  }
+
+  @Override
+  public long getSize() {
+    return permissionCache.getSize();
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Hits", getHits());
+    attributes.put("Misses", getMisses());
+    attributes.put("Evictions", getEvictions());
+    attributes.put("Size", getSize());
+    return attributes;
+  }
+}
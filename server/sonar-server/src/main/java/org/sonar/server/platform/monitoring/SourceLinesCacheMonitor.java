@@ -0,0 +1,71 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.source.SourceLinesCache;
+
+/**
+ * Efficiency of the cache of source lines shared by web requests
+ */
+public class SourceLinesCacheMonitor extends BaseMonitorMBean implements SourceLinesCacheMonitorMBean {
+
+  private final SourceLinesCache sourceLinesCache;
+
+  public SourceLinesCacheMonitor(SourceLinesCache sourceLinesCache) {
+    this.sourceLinesCache = sourceLinesCache;
+  }
+
+  @Override
+  public String name() {
+    return "Source Lines Cache";
+  }
+
+  @Override
+  public long getHits() {
+    return sourceLinesCache.getHits();
+  }
+
+  @Override
+  public long getMisses() {
+    return sourceLinesCache.getMisses();
+  }
+
+  @Override
+  public long getEvictions() {
+    return sourceLinesCache.getEvictions();
+  }
+
+  @Override
+  public long getSize() {
+    return sourceLinesCache.getSize();
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Hits", getHits());
+    attributes.put("Misses", getMisses());
+    attributes.put("Evictions", getEvictions());
+    attributes.put("Cached Chunks", getSize());
+    return attributes;
+  }
+}
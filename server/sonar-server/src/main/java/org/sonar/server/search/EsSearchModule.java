@@ -20,6 +20,7 @@
 package org.sonar.server.search;
 
 import org.sonar.core.platform.Module;
+import org.sonar.server.es.BulkIndexerStatisticsRegistry;
 import org.sonar.server.es.EsClientProvider;
 import org.sonar.server.es.EsClientStopper;
 import org.sonar.server.permission.index.AuthorizationTypeSupport;
@@ -28,6 +29,7 @@ public class EsSearchModule extends Module {
   @Override
   protected void configureModule() {
     add(AuthorizationTypeSupport.class);
+    add(BulkIndexerStatisticsRegistry.class);
     add(new EsClientProvider());
     add(EsClientStopper.class);
   }
@@ -0,0 +1,188 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDto;
+
+/**
+ * Decoded lines of the files which are displayed by web services, shared by all the web requests. Lines are cached
+ * by chunks (see {@link FileSourceDto#getSourceChunk(int)}), so that only the chunks of the requested ranges of lines
+ * are decoded and kept in memory.
+ * <p>
+ * Entries are identified by the UUID of the file and the hash of its data. An analysis which changes the sources of a
+ * file changes its hash, so obsolete entries are never read and are evicted by the least recently used ones.
+ * </p>
+ */
+@ServerSide
+public class SourceLinesCache {
+
+  /**
+   * Maximum size in Mb of the cached lines. It bounds an estimate of the heap used by the decoded lines, which is
+   * about 2 to 5 times the size of their data in database. Cache is disabled when zero.
+   */
+  public static final String MAX_SIZE_PROPERTY = "sonar.web.sourceCache.maxSizeInMb";
+  private static final long DEFAULT_MAX_SIZE_IN_MB = 32L;
+  private static final long MAX_CHUNK_INDEXES = 10_000L;
+  /**
+   * Estimate of the heap used by a decoded line besides its texts: the message itself, the objects of its text fields
+   * and its reference in the chunk
+   */
+  private static final int LINE_OVERHEAD_BYTES = 300;
+
+  private final boolean enabled;
+  private final Cache<ChunkKey, int[]> chunkIndexes;
+  private final Cache<ChunkKey, List<DbFileSources.Line>> chunks;
+
+  public SourceLinesCache(Settings settings) {
+    long maxSizeInMb = settings.hasKey(MAX_SIZE_PROPERTY) ? settings.getLong(MAX_SIZE_PROPERTY) : DEFAULT_MAX_SIZE_IN_MB;
+    this.enabled = maxSizeInMb > 0;
+    this.chunkIndexes = CacheBuilder.newBuilder()
+      .maximumSize(enabled ? MAX_CHUNK_INDEXES : 0L)
+      .build();
+    this.chunks = CacheBuilder.newBuilder()
+      .maximumWeight(Math.max(0L, maxSizeInMb) * 1024L * 1024L)
+      .weigher(SourceLinesCache::weigh)
+      .recordStats()
+      .build();
+  }
+
+  private static int weigh(ChunkKey key, List<DbFileSources.Line> lines) {
+    return estimateHeapSize(lines);
+  }
+
+  /**
+   * Decoded lines take much more heap than their serialized size: each line is an object with about twenty fields,
+   * each of its non-empty text fields is an object of its own, and texts take two bytes per character once read
+   * as strings.
+   */
+  @VisibleForTesting
+  static int estimateHeapSize(List<DbFileSources.Line> lines) {
+    int size = 0;
+    for (DbFileSources.Line line : lines) {
+      size += LINE_OVERHEAD_BYTES + 2 * line.getSerializedSize();
+    }
+    return size;
+  }
+
+  /**
+   * Lines with a number greater than or equal to {@code from}, limited to {@code toInclusive - from + 1} lines.
+   * See {@link FileSourceDto#getSourceLines(int, int)}.
+   *
+   * @param dataHash hash of the data of the file, {@code null} if unknown, in which case nothing is cached
+   * @param loader loads the data of the file from database, called at most once and only if some lines are not cached
+   */
+  public List<DbFileSources.Line> getLines(String fileUuid, @Nullable String dataHash, int from, int toInclusive, Supplier<FileSourceDto> loader) {
+    if (!enabled || dataHash == null) {
+      return loader.get().getSourceLines(from, toInclusive);
+    }
+    com.google.common.base.Supplier<FileSourceDto> dto = Suppliers.memoize(loader::get);
+    int[] highestLines = get(chunkIndexes, new ChunkKey(fileUuid, dataHash, -1), () -> dto.get().getSourceChunkHighestLines());
+
+    int limit = toInclusive - from + 1;
+    List<DbFileSources.Line> result = new ArrayList<>();
+    for (int i = 0; i < highestLines.length && result.size() < limit; i++) {
+      if (highestLines[i] < from) {
+        // none of the lines of the chunk would be kept
+        continue;
+      }
+      int chunk = i;
+      for (DbFileSources.Line line : get(chunks, new ChunkKey(fileUuid, dataHash, chunk), () -> dto.get().getSourceChunk(chunk))) {
+        if (line.hasLine() && line.getLine() >= from) {
+          result.add(line);
+          if (result.size() == limit) {
+            break;
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static <V> V get(Cache<ChunkKey, V> cache, ChunkKey key, Supplier<V> loader) {
+    V value = cache.getIfPresent(key);
+    if (value == null) {
+      value = loader.get();
+      cache.put(key, value);
+    }
+    return value;
+  }
+
+  public long getHits() {
+    return chunks.stats().hitCount();
+  }
+
+  public long getMisses() {
+    return chunks.stats().missCount();
+  }
+
+  public long getEvictions() {
+    return chunks.stats().evictionCount();
+  }
+
+  /**
+   * Number of cached chunks of lines
+   */
+  public long getSize() {
+    return chunks.size();
+  }
+
+  @Immutable
+  private static final class ChunkKey {
+    private final String fileUuid;
+    private final String dataHash;
+    private final int chunk;
+
+    private ChunkKey(String fileUuid, String dataHash, int chunk) {
+      this.fileUuid = fileUuid;
+      this.dataHash = dataHash;
+      this.chunk = chunk;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ChunkKey that = (ChunkKey) o;
+      return chunk == that.chunk && fileUuid.equals(that.fileUuid) && dataHash.equals(that.dataHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(fileUuid, dataHash, chunk);
+    }
+  }
+}
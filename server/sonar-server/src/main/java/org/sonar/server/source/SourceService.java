@@ -19,6 +19,7 @@
  */
 package org.sonar.server.source;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import org.sonar.core.util.stream.Collectors;
@@ -28,15 +29,18 @@ import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
 public class SourceService {
 
   private final DbClient dbClient;
   private final HtmlSourceDecorator htmlDecorator;
+  private final SourceLinesCache sourceLinesCache;
 
-  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator) {
+  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator, SourceLinesCache sourceLinesCache) {
     this.dbClient = dbClient;
     this.htmlDecorator = htmlDecorator;
+    this.sourceLinesCache = sourceLinesCache;
   }
 
   /**
@@ -63,17 +67,22 @@ public class SourceService {
   private <E> Optional<Iterable<E>> getLines(DbSession dbSession, String fileUuid, int from, int toInclusive, Function<DbFileSources.Line, E> function) {
     verifyLine(from);
     checkArgument(toInclusive >= from, String.format("Line number must greater than or equal to %d, got %d", from, toInclusive));
-    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
-    if (dto == null) {
+    FileSourceDto hashes = dbClient.fileSourceDao().selectSourceHashesByFileUuid(dbSession, fileUuid);
+    if (hashes == null) {
       return Optional.empty();
     }
-    return Optional.of(dto.getSourceData().getLinesList().stream()
-      .filter(line -> line.hasLine() && line.getLine() >= from)
-      .limit((toInclusive - from) + 1L)
+    List<DbFileSources.Line> lines = sourceLinesCache.getLines(fileUuid, hashes.getDataHash(), from, toInclusive, () -> loadSource(dbSession, fileUuid));
+    return Optional.of(lines.stream()
       .map(function)
       .collect(Collectors.toList()));
   }
 
+  private FileSourceDto loadSource(DbSession dbSession, String fileUuid) {
+    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
+    checkState(dto != null, "Sources of file %s have been deleted", fileUuid);
+    return dto;
+  }
+
   private static void verifyLine(int line) {
     checkArgument(line >= 1, String.format("Line number must start at 1, got %d", line));
   }
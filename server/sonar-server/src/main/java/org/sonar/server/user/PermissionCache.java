@@ -0,0 +1,174 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.permission.OrganizationPermission;
+
+/**
+ * Permissions of users on organizations and projects, shared by the {@link ServerUserSession}s of all
+ * the web requests. Entries expire after a delay, so that changes which are not notified through
+ * {@link #invalidate()} are eventually taken into account.
+ */
+@ServerSide
+public class PermissionCache {
+
+  /**
+   * Number of seconds during which permissions are cached. Cache is disabled when zero.
+   */
+  public static final String TTL_PROPERTY = "sonar.web.permissionCache.ttlSeconds";
+  /**
+   * Maximum number of entries of each of the organization and project caches
+   */
+  public static final String MAX_SIZE_PROPERTY = "sonar.web.permissionCache.maxSize";
+  private static final long DEFAULT_TTL_SECONDS = 60L;
+  private static final long DEFAULT_MAX_SIZE = 10_000L;
+
+  private final boolean enabled;
+  private final Cache<Key, Set<OrganizationPermission>> organizationPermissions;
+  private final Cache<Key, Set<String>> projectPermissions;
+  /**
+   * Incremented on each invalidation, so that permissions loaded before it are not cached
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  public PermissionCache(Settings settings) {
+    this(settings, Ticker.systemTicker());
+  }
+
+  PermissionCache(Settings settings, Ticker ticker) {
+    long ttlSeconds = settings.hasKey(TTL_PROPERTY) ? settings.getLong(TTL_PROPERTY) : DEFAULT_TTL_SECONDS;
+    long maxSize = settings.hasKey(MAX_SIZE_PROPERTY) ? settings.getLong(MAX_SIZE_PROPERTY) : DEFAULT_MAX_SIZE;
+    this.enabled = ttlSeconds > 0 && maxSize > 0;
+    this.organizationPermissions = newCache(ttlSeconds, maxSize, ticker);
+    this.projectPermissions = newCache(ttlSeconds, maxSize, ticker);
+  }
+
+  private static <V> Cache<Key, V> newCache(long ttlSeconds, long maxSize, Ticker ticker) {
+    return CacheBuilder.newBuilder()
+      .expireAfterWrite(Math.max(0L, ttlSeconds), TimeUnit.SECONDS)
+      .maximumSize(Math.max(0L, maxSize))
+      .ticker(ticker)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * @param userId id of the user, {@code null} for anonymous
+   * @param loader loads the permissions from database if they are not cached
+   * @return immutable set, as it is shared by all the sessions of the user
+   */
+  public Set<OrganizationPermission> getOrganizationPermissions(@Nullable Integer userId, String organizationUuid, Supplier<Set<OrganizationPermission>> loader) {
+    return get(organizationPermissions, new Key(userId, organizationUuid), () -> ImmutableSet.copyOf(loader.get()));
+  }
+
+  /**
+   * @param userId id of the user, {@code null} for anonymous
+   * @param loader loads the permissions from database if they are not cached
+   * @return immutable set, as it is shared by all the sessions of the user
+   */
+  public Set<String> getProjectPermissions(@Nullable Integer userId, String projectUuid, Supplier<Set<String>> loader) {
+    return get(projectPermissions, new Key(userId, projectUuid), () -> ImmutableSet.copyOf(loader.get()));
+  }
+
+  private <V> V get(Cache<Key, V> cache, Key key, Supplier<V> loader) {
+    if (!enabled) {
+      return loader.get();
+    }
+    V value = cache.getIfPresent(key);
+    if (value == null) {
+      long loadedGeneration = generation.get();
+      value = loader.get();
+      cache.put(key, value);
+      // permissions loaded concurrently to an invalidation may be obsolete
+      if (loadedGeneration != generation.get()) {
+        cache.invalidate(key);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Removes all the cached permissions. Must be called once changes of permissions or group memberships are committed.
+   */
+  public void invalidate() {
+    generation.incrementAndGet();
+    organizationPermissions.invalidateAll();
+    projectPermissions.invalidateAll();
+  }
+
+  public long getHits() {
+    return organizationPermissions.stats().hitCount() + projectPermissions.stats().hitCount();
+  }
+
+  public long getMisses() {
+    return organizationPermissions.stats().missCount() + projectPermissions.stats().missCount();
+  }
+
+  public long getEvictions() {
+    return organizationPermissions.stats().evictionCount() + projectPermissions.stats().evictionCount();
+  }
+
+  public long getSize() {
+    return organizationPermissions.size() + projectPermissions.size();
+  }
+
+  @Immutable
+  private static final class Key {
+    @CheckForNull
+    private final Integer userId;
+    private final String uuid;
+
+    private Key(@Nullable Integer userId, String uuid) {
+      this.userId = userId;
+      this.uuid = uuid;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return Objects.equals(userId, key.userId) && uuid.equals(key.uuid);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(userId, uuid);
+    }
+  }
+}
@@ -50,6 +50,7 @@ public class ServerUserSession extends AbstractUserSession {
   private final DbClient dbClient;
   private final OrganizationFlags organizationFlags;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final PermissionCache permissionCache;
   private final Supplier<Collection<GroupDto>> groups = Suppliers.memoize(this::loadGroups);
   private final Supplier<Boolean> isSystemAdministratorSupplier = Suppliers.memoize(this::loadIsSystemAdministrator);
   private final Map<String, String> projectUuidByComponentUuid = newHashMap();
@@ -57,10 +58,11 @@ public class ServerUserSession extends AbstractUserSession {
   private Map<String, Set<String>> permissionsByProjectUuid;
 
   ServerUserSession(DbClient dbClient, OrganizationFlags organizationFlags,
-    DefaultOrganizationProvider defaultOrganizationProvider, @Nullable UserDto userDto) {
+    DefaultOrganizationProvider defaultOrganizationProvider, PermissionCache permissionCache, @Nullable UserDto userDto) {
     this.dbClient = dbClient;
     this.organizationFlags = organizationFlags;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.permissionCache = permissionCache;
     this.userDto = userDto;
   }
 
@@ -116,6 +118,10 @@ public class ServerUserSession extends AbstractUserSession {
   }
 
   private Set<OrganizationPermission> loadOrganizationPermissions(String organizationUuid) {
+    return permissionCache.getOrganizationPermissions(getUserId(), organizationUuid, () -> loadOrganizationPermissionsFromDb(organizationUuid));
+  }
+
+  private Set<OrganizationPermission> loadOrganizationPermissionsFromDb(String organizationUuid) {
     Set<String> permissionKeys;
     try (DbSession dbSession = dbClient.openSession(false)) {
       if (userDto != null && userDto.getId() != null) {
@@ -156,6 +162,10 @@ public class ServerUserSession extends AbstractUserSession {
   }
 
   private Set<String> loadProjectPermissions(String projectUuid) {
+    return permissionCache.getProjectPermissions(getUserId(), projectUuid, () -> loadProjectPermissionsFromDb(projectUuid));
+  }
+
+  private Set<String> loadProjectPermissionsFromDb(String projectUuid) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       if (userDto != null && userDto.getId() != null) {
         return dbClient.authorizationDao().selectProjectPermissions(dbSession, projectUuid, userDto.getId());
@@ -0,0 +1,267 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.CloseableIterator;
+
+/**
+ * Store objects on disk using a {@link RecordCodec}. As {@link DiskCache}, there are no search
+ * capabilities, only traversal (full scan), but records are much more compact and cheaper to
+ * write and read than with Java serialization.
+ * <p/>
+ * The file is a sequence of frames. Each frame starts with its raw size and its stored size, followed
+ * by the (optionally LZ4-compressed) content. The content of a frame is a sequence of length-prefixed
+ * records. Each appender writes its own frames, so that appenders can be opened and closed many times.
+ */
+public class RecordDiskCache<O> {
+
+  static final int FRAME_SIZE = 64 * 1024;
+
+  private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+  private final File file;
+  private final System2 system2;
+  private final RecordCodec<O> codec;
+  private final boolean compressed;
+
+  public RecordDiskCache(File file, System2 system2, RecordCodec<O> codec, boolean compressed) {
+    this.file = file;
+    this.system2 = system2;
+    this.codec = codec;
+    this.compressed = compressed;
+    OutputStream output = null;
+    boolean threw = true;
+    try {
+      // creates or truncates the file
+      output = new FileOutputStream(file);
+      threw = false;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write into file: " + file, e);
+    } finally {
+      if (threw) {
+        IOUtils.closeQuietly(output);
+      } else {
+        system2.close(output);
+      }
+    }
+  }
+
+  public DiskAppender newAppender() {
+    return new DiskAppender();
+  }
+
+  public CloseableIterator<O> traverse() {
+    try {
+      return new RecordIterator(new DataInputStream(new BufferedInputStream(FileUtils.openInputStream(file))));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    }
+  }
+
+  public class DiskAppender implements AutoCloseable {
+    private final DataOutputStream output;
+    private final ExposedByteArrayOutputStream frame = new ExposedByteArrayOutputStream(FRAME_SIZE);
+    private final ExposedByteArrayOutputStream record = new ExposedByteArrayOutputStream(1024);
+    private final DataOutputStream recordOutput = new DataOutputStream(record);
+    private byte[] compressionBuffer = new byte[0];
+
+    private DiskAppender() {
+      try {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to open file " + file, e);
+      }
+    }
+
+    public DiskAppender append(O object) {
+      try {
+        record.reset();
+        codec.write(object, recordOutput);
+        recordOutput.flush();
+        writeInt(frame, record.size());
+        frame.write(record.buffer(), 0, record.size());
+        if (frame.size() >= FRAME_SIZE) {
+          flushFrame();
+        }
+        return this;
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+    }
+
+    private void flushFrame() throws IOException {
+      int rawSize = frame.size();
+      if (rawSize == 0) {
+        return;
+      }
+      byte[] stored = frame.buffer();
+      int storedSize = rawSize;
+      if (compressed) {
+        LZ4Compressor compressor = LZ4.fastCompressor();
+        int maxSize = compressor.maxCompressedLength(rawSize);
+        if (compressionBuffer.length < maxSize) {
+          compressionBuffer = new byte[maxSize];
+        }
+        int compressedSize = compressor.compress(frame.buffer(), 0, rawSize, compressionBuffer, 0, maxSize);
+        if (compressedSize < rawSize) {
+          stored = compressionBuffer;
+          storedSize = compressedSize;
+        }
+      }
+      output.writeInt(rawSize);
+      output.writeInt(storedSize);
+      output.write(stored, 0, storedSize);
+      frame.reset();
+    }
+
+    @Override
+    public void close() {
+      try {
+        flushFrame();
+      } catch (IOException e) {
+        IOUtils.closeQuietly(output);
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+      system2.close(output);
+    }
+  }
+
+  private class RecordIterator extends CloseableIterator<O> {
+    private final DataInputStream input;
+    private final RecordInputStream record = new RecordInputStream();
+    private final DataInputStream recordInput = new DataInputStream(record);
+    private byte[] stored = new byte[0];
+    private byte[] raw = new byte[0];
+    private int rawSize = 0;
+    private int position = 0;
+
+    private RecordIterator(DataInputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    protected O doNext() {
+      try {
+        if (position >= rawSize && !readFrame()) {
+          return null;
+        }
+        int recordSize = readInt(raw, position);
+        position += 4;
+        record.reset(raw, position, recordSize);
+        O object = codec.read(recordInput);
+        position += recordSize;
+        return object;
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file " + file, e);
+      }
+    }
+
+    private boolean readFrame() throws IOException {
+      int newRawSize;
+      try {
+        newRawSize = input.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      int storedSize = input.readInt();
+      if (raw.length < newRawSize) {
+        raw = new byte[newRawSize];
+      }
+      if (storedSize == newRawSize) {
+        input.readFully(raw, 0, newRawSize);
+      } else {
+        if (stored.length < storedSize) {
+          stored = new byte[storedSize];
+        }
+        input.readFully(stored, 0, storedSize);
+        LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+        decompressor.decompress(stored, 0, raw, 0, newRawSize);
+      }
+      rawSize = newRawSize;
+      position = 0;
+      return true;
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static void writeInt(OutputStream output, int i) throws IOException {
+    output.write((i >>> 24) & 0xFF);
+    output.write((i >>> 16) & 0xFF);
+    output.write((i >>> 8) & 0xFF);
+    output.write(i & 0xFF);
+  }
+
+  private static int readInt(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 24)
+      | ((bytes[offset + 1] & 0xFF) << 16)
+      | ((bytes[offset + 2] & 0xFF) << 8)
+      | (bytes[offset + 3] & 0xFF);
+  }
+
+  /**
+   * Reads the records of a frame one after the other, in order to avoid the allocation of a stream for each record
+   */
+  private static class RecordInputStream extends ByteArrayInputStream {
+    private RecordInputStream() {
+      super(new byte[0]);
+    }
+
+    private void reset(byte[] bytes, int offset, int length) {
+      this.buf = bytes;
+      this.pos = offset;
+      this.mark = offset;
+      this.count = offset + length;
+    }
+  }
+
+  /**
+   * Gives access to the internal buffer in order to avoid a copy of each record and frame
+   */
+  private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+    private ExposedByteArrayOutputStream(int size) {
+      super(size);
+    }
+
+    private byte[] buffer() {
+      return buf;
+    }
+  }
+}
@@ -20,10 +20,12 @@
 package org.sonar.server.ws;
 
 import com.google.common.base.Optional;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Message;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
@@ -63,6 +65,40 @@ public class WsUtils {
     }
   }
 
+  /**
+   * Same as {@link #writeProtobuf(Message, Request, Response)} for a message whose repeated field
+   * {@code repeatedFieldNumber} is provided by {@code elements}. Each element is serialized to the response as soon
+   * as it is provided, so that the elements don't have to be all kept in memory, as both the JSON and the protobuf
+   * representations are the same as if the elements were set in the message. Providing an element must not fail, as
+   * the response is already partially written.
+   *
+   * @see ProtobufJsonFormat#write(Message, int, Iterator, JsonWriter)
+   */
+  public static void writeProtobuf(Message msg, int repeatedFieldNumber, Iterator<? extends Message> elements, Request request, Response response) {
+    OutputStream output = response.stream().output();
+    try {
+      if (request.getMediaType().equals(MediaTypes.PROTOBUF)) {
+        response.stream().setMediaType(MediaTypes.PROTOBUF);
+        CodedOutputStream codedOutput = CodedOutputStream.newInstance(output);
+        // fields of a protobuf message can be serialized in any order
+        msg.writeTo(codedOutput);
+        while (elements.hasNext()) {
+          codedOutput.writeMessage(repeatedFieldNumber, elements.next());
+        }
+        codedOutput.flush();
+      } else {
+        response.stream().setMediaType(MediaTypes.JSON);
+        try (JsonWriter writer = JsonWriter.of(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+          ProtobufJsonFormat.write(msg, repeatedFieldNumber, elements, writer);
+        }
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException(format("Error while writing protobuf message %s", MessageFormatter.print(msg)), e);
+    } finally {
+      IOUtils.closeQuietly(output);
+    }
+  }
+
   /**
    * @throws BadRequestException
    */
@@ -0,0 +1,91 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.http;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CeWorkersWakeUpNotifierTest {
+
+  private CeHttpClient ceHttpClient = mock(CeHttpClient.class);
+  private ExecutorService executor = MoreExecutors.newDirectExecutorService();
+  private CeWorkersWakeUpNotifier underTest = new CeWorkersWakeUpNotifier(ceHttpClient, executor);
+
+  @Test
+  public void onSubmit_wakes_up_workers_of_Compute_Engine() {
+    underTest.onSubmit();
+
+    verify(ceHttpClient).wakeUpWorkers();
+  }
+
+  @Test
+  public void onSubmit_does_not_fail_if_Compute_Engine_can_not_be_called() {
+    doThrow(new IllegalStateException("Faking failure of HTTP call")).when(ceHttpClient).wakeUpWorkers();
+
+    underTest.onSubmit();
+
+    verify(ceHttpClient).wakeUpWorkers();
+  }
+
+  @Test
+  public void onSubmit_does_not_wait_for_Compute_Engine() throws InterruptedException {
+    CountDownLatch callStarted = new CountDownLatch(1);
+    CountDownLatch callReleased = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      callStarted.countDown();
+      callReleased.await();
+      return null;
+    }).when(ceHttpClient).wakeUpWorkers();
+    CeWorkersWakeUpNotifier notifier = new CeWorkersWakeUpNotifier(ceHttpClient);
+
+    try {
+      notifier.onSubmit();
+      assertThat(callStarted.await(10, TimeUnit.SECONDS)).isTrue();
+      // call is in progress: the next notification is queued, the following ones are discarded
+      notifier.onSubmit();
+      notifier.onSubmit();
+      notifier.onSubmit();
+    } finally {
+      callReleased.countDown();
+    }
+
+    verify(ceHttpClient, timeout(10_000).times(2)).wakeUpWorkers();
+    notifier.stop();
+    verify(ceHttpClient, times(2)).wakeUpWorkers();
+  }
+
+  @Test
+  public void stop_shuts_down_executor() {
+    underTest.stop();
+
+    assertThat(executor.isShutdown()).isTrue();
+  }
+}
@@ -20,6 +20,7 @@
 package org.sonar.ce.queue;
 
 import com.google.common.base.Optional;
+import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.junit.Rule;
@@ -42,6 +43,10 @@ import org.sonar.server.organization.TestDefaultOrganizationProvider;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 public class CeQueueImplTest {
 
@@ -124,6 +129,51 @@ public class CeQueueImplTest {
     verifyCeTask(taskSubmit2, tasks.get(1), null);
   }
 
+  @Test
+  public void submit_notifies_listeners_once_task_is_persisted() {
+    CeQueueListener listener = mock(CeQueueListener.class);
+    CeQueue underTest = new CeQueueImpl(dbTester.getDbClient(), uuidFactory, defaultOrganizationProvider, new CeQueueListener[] {listener});
+
+    underTest.submit(createTaskSubmit(CeTaskTypes.REPORT, "PROJECT_1", null));
+
+    verify(listener).onSubmit();
+    assertThat(dbTester.getDbClient().ceQueueDao().countByStatus(session, CeQueueDto.Status.PENDING)).isEqualTo(1);
+  }
+
+  @Test
+  public void massSubmit_notifies_listeners_once_for_all_tasks() {
+    CeQueueListener listener = mock(CeQueueListener.class);
+    CeQueue underTest = new CeQueueImpl(dbTester.getDbClient(), uuidFactory, defaultOrganizationProvider, new CeQueueListener[] {listener});
+
+    underTest.massSubmit(asList(createTaskSubmit(CeTaskTypes.REPORT, "PROJECT_1", null), createTaskSubmit("some type")));
+
+    verify(listener).onSubmit();
+  }
+
+  @Test
+  public void massSubmit_does_not_notify_listeners_when_there_is_no_task() {
+    CeQueueListener listener = mock(CeQueueListener.class);
+    CeQueue underTest = new CeQueueImpl(dbTester.getDbClient(), uuidFactory, defaultOrganizationProvider, new CeQueueListener[] {listener});
+
+    underTest.massSubmit(Collections.emptyList());
+
+    verifyZeroInteractions(listener);
+  }
+
+  @Test
+  public void failure_of_listener_does_not_fail_submit() {
+    CeQueueListener failingListener = mock(CeQueueListener.class);
+    doThrow(new IllegalStateException("Faking failure of listener")).when(failingListener).onSubmit();
+    CeQueueListener listener = mock(CeQueueListener.class);
+    CeQueue underTest = new CeQueueImpl(dbTester.getDbClient(), uuidFactory, defaultOrganizationProvider, new CeQueueListener[] {failingListener, listener});
+
+    CeTaskSubmit taskSubmit = createTaskSubmit(CeTaskTypes.REPORT, "PROJECT_1", null);
+    CeTask task = underTest.submit(taskSubmit);
+
+    verifyCeTask(taskSubmit, task, null);
+    verify(listener).onSubmit();
+  }
+
   @Test
   public void cancel_pending() throws Exception {
     CeTask task = submit(CeTaskTypes.REPORT, "PROJECT_1");
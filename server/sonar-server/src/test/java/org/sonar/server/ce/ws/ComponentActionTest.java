@@ -141,6 +141,40 @@ public class ComponentActionTest {
     assertThat(response.getCurrent().getId()).isEqualTo("T3");
   }
 
+  @Test
+  public void purge_tasks_must_not_be_picked_as_current_analysis() {
+    ComponentDto project = dbTester.components().insertProject();
+    logInWithBrowsePermission(project);
+    insertActivity("T1", project.uuid(), CeActivityDto.Status.SUCCESS);
+    insertActivity("T2", project.uuid(), CeTaskTypes.PURGE, CeActivityDto.Status.SUCCESS);
+
+    TestResponse wsResponse = ws.newRequest()
+      .setParam(PARAM_COMPONENT_ID, project.uuid())
+      .setMediaType(MediaTypes.PROTOBUF)
+      .execute();
+
+    WsCe.ProjectResponse response = Protobuf.read(wsResponse.getInputStream(), WsCe.ProjectResponse.parser());
+    assertThat(response.hasCurrent()).isTrue();
+    assertThat(response.getCurrent().getId()).isEqualTo("T1");
+  }
+
+  @Test
+  public void purge_tasks_must_not_be_returned_in_queue() {
+    ComponentDto project = dbTester.components().insertProject();
+    logInWithBrowsePermission(project);
+    insertQueue("T1", project.uuid(), CeTaskTypes.PURGE, CeQueueDto.Status.IN_PROGRESS);
+    insertQueue("T2", project.uuid(), CeQueueDto.Status.PENDING);
+    insertQueue("T3", project.uuid(), CeTaskTypes.PURGE, CeQueueDto.Status.PENDING);
+
+    TestResponse wsResponse = ws.newRequest()
+      .setParam(PARAM_COMPONENT_ID, project.uuid())
+      .setMediaType(MediaTypes.PROTOBUF)
+      .execute();
+
+    WsCe.ProjectResponse response = Protobuf.read(wsResponse.getInputStream(), WsCe.ProjectResponse.parser());
+    assertThat(response.getQueueList()).extracting(WsCe.Task::getId).containsOnly("T2");
+  }
+
   @Test
   public void fail_with_404_when_component_does_not_exist() throws Exception {
     userSession.addComponentUuidPermission(UserRole.USER, "PROJECT_1", "PROJECT_1");
@@ -178,8 +212,12 @@ public class ComponentActionTest {
   }
 
   private CeQueueDto insertQueue(String taskUuid, String componentUuid, CeQueueDto.Status status) {
+    return insertQueue(taskUuid, componentUuid, CeTaskTypes.REPORT, status);
+  }
+
+  private CeQueueDto insertQueue(String taskUuid, String componentUuid, String taskType, CeQueueDto.Status status) {
     CeQueueDto queueDto = new CeQueueDto();
-    queueDto.setTaskType(CeTaskTypes.REPORT);
+    queueDto.setTaskType(taskType);
     queueDto.setComponentUuid(componentUuid);
     queueDto.setUuid(taskUuid);
     queueDto.setStatus(status);
@@ -189,8 +227,12 @@ public class ComponentActionTest {
   }
 
   private CeActivityDto insertActivity(String taskUuid, String componentUuid, CeActivityDto.Status status) {
+    return insertActivity(taskUuid, componentUuid, CeTaskTypes.REPORT, status);
+  }
+
+  private CeActivityDto insertActivity(String taskUuid, String componentUuid, String taskType, CeActivityDto.Status status) {
     CeQueueDto queueDto = new CeQueueDto();
-    queueDto.setTaskType(CeTaskTypes.REPORT);
+    queueDto.setTaskType(taskType);
     queueDto.setComponentUuid(componentUuid);
     queueDto.setUuid(taskUuid);
     CeActivityDto activityDto = new CeActivityDto(queueDto);
@@ -20,7 +20,9 @@
 package org.sonar.server.computation.dbcleaner;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.config.Settings;
 import org.sonar.api.config.MapSettings;
@@ -32,10 +34,15 @@ import org.sonar.db.purge.PurgeConfiguration;
 import org.sonar.db.purge.PurgeDao;
 import org.sonar.db.purge.PurgeListener;
 import org.sonar.db.purge.PurgeProfiler;
+import org.sonar.db.purge.PurgeThrottle;
 import org.sonar.db.purge.period.DefaultPeriodCleaner;
 
 import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.doThrow;
@@ -45,6 +52,9 @@ import static org.mockito.Mockito.verify;
 
 public class ProjectCleanerTest {
 
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   private ProjectCleaner underTest;
   private PurgeDao dao = mock(PurgeDao.class);
   private PurgeProfiler profiler = mock(PurgeProfiler.class);
@@ -61,7 +71,7 @@ public class ProjectCleanerTest {
   public void no_profiling_when_property_is_false() {
     settings.setProperty(CoreProperties.PROFILING_LOG_PROPERTY, false);
 
-    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, emptyList());
+    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings);
 
     verify(profiler, never()).dump(anyLong(), any(Logger.class));
   }
@@ -70,7 +80,7 @@ public class ProjectCleanerTest {
   public void profiling_when_property_is_true() {
     settings.setProperty(CoreProperties.PROFILING_LOG_PROPERTY, true);
 
-    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, emptyList());
+    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings);
 
     verify(profiler).dump(anyLong(), any(Logger.class));
   }
@@ -79,27 +89,67 @@ public class ProjectCleanerTest {
   public void call_period_cleaner_index_client_and_purge_dao() {
     settings.setProperty(PurgeConstants.DAYS_BEFORE_DELETING_CLOSED_ISSUES, 5);
 
-    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, emptyList());
+    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings);
 
-    verify(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class));
-    verify(dao).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
+    verify(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class), any(PurgeThrottle.class));
+    verify(dao).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class), any(PurgeThrottle.class));
   }
 
   @Test
   public void if_dao_purge_fails_it_should_not_interrupt_program_execution() {
-    doThrow(RuntimeException.class).when(dao).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
+    doThrow(RuntimeException.class).when(dao).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class), any(PurgeThrottle.class));
 
-    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, emptyList());
+    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings);
 
-    verify(dao).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class));
+    verify(dao).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class), any(PurgeThrottle.class));
   }
 
   @Test
   public void if_profiler_cleaning_fails_it_should_not_interrupt_program_execution() {
-    doThrow(RuntimeException.class).when(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class));
+    doThrow(RuntimeException.class).when(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class), any(PurgeThrottle.class));
+
+    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings);
+
+    verify(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class), any(PurgeThrottle.class));
+  }
+
+  @Test
+  public void yield_of_the_period_cleaner_is_propagated() {
+    PurgeThrottle.YieldException yieldException = new PurgeThrottle.YieldException(10, 1);
+    doThrow(yieldException).when(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class), any(PurgeThrottle.class));
+
+    try {
+      underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, () -> true);
+      fail("The purge should have been stopped");
+    } catch (PurgeThrottle.YieldException e) {
+      assertThat(e).isSameAs(yieldException);
+    }
+
+    verify(dao, never()).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class), any(PurgeThrottle.class));
+  }
+
+  @Test
+  public void yield_of_the_purge_dao_is_propagated() {
+    doThrow(new PurgeThrottle.YieldException(10, 1)).when(dao).purge(any(DbSession.class), any(PurgeConfiguration.class), any(PurgeListener.class), any(PurgeProfiler.class), any(PurgeThrottle.class));
+
+    expectedException.expect(PurgeThrottle.YieldException.class);
+
+    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, () -> true);
+  }
+
+  @Test
+  public void purge_disabled_components_with_dao() {
+    underTest.purgeDisabledComponents(mock(DbSession.class), "PROJECT_UUID", emptyList());
+
+    verify(dao).purgeDisabledComponents(any(DbSession.class), eq("PROJECT_UUID"), eq(emptyList()), eq(purgeListener));
+  }
+
+  @Test
+  public void if_purge_of_disabled_components_fails_it_should_not_interrupt_program_execution() {
+    doThrow(RuntimeException.class).when(dao).purgeDisabledComponents(any(DbSession.class), anyString(), anyCollection(), any(PurgeListener.class));
 
-    underTest.purge(mock(DbSession.class), mock(IdUuidPair.class), settings, emptyList());
+    underTest.purgeDisabledComponents(mock(DbSession.class), "PROJECT_UUID", emptyList());
 
-    verify(periodCleaner).clean(any(DbSession.class), anyString(), any(Settings.class));
+    verify(dao).purgeDisabledComponents(any(DbSession.class), eq("PROJECT_UUID"), eq(emptyList()), eq(purgeListener));
   }
 }
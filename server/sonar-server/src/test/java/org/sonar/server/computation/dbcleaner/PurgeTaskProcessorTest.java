@@ -0,0 +1,164 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.dbcleaner;
+
+import com.google.common.base.Optional;
+import java.util.function.BooleanSupplier;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTask;
+import org.sonar.ce.queue.CeTaskSubmit;
+import org.sonar.ce.settings.ProjectSettingsFactory;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.purge.IdUuidPair;
+import org.sonar.db.purge.PurgeThrottle;
+import org.sonar.server.setting.ThreadLocalSettings;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class PurgeTaskProcessorTest {
+
+  private static final String PROJECT_UUID = "PROJECT_UUID";
+
+  private DbClient dbClient = mock(DbClient.class, RETURNS_DEEP_STUBS);
+  private ProjectCleaner projectCleaner = mock(ProjectCleaner.class);
+  private ProjectSettingsFactory projectSettingsFactory = mock(ProjectSettingsFactory.class);
+  private ThreadLocalSettings threadLocalSettings = mock(ThreadLocalSettings.class);
+  private CeQueue ceQueue = mock(CeQueue.class);
+
+  private PurgeTaskProcessor underTest = new PurgeTaskProcessor(dbClient, projectCleaner, projectSettingsFactory, threadLocalSettings, ceQueue);
+
+  @Test
+  public void handles_purge_tasks() {
+    assertThat(underTest.getHandledCeTaskTypes()).containsOnly(CeTaskTypes.PURGE);
+  }
+
+  @Test
+  public void purge_project_with_its_settings() {
+    Settings settings = new MapSettings();
+    when(dbClient.componentDao().selectByUuid(any(DbSession.class), eq(PROJECT_UUID)))
+      .thenReturn(Optional.of(new ComponentDto().setId(12L).setUuid(PROJECT_UUID).setKey("PROJECT_KEY")));
+    when(projectSettingsFactory.newProjectSettings("PROJECT_KEY")).thenReturn(settings);
+
+    assertThat(underTest.process(newTask())).isNull();
+
+    ArgumentCaptor<IdUuidPair> idUuidPair = ArgumentCaptor.forClass(IdUuidPair.class);
+    InOrder inOrder = inOrder(threadLocalSettings, projectCleaner);
+    inOrder.verify(threadLocalSettings).load();
+    inOrder.verify(projectCleaner).purge(any(DbSession.class), idUuidPair.capture(), eq(settings), any(BooleanSupplier.class));
+    inOrder.verify(threadLocalSettings).unload();
+    assertThat(idUuidPair.getValue().getId()).isEqualTo(12L);
+    assertThat(idUuidPair.getValue().getUuid()).isEqualTo(PROJECT_UUID);
+    verifyZeroInteractions(ceQueue);
+  }
+
+  @Test
+  public void purge_yields_when_a_report_of_the_project_is_pending() {
+    mockExistingProject();
+    when(dbClient.ceQueueDao().selectByComponentUuid(any(DbSession.class), eq(PROJECT_UUID)))
+      .thenReturn(asList(newQueueDto(CeTaskTypes.PURGE, CeQueueDto.Status.IN_PROGRESS)))
+      .thenReturn(asList(newQueueDto(CeTaskTypes.PURGE, CeQueueDto.Status.IN_PROGRESS), newQueueDto(CeTaskTypes.REPORT, CeQueueDto.Status.IN_PROGRESS)))
+      .thenReturn(asList(newQueueDto(CeTaskTypes.PURGE, CeQueueDto.Status.IN_PROGRESS), newQueueDto(CeTaskTypes.REPORT, CeQueueDto.Status.PENDING)));
+
+    underTest.process(newTask());
+
+    ArgumentCaptor<BooleanSupplier> yieldCondition = ArgumentCaptor.forClass(BooleanSupplier.class);
+    verify(projectCleaner).purge(any(DbSession.class), any(IdUuidPair.class), any(Settings.class), yieldCondition.capture());
+    assertThat(yieldCondition.getValue().getAsBoolean()).isFalse();
+    assertThat(yieldCondition.getValue().getAsBoolean()).isFalse();
+    assertThat(yieldCondition.getValue().getAsBoolean()).isTrue();
+  }
+
+  @Test
+  public void resubmit_purge_when_it_has_yielded() {
+    mockExistingProject();
+    CeTaskSubmit.Builder submit = new CeTaskSubmit.Builder("NEW_TASK_UUID");
+    when(ceQueue.prepareSubmit()).thenReturn(submit);
+    when(projectCleaner.purge(any(DbSession.class), any(IdUuidPair.class), any(Settings.class), any(BooleanSupplier.class)))
+      .thenThrow(new PurgeThrottle.YieldException(10, 1));
+
+    assertThat(underTest.process(newTask())).isNull();
+
+    ArgumentCaptor<CeTaskSubmit> submitted = ArgumentCaptor.forClass(CeTaskSubmit.class);
+    verify(ceQueue).submit(submitted.capture());
+    assertThat(submitted.getValue().getType()).isEqualTo(CeTaskTypes.PURGE);
+    assertThat(submitted.getValue().getComponentUuid()).isEqualTo(PROJECT_UUID);
+    verify(threadLocalSettings).unload();
+  }
+
+  @Test
+  public void do_not_resubmit_purge_when_submits_are_paused() {
+    mockExistingProject();
+    when(ceQueue.isSubmitPaused()).thenReturn(true);
+    when(projectCleaner.purge(any(DbSession.class), any(IdUuidPair.class), any(Settings.class), any(BooleanSupplier.class)))
+      .thenThrow(new PurgeThrottle.YieldException(10, 1));
+
+    underTest.process(newTask());
+
+    verify(ceQueue, never()).submit(any(CeTaskSubmit.class));
+  }
+
+  @Test
+  public void do_nothing_if_project_does_not_exist_anymore() {
+    when(dbClient.componentDao().selectByUuid(any(DbSession.class), eq(PROJECT_UUID))).thenReturn(Optional.absent());
+
+    underTest.process(newTask());
+
+    verifyZeroInteractions(projectCleaner);
+    verify(threadLocalSettings).unload();
+  }
+
+  private void mockExistingProject() {
+    when(dbClient.componentDao().selectByUuid(any(DbSession.class), eq(PROJECT_UUID)))
+      .thenReturn(Optional.of(new ComponentDto().setId(12L).setUuid(PROJECT_UUID).setKey("PROJECT_KEY")));
+    when(projectSettingsFactory.newProjectSettings("PROJECT_KEY")).thenReturn(new MapSettings());
+  }
+
+  private static CeQueueDto newQueueDto(String taskType, CeQueueDto.Status status) {
+    return new CeQueueDto().setTaskType(taskType).setStatus(status).setComponentUuid(PROJECT_UUID);
+  }
+
+  private static CeTask newTask() {
+    return new CeTask.Builder()
+      .setOrganizationUuid("ORGANIZATION_UUID")
+      .setUuid("TASK_UUID")
+      .setType(CeTaskTypes.PURGE)
+      .setComponentUuid(PROJECT_UUID)
+      .build();
+  }
+}
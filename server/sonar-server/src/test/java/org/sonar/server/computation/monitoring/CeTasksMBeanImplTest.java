@@ -25,6 +25,7 @@ import javax.management.InstanceNotFoundException;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import org.junit.Test;
+import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
 import org.sonar.server.computation.configuration.CeConfiguration;
@@ -39,7 +40,9 @@ public class CeTasksMBeanImplTest {
   private static final long PROCESSING_TIME = 987;
   private static final int WORKER_COUNT = 56;
 
-  private CeTasksMBeanImpl underTest = new CeTasksMBeanImpl(new DumbCEQueueStatus(), new DumbCeConfiguration());
+  private TestSystem2 system2 = new TestSystem2().setNow(1_000L);
+  private CeWorkerStatistics workerStatistics = new CeWorkerStatistics(system2);
+  private CeTasksMBeanImpl underTest = new CeTasksMBeanImpl(new DumbCEQueueStatus(), new DumbCeConfiguration(), workerStatistics);
 
   @Test
   public void register_and_unregister() throws Exception {
@@ -66,6 +69,19 @@ public class CeTasksMBeanImplTest {
     assertThat(underTest.getWorkerCount()).isEqualTo(WORKER_COUNT);
   }
 
+  @Test
+  public void worker_methods_delegate_to_the_CeWorkerStatistics_instance() {
+    workerStatistics.addClaim("ce-worker-1", 10L, true);
+    workerStatistics.addClaim("ce-worker-0", 4L, false);
+    workerStatistics.addClaim("ce-worker-0", 6L, true);
+    workerStatistics.addProcessing("ce-worker-0", 300L);
+    system2.setNow(2_000L);
+
+    assertThat(underTest.getWorkerStatistics()).containsExactly(
+      "ce-worker-0: idleTime=700ms, claimLatency=5ms",
+      "ce-worker-1: idleTime=1000ms, claimLatency=10ms");
+  }
+
   @Test
   public void export_system_info() {
     ProtobufSystemInfo.Section section = underTest.toProtobuf();
@@ -73,6 +89,15 @@ public class CeTasksMBeanImplTest {
     assertThat(section.getAttributesCount()).isEqualTo(6);
   }
 
+  @Test
+  public void export_statistics_of_workers_in_system_info() {
+    workerStatistics.addClaim("ce-worker-0", 4L, true);
+
+    ProtobufSystemInfo.Section section = underTest.toProtobuf();
+    assertThat(section.getAttributesList()).extracting("key")
+      .contains("Worker ce-worker-0 Idle Time (ms)", "Worker ce-worker-0 Claim Latency (ms)");
+  }
+
   /**
    * Dumb implementation of CEQueueStatus which returns constant values for get methods and throws UnsupportedOperationException
    * for other methods.
@@ -0,0 +1,95 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.internal.TestSystem2;
+import org.sonar.server.computation.monitoring.CeWorkerStatistics.WorkerStatistics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CeWorkerStatisticsTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private TestSystem2 system2 = new TestSystem2().setNow(1_000L);
+  private CeWorkerStatistics underTest = new CeWorkerStatistics(system2);
+
+  @Test
+  public void no_statistics_when_no_worker_polled_the_queue() {
+    assertThat(underTest.getByWorker()).isEmpty();
+  }
+
+  @Test
+  public void statistics_are_recorded_per_worker() {
+    underTest.addClaim("ce-worker-0", 10L, false);
+    underTest.addClaim("ce-worker-0", 20L, true);
+    underTest.addProcessing("ce-worker-0", 500L);
+    underTest.addClaim("ce-worker-1", 3L, false);
+    system2.setNow(3_000L);
+
+    assertThat(underTest.getByWorker()).containsOnlyKeys("ce-worker-0", "ce-worker-1");
+    WorkerStatistics worker0 = underTest.getByWorker().get("ce-worker-0");
+    assertThat(worker0.getClaimAttempts()).isEqualTo(2);
+    assertThat(worker0.getClaimedTasks()).isEqualTo(1);
+    assertThat(worker0.getClaimLatency()).isEqualTo(15L);
+    assertThat(worker0.getProcessingTime()).isEqualTo(500L);
+    assertThat(worker0.getIdleTime()).isEqualTo(1_500L);
+
+    WorkerStatistics worker1 = underTest.getByWorker().get("ce-worker-1");
+    assertThat(worker1.getClaimedTasks()).isEqualTo(0);
+    assertThat(worker1.getClaimLatency()).isEqualTo(3L);
+    assertThat(worker1.getIdleTime()).isEqualTo(2_000L);
+  }
+
+  @Test
+  public void statistics_are_not_updated_after_snapshot() {
+    underTest.addClaim("ce-worker-0", 10L, true);
+    WorkerStatistics snapshot = underTest.getByWorker().get("ce-worker-0");
+
+    underTest.addClaim("ce-worker-0", 20L, true);
+    underTest.addProcessing("ce-worker-0", 500L);
+    system2.setNow(3_000L);
+
+    assertThat(snapshot.getClaimAttempts()).isEqualTo(1);
+    assertThat(snapshot.getClaimLatency()).isEqualTo(10L);
+    assertThat(snapshot.getProcessingTime()).isEqualTo(0L);
+    assertThat(snapshot.getIdleTime()).isEqualTo(0L);
+  }
+
+  @Test
+  public void fail_if_claim_time_is_negative() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Claim time can not be < 0");
+
+    underTest.addClaim("ce-worker-0", -1L, true);
+  }
+
+  @Test
+  public void fail_if_processing_time_is_negative() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Processing time can not be < 0");
+
+    underTest.addProcessing("ce-worker-0", -1L);
+  }
+}
@@ -19,24 +19,47 @@
  */
 package org.sonar.server.computation.task.projectanalysis.batch;
 
-import java.io.File;
+import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.scanner.protocol.output.ReportArchive;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class BatchReportDirectoryHolderImplTest {
 
+  @Rule
+  public LogTester logTester = new LogTester();
+
   @Test(expected = IllegalStateException.class)
-  public void getDirectory_throws_ISE_if_holder_is_empty() {
-    new BatchReportDirectoryHolderImpl().getDirectory();
+  public void getArchive_throws_ISE_if_holder_is_empty() {
+    new BatchReportDirectoryHolderImpl().getArchive();
   }
 
   @Test
-  public void getDirectory_returns_File_set_with_setDirectory() {
-    File file = new File("");
+  public void stop_does_nothing_if_holder_is_empty() {
+    new BatchReportDirectoryHolderImpl().stop();
+
+    assertThat(logTester.logs()).isEmpty();
+  }
+
+  @Test
+  public void stop_closes_archive_and_logs_how_much_of_it_has_been_read() throws Exception {
+    ReportArchive archive = mock(ReportArchive.class);
+    when(archive.getEntriesRead()).thenReturn(3L);
+    when(archive.getBytesRead()).thenReturn(2_048L);
+    when(archive.length()).thenReturn(4_096L);
     BatchReportDirectoryHolderImpl holder = new BatchReportDirectoryHolderImpl();
-    holder.setDirectory(file);
+    holder.setArchive(archive);
+
+    assertThat(holder.getArchive()).isSameAs(archive);
+
+    holder.stop();
 
-    assertThat(holder.getDirectory()).isSameAs(file);
+    verify(archive).close();
+    assertThat(logTester.logs()).contains("Analysis report read: 3 entries, 2 KB of 4 KB");
   }
 }
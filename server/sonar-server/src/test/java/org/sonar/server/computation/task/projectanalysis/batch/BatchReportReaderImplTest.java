@@ -25,10 +25,12 @@ import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.protocol.output.ZipReportArchive;
 
 import static com.google.common.collect.ImmutableList.of;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -60,7 +62,7 @@ public class BatchReportReaderImplTest {
 
   @Before
   public void setUp() {
-    BatchReportDirectoryHolder holder = new ImmutableBatchReportDirectoryHolder(tempFolder.newDir());
+    ImmutableBatchReportDirectoryHolder holder = new ImmutableBatchReportDirectoryHolder(tempFolder.newDir());
     underTest = new BatchReportReaderImpl(holder);
     writer = new ScannerReportWriter(holder.getDirectory());
   }
@@ -315,4 +317,25 @@ public class BatchReportReaderImplTest {
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void read_report_from_archive() throws IOException {
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("PROJECT_KEY").build());
+    writer.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    File zip = tempFolder.newFile();
+    ZipUtils.zipDir(writer.getFileStructure().root(), zip);
+    BatchReportDirectoryHolderImpl holder = new BatchReportDirectoryHolderImpl();
+    holder.setArchive(ZipReportArchive.open(zip));
+    underTest = new BatchReportReaderImpl(holder);
+
+    assertThat(underTest.readMetadata().getProjectKey()).isEqualTo("PROJECT_KEY");
+    try (CloseableIterator<ScannerReport.Test> tests = underTest.readTests(COMPONENT_REF);
+      CloseableIterator<String> lines = underTest.readFileSource(COMPONENT_REF).get()) {
+      assertThat(tests).containsExactly(TEST_1, TEST_2);
+      assertThat(lines).containsExactly("1", "2", "3");
+    }
+    assertThat(underTest.readFileSource(2)).isAbsent();
+    holder.stop();
+  }
 }
@@ -19,18 +19,95 @@
  */
 package org.sonar.server.computation.task.projectanalysis.batch;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.Objects;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.scanner.protocol.output.ReportArchive;
 
+/**
+ * Holds an archive which entries are the files of a report directory, so that tests can write the report
+ * with a {@link org.sonar.scanner.protocol.output.ScannerReportWriter} at any time.
+ */
 public class ImmutableBatchReportDirectoryHolder implements BatchReportDirectoryHolder {
   private final File directory;
+  private final ReportArchive archive;
 
   public ImmutableBatchReportDirectoryHolder(File directory) {
     this.directory = Objects.requireNonNull(directory);
+    this.archive = new DirectoryArchive(directory);
   }
 
-  @Override
   public File getDirectory() {
     return directory;
   }
+
+  @Override
+  public ReportArchive getArchive() {
+    return archive;
+  }
+
+  private static class DirectoryArchive implements ReportArchive {
+    private final File directory;
+
+    private DirectoryArchive(File directory) {
+      this.directory = directory;
+    }
+
+    @Override
+    public File getFile() {
+      return directory;
+    }
+
+    @Override
+    public long length() {
+      return 0L;
+    }
+
+    @Override
+    public Set<String> entryNames() {
+      String[] names = directory.list();
+      return names == null ? new LinkedHashSet<>() : new LinkedHashSet<>(Arrays.asList(names));
+    }
+
+    @Override
+    public boolean contains(String name) {
+      return new File(directory, name).isFile();
+    }
+
+    @CheckForNull
+    @Override
+    public InputStream openEntry(String name) {
+      File file = new File(directory, name);
+      if (!file.isFile()) {
+        return null;
+      }
+      try {
+        return new BufferedInputStream(new FileInputStream(file));
+      } catch (FileNotFoundException e) {
+        throw new IllegalStateException("Fail to open " + file, e);
+      }
+    }
+
+    @Override
+    public long getEntriesRead() {
+      return 0L;
+    }
+
+    @Override
+    public long getBytesRead() {
+      return 0L;
+    }
+
+    @Override
+    public void close() {
+      // nothing to do
+    }
+  }
 }
@@ -0,0 +1,175 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.MODULE;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
+
+public class ReportVisitorsCrawlerWithConcurrentFileVisitorTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private static final Component FILE_4 = component(FILE, 4);
+  private static final Component FILE_5 = component(FILE, 5);
+  private static final Component FILE_7 = component(FILE, 7);
+  private static final Component DIRECTORY_3 = component(DIRECTORY, 3, FILE_4, FILE_5);
+  private static final Component DIRECTORY_6 = component(DIRECTORY, 6, FILE_7);
+  private static final Component MODULE_2 = component(MODULE, 2, DIRECTORY_3, DIRECTORY_6);
+  private static final Component COMPONENT_TREE = component(PROJECT, 1, MODULE_2);
+
+  private ExecutorService executor = Executors.newFixedThreadPool(3);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void visit_prepared_files_in_order_of_crawl() {
+    RecordingVisitor visitor = new RecordingVisitor();
+    VisitorsCrawler underTest = new VisitorsCrawler(singletonList(visitor), false, executor, 2);
+
+    underTest.visit(COMPONENT_TREE);
+
+    assertThat(visitor.events).containsExactly(
+      "file 4 prepared:4", "file 5 prepared:5", "any 3", "directory 3",
+      "file 7 prepared:7", "any 6", "directory 6",
+      "any 2", "module 2",
+      "any 1", "project 1");
+    assertThat(visitor.preparingThreads).doesNotContain(Thread.currentThread().getName());
+  }
+
+  @Test
+  public void visit_files_on_crawling_thread_when_there_is_no_executor() {
+    RecordingVisitor visitor = new RecordingVisitor();
+    VisitorsCrawler underTest = new VisitorsCrawler(singletonList(visitor));
+
+    underTest.visit(COMPONENT_TREE);
+
+    assertThat(visitor.events).containsExactly(
+      "any 4", "file 4", "any 5", "file 5", "any 3", "directory 3",
+      "any 7", "file 7", "any 6", "directory 6",
+      "any 2", "module 2",
+      "any 1", "project 1");
+    assertThat(visitor.preparingThreads).isEmpty();
+  }
+
+  @Test
+  public void number_of_files_prepared_ahead_of_crawl_is_bounded() {
+    RecordingVisitor visitor = new RecordingVisitor();
+    VisitorsCrawler underTest = new VisitorsCrawler(singletonList(visitor), false, executor, 1);
+
+    underTest.visit(COMPONENT_TREE);
+
+    // the file being visited and the one prepared ahead
+    assertThat(visitor.maxPendingFiles.get()).isLessThanOrEqualTo(2);
+    assertThat(visitor.events).contains("file 4 prepared:4", "file 5 prepared:5", "file 7 prepared:7");
+  }
+
+  @Test
+  public void failure_of_preparation_is_propagated_by_the_visit() {
+    RecordingVisitor visitor = new RecordingVisitor() {
+      @Override
+      public String prepareFile(Component file) {
+        if (file == FILE_5) {
+          throw new IllegalArgumentException("Simulates failure");
+        }
+        return super.prepareFile(file);
+      }
+    };
+    VisitorsCrawler underTest = new VisitorsCrawler(singletonList(visitor), false, executor, 2);
+
+    thrown.expect(VisitException.class);
+    thrown.expectMessage("Visit of Component {key=5,type=FILE} failed");
+
+    underTest.visit(COMPONENT_TREE);
+  }
+
+  private static Component component(final Component.Type type, final int ref, final Component... children) {
+    return ReportComponent.builder(type, ref).setKey(String.valueOf(ref)).addChildren(children).build();
+  }
+
+  private static class RecordingVisitor extends TypeAwareVisitorAdapter implements ConcurrentFileVisitor<String> {
+    private final List<String> events = new ArrayList<>();
+    private final List<String> preparingThreads = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger pendingFiles = new AtomicInteger();
+    private final AtomicInteger maxPendingFiles = new AtomicInteger();
+
+    RecordingVisitor() {
+      super(CrawlerDepthLimit.FILE, POST_ORDER);
+    }
+
+    @Override
+    public String prepareFile(Component file) {
+      preparingThreads.add(Thread.currentThread().getName());
+      int pending = pendingFiles.incrementAndGet();
+      maxPendingFiles.accumulateAndGet(pending, Math::max);
+      return "prepared:" + file.getKey();
+    }
+
+    @Override
+    public void visitFile(Component file, String prepared) {
+      pendingFiles.decrementAndGet();
+      events.add("file " + file.getKey() + " " + prepared);
+    }
+
+    @Override
+    public void visitAny(Component any) {
+      events.add("any " + any.getKey());
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      events.add("file " + file.getKey());
+    }
+
+    @Override
+    public void visitDirectory(Component directory) {
+      events.add("directory " + directory.getKey());
+    }
+
+    @Override
+    public void visitModule(Component module) {
+      events.add("module " + module.getKey());
+    }
+
+    @Override
+    public void visitProject(Component project) {
+      events.add("project " + project.getKey());
+    }
+  }
+}
@@ -34,6 +34,8 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
 import org.sonar.core.hash.SourceLinesHashesComputer;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -228,10 +230,11 @@ public class FileMoveDetectionStepTest {
   private ComponentDao componentDao = mock(ComponentDao.class);
   private FileSourceDao fileSourceDao = mock(FileSourceDao.class);
   private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
+  private Settings settings = new MapSettings();
   private long dbIdGenerator = 0;
 
   private FileMoveDetectionStep underTest = new FileMoveDetectionStep(analysisMetadataHolder, treeRootHolder, dbClient,
-    sourceLinesRepository, fileSimilarity, movedFilesRepository);
+    sourceLinesRepository, fileSimilarity, movedFilesRepository, settings);
 
   @Before
   public void setUp() throws Exception {
@@ -353,6 +356,21 @@ public class FileMoveDetectionStepTest {
     assertThat(movedFilesRepository.getComponentsWithOriginal()).isEmpty();
   }
 
+  @Test
+  public void execute_detects_move_of_file_listed_after_a_file_without_source_in_DB() {
+    analysisMetadataHolder.setBaseAnalysis(ANALYSIS);
+    ComponentDto[] dtos = mockComponents(FILE_1.getKey(), FILE_2.getKey());
+    // no source for FILE_1
+    mockContentOfFileInDb(FILE_2.getKey(), CONTENT1);
+    setFilesInReport(FILE_3);
+    setFileContentInReport(FILE_3_REF, CONTENT1);
+
+    underTest.execute();
+
+    assertThat(movedFilesRepository.getComponentsWithOriginal()).containsExactly(FILE_3);
+    assertThat(movedFilesRepository.getOriginalFile(FILE_3).get().getKey()).isEqualTo(dtos[1].getKey());
+  }
+
   @Test
   public void execute_detects_no_move_if_content_of_file_has_no_path_in_DB() {
     analysisMetadataHolder.setBaseAnalysis(ANALYSIS);
@@ -422,6 +440,19 @@ public class FileMoveDetectionStepTest {
 
   @Test
   public void execute_detects_several_moves() {
+    verifyDetectionOfSeveralMoves();
+  }
+
+  @Test
+  public void execute_detects_several_moves_when_scores_are_computed_on_several_threads() {
+    settings.setProperty(FileMoveDetectionStep.SCORE_THREADS_PROPERTY, 3);
+    underTest = new FileMoveDetectionStep(analysisMetadataHolder, treeRootHolder, dbClient,
+      sourceLinesRepository, fileSimilarity, movedFilesRepository, settings);
+
+    verifyDetectionOfSeveralMoves();
+  }
+
+  private void verifyDetectionOfSeveralMoves() {
     // testing:
     // - file1 renamed to file3
     // - file2 deleted
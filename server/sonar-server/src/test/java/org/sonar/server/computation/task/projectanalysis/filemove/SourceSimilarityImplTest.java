@@ -19,12 +19,16 @@
  */
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -59,4 +63,82 @@ public class SourceSimilarityImplTest {
   public void two_empty_lists_are_not_considered_as_equal() {
     assertThat(underTest.score(emptyList(), emptyList())).isEqualTo(0);
   }
+
+  @Test
+  public void score_of_int_arrays_is_the_same_as_score_of_lists_when_reaching_min_score() {
+    assertThat(underTest.score(new int[] {1, 2, 3}, new int[] {1, 2, 3}, 85)).isEqualTo(100);
+    assertThat(underTest.score(new int[] {1, 2, 3, 4}, new int[] {1, 2, 5, 6}, 50)).isEqualTo(50);
+    assertThat(underTest.score(new int[] {1}, new int[] {1, 2, 3}, 0)).isEqualTo(33);
+    assertThat(underTest.score(new int[] {1, 2, 3}, new int[] {4, 5}, 0)).isEqualTo(0);
+  }
+
+  @Test
+  public void score_of_int_arrays_is_lower_than_min_score_when_not_reaching_it() {
+    assertThat(underTest.score(new int[] {1, 2, 3, 4}, new int[] {1, 2, 5, 6}, 51)).isLessThan(51);
+    assertThat(underTest.score(new int[] {1}, new int[] {1, 2, 3}, 85)).isLessThan(85);
+    assertThat(underTest.score(new int[] {1, 2, 3}, new int[] {4, 5, 6}, 101)).isLessThan(101);
+  }
+
+  @Test
+  public void two_empty_int_arrays_are_not_considered_as_equal() {
+    assertThat(underTest.score(new int[0], new int[0], 0)).isEqualTo(0);
+  }
+
+  @Test
+  public void bounded_distance_stops_when_exceeding_max_distance() {
+    assertThat(SourceSimilarityImpl.boundedLevenshteinDistance(new int[] {1, 2, 3, 4}, new int[] {5, 6, 7, 8}, 2)).isEqualTo(3);
+    assertThat(SourceSimilarityImpl.boundedLevenshteinDistance(new int[] {1, 2, 3, 4}, new int[] {1, 2}, 1)).isEqualTo(2);
+    assertThat(SourceSimilarityImpl.boundedLevenshteinDistance(new int[] {1, 2, 3, 4}, new int[] {1, 2}, 2)).isEqualTo(2);
+    assertThat(SourceSimilarityImpl.boundedLevenshteinDistance(new int[] {1, 2, 3, 4}, new int[] {2, 3, 4, 1}, 2)).isEqualTo(2);
+  }
+
+  @Test
+  public void score_of_int_arrays_matches_score_of_lists_on_edited_copies_of_files() {
+    Random random = new Random(4242);
+    for (int i = 0; i < 300; i++) {
+      int[] original = randomLines(random, 1 + random.nextInt(200));
+      int[] edited = edit(random, original, random.nextInt(1 + original.length / 4));
+      int minScore = random.nextInt(101);
+
+      int expected = underTest.score(boxed(original), boxed(edited));
+      int score = underTest.score(original, edited, minScore);
+
+      if (expected >= minScore) {
+        assertThat(score).isEqualTo(expected);
+      } else {
+        assertThat(score).isLessThan(minScore);
+      }
+    }
+  }
+
+  private static int[] randomLines(Random random, int size) {
+    // few distinct lines, as in real sources (blank lines, closing braces, ...)
+    return IntStream.range(0, size).map(i -> random.nextInt(30)).toArray();
+  }
+
+  private static int[] edit(Random random, int[] lines, int editCount) {
+    List<Integer> res = boxed(lines);
+    for (int i = 0; i < editCount; i++) {
+      int index = random.nextInt(res.size() + 1);
+      switch (random.nextInt(3)) {
+        case 0:
+          res.add(index, random.nextInt(30));
+          break;
+        case 1:
+          if (index < res.size()) {
+            res.remove(index);
+          }
+          break;
+        default:
+          if (index < res.size()) {
+            res.set(index, random.nextInt(30));
+          }
+      }
+    }
+    return res.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static List<Integer> boxed(int[] lines) {
+    return new ArrayList<>(IntStream.of(lines).boxed().collect(toList()));
+  }
 }
@@ -0,0 +1,211 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static com.google.common.collect.ImmutableMap.of;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class DefaultIssueCodecTest {
+
+  private static final Date DATE_1 = new Date(1_500_000_000_000L);
+  private static final Date DATE_2 = new Date(1_500_000_100_000L);
+
+  private DefaultIssueCodec underTest = new DefaultIssueCodec();
+
+  @Test
+  public void encode_and_decode_issue_with_all_fields() throws IOException {
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(1).setEndLine(2))
+      .build();
+    DefaultIssueComment comment = new DefaultIssueComment()
+      .setKey("COMMENT1")
+      .setIssueKey("ISSUE1")
+      .setUserLogin("john")
+      .setMarkdownText("a *comment*")
+      .setCreatedAt(DATE_1)
+      .setUpdatedAt(DATE_2)
+      .setNew(true);
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE1")
+      .setType(RuleType.BUG)
+      .setComponentUuid("FILE1")
+      .setComponentKey("PROJECT:File.java")
+      .setModuleUuid("MODULE1")
+      .setModuleUuidPath(".MODULE1.")
+      .setProjectUuid("PROJECT1")
+      .setProjectKey("PROJECT")
+      .setRuleKey(RuleKey.of("java", "S001"))
+      .setLanguage("java")
+      .setSeverity(Severity.MAJOR)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(10)
+      .setGap(1.5)
+      .setEffort(Duration.create(30L))
+      .setStatus("OPEN")
+      .setResolution("FIXED")
+      .setAssignee("john")
+      .setChecksum("abcd")
+      .setAttributes(of("jira", "SONAR-1"))
+      .setAuthorLogin("john@doe")
+      .setTags(asList("bug", "cwe"))
+      .setLocations(locations)
+      .setCreationDate(DATE_1)
+      .setUpdateDate(DATE_2)
+      .setCloseDate(DATE_2)
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_000L)
+      .addComment(comment);
+    IssueChangeContext context = IssueChangeContext.createUser(DATE_2, "jane");
+    issue.setFieldChange(context, "severity", Severity.MINOR, Severity.MAJOR);
+    issue.setFieldChange(context, "effort", 10L, 30L);
+    issue.setFieldChange(context, "type", RuleType.CODE_SMELL, RuleType.BUG);
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ISSUE1");
+    assertThat(decoded.type()).isEqualTo(RuleType.BUG);
+    assertThat(decoded.componentUuid()).isEqualTo("FILE1");
+    assertThat(decoded.componentKey()).isEqualTo("PROJECT:File.java");
+    assertThat(decoded.moduleUuid()).isEqualTo("MODULE1");
+    assertThat(decoded.moduleUuidPath()).isEqualTo(".MODULE1.");
+    assertThat(decoded.projectUuid()).isEqualTo("PROJECT1");
+    assertThat(decoded.projectKey()).isEqualTo("PROJECT");
+    assertThat(decoded.ruleKey()).isEqualTo(RuleKey.of("java", "S001"));
+    assertThat(decoded.language()).isEqualTo("java");
+    assertThat(decoded.severity()).isEqualTo(Severity.MAJOR);
+    assertThat(decoded.manualSeverity()).isTrue();
+    assertThat(decoded.message()).isEqualTo("the message");
+    assertThat(decoded.line()).isEqualTo(10);
+    assertThat(decoded.gap()).isEqualTo(1.5);
+    assertThat(decoded.effort()).isEqualTo(Duration.create(30L));
+    assertThat(decoded.status()).isEqualTo("OPEN");
+    assertThat(decoded.resolution()).isEqualTo("FIXED");
+    assertThat(decoded.assignee()).isEqualTo("john");
+    assertThat(decoded.checksum()).isEqualTo("abcd");
+    assertThat(decoded.attributes()).containsOnly(entry("jira", "SONAR-1"));
+    assertThat(decoded.authorLogin()).isEqualTo("john@doe");
+    assertThat(decoded.tags()).containsExactly("bug", "cwe");
+    assertThat((DbIssues.Locations) decoded.getLocations()).isEqualTo(locations);
+    assertThat(decoded.creationDate()).isEqualTo(DATE_1);
+    assertThat(decoded.updateDate()).isEqualTo(DATE_2);
+    assertThat(decoded.closeDate()).isEqualTo(DATE_2);
+    assertThat(decoded.isNew()).isFalse();
+    assertThat(decoded.isBeingClosed()).isTrue();
+    assertThat(decoded.isOnDisabledRule()).isTrue();
+    assertThat(decoded.isChanged()).isTrue();
+    assertThat(decoded.mustSendNotifications()).isTrue();
+    assertThat(decoded.selectedAt()).isEqualTo(1_000L);
+
+    assertThat(decoded.comments()).hasSize(1);
+    DefaultIssueComment decodedComment = (DefaultIssueComment) decoded.comments().get(0);
+    assertThat(decodedComment.key()).isEqualTo("COMMENT1");
+    assertThat(decodedComment.issueKey()).isEqualTo("ISSUE1");
+    assertThat(decodedComment.userLogin()).isEqualTo("john");
+    assertThat(decodedComment.markdownText()).isEqualTo("a *comment*");
+    assertThat(decodedComment.createdAt()).isEqualTo(DATE_1);
+    assertThat(decodedComment.updatedAt()).isEqualTo(DATE_2);
+    assertThat(decodedComment.isNew()).isTrue();
+
+    FieldDiffs currentChange = decoded.currentChange();
+    assertThat(currentChange.userLogin()).isEqualTo("jane");
+    assertThat(currentChange.creationDate()).isEqualTo(DATE_2);
+    assertThat(currentChange.toString()).isEqualTo(issue.currentChange().toString());
+    assertThat(currentChange.get("effort").oldValue()).isEqualTo(10L);
+    assertThat(currentChange.get("type").newValue()).isEqualTo(RuleType.BUG);
+    assertThat(decoded.changes()).hasSize(issue.changes().size());
+    for (FieldDiffs change : decoded.changes()) {
+      assertThat(change).isSameAs(currentChange);
+    }
+  }
+
+  @Test
+  public void encode_and_decode_issue_with_only_mandatory_fields() throws IOException {
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE1")
+      .setStatus("OPEN");
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ISSUE1");
+    assertThat(decoded.status()).isEqualTo("OPEN");
+    assertThat(decoded.type()).isNull();
+    assertThat(decoded.ruleKey()).isNull();
+    assertThat(decoded.line()).isNull();
+    assertThat(decoded.gap()).isNull();
+    assertThat(decoded.effort()).isNull();
+    assertThat(decoded.creationDate()).isNull();
+    assertThat(decoded.selectedAt()).isNull();
+    assertThat(decoded.attributes()).isEmpty();
+    assertThat(decoded.tags()).isEmpty();
+    assertThat(decoded.comments()).isEmpty();
+    assertThat(decoded.changes()).isEmpty();
+    assertThat(decoded.currentChange()).isNull();
+    assertThat((Object) decoded.getLocations()).isNull();
+    assertThat(decoded.isNew()).isTrue();
+  }
+
+  @Test
+  public void encode_and_decode_changes_loaded_from_db() throws IOException {
+    FieldDiffs change1 = FieldDiffs.parse("severity=MINOR|MAJOR").setUserLogin("john").setCreationDate(DATE_1).setIssueKey("ISSUE1");
+    FieldDiffs change2 = FieldDiffs.parse("status=OPEN|CLOSED").setCreationDate(DATE_2).setIssueKey("ISSUE1");
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE1").setStatus("CLOSED").setChanges(asList(change1, change2));
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.currentChange()).isNull();
+    assertThat(decoded.changes()).extracting(FieldDiffs::toString).containsExactly("severity=MINOR|MAJOR", "status=OPEN|CLOSED");
+    assertThat(decoded.changes()).extracting(FieldDiffs::userLogin).containsExactly("john", null);
+    assertThat(decoded.changes()).extracting(FieldDiffs::creationDate).containsExactly(DATE_1, DATE_2);
+    assertThat(decoded.changes()).extracting(FieldDiffs::issueKey).containsExactly("ISSUE1", "ISSUE1");
+  }
+
+  private DefaultIssue encodeAndDecode(DefaultIssue issue) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      underTest.write(issue, output);
+    }
+    return underTest.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+}
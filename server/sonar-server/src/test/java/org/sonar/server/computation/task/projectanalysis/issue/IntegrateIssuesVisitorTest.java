@@ -33,6 +33,7 @@ import org.sonar.api.rule.Severity;
 import org.sonar.api.utils.System2;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Tracker;
+import org.sonar.core.issue.tracking.Tracking;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
@@ -45,7 +46,6 @@ import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
-import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitor;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.commonrule.CommonRuleEngineImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.filter.IssueFilter;
@@ -116,7 +116,7 @@ public class IntegrateIssuesVisitorTest {
   IssueVisitors issueVisitors = new IssueVisitors(new IssueVisitor[] {issueVisitor});
   ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues = new ComponentsWithUnprocessedIssues();
 
-  TypeAwareVisitor underTest;
+  IntegrateIssuesVisitor underTest;
 
   @Before
   public void setUp() throws Exception {
@@ -152,6 +152,29 @@ public class IntegrateIssuesVisitorTest {
     assertThat(componentsWithUnprocessedIssues.getUuids()).isEmpty();
   }
 
+  @Test
+  public void process_new_issue_of_prepared_file() throws Exception {
+    componentsWithUnprocessedIssues.setUuids(Collections.<String>emptySet());
+
+    ScannerReport.Issue reportIssue = ScannerReport.Issue.newBuilder()
+      .setMsg("the message")
+      .setRuleRepository("xoo")
+      .setRuleKey("S001")
+      .setSeverity(Constants.Severity.BLOCKER)
+      .build();
+    reportReader.putIssues(FILE_REF, asList(reportIssue));
+    fileSourceRepository.addLine(FILE_REF, "line1");
+
+    Tracking<DefaultIssue, DefaultIssue> tracking = underTest.prepareFile(FILE);
+    assertThat(newArrayList(issueCache.traverse())).isEmpty();
+    underTest.visitFile(FILE, tracking);
+
+    verify(issueLifecycle).initNewOpenIssue(defaultIssueCaptor.capture());
+    assertThat(defaultIssueCaptor.getValue().ruleKey().rule()).isEqualTo("S001");
+    assertThat(newArrayList(issueCache.traverse())).hasSize(1);
+    assertThat(componentIssuesRepository.getIssues(FILE_REF)).hasSize(1);
+  }
+
   @Test
   public void process_existing_issue() throws Exception {
     componentsWithUnprocessedIssues.setUuids(newHashSet(FILE_UUID));
@@ -0,0 +1,178 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.java.junit.dataprovider.UseDataProvider;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+@RunWith(DataProviderRunner.class)
+public class ArrayBasedRawMeasureRepositoryTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey("file cpt key").build();
+  private static final ReportComponent OTHER_COMPONENT = ReportComponent.builder(Component.Type.FILE, 200).setKey("some other key").build();
+  private static final Developer SOME_DEVELOPER = new DumbDeveloper("DEV1");
+  private static final QualityGateStatus SOME_QG_STATUS = new QualityGateStatus(Measure.Level.WARN, "some text");
+
+  private ArrayBasedRawMeasureRepository underTest = new ArrayBasedRawMeasureRepository(toReportRef());
+
+  @DataProvider
+  public static Object[][] measures() {
+    return new Object[][] {
+      {Metric.MetricType.INT, newMeasureBuilder().create(12)},
+      {Metric.MetricType.INT, newMeasureBuilder().setVariation(-3d).create(Integer.MIN_VALUE, "some data")},
+      {Metric.MetricType.WORK_DUR, newMeasureBuilder().create(Long.MAX_VALUE)},
+      {Metric.MetricType.FLOAT, newMeasureBuilder().setDescription("some description").create(1.25d, 2)},
+      {Metric.MetricType.BOOL, newMeasureBuilder().create(true)},
+      {Metric.MetricType.BOOL, newMeasureBuilder().create(false)},
+      {Metric.MetricType.STRING, newMeasureBuilder().create("some value")},
+      {Metric.MetricType.LEVEL, newMeasureBuilder().setQualityGateStatus(SOME_QG_STATUS).create(Measure.Level.ERROR)},
+      {Metric.MetricType.INT, newMeasureBuilder().setVariation(1.5d).createNoValue()},
+    };
+  }
+
+  @Test
+  @UseDataProvider("measures")
+  public void getRawMeasure_returns_measure_with_the_same_content_as_the_added_one(Metric.MetricType metricType, Measure measure) {
+    Metric metric = new MetricImpl(1, "key", "name", metricType);
+
+    underTest.add(FILE_COMPONENT, metric, measure);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric).get()).isEqualToComparingFieldByField(measure);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, metric)).isAbsent();
+  }
+
+  @Test
+  public void add_throws_UOE_if_measure_already_exists() {
+    Metric metric = new MetricImpl(1, "key", "name", Metric.MetricType.INT);
+    underTest.add(FILE_COMPONENT, metric, newMeasureBuilder().create(1));
+
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be set only once for a specific Component (key=file cpt key), Metric (key=key). Use update method");
+
+    underTest.add(FILE_COMPONENT, metric, newMeasureBuilder().create(2));
+  }
+
+  @Test
+  public void update_throws_UOE_if_measure_does_not_exist() {
+    Metric metric = new MetricImpl(1, "key", "name", Metric.MetricType.INT);
+    underTest.add(OTHER_COMPONENT, metric, newMeasureBuilder().create(1));
+
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be updated only if one already exists for a specific Component (key=file cpt key), Metric (key=key). Use add method");
+
+    underTest.update(FILE_COMPONENT, metric, newMeasureBuilder().create(2));
+  }
+
+  @Test
+  public void update_replaces_value_variation_and_extra_fields() {
+    Metric metric = new MetricImpl(1, "key", "name", Metric.MetricType.INT);
+    underTest.add(FILE_COMPONENT, metric, newMeasureBuilder().setDescription("some description").create(1, "some data"));
+    Measure newMeasure = newMeasureBuilder().setVariation(2d).create(3);
+
+    underTest.update(FILE_COMPONENT, metric, newMeasure);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric).get()).isEqualToComparingFieldByField(newMeasure);
+  }
+
+  @Test
+  public void add_with_DO_NOT_OVERRIDE_policy_keeps_existing_measure() {
+    Metric metric = new MetricImpl(1, "key", "name", Metric.MetricType.INT);
+    underTest.add(FILE_COMPONENT, metric, newMeasureBuilder().create(1));
+
+    underTest.add(FILE_COMPONENT, metric, newMeasureBuilder().create(2), OverridePolicy.DO_NOT_OVERRIDE);
+    underTest.add(OTHER_COMPONENT, metric, newMeasureBuilder().create(3), OverridePolicy.DO_NOT_OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric).get().getIntValue()).isEqualTo(1);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, metric).get().getIntValue()).isEqualTo(3);
+  }
+
+  @Test
+  public void measures_of_developers_are_stored_along_measures_of_components() {
+    Metric metric = new MetricImpl(1, "key", "name", Metric.MetricType.INT);
+    Measure measure = newMeasureBuilder().create(1);
+    Measure devMeasure = newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(2);
+
+    underTest.add(FILE_COMPONENT, metric, measure);
+    underTest.add(FILE_COMPONENT, metric, devMeasure);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric).get().getIntValue()).isEqualTo(1);
+    Set<Measure> measures = underTest.getRawMeasures(FILE_COMPONENT, metric);
+    assertThat(measures).hasSize(2).contains(devMeasure);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT).get("key")).hasSize(2);
+  }
+
+  @Test
+  public void getRawMeasures_returns_measures_of_all_metrics_of_component() {
+    Metric metric1 = new MetricImpl(1, "key1", "name1", Metric.MetricType.INT);
+    Metric metric2 = new MetricImpl(2, "key2", "name2", Metric.MetricType.STRING);
+    underTest.add(FILE_COMPONENT, metric1, newMeasureBuilder().create(1));
+    underTest.add(FILE_COMPONENT, metric2, newMeasureBuilder().create("a"));
+    underTest.add(OTHER_COMPONENT, metric2, newMeasureBuilder().create("b"));
+
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT).keySet()).containsOnly("key1", "key2");
+    assertThat(underTest.getRawMeasures(OTHER_COMPONENT).get("key2").iterator().next().getStringValue()).isEqualTo("b");
+    assertThat(underTest.getRawMeasures(ReportComponent.builder(Component.Type.FILE, 3).build()).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void store_measures_of_a_large_tree() {
+    int nbComponents = 50_000;
+    Metric lines = new MetricImpl(1, "lines", "Lines", Metric.MetricType.INT);
+    Metric coverage = new MetricImpl(2, "coverage", "Coverage", Metric.MetricType.PERCENT);
+    Metric status = new MetricImpl(3, "status", "Status", Metric.MetricType.LEVEL);
+    for (int ref = 1; ref <= nbComponents; ref++) {
+      Component component = ReportComponent.builder(Component.Type.FILE, ref).build();
+      underTest.add(component, lines, newMeasureBuilder().setVariation(-ref).create(ref));
+      if (ref % 2 == 0) {
+        underTest.add(component, coverage, newMeasureBuilder().create(ref / 1000d, 1));
+      }
+      underTest.add(component, status, newMeasureBuilder().create(Measure.Level.values()[ref % Measure.Level.values().length]));
+    }
+
+    for (int ref = 1; ref <= nbComponents; ref++) {
+      Component component = ReportComponent.builder(Component.Type.FILE, ref).build();
+      Measure measure = underTest.getRawMeasure(component, lines).get();
+      assertThat(measure.getIntValue()).isEqualTo(ref);
+      assertThat(measure.getVariation()).isEqualTo(-ref);
+      assertThat(underTest.getRawMeasure(component, coverage).isPresent()).isEqualTo(ref % 2 == 0);
+      assertThat(underTest.getRawMeasure(component, status).get().getLevelValue()).isEqualTo(Measure.Level.values()[ref % Measure.Level.values().length]);
+    }
+  }
+}
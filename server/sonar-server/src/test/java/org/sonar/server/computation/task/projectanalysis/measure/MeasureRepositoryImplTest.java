@@ -100,8 +100,10 @@ public class MeasureRepositoryImplTest {
   @Before
   public void setUp() {
     when(metric1.getKey()).thenReturn(METRIC_KEY_1);
+    when(metric1.getId()).thenReturn(METRIC_ID_1);
     when(metric1.getType()).thenReturn(Metric.MetricType.STRING);
     when(metric2.getKey()).thenReturn(METRIC_KEY_2);
+    when(metric2.getId()).thenReturn(METRIC_ID_2);
     when(metric2.getType()).thenReturn(Metric.MetricType.STRING);
 
     // references to metrics are consistent with DB by design
@@ -155,6 +157,20 @@ public class MeasureRepositoryImplTest {
     assertThat(res).isAbsent();
   }
 
+  @Test
+  public void getBaseMeasure_loads_measures_of_all_metrics_of_component_at_once() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_1, FILE_COMPONENT.getUuid(), LAST_ANALYSIS_UUID));
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_2, FILE_COMPONENT.getUuid(), LAST_ANALYSIS_UUID));
+    dbSession.commit();
+
+    assertThat(underTest.getBaseMeasure(FILE_COMPONENT, metric1)).isPresent();
+    // measures of component are not read again from DB
+    dbTester.executeUpdateSql("delete from project_measures");
+    assertThat(underTest.getBaseMeasure(FILE_COMPONENT, metric2)).isPresent();
+    assertThat(underTest.getBaseMeasure(FILE_COMPONENT, metric1).get().getStringValue()).isEqualTo(SOME_DATA);
+  }
+
   @Test
   public void add_throws_NPE_if_Component_argument_is_null() {
     expectedException.expect(NullPointerException.class);
@@ -285,7 +301,7 @@ public class MeasureRepositoryImplTest {
     underTest.add(FILE_COMPONENT, metric1, SOME_MEASURE);
     underTest.update(FILE_COMPONENT, metric1, newMeasure);
 
-    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1).get()).isSameAs(newMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1).get()).isEqualToComparingFieldByField(newMeasure);
   }
 
   @Test
@@ -315,7 +331,7 @@ public class MeasureRepositoryImplTest {
     Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, metric1);
 
     assertThat(res).isPresent();
-    assertThat(res.get()).isSameAs(SOME_MEASURE);
+    assertThat(res.get()).isEqualToComparingFieldByField(SOME_MEASURE);
 
     // make sure we really match on the specified component and metric
     assertThat(underTest.getRawMeasure(OTHER_COMPONENT, metric1)).isAbsent();
@@ -366,7 +382,7 @@ public class MeasureRepositoryImplTest {
     Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, metric1);
 
     assertThat(res).isPresent();
-    assertThat(res.get()).isSameAs(addedMeasure);
+    assertThat(res.get()).isEqualToComparingFieldByField(addedMeasure);
   }
 
   @Test
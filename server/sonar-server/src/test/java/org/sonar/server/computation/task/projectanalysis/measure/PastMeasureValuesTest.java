@@ -0,0 +1,69 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PastMeasureValuesTest {
+
+  private PastMeasureValues underTest = new PastMeasureValues();
+
+  @Test
+  public void getValue_returns_default_value_if_measure_does_not_exist() {
+    underTest.add("C1", 1, 10d);
+
+    assertThat(underTest.getValue("C1", 2, -1d)).isEqualTo(-1d);
+    assertThat(underTest.getValue("C2", 1, -1d)).isEqualTo(-1d);
+  }
+
+  @Test
+  public void getValue_returns_values_added_in_any_order() {
+    underTest
+      .add("C1", 30, 3d)
+      .add("C2", 10, 100d)
+      .add("C1", 10, 1d)
+      .add("C1", 20, 2d);
+
+    assertThat(underTest.getValue("C1", 10, 0d)).isEqualTo(1d);
+    assertThat(underTest.getValue("C1", 20, 0d)).isEqualTo(2d);
+    assertThat(underTest.getValue("C1", 30, 0d)).isEqualTo(3d);
+    assertThat(underTest.getValue("C2", 10, 0d)).isEqualTo(100d);
+    assertThat(underTest.size()).isEqualTo(4);
+  }
+
+  @Test
+  public void store_many_metrics_of_a_component() {
+    for (int metricId = 500; metricId > 0; metricId--) {
+      underTest.add("C1", metricId, metricId * 1.5d);
+    }
+
+    for (int metricId = 1; metricId <= 500; metricId++) {
+      assertThat(underTest.getValue("C1", metricId, 0d)).isEqualTo(metricId * 1.5d);
+    }
+    assertThat(underTest.getValue("C1", 501, 0d)).isEqualTo(0d);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void fail_if_component_uuid_is_null() {
+    underTest.add(null, 1, 1d);
+  }
+}
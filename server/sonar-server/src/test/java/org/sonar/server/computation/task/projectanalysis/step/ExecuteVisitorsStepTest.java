@@ -19,15 +19,19 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.computation.task.ChangeLogLevel;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
+import org.sonar.server.computation.task.projectanalysis.component.ConcurrentFileVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
@@ -39,6 +43,7 @@ import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.synchronizedList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.api.measures.CoreMetrics.NCLOC;
 import static org.sonar.api.measures.CoreMetrics.NCLOC_KEY;
@@ -70,6 +75,8 @@ public class ExecuteVisitorsStepTest {
   @Rule
   public LogTester logTester = new LogTester();
 
+  private Settings settings = new MapSettings();
+
   @Before
   public void setUp() throws Exception {
     treeRootHolder.setRoot(
@@ -88,7 +95,7 @@ public class ExecuteVisitorsStepTest {
 
   @Test
   public void execute_with_type_aware_visitor() throws Exception {
-    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestTypeAwareVisitor()));
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestTypeAwareVisitor()), settings);
 
     measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
     measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(2));
@@ -105,9 +112,33 @@ public class ExecuteVisitorsStepTest {
     assertThat(measureRepository.getAddedRawMeasure(ROOT_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(4);
   }
 
+  @Test
+  public void execute_with_concurrent_file_visitor_on_several_threads() throws Exception {
+    settings.setProperty(ExecuteVisitorsStep.FILE_THREADS_PROPERTY, 2);
+    TestConcurrentFileVisitor visitor = new TestConcurrentFileVisitor();
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(visitor), settings);
+
+    measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
+    measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(2));
+    measureRepository.addRawMeasure(DIRECTORY_REF, NCLOC_KEY, newMeasureBuilder().create(3));
+    measureRepository.addRawMeasure(MODULE_REF, NCLOC_KEY, newMeasureBuilder().create(3));
+    measureRepository.addRawMeasure(ROOT_REF, NCLOC_KEY, newMeasureBuilder().create(3));
+
+    underStep.execute();
+
+    assertThat(measureRepository.getAddedRawMeasure(FILE_1_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(2);
+    assertThat(measureRepository.getAddedRawMeasure(FILE_2_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(3);
+    assertThat(measureRepository.getAddedRawMeasure(DIRECTORY_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(4);
+    assertThat(measureRepository.getAddedRawMeasure(ROOT_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(4);
+    assertThat(visitor.preparingThreads).hasSize(2);
+    for (String preparingThread : visitor.preparingThreads) {
+      assertThat(preparingThread).startsWith("FileVisitor-");
+    }
+  }
+
   @Test
   public void execute_with_path_aware_visitor() throws Exception {
-    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestPathAwareVisitor()));
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestPathAwareVisitor()), settings);
 
     measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
     measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(1));
@@ -129,7 +160,7 @@ public class ExecuteVisitorsStepTest {
       ChangeLogLevel step3 = new ChangeLogLevel(VisitorB.class, LoggerLevel.DEBUG)) {
       ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(
         treeRootHolder,
-        asList(new VisitorA(), new VisitorB(), new VisitorC()));
+        asList(new VisitorA(), new VisitorB(), new VisitorC()), settings);
 
       underStep.execute();
 
@@ -174,6 +205,22 @@ public class ExecuteVisitorsStepTest {
     }
   }
 
+  private class TestConcurrentFileVisitor extends TestTypeAwareVisitor implements ConcurrentFileVisitor<Integer> {
+    private final List<String> preparingThreads = synchronizedList(new ArrayList<>());
+
+    @Override
+    public Integer prepareFile(Component file) {
+      preparingThreads.add(Thread.currentThread().getName());
+      // MeasureRepositoryRule is not thread-safe
+      return file.getReportAttributes().getRef() == FILE_1_REF ? 2 : 3;
+    }
+
+    @Override
+    public void visitFile(Component file, Integer prepared) {
+      measureRepository.add(file, metricRepository.getByKey(TEST_METRIC_KEY), newMeasureBuilder().create(prepared));
+    }
+  }
+
   private class TestPathAwareVisitor extends PathAwareVisitorAdapter<Counter> {
 
     public TestPathAwareVisitor() {
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -35,6 +36,9 @@ import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.db.DbTester;
 import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.scanner.protocol.output.ReportArchive;
+import org.sonar.scanner.protocol.output.ReportContainer;
+import org.sonar.scanner.protocol.output.ZipReportArchive;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportDirectoryHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.batch.MutableBatchReportDirectoryHolder;
 
@@ -70,21 +74,49 @@ public class ExtractReportStepTest {
   }
 
   @Test
-  public void unzip_report() throws Exception {
+  public void read_zip_report_without_extracting_it() throws Exception {
     File reportFile = generateReport();
+    insertReport(reportFile);
+
+    underTest.execute();
+
+    // archive is a copy of the report (which contains only metadata.pb in this test)
+    ReportArchive archive = reportDirectoryHolder.getArchive();
+    assertThat(archive).isInstanceOf(ZipReportArchive.class);
+    assertThat(archive.getFile()).hasBinaryContent(FileUtils.readFileToByteArray(reportFile));
+    assertThat(archive.entryNames()).containsOnly("metadata.pb");
+    assertThat(readEntry(archive, "metadata.pb")).isEqualTo("{metadata}");
+  }
+
+  @Test
+  public void read_report_container_without_extracting_it() throws Exception {
+    File reportDir = tempFolder.newDir();
+    FileUtils.write(new File(reportDir, "metadata.pb"), "{metadata}");
+    File reportFile = tempFolder.newFile();
+    ReportContainer.write(reportDir, reportFile);
+    insertReport(reportFile);
+
+    underTest.execute();
+
+    ReportArchive archive = reportDirectoryHolder.getArchive();
+    assertThat(archive).isInstanceOf(ReportContainer.class);
+    assertThat(archive.getFile()).hasBinaryContent(FileUtils.readFileToByteArray(reportFile));
+    assertThat(archive.entryNames()).containsOnly("metadata.pb");
+    assertThat(readEntry(archive, "metadata.pb")).isEqualTo("{metadata}");
+  }
+
+  private void insertReport(File reportFile) throws IOException {
     try (InputStream input = FileUtils.openInputStream(reportFile)) {
       dbTester.getDbClient().ceTaskInputDao().insert(dbTester.getSession(), TASK_UUID, input);
     }
     dbTester.getSession().commit();
     dbTester.getSession().close();
+  }
 
-    underTest.execute();
-
-    // directory contains the uncompressed report (which contains only metadata.pb in this test)
-    File unzippedDir = reportDirectoryHolder.getDirectory();
-    assertThat(unzippedDir).isDirectory().exists();
-    assertThat(unzippedDir.listFiles()).hasSize(1);
-    assertThat(new File(unzippedDir, "metadata.pb")).hasContent("{metadata}");
+  private static String readEntry(ReportArchive archive, String name) throws IOException {
+    try (InputStream input = archive.openEntry(name)) {
+      return IOUtils.toString(input);
+    }
   }
 
   private File generateReport() throws IOException {
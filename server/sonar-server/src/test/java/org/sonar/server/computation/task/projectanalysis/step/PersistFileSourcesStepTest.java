@@ -20,11 +20,16 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import java.util.Arrays;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
@@ -51,7 +56,11 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PersistFileSourcesStepTest extends BaseStepTest {
@@ -63,10 +72,13 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   private static final long NOW = 123456789L;
 
   private System2 system2 = mock(System2.class);
+  private Settings settings = new MapSettings();
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public LogTester logTester = new LogTester();
   @Rule
   public DbTester dbTester = DbTester.create(system2);
   @Rule
@@ -88,7 +100,8 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   @Before
   public void setup() {
     when(system2.now()).thenReturn(NOW);
-    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository);
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository,
+      settings);
   }
 
   @Override
@@ -120,6 +133,26 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(data.getLines(1).getSource()).isEqualTo("line2");
   }
 
+  @Test
+  public void persist_sources_when_batch_budget_is_exceeded_by_each_file() {
+    settings.setProperty(PersistFileSourcesStep.MAX_BATCH_BYTES_PROPERTY, 1L);
+    DbClient spiedDbClient = spy(dbClient);
+    DbSession spiedSession = spy(dbClient.openSession(true));
+    doReturn(spiedSession).when(spiedDbClient).openSession(true);
+    underTest = new PersistFileSourcesStep(spiedDbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository,
+      settings);
+    initReportWithFiles(3);
+
+    underTest.execute();
+
+    // one commit per file, none for the final flush as nothing is pending anymore
+    verify(spiedSession, times(3)).commit();
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(3);
+    for (int i = 1; i <= 3; i++) {
+      assertThat(dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID + i).getSourceData().getLinesCount()).isEqualTo(1);
+    }
+  }
+
   @Test
   public void persist_source_hashes() {
     initBasicReport(2);
@@ -281,7 +314,13 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     long past = 150000L;
     String srcHash = "137f72c3708c6bd0de00a0e5a69c699b";
     String lineHashes = "137f72c3708c6bd0de00a0e5a69c699b";
-    String dataHash = "29f25900140c94db38035128cb6de6a2";
+    DbFileSources.Data data = DbFileSources.Data.newBuilder()
+      .addLines(DbFileSources.Line.newBuilder()
+        .setLine(1)
+        .setSource("line1")
+        .build())
+      .build();
+    String dataHash = DigestUtils.md5Hex(FileSourceDto.encodeSourceData(data));
 
     dbClient.fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
       .setProjectUuid(PROJECT_UUID)
@@ -289,12 +328,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
       .setSrcHash(srcHash)
       .setLineHashes(lineHashes)
       .setDataHash(dataHash)
-      .setSourceData(DbFileSources.Data.newBuilder()
-        .addLines(DbFileSources.Line.newBuilder()
-          .setLine(1)
-          .setSource("line1")
-          .build())
-        .build())
+      .setSourceData(data)
       .setCreatedAt(past)
       .setUpdatedAt(past));
     dbTester.getSession().commit();
@@ -456,6 +490,121 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getRevision()).isNull();
   }
 
+  @Test
+  public void persist_inputs_hash() {
+    initBasicReport(2);
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getInputsHash()).hasSize(32);
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("1 files persisted, 0 files skipped as their sources did not change");
+  }
+
+  @Test
+  public void skip_file_when_inputs_did_not_change() {
+    initBasicReport(2);
+    underTest.execute();
+    FileSourceDto persisted = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    // data hash is altered so that any rebuild of data would update the row
+    dbClient.fileSourceDao().update(session, persisted.setDataHash("altered"));
+    session.commit();
+    logTester.clear();
+
+    when(system2.now()).thenReturn(NOW + 1000L);
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getDataHash()).isEqualTo("altered");
+    assertThat(fileSourceDto.getInputsHash()).isEqualTo(persisted.getInputsHash());
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("0 files persisted, 1 files skipped as their sources did not change");
+  }
+
+  @Test
+  public void update_sources_when_coverage_changed() {
+    initBasicReport(1);
+    underTest.execute();
+    String inputsHash = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID).getInputsHash();
+
+    reportReader.putCoverage(FILE_REF, newArrayList(ScannerReport.LineCoverage.newBuilder()
+      .setLine(1)
+      .setConditions(10)
+      .setHits(true)
+      .build()));
+    when(system2.now()).thenReturn(NOW + 1000L);
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getInputsHash()).isNotEqualTo(inputsHash);
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW + 1000L);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getLineHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void update_sources_when_scm_changed() {
+    initBasicReport(1);
+    scmInfoRepository.setScmInfo(FILE_REF, Changeset.newChangesetBuilder()
+      .setAuthor("john")
+      .setDate(123456789L)
+      .setRevision("rev-1")
+      .build());
+    underTest.execute();
+    String inputsHash = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID).getInputsHash();
+
+    scmInfoRepository.setScmInfo(FILE_REF, Changeset.newChangesetBuilder()
+      .setAuthor("jane")
+      .setDate(123456789L)
+      .setRevision("rev-1")
+      .build());
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getInputsHash()).isNotEqualTo(inputsHash);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getScmAuthor()).isEqualTo("jane");
+  }
+
+  @Test
+  public void store_inputs_hash_without_changing_update_date_when_missing() {
+    initBasicReport(1);
+    underTest.execute();
+    FileSourceDto persisted = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    String inputsHash = persisted.getInputsHash();
+    dbClient.fileSourceDao().update(session, persisted.setInputsHash(null));
+    session.commit();
+
+    when(system2.now()).thenReturn(NOW + 1000L);
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getInputsHash()).isEqualTo(inputsHash);
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+  }
+
+  private void initReportWithFiles(int numberOfFiles) {
+    ReportComponent.Builder module = ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY");
+    ScannerReport.Component.Builder moduleReport = ScannerReport.Component.newBuilder().setRef(2).setType(ComponentType.MODULE);
+    for (int i = 1; i <= numberOfFiles; i++) {
+      int fileRef = FILE_REF + i;
+      module.addChildren(ReportComponent.builder(Component.Type.FILE, fileRef).setUuid(FILE_UUID + i).setKey("MODULE_KEY:src/Foo" + i + ".java")
+        .setFileAttributes(new FileAttributes(false, null, 1)).build());
+      moduleReport.addChildRef(fileRef);
+      reportReader.putComponent(ScannerReport.Component.newBuilder()
+        .setRef(fileRef)
+        .setType(ComponentType.FILE)
+        .setLines(1)
+        .build());
+      fileSourceRepository.addLine(fileRef, "line1");
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(module.build()).build());
+    reportReader.putComponent(ScannerReport.Component.newBuilder()
+      .setRef(1)
+      .setType(ComponentType.PROJECT)
+      .addChildRef(2)
+      .build());
+    reportReader.putComponent(moduleReport.build());
+  }
+
   private void initBasicReport(int numberOfLines) {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
       ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
@@ -24,22 +24,22 @@ import com.google.common.collect.FluentIterable;
 import com.tngtech.java.junit.dataprovider.DataProvider;
 import com.tngtech.java.junit.dataprovider.DataProviderRunner;
 import com.tngtech.java.junit.dataprovider.UseDataProvider;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
-import org.sonar.api.config.Settings;
-import org.sonar.api.config.MapSettings;
+import org.sonar.ce.queue.CeQueue;
+import org.sonar.ce.queue.CeTaskSubmit;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.purge.IdUuidPair;
+import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.server.computation.dbcleaner.ProjectCleaner;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
-import org.sonar.server.computation.task.projectanalysis.component.MutableDbIdsRepositoryRule;
 import org.sonar.server.computation.task.projectanalysis.component.MutableDisabledComponentsHolder;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
-import org.sonar.server.computation.task.projectanalysis.component.SettingsRepository;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
 import org.sonar.server.computation.task.step.ComputationStep;
@@ -47,10 +47,12 @@ import org.sonar.server.util.WrapInSingleElementArray;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -59,19 +61,22 @@ import static org.mockito.Mockito.when;
 public class PurgeDatastoresStepTest extends BaseStepTest {
 
   private static final String PROJECT_KEY = "PROJECT_KEY";
-  private static final long PROJECT_ID = 123L;
   private static final String PROJECT_UUID = "UUID-1234";
 
   @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
-  @Rule
-  public MutableDbIdsRepositoryRule dbIdsRepository = MutableDbIdsRepositoryRule.standalone();
 
   private ProjectCleaner projectCleaner = mock(ProjectCleaner.class);
-  private SettingsRepository settingsRepository = mock(SettingsRepository.class);
+  private DbClient dbClient = mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS);
+  private CeQueue ceQueue = mock(CeQueue.class);
   private MutableDisabledComponentsHolder disabledComponentsHolder = mock(MutableDisabledComponentsHolder.class, RETURNS_DEEP_STUBS);
 
-  private PurgeDatastoresStep underTest = new PurgeDatastoresStep(mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS), projectCleaner, dbIdsRepository, treeRootHolder, settingsRepository, disabledComponentsHolder);
+  private PurgeDatastoresStep underTest = new PurgeDatastoresStep(dbClient, projectCleaner, ceQueue, treeRootHolder, disabledComponentsHolder);
+
+  @Before
+  public void setUp() {
+    when(ceQueue.prepareSubmit()).thenReturn(new CeTaskSubmit.Builder("TASK_UUID"));
+  }
 
   @Test
   public void call_purge_method_of_the_purge_task_for_project() {
@@ -87,6 +92,31 @@ public class PurgeDatastoresStepTest extends BaseStepTest {
     verify_call_purge_method_of_the_purge_task(project);
   }
 
+  @Test
+  public void do_not_submit_purge_task_if_one_is_already_pending() {
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    when(dbClient.ceQueueDao().selectByComponentUuid(any(DbSession.class), eq(PROJECT_UUID))).thenReturn(asList(
+      new CeQueueDto().setUuid("REPORT_TASK").setTaskType(CeTaskTypes.REPORT).setComponentUuid(PROJECT_UUID).setStatus(CeQueueDto.Status.IN_PROGRESS),
+      new CeQueueDto().setUuid("PURGE_TASK").setTaskType(CeTaskTypes.PURGE).setComponentUuid(PROJECT_UUID).setStatus(CeQueueDto.Status.PENDING)));
+
+    underTest.execute();
+
+    verify(projectCleaner).purgeDisabledComponents(any(DbSession.class), eq(PROJECT_UUID), anyCollection());
+    verify(ceQueue, never()).submit(any(CeTaskSubmit.class));
+  }
+
+  @Test
+  public void do_not_submit_purge_task_if_submits_are_paused() {
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build();
+    treeRootHolder.setRoot(project);
+    when(ceQueue.isSubmitPaused()).thenReturn(true);
+
+    underTest.execute();
+
+    verify(ceQueue, never()).submit(any(CeTaskSubmit.class));
+  }
+
   @DataProvider
   public static Object[][] nonRootProjectComponentTypes() {
     return dataproviderFromComponentTypeValues(new Predicate<Component.Type>() {
@@ -128,20 +158,21 @@ public class PurgeDatastoresStepTest extends BaseStepTest {
 
     underTest.execute();
 
-    verifyNoMoreInteractions(projectCleaner);
+    verifyNoMoreInteractions(projectCleaner, ceQueue);
   }
 
   private void verify_call_purge_method_of_the_purge_task(Component project) {
     treeRootHolder.setRoot(project);
-    when(settingsRepository.getSettings(project)).thenReturn(new MapSettings());
-    dbIdsRepository.setComponentId(project, PROJECT_ID);
+    when(disabledComponentsHolder.getUuids()).thenReturn(asList("DISABLED_1", "DISABLED_2"));
 
     underTest.execute();
 
-    ArgumentCaptor<IdUuidPair> argumentCaptor = ArgumentCaptor.forClass(IdUuidPair.class);
-    verify(projectCleaner).purge(any(DbSession.class), argumentCaptor.capture(), any(Settings.class), anyList());
-    assertThat(argumentCaptor.getValue().getId()).isEqualTo(PROJECT_ID);
-    assertThat(argumentCaptor.getValue().getUuid()).isEqualTo(PROJECT_UUID);
+    verify(projectCleaner).purgeDisabledComponents(any(DbSession.class), eq(PROJECT_UUID), eq(asList("DISABLED_1", "DISABLED_2")));
+    verifyNoMoreInteractions(projectCleaner);
+    ArgumentCaptor<CeTaskSubmit> argumentCaptor = ArgumentCaptor.forClass(CeTaskSubmit.class);
+    verify(ceQueue).submit(argumentCaptor.capture());
+    assertThat(argumentCaptor.getValue().getType()).isEqualTo(CeTaskTypes.PURGE);
+    assertThat(argumentCaptor.getValue().getComponentUuid()).isEqualTo(PROJECT_UUID);
   }
 
   private static Object[][] dataproviderFromComponentTypeValues(Predicate<Component.Type> predicate) {
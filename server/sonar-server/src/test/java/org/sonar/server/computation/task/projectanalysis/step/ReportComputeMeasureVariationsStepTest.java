@@ -144,6 +144,40 @@ public class ReportComputeMeasureVariationsStepTest {
     assertThat(measureRepository.getRawMeasure(directory, ISSUES_METRIC).get().getVariation()).isEqualTo(10d);
   }
 
+  @Test
+  public void load_past_measures_of_all_components_with_a_single_query() {
+    SnapshotDto period1Snapshot = newAnalysis(project);
+    dbClient.snapshotDao().insert(session, period1Snapshot);
+    dbClient.measureDao().insert(session, newMeasureDto(ISSUES_METRIC.getId(), PROJECT_UUID, period1Snapshot.getUuid(), 60d));
+    ComponentDto directory1Dto = ComponentTesting.newDirectory(project, "dir1");
+    ComponentDto directory2Dto = ComponentTesting.newDirectory(project, "dir2");
+    ComponentDto fileDto = ComponentTesting.newFileDto(project, directory2Dto);
+    dbClient.componentDao().insert(session, directory1Dto, directory2Dto, fileDto);
+    dbClient.measureDao().insert(session, newMeasureDto(ISSUES_METRIC.getId(), directory1Dto.uuid(), period1Snapshot.getUuid(), 10d));
+    dbClient.measureDao().insert(session, newMeasureDto(ISSUES_METRIC.getId(), directory2Dto.uuid(), period1Snapshot.getUuid(), 30d));
+    dbClient.measureDao().insert(session, newMeasureDto(ISSUES_METRIC.getId(), fileDto.uuid(), period1Snapshot.getUuid(), 30d));
+    session.commit();
+
+    periodsHolder.setPeriod(newPeriod(period1Snapshot));
+
+    Component directory1 = ReportComponent.builder(Component.Type.DIRECTORY, 2).setUuid(directory1Dto.uuid()).build();
+    Component directory2 = ReportComponent.builder(Component.Type.DIRECTORY, 3).setUuid(directory2Dto.uuid()).build();
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).addChildren(directory1, directory2).build();
+    treeRootHolder.setRoot(project);
+
+    addRawMeasure(project, ISSUES_METRIC, newMeasureBuilder().create(80, null));
+    addRawMeasure(directory1, ISSUES_METRIC, newMeasureBuilder().create(20, null));
+    addRawMeasure(directory2, ISSUES_METRIC, newMeasureBuilder().create(20, null));
+
+    underTest.execute();
+
+    assertThat(measureRepository.getRawMeasure(project, ISSUES_METRIC).get().getVariation()).isEqualTo(20d);
+    assertThat(measureRepository.getRawMeasure(directory1, ISSUES_METRIC).get().getVariation()).isEqualTo(10d);
+    assertThat(measureRepository.getRawMeasure(directory2, ISSUES_METRIC).get().getVariation()).isEqualTo(-10d);
+    // measure of file is not loaded
+    assertThat(underTest.getStatistics()).containsEntry("pastMeasuresQueries", 1).containsEntry("pastMeasures", 3);
+  }
+
   @Test
   public void set_zero_variation_when_no_change() {
     // Project
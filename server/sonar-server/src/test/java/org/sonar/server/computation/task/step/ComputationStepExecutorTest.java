@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.collect.ImmutableMap;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.Rule;
@@ -38,6 +39,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 public class ComputationStepExecutorTest {
   @Rule
@@ -104,6 +106,23 @@ public class ComputationStepExecutorTest {
     assertThat(infoLogs.get(1)).contains("step2 | time=");
   }
 
+  @Test
+  public void execute_logs_statistics_of_ComputationStep_with_its_timing() {
+    ComputationStep stepWithStatistics = mock(ComputationStep.class, withSettings().extraInterfaces(ComputationStep.WithStatistics.class));
+    when(stepWithStatistics.getDescription()).thenReturn("step1");
+    when(((ComputationStep.WithStatistics) stepWithStatistics).getStatistics()).thenReturn(ImmutableMap.of("queries", 2, "rows", 10));
+
+    try (ChangeLogLevel executor = new ChangeLogLevel(ComputationStepExecutor.class, LoggerLevel.DEBUG)) {
+      new ComputationStepExecutor(mockComputationSteps(stepWithStatistics, computationStep2))
+        .execute();
+    }
+
+    List<String> logs = logTester.logs(LoggerLevel.DEBUG);
+    assertThat(logs).hasSize(2);
+    assertThat(logs.get(0)).startsWith("step1 | time=").endsWith(" | queries=2 | rows=10");
+    assertThat(logs.get(1)).doesNotContain("queries");
+  }
+
   private List<String> execute_logs_end_timing_for_each_ComputationStep_called_when_(LoggerLevel level) {
     try (ChangeLogLevel executor = new ChangeLogLevel(ComputationStepExecutor.class, level);
       ChangeLogLevel step1 = new ChangeLogLevel(computationStep1.getClass(), level);
@@ -38,6 +38,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import org.junit.Rule;
@@ -64,11 +65,12 @@ public class CeProcessingSchedulerImplTest {
   public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
 
   private CeWorkerCallable ceWorkerRunnable = mock(CeWorkerCallable.class);
+  private CeWorkersWakeUp workersWakeUp = new CeWorkersWakeUp();
   private StubCeProcessingSchedulerExecutorService processingExecutorService = new StubCeProcessingSchedulerExecutorService();
   private SchedulerCall regularDelayedPoll = new SchedulerCall(ceWorkerRunnable, 2000L, TimeUnit.MILLISECONDS);
   private SchedulerCall notDelayedPoll = new SchedulerCall(ceWorkerRunnable);
 
-  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable);
+  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, workersWakeUp);
 
   @Test
   public void polls_without_delay_when_CeWorkerCallable_returns_true() throws Exception {
@@ -136,12 +138,122 @@ public class CeProcessingSchedulerImplTest {
       notDelayedPoll,
       regularDelayedPoll,
       notDelayedPoll,
+      regularDelayedPoll,
+      delayedPoll(4000L),
+      delayedPoll(8000L)
+      );
+  }
+
+  @Test
+  public void delay_between_polls_of_empty_queue_doubles_up_to_8_times_the_regular_delay() throws Exception {
+    when(ceWorkerRunnable.call())
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenReturn(true)
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      regularDelayedPoll,
+      delayedPoll(4000L),
+      delayedPoll(8000L),
+      delayedPoll(16000L),
+      delayedPoll(16000L),
+      notDelayedPoll,
+      regularDelayedPoll
+      );
+  }
+
+  @Test
+  public void wakeUp_replaces_delayed_poll_by_a_poll_without_delay() throws Exception {
+    when(ceWorkerRunnable.call())
+      .thenReturn(false)
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    // run the initial poll, which schedules a delayed poll
+    processingExecutorService.futures.poll().get();
+
+    workersWakeUp.wakeUp();
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
       regularDelayedPoll,
       regularDelayedPoll,
+      notDelayedPoll,
       regularDelayedPoll
       );
   }
 
+  @Test
+  public void wakeUp_has_no_effect_when_no_delayed_poll_is_pending() throws Exception {
+    when(ceWorkerRunnable.call())
+      .thenReturn(true)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    workersWakeUp.wakeUp();
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll
+      );
+  }
+
+  @Test
+  public void wakeUp_does_not_replace_delayed_poll_which_already_started() throws Exception {
+    when(ceWorkerRunnable.call())
+      .thenReturn(false)
+      .thenAnswer(invocation -> {
+        // worker is woken up while the delayed poll is running
+        workersWakeUp.wakeUp();
+        return false;
+      })
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      regularDelayedPoll,
+      delayedPoll(4000L)
+      );
+  }
+
+  @Test
+  public void wakeUp_concurrent_with_chaining_of_delayed_poll_chains_a_single_call_per_completed_call() throws Exception {
+    ceConfiguration.setQueuePollingDelay(1);
+    AtomicInteger calls = new AtomicInteger();
+    CeWorkerCallable emptyQueueWorker = () -> {
+      calls.incrementAndGet();
+      return false;
+    };
+    ChainCheckingExecutorService executorService = new ChainCheckingExecutorService(ceConfiguration);
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, executorService, emptyQueueWorker, workersWakeUp);
+
+    underTest.startScheduling();
+    try {
+      // worker is woken up over and over while it chains delayed polls of the empty queue
+      while (calls.get() < 1000) {
+        workersWakeUp.wakeUp();
+      }
+    } finally {
+      underTest.stop();
+      executorService.stop();
+    }
+
+    // a call chained while another call of the same worker is pending means a completion was chained twice
+    assertThat(executorService.chainedWhilePending.get()).isEqualTo(0);
+  }
+
   @Test
   public void stop_cancels_next_polling_and_does_not_add_any_new_one() throws Exception {
     when(ceWorkerRunnable.call())
@@ -189,7 +301,7 @@ public class CeProcessingSchedulerImplTest {
 
     ListenableScheduledFuture listenableScheduledFuture = mock(ListenableScheduledFuture.class);
     CeProcessingSchedulerExecutorService processingExecutorService = mock(CeProcessingSchedulerExecutorService.class);
-    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable);
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable, workersWakeUp);
     when(processingExecutorService.schedule(ceWorkerRunnable, ceConfiguration.getQueuePollingDelay(), MILLISECONDS))
         .thenReturn(listenableScheduledFuture);
 
@@ -199,6 +311,10 @@ public class CeProcessingSchedulerImplTest {
     verify(listenableScheduledFuture, times(workerCount)).addListener(any(Runnable.class), eq(processingExecutorService));
   }
 
+  private SchedulerCall delayedPoll(long delay) {
+    return new SchedulerCall(ceWorkerRunnable, delay, TimeUnit.MILLISECONDS);
+  }
+
   private void startSchedulingAndRun() throws ExecutionException, InterruptedException {
     underTest.startScheduling();
 
@@ -206,6 +322,43 @@ public class CeProcessingSchedulerImplTest {
     processingExecutorService.runFutures();
   }
 
+  /**
+   * A {@link CeProcessingSchedulerExecutorServiceImpl} which counts the calls submitted or scheduled while a previous
+   * call is neither completed nor cancelled.
+   */
+  private static class ChainCheckingExecutorService extends CeProcessingSchedulerExecutorServiceImpl {
+    private final Queue<Future<?>> futures = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger chainedWhilePending = new AtomicInteger();
+
+    ChainCheckingExecutorService(CeConfigurationRule ceConfiguration) {
+      super(ceConfiguration);
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submit(Callable<T> task) {
+      checkNoPendingFuture();
+      return record(super.submit(task));
+    }
+
+    @Override
+    public <V> ListenableScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+      checkNoPendingFuture();
+      return record(super.schedule(callable, delay, unit));
+    }
+
+    private void checkNoPendingFuture() {
+      if (futures.stream().anyMatch(future -> !future.isDone())) {
+        chainedWhilePending.incrementAndGet();
+      }
+      futures.removeIf(Future::isDone);
+    }
+
+    private <F extends Future<?>> F record(F future) {
+      futures.add(future);
+      return future;
+    }
+  }
+
   /**
    * A synchronous implementation of {@link CeProcessingSchedulerExecutorService} which exposes a synchronous
    * method to execute futures it creates and exposes a method to retrieve logs of calls to
@@ -333,9 +486,10 @@ public class CeProcessingSchedulerImplTest {
     private class SynchronousStubExecutorService implements ScheduledExecutorService {
       @Override
       public ScheduledFuture<?> schedule(final Runnable command, long delay, TimeUnit unit) {
-        ScheduledFuture<Void> res = new AbstractPartiallyImplementedScheduledFuture<Void>() {
+        ScheduledFuture<Void> res = new AbstractPartiallyImplementedScheduledFuture<Void>(delay, unit) {
           @Override
           public Void get() throws InterruptedException, ExecutionException {
+            markStarted();
             command.run();
             return null;
           }
@@ -346,10 +500,11 @@ public class CeProcessingSchedulerImplTest {
 
       @Override
       public <V> ScheduledFuture<V> schedule(final Callable<V> callable, long delay, TimeUnit unit) {
-        ScheduledFuture<V> res = new AbstractPartiallyImplementedScheduledFuture<V>() {
+        ScheduledFuture<V> res = new AbstractPartiallyImplementedScheduledFuture<V>(delay, unit) {
 
           @Override
           public V get() throws InterruptedException, ExecutionException {
+            markStarted();
             try {
               return callable.call();
             } catch (Exception e) {
@@ -454,9 +609,25 @@ public class CeProcessingSchedulerImplTest {
   }
 
   private static abstract class AbstractPartiallyImplementedScheduledFuture<V> extends AbstractPartiallyImplementedFuture<V> implements ScheduledFuture<V> {
+    private final long delay;
+    private final TimeUnit delayUnit;
+    private boolean started = false;
+
+    private AbstractPartiallyImplementedScheduledFuture(long delay, TimeUnit delayUnit) {
+      this.delay = delay;
+      this.delayUnit = delayUnit;
+    }
+
+    /**
+     * Delay is considered elapsed as soon as the future is executed.
+     */
+    protected void markStarted() {
+      this.started = true;
+    }
+
     @Override
     public long getDelay(TimeUnit unit) {
-      throw new UnsupportedOperationException("getDelay(TimeUnit unit) not implemented");
+      return started ? 0 : unit.convert(delay, delayUnit);
     }
 
     @Override
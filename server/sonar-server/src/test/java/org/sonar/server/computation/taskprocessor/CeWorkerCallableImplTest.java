@@ -26,12 +26,14 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
+import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.ce.log.CeLogging;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.server.computation.monitoring.CeWorkerStatistics;
 import org.sonar.server.computation.queue.InternalCeQueue;
 import org.sonar.server.computation.task.projectanalysis.taskprocessor.ReportTaskProcessor;
 
@@ -52,7 +54,9 @@ public class CeWorkerCallableImplTest {
   private InternalCeQueue queue = mock(InternalCeQueue.class);
   private ReportTaskProcessor taskProcessor = mock(ReportTaskProcessor.class);
   private CeLogging ceLogging = spy(CeLogging.class);
-  private CeWorkerCallable underTest = new CeWorkerCallableImpl(queue, ceLogging, taskProcessorRepository);
+  private TestSystem2 system2 = new TestSystem2().setNow(1_000L);
+  private CeWorkerStatistics workerStatistics = new CeWorkerStatistics(system2);
+  private CeWorkerCallable underTest = new CeWorkerCallableImpl(queue, ceLogging, taskProcessorRepository, workerStatistics, system2);
   private InOrder inOrder = Mockito.inOrder(ceLogging, taskProcessor, queue);
 
   @Test
@@ -64,6 +68,20 @@ public class CeWorkerCallableImplTest {
     verifyZeroInteractions(taskProcessor, ceLogging);
   }
 
+  @Test
+  public void record_claims_and_processing_in_statistics_of_worker() throws Exception {
+    CeTask task = createCeTask(null);
+    taskProcessorRepository.setProcessorForTask(task.getType(), taskProcessor);
+    when(queue.peek()).thenReturn(Optional.<CeTask>absent()).thenReturn(Optional.of(task));
+
+    underTest.call();
+    underTest.call();
+
+    CeWorkerStatistics.WorkerStatistics statistics = workerStatistics.getByWorker().get(Thread.currentThread().getName());
+    assertThat(statistics.getClaimAttempts()).isEqualTo(2);
+    assertThat(statistics.getClaimedTasks()).isEqualTo(1);
+  }
+
   @Test
   public void fail_when_no_CeTaskProcessor_is_found_in_repository() throws Exception {
     CeTask task = createCeTask(null);
@@ -0,0 +1,71 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkIndexerStatisticsTest {
+
+  @Test
+  public void statistics_are_shared_per_index() {
+    BulkIndexerStatisticsRegistry registry = new BulkIndexerStatisticsRegistry();
+
+    assertThat(registry.forIndex("foo")).isSameAs(registry.forIndex("foo"));
+    assertThat(registry.forIndex("foo")).isNotSameAs(registry.forIndex("bar"));
+    assertThat(registry.all()).extracting(BulkIndexerStatistics::getIndexName).containsExactly("bar", "foo");
+  }
+
+  @Test
+  public void compute_throughput() {
+    BulkIndexerStatistics underTest = new BulkIndexerStatistics("foo");
+    assertThat(underTest.getDocsPerSecond()).isEqualTo(0L);
+
+    underTest.onBulkResponse(90, 4_000, 10, 0);
+    underTest.onBulkResponse(10, 1_000, 0, 0);
+    underTest.onRetry();
+    underTest.onFailure(3);
+    underTest.onStart(1_000L);
+    underTest.onStop(3_000L);
+
+    assertThat(underTest.getDocs()).isEqualTo(100L);
+    assertThat(underTest.getBytes()).isEqualTo(5_000L);
+    assertThat(underTest.getRequests()).isEqualTo(3L);
+    assertThat(underTest.getRejections()).isEqualTo(10L);
+    assertThat(underTest.getRetries()).isEqualTo(1L);
+    assertThat(underTest.getFailures()).isEqualTo(3L);
+    assertThat(underTest.getDocsPerSecond()).isEqualTo(50L);
+    assertThat(underTest.getBytesPerSecond()).isEqualTo(2_500L);
+  }
+
+  @Test
+  public void duration_of_concurrent_indexers_is_counted_once() {
+    BulkIndexerStatistics underTest = new BulkIndexerStatistics("foo");
+    underTest.onBulkResponse(100, 1_000, 0, 0);
+
+    underTest.onStart(1_000L);
+    underTest.onStart(1_500L);
+    underTest.onStop(2_000L);
+    underTest.onStop(3_000L);
+
+    assertThat(underTest.getDocsPerSecond()).isEqualTo(50L);
+  }
+}
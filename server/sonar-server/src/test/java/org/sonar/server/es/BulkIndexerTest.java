@@ -86,6 +86,28 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void record_statistics() {
+    BulkIndexerStatistics statistics = esTester.client().getBulkIndexerStatistics().forIndex(INDEX);
+    long docs = statistics.getDocs();
+    long requests = statistics.getRequests();
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), INDEX)
+      .setFlushByteSize(500)
+      .setSize(Size.LARGE);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    assertThat(statistics.getDocs()).isEqualTo(docs + 10);
+    assertThat(statistics.getRequests()).isGreaterThan(requests);
+    assertThat(statistics.getBytes()).isGreaterThan(0L);
+    assertThat(statistics.getFailures()).isEqualTo(0L);
+    assertThat(esTester.client().getBulkIndexerStatistics().all()).contains(statistics);
+  }
+
   @Test
   public void bulk_delete() throws Exception {
     int max = 500;
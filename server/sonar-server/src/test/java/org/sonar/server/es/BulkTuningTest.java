@@ -0,0 +1,108 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.es.BulkTuning.MAX_FLUSH_BYTE_SIZE;
+import static org.sonar.server.es.BulkTuning.MIN_FLUSH_BYTE_SIZE;
+
+public class BulkTuningTest {
+
+  private static final long ONE_MB = 1024L * 1024;
+
+  @Test
+  public void fixed_tuning_ignores_responses() {
+    BulkTuning underTest = BulkTuning.fixed(ONE_MB, 2);
+
+    underTest.onResponse(10L, 0);
+    underTest.onResponse(10_000L, 5);
+
+    assertThat(underTest.isAdaptive()).isFalse();
+    assertThat(underTest.flushByteSize()).isEqualTo(ONE_MB);
+    assertThat(underTest.concurrentRequests()).isEqualTo(2);
+  }
+
+  @Test
+  public void rejections_halve_size_and_concurrency() {
+    BulkTuning underTest = BulkTuning.adaptive(ONE_MB, 4, 8);
+
+    underTest.onResponse(10L, 1);
+
+    assertThat(underTest.flushByteSize()).isEqualTo(ONE_MB / 2);
+    assertThat(underTest.concurrentRequests()).isEqualTo(2);
+  }
+
+  @Test
+  public void slow_responses_decrease_size() {
+    BulkTuning underTest = BulkTuning.adaptive(ONE_MB, 4, 8);
+
+    underTest.onResponse(BulkTuning.SLOW_RESPONSE_TIME_MS, 0);
+
+    assertThat(underTest.flushByteSize()).isEqualTo(ONE_MB * 3 / 4);
+    assertThat(underTest.concurrentRequests()).isEqualTo(4);
+  }
+
+  @Test
+  public void fast_responses_increase_size_and_concurrency() {
+    BulkTuning underTest = BulkTuning.adaptive(ONE_MB, 4, 8);
+
+    underTest.onResponse(BulkTuning.FAST_RESPONSE_TIME_MS, 0);
+
+    assertThat(underTest.flushByteSize()).isEqualTo(ONE_MB * 5 / 4);
+    assertThat(underTest.concurrentRequests()).isEqualTo(5);
+  }
+
+  @Test
+  public void average_responses_do_not_change_tuning() {
+    BulkTuning underTest = BulkTuning.adaptive(ONE_MB, 4, 8);
+
+    underTest.onResponse(BulkTuning.FAST_RESPONSE_TIME_MS + 1, 0);
+
+    assertThat(underTest.flushByteSize()).isEqualTo(ONE_MB);
+    assertThat(underTest.concurrentRequests()).isEqualTo(4);
+  }
+
+  @Test
+  public void tuning_is_bounded() {
+    BulkTuning underTest = BulkTuning.adaptive(ONE_MB, 4, 8);
+
+    for (int i = 0; i < 100; i++) {
+      underTest.onResponse(1L, 0);
+    }
+    assertThat(underTest.flushByteSize()).isEqualTo(MAX_FLUSH_BYTE_SIZE);
+    assertThat(underTest.concurrentRequests()).isEqualTo(8);
+
+    for (int i = 0; i < 100; i++) {
+      underTest.onResponse(1L, 1);
+    }
+    assertThat(underTest.flushByteSize()).isEqualTo(MIN_FLUSH_BYTE_SIZE);
+    assertThat(underTest.concurrentRequests()).isEqualTo(1);
+  }
+
+  @Test
+  public void bounds_include_initial_size() {
+    BulkTuning underTest = BulkTuning.adaptive(500L, 1, 1);
+
+    underTest.onResponse(1L, 1);
+    assertThat(underTest.flushByteSize()).isEqualTo(500L);
+  }
+}
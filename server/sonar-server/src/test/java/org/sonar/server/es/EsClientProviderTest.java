@@ -45,6 +45,7 @@ public class EsClientProviderTest {
   public LogTester logTester = new LogTester();
 
   private Settings settings = new MapSettings();
+  private BulkIndexerStatisticsRegistry bulkIndexerStatistics = new BulkIndexerStatisticsRegistry();
   private EsClientProvider underTest = new EsClientProvider();
   private String localhost;
 
@@ -62,16 +63,17 @@ public class EsClientProviderTest {
     settings.setProperty(ProcessProperties.SEARCH_HOST, localhost);
     settings.setProperty(ProcessProperties.SEARCH_PORT, 8080);
 
-    EsClient client = underTest.provide(settings);
+    EsClient client = underTest.provide(settings, bulkIndexerStatistics);
     TransportClient transportClient = (TransportClient) client.nativeClient();
     assertThat(transportClient.transportAddresses()).hasSize(1);
     TransportAddress address = transportClient.transportAddresses().get(0);
     assertThat(address.getAddress()).isEqualTo(localhost);
     assertThat(address.getPort()).isEqualTo(8080);
     assertThat(logTester.logs(LoggerLevel.INFO)).has(new Condition<>(s -> s.contains("Connected to local Elasticsearch: [" + localhost + ":8080]"), ""));
+    assertThat(client.getBulkIndexerStatistics()).isSameAs(bulkIndexerStatistics);
 
     // keep in cache
-    assertThat(underTest.provide(settings)).isSameAs(client);
+    assertThat(underTest.provide(settings, bulkIndexerStatistics)).isSameAs(client);
   }
 
   @Test
@@ -80,7 +82,7 @@ public class EsClientProviderTest {
     settings.setProperty(ProcessProperties.CLUSTER_SEARCH_DISABLED, true);
     settings.setProperty(ProcessProperties.CLUSTER_SEARCH_HOSTS, format("%s:8080,%s:8081", localhost, localhost));
 
-    EsClient client = underTest.provide(settings);
+    EsClient client = underTest.provide(settings, bulkIndexerStatistics);
     TransportClient transportClient = (TransportClient) client.nativeClient();
     assertThat(transportClient.transportAddresses()).hasSize(2);
     TransportAddress address = transportClient.transportAddresses().get(0);
@@ -92,7 +94,7 @@ public class EsClientProviderTest {
     assertThat(logTester.logs(LoggerLevel.INFO)).has(new Condition<>(s -> s.contains("Connected to remote Elasticsearch: [" + localhost + ":8080, " + localhost + ":8081]"), ""));
 
     // keep in cache
-    assertThat(underTest.provide(settings)).isSameAs(client);
+    assertThat(underTest.provide(settings, bulkIndexerStatistics)).isSameAs(client);
   }
 
   @Test
@@ -103,6 +105,6 @@ public class EsClientProviderTest {
 
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Badly formatted Elasticsearch host: missing_colon");
-    underTest.provide(settings);
+    underTest.provide(settings, bulkIndexerStatistics);
   }
 }
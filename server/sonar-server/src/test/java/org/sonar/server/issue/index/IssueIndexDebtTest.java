@@ -66,7 +66,7 @@ public class IssueIndexDebtTest {
 
   private System2 system2 = System2.INSTANCE;
   private IssueIndex index;
-  private IssueIndexer issueIndexer = new IssueIndexer(tester.client(), new IssueIteratorFactory(null));
+  private IssueIndexer issueIndexer = new IssueIndexer(tester.client(), null, new IssueIteratorFactory(null));
   private PermissionIndexerTester authorizationIndexerTester = new PermissionIndexerTester(tester, issueIndexer);
 
   @Before
@@ -0,0 +1,62 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IssueIndexPartitionTest {
+
+  @Test
+  public void split_nothing() {
+    assertThat(IssueIndexPartition.split(Collections.emptyMap(), 4)).isEmpty();
+  }
+
+  @Test
+  public void split_projects_by_number_of_issues() {
+    Map<String, Long> issuesPerProject = new LinkedHashMap<>();
+    issuesPerProject.put("P1", 10L);
+    issuesPerProject.put("P2", 2L);
+    issuesPerProject.put("P3", 3L);
+    issuesPerProject.put("P4", 1L);
+    issuesPerProject.put("P5", 4L);
+
+    List<IssueIndexPartition> partitions = IssueIndexPartition.split(issuesPerProject, 2);
+
+    assertThat(partitions).extracting(IssueIndexPartition::toString).containsExactly("[P1..P1]", "[P2..P5]");
+    assertThat(partitions).extracting(IssueIndexPartition::getIssues).containsExactly(10L, 10L);
+  }
+
+  @Test
+  public void do_not_create_more_partitions_than_projects() {
+    Map<String, Long> issuesPerProject = new LinkedHashMap<>();
+    issuesPerProject.put("P1", 1L);
+    issuesPerProject.put("P2", 1L);
+
+    List<IssueIndexPartition> partitions = IssueIndexPartition.split(issuesPerProject, 10);
+
+    assertThat(partitions).extracting(IssueIndexPartition::toString).containsExactly("[P1..P1]", "[P2..P2]");
+  }
+}
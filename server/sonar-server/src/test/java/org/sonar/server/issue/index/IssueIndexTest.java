@@ -85,7 +85,7 @@ public class IssueIndexTest {
   public ExpectedException expectedException = ExpectedException.none();
 
   private IssueIndex underTest;
-  private IssueIndexer issueIndexer = new IssueIndexer(tester.client(), new IssueIteratorFactory(null));
+  private IssueIndexer issueIndexer = new IssueIndexer(tester.client(), null, new IssueIteratorFactory(null));
   private ViewIndexer viewIndexer = new ViewIndexer(null, tester.client());
   private PermissionIndexerTester authorizationIndexerTester = new PermissionIndexerTester(tester, issueIndexer);
 
@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.config.MapSettings;
@@ -52,7 +53,7 @@ public class IssueIndexerTest {
   @Rule
   public DbTester dbTester = DbTester.create(system2);
 
-  private IssueIndexer underTest = new IssueIndexer(esTester.client(), new IssueIteratorFactory(dbTester.getDbClient()));
+  private IssueIndexer underTest = new IssueIndexer(esTester.client(), dbTester.getDbClient(), new IssueIteratorFactory(dbTester.getDbClient()));
 
   @Test
   public void index_on_startup() {
@@ -94,6 +95,39 @@ public class IssueIndexerTest {
     assertThat(doc.getTechnicalUpdateDate().getTime()).isEqualTo(1550000000000L);
   }
 
+  @Test
+  public void indexAll_indexes_issues_of_all_projects() {
+    dbTester.prepareDbUnit(getClass(), "index_project.xml");
+
+    underTest.indexAll();
+
+    verifyIssueKeys("ABCDE", "EDCBA");
+    assertThat(dbTester.getDbClient().internalPropertiesDao().selectByKey(dbTester.getSession(), IssueIndexingProgress.PROPERTY_KEY)).contains("");
+  }
+
+  @Test
+  public void indexAll_resumes_after_completed_partitions() {
+    dbTester.prepareDbUnit(getClass(), "index_project.xml");
+    String index = IssueIndexDefinition.INDEX_TYPE_ISSUE.getIndex();
+    String indexUuid = esTester.client().nativeClient().admin().indices().prepareGetSettings(index).get().getSetting(index, IndexMetaData.SETTING_INDEX_UUID);
+    IssueIndexingProgress.load(dbTester.getDbClient(), indexUuid).markCompleted(new IssueIndexPartition("THE_PROJECT_1", "THE_PROJECT_1", 1L));
+
+    underTest.indexAll();
+
+    // issues of THE_PROJECT_1 are considered as already indexed
+    verifyIssueKeys("EDCBA");
+  }
+
+  @Test
+  public void indexAll_ignores_progress_of_another_index() {
+    dbTester.prepareDbUnit(getClass(), "index_project.xml");
+    IssueIndexingProgress.load(dbTester.getDbClient(), "OLD_INDEX_UUID").markCompleted(new IssueIndexPartition("THE_PROJECT_1", "THE_PROJECT_1", 1L));
+
+    underTest.indexAll();
+
+    verifyIssueKeys("ABCDE", "EDCBA");
+  }
+
   @Test
   public void indexProject_creates_docs_of_specific_project() {
     dbTester.prepareDbUnit(getClass(), "index_project.xml");
@@ -187,7 +221,7 @@ public class IssueIndexerTest {
     issueDoc.setKey("key");
     issueDoc.setTechnicalUpdateDate(new Date());
     issueDoc.setProjectUuid("non-exitsing-parent");
-    new IssueIndexer(esTester.client(), new IssueIteratorFactory(dbTester.getDbClient()))
+    new IssueIndexer(esTester.client(), dbTester.getDbClient(), new IssueIteratorFactory(dbTester.getDbClient()))
       .index(Arrays.asList(issueDoc).iterator());
 
     assertThat(esTester.countDocuments(IssueIndexDefinition.INDEX_TYPE_ISSUE)).isEqualTo(1L);
@@ -0,0 +1,90 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IssueIndexingProgressTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  @Test
+  public void no_progress() {
+    IssueIndexingProgress underTest = IssueIndexingProgress.load(db.getDbClient(), "INDEX1");
+
+    assertThat(underTest.hasCompletedPartitions()).isFalse();
+    assertThat(underTest.removeCompleted(projects("P1", "P2"))).containsOnlyKeys("P1", "P2");
+  }
+
+  @Test
+  public void remove_projects_of_completed_partitions() {
+    IssueIndexingProgress.load(db.getDbClient(), "INDEX1").markCompleted(new IssueIndexPartition("P2", "P4", 3L));
+    IssueIndexingProgress.load(db.getDbClient(), "INDEX1").markCompleted(new IssueIndexPartition("P6", "P6", 1L));
+
+    IssueIndexingProgress underTest = IssueIndexingProgress.load(db.getDbClient(), "INDEX1");
+
+    assertThat(underTest.hasCompletedPartitions()).isTrue();
+    assertThat(underTest.removeCompleted(projects("P1", "P2", "P3", "P4", "P5", "P6", "P7"))).containsOnlyKeys("P1", "P5", "P7");
+  }
+
+  @Test
+  public void partition_is_not_completed_if_bounds_do_not_exist_anymore() {
+    IssueIndexingProgress.load(db.getDbClient(), "INDEX1").markCompleted(new IssueIndexPartition("P2", "P4", 3L));
+
+    IssueIndexingProgress underTest = IssueIndexingProgress.load(db.getDbClient(), "INDEX1");
+
+    assertThat(underTest.removeCompleted(projects("P1", "P3", "P4"))).containsOnlyKeys("P1", "P3", "P4");
+  }
+
+  @Test
+  public void ignore_progress_of_another_index() {
+    IssueIndexingProgress.load(db.getDbClient(), "INDEX1").markCompleted(new IssueIndexPartition("P1", "P1", 1L));
+
+    IssueIndexingProgress underTest = IssueIndexingProgress.load(db.getDbClient(), "INDEX2");
+
+    assertThat(underTest.hasCompletedPartitions()).isFalse();
+  }
+
+  @Test
+  public void clear_progress() {
+    IssueIndexingProgress underTest = IssueIndexingProgress.load(db.getDbClient(), "INDEX1");
+    underTest.markCompleted(new IssueIndexPartition("P1", "P1", 1L));
+
+    underTest.clear();
+
+    assertThat(IssueIndexingProgress.load(db.getDbClient(), "INDEX1").hasCompletedPartitions()).isFalse();
+  }
+
+  private static Map<String, Long> projects(String... uuids) {
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (String uuid : uuids) {
+      result.put(uuid, 1L);
+    }
+    return result;
+  }
+}
@@ -55,6 +55,7 @@ import org.sonarqube.ws.WsMeasures;
 import org.sonarqube.ws.WsMeasures.ComponentTreeWsResponse;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
 import static org.sonar.api.measures.CoreMetrics.NEW_SECURITY_RATING_KEY;
 import static org.sonar.api.utils.DateUtils.parseDateTime;
 import static org.sonar.db.component.ComponentTesting.newDevProjectCopy;
@@ -290,6 +291,46 @@ public class ComponentTreeActionTest {
     assertThat(response.getPaging().getTotal()).isEqualTo(9);
   }
 
+  @Test
+  public void load_all_requested_measures_of_page_sorted_by_metric() {
+    ComponentDto projectDto = newProjectDto(db.getDefaultOrganization(), "project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(projectDto);
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-1"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-2"));
+    ComponentDto file3 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-3"));
+    MetricDto coverage = insertCoverageMetric();
+    MetricDto ncloc = insertNclocMetric();
+    insertNewViolationsMetric();
+    dbClient.measureDao().insert(dbSession,
+      newMeasureDto(coverage, projectDto, projectSnapshot).setValue(20.0d),
+      newMeasureDto(coverage, file1, projectSnapshot).setValue(10.0d),
+      newMeasureDto(coverage, file2, projectSnapshot).setValue(30.0d),
+      newMeasureDto(coverage, file3, projectSnapshot).setValue(20.0d),
+      newMeasureDto(ncloc, projectDto, projectSnapshot).setValue(600.0d),
+      newMeasureDto(ncloc, file1, projectSnapshot).setValue(100.0d),
+      newMeasureDto(ncloc, file2, projectSnapshot).setValue(200.0d),
+      newMeasureDto(ncloc, file3, projectSnapshot).setValue(300.0d));
+    db.commit();
+
+    ComponentTreeWsResponse response = call(ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, "project-uuid")
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(Param.ASCENDING, "false")
+      .setParam(PARAM_METRIC_SORT, "coverage")
+      .setParam(PARAM_METRIC_KEYS, "coverage,ncloc,new_violations")
+      .setParam(Param.PAGE, "1")
+      .setParam(Param.PAGE_SIZE, "2"));
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-2", "file-uuid-3");
+    assertThat(response.getPaging().getTotal()).isEqualTo(3);
+    assertThat(response.getBaseComponent().getMeasuresList()).extracting("metric", "value")
+      .containsOnly(tuple("coverage", "20.0"), tuple("ncloc", "600"));
+    assertThat(response.getComponents(0).getMeasuresList()).extracting("metric", "value")
+      .containsOnly(tuple("coverage", "30.0"), tuple("ncloc", "200"), tuple("new_violations", ""));
+    assertThat(response.getComponents(1).getMeasuresList()).extracting("metric", "value")
+      .containsOnly(tuple("coverage", "20.0"), tuple("ncloc", "300"), tuple("new_violations", ""));
+  }
+
   @Test
   public void sort_by_metric_value() {
     ComponentDto projectDto = newProjectDto(db.getDefaultOrganization(), "project-uuid");
@@ -19,19 +19,18 @@
  */
 package org.sonar.server.measure.ws;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import java.util.List;
+import java.util.Optional;
 import javax.annotation.Nullable;
-import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Metric.ValueType;
-import org.sonar.api.resources.Qualifiers;
-import org.sonar.core.util.Uuids;
-import org.sonar.db.component.ComponentDto;
-import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.component.ComponentTreeQuery.MeasureSort;
+import org.sonar.db.component.ComponentTreeQuery.SortField;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.exceptions.BadRequestException;
 import org.sonarqube.ws.client.measure.ComponentTreeWsRequest;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -48,207 +47,83 @@ public class ComponentTreeSortTest {
   private static final String NUM_METRIC_KEY = "violations";
   private static final String TEXT_METRIC_KEY = "sqale_index";
 
-  private List<MetricDto> metrics;
-  private Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric;
-  private List<ComponentDto> components;
-
-  @Before
-  public void setUp() {
-    components = newArrayList(
-      newComponentWithoutSnapshotId("name-1", "qualifier-2", "path-9"),
-      newComponentWithoutSnapshotId("name-3", "qualifier-3", "path-8"),
-      newComponentWithoutSnapshotId("name-2", "qualifier-4", "path-7"),
-      newComponentWithoutSnapshotId("name-4", "qualifier-5", "path-6"),
-      newComponentWithoutSnapshotId("name-7", "qualifier-6", "path-5"),
-      newComponentWithoutSnapshotId("name-6", "qualifier-7", "path-4"),
-      newComponentWithoutSnapshotId("name-5", "qualifier-8", "path-3"),
-      newComponentWithoutSnapshotId("name-9", "qualifier-9", "path-2"),
-      newComponentWithoutSnapshotId("name-8", "qualifier-1", "path-1"));
-
-    MetricDto violationsMetric = newMetricDto()
-      .setKey(NUM_METRIC_KEY)
-      .setValueType(ValueType.INT.name());
-    MetricDto sqaleIndexMetric = newMetricDto()
-      .setKey(TEXT_METRIC_KEY)
-      .setValueType(ValueType.DATA.name());
-
-    metrics = newArrayList(violationsMetric, sqaleIndexMetric);
-
-    measuresByComponentUuidAndMetric = HashBasedTable.create(components.size(), 2);
-    // same number than path field
-    double currentValue = 9;
-    for (ComponentDto component : components) {
-      measuresByComponentUuidAndMetric.put(component.uuid(), violationsMetric, new MeasureDto().setValue(currentValue)
-        .setVariation(-currentValue));
-      measuresByComponentUuidAndMetric.put(component.uuid(), sqaleIndexMetric, new MeasureDto().setData(String.valueOf(currentValue)));
-      currentValue--;
-    }
-  }
-
-  @Test
-  public void sort_by_names() {
-    ComponentTreeWsRequest wsRequest = newRequest(singletonList(NAME_SORT), true, null);
-    List<ComponentDto> result = sortComponents(wsRequest);
-
-    assertThat(result).extracting("name")
-      .containsExactly("name-1", "name-2", "name-3", "name-4", "name-5", "name-6", "name-7", "name-8", "name-9");
-  }
-
-  @Test
-  public void sort_by_qualifier() {
-    ComponentTreeWsRequest wsRequest = newRequest(singletonList(QUALIFIER_SORT), false, null);
-
-    List<ComponentDto> result = sortComponents(wsRequest);
-
-    assertThat(result).extracting("qualifier")
-      .containsExactly("qualifier-9", "qualifier-8", "qualifier-7", "qualifier-6", "qualifier-5", "qualifier-4", "qualifier-3", "qualifier-2", "qualifier-1");
-  }
-
-  @Test
-  public void sort_by_path() {
-    ComponentTreeWsRequest wsRequest = newRequest(singletonList(PATH_SORT), true, null);
-
-    List<ComponentDto> result = sortComponents(wsRequest);
-
-    assertThat(result).extracting("path")
-      .containsExactly("path-1", "path-2", "path-3", "path-4", "path-5", "path-6", "path-7", "path-8", "path-9");
-  }
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
 
-  @Test
-  public void sort_by_numerical_metric_key_ascending() {
-    components.add(newComponentWithoutSnapshotId("name-without-measure", "qualifier-without-measure", "path-without-measure"));
-    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_SORT), true, NUM_METRIC_KEY);
-
-    List<ComponentDto> result = sortComponents(wsRequest);
-
-    assertThat(result).extracting("path")
-      .containsExactly("path-1", "path-2", "path-3", "path-4", "path-5", "path-6", "path-7", "path-8", "path-9", "path-without-measure");
-  }
+  private MetricDto violationsMetric = newMetricDto()
+    .setKey(NUM_METRIC_KEY)
+    .setValueType(ValueType.INT.name());
+  private MetricDto sqaleIndexMetric = newMetricDto()
+    .setKey(TEXT_METRIC_KEY)
+    .setValueType(ValueType.DATA.name());
 
   @Test
-  public void sort_by_numerical_metric_key_descending() {
-    components.add(newComponentWithoutSnapshotId("name-without-measure", "qualifier-without-measure", "path-without-measure"));
-    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_SORT), false, NUM_METRIC_KEY);
+  public void sort_on_component_fields() {
+    ComponentTreeWsRequest wsRequest = newRequest(newArrayList(NAME_SORT, QUALIFIER_SORT, PATH_SORT), null);
 
-    List<ComponentDto> result = sortComponents(wsRequest);
-
-    assertThat(result).extracting("path")
-      .containsExactly("path-9", "path-8", "path-7", "path-6", "path-5", "path-4", "path-3", "path-2", "path-1", "path-without-measure");
+    assertThat(ComponentTreeSort.toSortFields(wsRequest, Optional.empty()))
+      .containsExactly(SortField.NAME, SortField.QUALIFIER, SortField.PATH);
   }
 
   @Test
-  public void sort_by_alert_status_ascending() {
-    components = newArrayList(
-      newComponentWithoutSnapshotId("PROJECT OK 1", Qualifiers.PROJECT, "PROJECT_OK_PATH_1"),
-      newComponentWithoutSnapshotId("PROJECT WARN 1", Qualifiers.PROJECT, "PROJECT_WARN_PATH_1"),
-      newComponentWithoutSnapshotId("PROJECT ERROR 1", Qualifiers.PROJECT, "PROJECT_ERROR_PATH_1"),
-      newComponentWithoutSnapshotId("PROJECT OK 2", Qualifiers.PROJECT, "PROJECT_OK_PATH_2"),
-      newComponentWithoutSnapshotId("PROJECT WARN 2", Qualifiers.PROJECT, "PROJECT_WARN_PATH_2"),
-      newComponentWithoutSnapshotId("PROJECT ERROR 2", Qualifiers.PROJECT, "PROJECT_ERROR_PATH_2"));
-    metrics = singletonList(newMetricDto()
-      .setKey(CoreMetrics.ALERT_STATUS_KEY)
-      .setValueType(ValueType.LEVEL.name()));
-    measuresByComponentUuidAndMetric = HashBasedTable.create();
-    List<String> statuses = newArrayList("OK", "WARN", "ERROR");
-    for (int i = 0; i < components.size(); i++) {
-      ComponentDto component = components.get(i);
-      String alertStatus = statuses.get(i % 3);
-      measuresByComponentUuidAndMetric.put(component.uuid(), metrics.get(0), new MeasureDto().setData(alertStatus));
-    }
-    ComponentTreeWsRequest wsRequest = newRequest(newArrayList(METRIC_SORT, NAME_SORT), true, CoreMetrics.ALERT_STATUS_KEY);
-
-    List<ComponentDto> result = sortComponents(wsRequest);
-
-    assertThat(result).extracting("name").containsExactly(
-      "PROJECT ERROR 1", "PROJECT ERROR 2",
-      "PROJECT WARN 1", "PROJECT WARN 2",
-      "PROJECT OK 1", "PROJECT OK 2");
+  public void no_sort_fields_when_no_sort_parameter() {
+    assertThat(ComponentTreeSort.toSortFields(new ComponentTreeWsRequest(), Optional.empty())).isEmpty();
   }
 
   @Test
-  public void sort_by_numerical_metric_period_1_key_ascending() {
-    components.add(newComponentWithoutSnapshotId("name-without-measure", "qualifier-without-measure", "path-without-measure"));
-    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_PERIOD_SORT), true, NUM_METRIC_KEY).setMetricPeriodSort(1);
-
-    List<ComponentDto> result = sortComponents(wsRequest);
+  public void sort_on_metric_value() {
+    ComponentTreeWsRequest wsRequest = newRequest(newArrayList(METRIC_SORT, NAME_SORT), NUM_METRIC_KEY);
 
-    assertThat(result).extracting("path")
-      .containsExactly("path-9", "path-8", "path-7", "path-6", "path-5", "path-4", "path-3", "path-2", "path-1", "path-without-measure");
+    assertThat(ComponentTreeSort.toSortFields(wsRequest, Optional.of(violationsMetric)))
+      .containsExactly(SortField.MEASURE_VALUE, SortField.NAME);
   }
 
   @Test
-  public void sort_by_numerical_metric_period_1_key_descending() {
-    components.add(newComponentWithoutSnapshotId("name-without-measure", "qualifier-without-measure", "path-without-measure"));
-    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_PERIOD_SORT), false, NUM_METRIC_KEY).setMetricPeriodSort(1);
+  public void sort_on_name_when_metric_to_sort_is_not_provided() {
+    ComponentTreeWsRequest wsRequest = newRequest(newArrayList(METRIC_SORT, METRIC_PERIOD_SORT), null);
 
-    List<ComponentDto> result = sortComponents(wsRequest);
-
-    assertThat(result).extracting("path")
-      .containsExactly("path-1", "path-2", "path-3", "path-4", "path-5", "path-6", "path-7", "path-8", "path-9", "path-without-measure");
+    assertThat(ComponentTreeSort.toSortFields(wsRequest, Optional.empty()))
+      .containsExactly(SortField.NAME, SortField.NAME);
   }
 
   @Test
-  public void sort_by_numerical_metric_period_5_key() {
-    components.add(newComponentWithoutSnapshotId("name-without-measure", "qualifier-without-measure", "path-without-measure"));
-    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_SORT), false, NUM_METRIC_KEY).setMetricPeriodSort(5);
-
-    List<ComponentDto> result = sortComponents(wsRequest);
+  public void sort_on_metric_variation() {
+    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_PERIOD_SORT), NUM_METRIC_KEY).setMetricPeriodSort(1);
 
-    assertThat(result).extracting("path")
-      .containsExactly("path-9", "path-8", "path-7", "path-6", "path-5", "path-4", "path-3", "path-2", "path-1", "path-without-measure");
+    assertThat(ComponentTreeSort.toSortFields(wsRequest, Optional.of(violationsMetric)))
+      .containsExactly(SortField.MEASURE_VARIATION);
   }
 
   @Test
-  public void sort_by_textual_metric_key_ascending() {
-    components.add(newComponentWithoutSnapshotId("name-without-measure", "qualifier-without-measure", "path-without-measure"));
-    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_SORT), true, TEXT_METRIC_KEY);
+  public void sort_on_name_when_metric_period_is_not_provided() {
+    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_PERIOD_SORT), NUM_METRIC_KEY);
 
-    List<ComponentDto> result = sortComponents(wsRequest);
-
-    assertThat(result).extracting("path")
-      .containsExactly("path-1", "path-2", "path-3", "path-4", "path-5", "path-6", "path-7", "path-8", "path-9", "path-without-measure");
+    assertThat(ComponentTreeSort.toSortFields(wsRequest, Optional.of(violationsMetric)))
+      .containsExactly(SortField.NAME);
   }
 
   @Test
-  public void sort_by_textual_metric_key_descending() {
-    components.add(newComponentWithoutSnapshotId("name-without-measure", "qualifier-without-measure", "path-without-measure"));
-    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_SORT), false, TEXT_METRIC_KEY);
+  public void fail_to_sort_textual_metric_on_variation() {
+    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_PERIOD_SORT), TEXT_METRIC_KEY).setMetricPeriodSort(1);
 
-    List<ComponentDto> result = sortComponents(wsRequest);
+    expectedException.expect(BadRequestException.class);
+    expectedException.expectMessage("Impossible to sort metric 'sqale_index' by measure period.");
 
-    assertThat(result).extracting("path")
-      .containsExactly("path-9", "path-8", "path-7", "path-6", "path-5", "path-4", "path-3", "path-2", "path-1", "path-without-measure");
+    ComponentTreeSort.toSortFields(wsRequest, Optional.of(sqaleIndexMetric));
   }
 
   @Test
-  public void sort_on_multiple_fields() {
-    components = newArrayList(
-      newComponentWithoutSnapshotId("name-1", "qualifier-1", "path-2"),
-      newComponentWithoutSnapshotId("name-1", "qualifier-1", "path-3"),
-      newComponentWithoutSnapshotId("name-1", "qualifier-1", "path-1"));
-    ComponentTreeWsRequest wsRequest = newRequest(newArrayList(NAME_SORT, QUALIFIER_SORT, PATH_SORT), true, null);
-
-    List<ComponentDto> result = sortComponents(wsRequest);
-
-    assertThat(result).extracting("path")
-      .containsExactly("path-1", "path-2", "path-3");
-  }
-
-  private List<ComponentDto> sortComponents(ComponentTreeWsRequest wsRequest) {
-    return ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
-  }
-
-  private static ComponentDto newComponentWithoutSnapshotId(String name, String qualifier, String path) {
-    return new ComponentDto()
-      .setUuid(Uuids.createFast())
-      .setName(name)
-      .setQualifier(qualifier)
-      .setPath(path);
+  public void measure_sort_value_type_of_metrics() {
+    assertThat(ComponentTreeSort.toMeasureSortValueType(violationsMetric)).isEqualTo(MeasureSort.ValueType.NUMERIC);
+    assertThat(ComponentTreeSort.toMeasureSortValueType(newMetricDto().setValueType(ValueType.RATING.name()))).isEqualTo(MeasureSort.ValueType.NUMERIC);
+    assertThat(ComponentTreeSort.toMeasureSortValueType(sqaleIndexMetric)).isEqualTo(MeasureSort.ValueType.TEXTUAL);
+    assertThat(ComponentTreeSort.toMeasureSortValueType(newMetricDto().setKey(CoreMetrics.ALERT_STATUS_KEY).setValueType(ValueType.LEVEL.name())))
+      .isEqualTo(MeasureSort.ValueType.LEVEL);
   }
 
-  private static ComponentTreeWsRequest newRequest(List<String> sortFields, boolean isAscending, @Nullable String metricKey) {
+  private static ComponentTreeWsRequest newRequest(List<String> sortFields, @Nullable String metricKey) {
     return new ComponentTreeWsRequest()
-      .setAsc(isAscending)
+      .setAsc(true)
       .setSort(sortFields)
       .setMetricSort(metricKey);
   }
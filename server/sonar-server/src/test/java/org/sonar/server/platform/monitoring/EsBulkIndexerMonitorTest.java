@@ -0,0 +1,58 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.Map;
+import org.junit.Test;
+import org.sonar.server.es.BulkIndexerStatisticsRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EsBulkIndexerMonitorTest {
+
+  private BulkIndexerStatisticsRegistry statisticsRegistry = new BulkIndexerStatisticsRegistry();
+  private EsBulkIndexerMonitor underTest = new EsBulkIndexerMonitor(statisticsRegistry);
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("Elasticsearch Bulk Indexing");
+  }
+
+  @Test
+  public void attributes_per_index() {
+    statisticsRegistry.forIndex("bulkmonitortest");
+
+    Map<String, Object> attributes = underTest.attributes();
+
+    Map indexAttributes = (Map) attributes.get("bulkmonitortest");
+    assertThat(indexAttributes.keySet()).containsExactly("Docs", "Docs per Second", "Size", "Size per Second", "Requests", "Rejections", "Retries", "Failures");
+    assertThat(underTest.getDocsPerSecond()).containsEntry("bulkmonitortest", 0L);
+    assertThat(underTest.getBytesPerSecond()).containsEntry("bulkmonitortest", 0L);
+    assertThat(underTest.getRejections()).containsEntry("bulkmonitortest", 0L);
+    assertThat(underTest.getRetries()).containsEntry("bulkmonitortest", 0L);
+    assertThat(underTest.getFailures()).containsEntry("bulkmonitortest", 0L);
+  }
+
+  @Test
+  public void no_attributes_when_no_index_was_fed() {
+    assertThat(underTest.attributes()).isEmpty();
+    assertThat(underTest.getDocsPerSecond()).isEmpty();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.Collections;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.server.user.PermissionCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class PermissionCacheMonitorTest {
+
+  private PermissionCache permissionCache = new PermissionCache(new MapSettings());
+  private PermissionCacheMonitor underTest = new PermissionCacheMonitor(permissionCache);
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("Permission Cache");
+  }
+
+  @Test
+  public void attributes() {
+    permissionCache.getProjectPermissions(1, "PROJECT_1", Collections::emptySet);
+    permissionCache.getProjectPermissions(1, "PROJECT_1", Collections::emptySet);
+
+    assertThat(underTest.attributes()).containsExactly(
+      entry("Hits", 1L), entry("Misses", 1L), entry("Evictions", 0L), entry("Size", 1L));
+    assertThat(underTest.getHits()).isEqualTo(1L);
+    assertThat(underTest.getMisses()).isEqualTo(1L);
+    assertThat(underTest.getEvictions()).isZero();
+    assertThat(underTest.getSize()).isEqualTo(1L);
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.server.source.SourceLinesCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class SourceLinesCacheMonitorTest {
+
+  private SourceLinesCache sourceLinesCache = new SourceLinesCache(new MapSettings());
+  private SourceLinesCacheMonitor underTest = new SourceLinesCacheMonitor(sourceLinesCache);
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("Source Lines Cache");
+  }
+
+  @Test
+  public void attributes() {
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    data.addLinesBuilder().setLine(1).setSource("foo");
+    FileSourceDto dto = new FileSourceDto().setSourceData(data.build());
+    sourceLinesCache.getLines("FILE_UUID", "hash", 1, 1, () -> dto);
+    sourceLinesCache.getLines("FILE_UUID", "hash", 1, 1, () -> dto);
+
+    assertThat(underTest.attributes()).containsExactly(
+      entry("Hits", 1L), entry("Misses", 1L), entry("Evictions", 0L), entry("Cached Chunks", 1L));
+    assertThat(underTest.getHits()).isEqualTo(1L);
+    assertThat(underTest.getMisses()).isEqualTo(1L);
+    assertThat(underTest.getEvictions()).isZero();
+    assertThat(underTest.getSize()).isEqualTo(1L);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceLinesCacheTest {
+
+  private static final String FILE_UUID = "FILE_UUID";
+
+  private Settings settings = new MapSettings();
+  private AtomicInteger loads = new AtomicInteger();
+  private FileSourceDto dto = new FileSourceDto().setSourceData(newData(250));
+
+  @Test
+  public void load_data_once_and_cache_lines_by_chunks() {
+    SourceLinesCache underTest = new SourceLinesCache(settings);
+
+    assertThat(underTest.getLines(FILE_UUID, "hash", 95, 105, loader())).extracting(DbFileSources.Line::getLine)
+      .containsExactly(95, 96, 97, 98, 99, 100, 101, 102, 103, 104, 105);
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(underTest.getSize()).isEqualTo(2);
+    assertThat(underTest.getMisses()).isEqualTo(2);
+
+    assertThat(underTest.getLines(FILE_UUID, "hash", 150, 151, loader())).extracting(DbFileSources.Line::getLine).containsExactly(150, 151);
+    assertThat(underTest.getLines(FILE_UUID, "hash", 1, 2, loader())).extracting(DbFileSources.Line::getLine).containsExactly(1, 2);
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(underTest.getHits()).isEqualTo(2);
+  }
+
+  @Test
+  public void load_only_chunks_which_are_not_cached() {
+    SourceLinesCache underTest = new SourceLinesCache(settings);
+    underTest.getLines(FILE_UUID, "hash", 1, 10, loader());
+
+    assertThat(underTest.getLines(FILE_UUID, "hash", 1, Integer.MAX_VALUE, loader())).hasSize(250);
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(underTest.getSize()).isEqualTo(3);
+    assertThat(underTest.getHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void lines_of_another_data_hash_are_loaded() {
+    SourceLinesCache underTest = new SourceLinesCache(settings);
+    underTest.getLines(FILE_UUID, "hash", 1, 10, loader());
+
+    dto = new FileSourceDto().setSourceData(newData(5));
+    assertThat(underTest.getLines(FILE_UUID, "other hash", 1, 10, loader())).hasSize(5);
+    assertThat(underTest.getLines(FILE_UUID, "hash", 1, 10, loader())).hasSize(10);
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void lines_are_not_cached_if_data_hash_is_unknown() {
+    SourceLinesCache underTest = new SourceLinesCache(settings);
+
+    underTest.getLines(FILE_UUID, null, 1, 10, loader());
+    underTest.getLines(FILE_UUID, null, 1, 10, loader());
+
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(underTest.getSize()).isZero();
+  }
+
+  @Test
+  public void cache_is_disabled_if_max_size_is_zero() {
+    settings.setProperty(SourceLinesCache.MAX_SIZE_PROPERTY, 0);
+    SourceLinesCache underTest = new SourceLinesCache(settings);
+
+    assertThat(underTest.getLines(FILE_UUID, "hash", 1, 10, loader())).hasSize(10);
+    assertThat(underTest.getLines(FILE_UUID, "hash", 1, 10, loader())).hasSize(10);
+
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(underTest.getSize()).isZero();
+  }
+
+  @Test
+  public void estimated_heap_size_of_lines_is_greater_than_their_serialized_size() {
+    List<DbFileSources.Line> lines = newData(10).getLinesList();
+    int serializedSize = lines.stream().mapToInt(DbFileSources.Line::getSerializedSize).sum();
+
+    assertThat(SourceLinesCache.estimateHeapSize(lines)).isGreaterThan(2 * serializedSize);
+    assertThat(SourceLinesCache.estimateHeapSize(Collections.emptyList())).isZero();
+  }
+
+  private Supplier<FileSourceDto> loader() {
+    return () -> {
+      loads.incrementAndGet();
+      return dto;
+    };
+  }
+
+  private static DbFileSources.Data newData(int numberOfLines) {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= numberOfLines; i++) {
+      dataBuilder.addLinesBuilder()
+        .setLine(i)
+        .setSource("line " + i);
+    }
+    return dataBuilder.build();
+  }
+}
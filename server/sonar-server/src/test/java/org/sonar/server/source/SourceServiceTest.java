@@ -27,6 +27,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.protobuf.DbFileSources;
@@ -49,7 +50,7 @@ public class SourceServiceTest {
 
   HtmlSourceDecorator htmlDecorator = mock(HtmlSourceDecorator.class);
 
-  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator);
+  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator, new SourceLinesCache(new MapSettings()));
 
   @Before
   public void injectFakeLines() throws IOException {
@@ -114,6 +115,29 @@ public class SourceServiceTest {
     assertThat(lines.get()).isEmpty();
   }
 
+  @Test
+  public void getLines_reads_cached_lines_until_data_hash_changes() throws IOException {
+    dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
+      .setFileUuid("OTHER_FILE_UUID")
+      .setProjectUuid("PROJECT_UUID")
+      .setSourceData(FileSourceTesting.newFakeData(10).build())
+      .setDataHash("hash1"));
+    dbTester.commit();
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), "OTHER_FILE_UUID", 2, 3).get()).containsExactly("SOURCE_2", "SOURCE_3");
+
+    // data is changed without changing its hash
+    FileSourceDto dto = dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), "OTHER_FILE_UUID");
+    dto.setSourceData(FileSourceTesting.newFakeData(3).build());
+    dbTester.getDbClient().fileSourceDao().update(dbTester.getSession(), dto);
+    dbTester.commit();
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), "OTHER_FILE_UUID", 2, 5).get()).containsExactly("SOURCE_2", "SOURCE_3", "SOURCE_4", "SOURCE_5");
+
+    dto.setDataHash("hash2");
+    dbTester.getDbClient().fileSourceDao().update(dbTester.getSession(), dto);
+    dbTester.commit();
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), "OTHER_FILE_UUID", 2, 5).get()).containsExactly("SOURCE_2", "SOURCE_3");
+  }
+
   @Test
   public void getLines_file_does_not_exist() throws Exception {
     Optional<Iterable<DbFileSources.Line>> lines = underTest.getLines(dbTester.getSession(), "FILE_DOES_NOT_EXIST", 1, 10);
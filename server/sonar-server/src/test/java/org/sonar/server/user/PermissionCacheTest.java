@@ -0,0 +1,177 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.base.Ticker;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.db.permission.OrganizationPermission;
+
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PermissionCacheTest {
+
+  private static final String PROJECT_UUID = "PROJECT_1";
+  private static final String ORGANIZATION_UUID = "ORG_1";
+
+  private FakeTicker ticker = new FakeTicker();
+  private MapSettings settings = new MapSettings();
+  private AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  public void permissions_are_loaded_once_per_user_and_project() {
+    PermissionCache underTest = new PermissionCache(settings, ticker);
+
+    assertThat(underTest.getProjectPermissions(1, PROJECT_UUID, this::loadProjectPermissions)).containsOnly("user");
+    assertThat(underTest.getProjectPermissions(1, PROJECT_UUID, this::loadProjectPermissions)).containsOnly("user");
+    underTest.getProjectPermissions(2, PROJECT_UUID, this::loadProjectPermissions);
+    underTest.getProjectPermissions(null, PROJECT_UUID, this::loadProjectPermissions);
+    underTest.getProjectPermissions(null, PROJECT_UUID, this::loadProjectPermissions);
+
+    assertThat(loads.get()).isEqualTo(3);
+    assertThat(underTest.getHits()).isEqualTo(2);
+    assertThat(underTest.getMisses()).isEqualTo(3);
+    assertThat(underTest.getSize()).isEqualTo(3);
+  }
+
+  @Test
+  public void organization_and_project_permissions_are_cached_separately() {
+    PermissionCache underTest = new PermissionCache(settings, ticker);
+
+    underTest.getProjectPermissions(1, ORGANIZATION_UUID, this::loadProjectPermissions);
+    assertThat(underTest.getOrganizationPermissions(1, ORGANIZATION_UUID, this::loadOrganizationPermissions)).containsOnly(OrganizationPermission.SCAN);
+    assertThat(underTest.getOrganizationPermissions(1, ORGANIZATION_UUID, this::loadOrganizationPermissions)).containsOnly(OrganizationPermission.SCAN);
+
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(underTest.getHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void cached_permissions_are_not_affected_by_changes_of_loaded_set() {
+    PermissionCache underTest = new PermissionCache(settings, ticker);
+    Set<String> loaded = new HashSet<>(singleton("user"));
+
+    Set<String> cached = underTest.getProjectPermissions(1, PROJECT_UUID, () -> loaded);
+    loaded.add("admin");
+
+    assertThat(cached).containsOnly("user");
+    assertThat(underTest.getProjectPermissions(1, PROJECT_UUID, this::loadProjectPermissions)).containsOnly("user");
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void cached_permissions_can_not_be_modified() {
+    PermissionCache underTest = new PermissionCache(settings, ticker);
+
+    underTest.getProjectPermissions(1, PROJECT_UUID, () -> new HashSet<>(singleton("user"))).add("admin");
+  }
+
+  @Test
+  public void invalidate_removes_all_permissions() {
+    PermissionCache underTest = new PermissionCache(settings, ticker);
+    underTest.getProjectPermissions(1, PROJECT_UUID, this::loadProjectPermissions);
+    underTest.getOrganizationPermissions(1, ORGANIZATION_UUID, this::loadOrganizationPermissions);
+
+    underTest.invalidate();
+
+    assertThat(underTest.getSize()).isZero();
+    underTest.getProjectPermissions(1, PROJECT_UUID, this::loadProjectPermissions);
+    assertThat(loads.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void permissions_loaded_during_invalidation_are_not_cached() {
+    PermissionCache underTest = new PermissionCache(settings, ticker);
+
+    underTest.getProjectPermissions(1, PROJECT_UUID, () -> {
+      underTest.invalidate();
+      return loadProjectPermissions();
+    });
+
+    assertThat(underTest.getSize()).isZero();
+  }
+
+  @Test
+  public void permissions_expire_after_ttl() {
+    settings.setProperty(PermissionCache.TTL_PROPERTY, 10);
+    PermissionCache underTest = new PermissionCache(settings, ticker);
+    underTest.getProjectPermissions(1, PROJECT_UUID, this::loadProjectPermissions);
+
+    ticker.advance(9);
+    underTest.getProjectPermissions(1, PROJECT_UUID, this::loadProjectPermissions);
+    assertThat(loads.get()).isEqualTo(1);
+
+    ticker.advance(2);
+    underTest.getProjectPermissions(1, PROJECT_UUID, this::loadProjectPermissions);
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void cache_is_disabled_when_ttl_is_zero() {
+    settings.setProperty(PermissionCache.TTL_PROPERTY, 0);
+    PermissionCache underTest = new PermissionCache(settings, ticker);
+
+    underTest.getProjectPermissions(1, PROJECT_UUID, this::loadProjectPermissions);
+    underTest.getProjectPermissions(1, PROJECT_UUID, this::loadProjectPermissions);
+
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(underTest.getSize()).isZero();
+  }
+
+  @Test
+  public void number_of_entries_is_bounded() {
+    settings.setProperty(PermissionCache.MAX_SIZE_PROPERTY, 2);
+    PermissionCache underTest = new PermissionCache(settings, ticker);
+
+    for (int userId = 0; userId < 5; userId++) {
+      underTest.getProjectPermissions(userId, PROJECT_UUID, this::loadProjectPermissions);
+    }
+
+    assertThat(underTest.getSize()).isLessThanOrEqualTo(2);
+    assertThat(underTest.getEvictions()).isGreaterThanOrEqualTo(3);
+  }
+
+  private Set<String> loadProjectPermissions() {
+    loads.incrementAndGet();
+    return singleton("user");
+  }
+
+  private Set<OrganizationPermission> loadOrganizationPermissions() {
+    loads.incrementAndGet();
+    return singleton(OrganizationPermission.SCAN);
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos = 0L;
+
+    void advance(long seconds) {
+      nanos += TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+}
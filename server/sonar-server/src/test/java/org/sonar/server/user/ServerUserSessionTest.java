@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
 import org.sonar.db.DbClient;
@@ -72,6 +73,7 @@ public class ServerUserSessionTest {
   private UserDto userDto = newUserDto().setLogin(LOGIN);
   private TestOrganizationFlags organizationFlags = TestOrganizationFlags.standalone();
   private TestDefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(db);
+  private PermissionCache permissionCache = new PermissionCache(new MapSettings().setProperty(PermissionCache.TTL_PROPERTY, 0));
   private OrganizationDto organization;
   private ComponentDto project;
 
@@ -405,8 +407,38 @@ public class ServerUserSessionTest {
     session.checkIsSystemAdministrator();
   }
 
+  @Test
+  public void permissions_are_shared_by_sessions_until_cache_is_invalidated() {
+    permissionCache = new PermissionCache(new MapSettings());
+    ComponentDto project = db.components().insertProject();
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.CODEVIEWER, project)).isFalse();
+    assertThat(newUserSession(userDto).hasPermission(PROVISION_PROJECTS, organization.getUuid())).isFalse();
+
+    db.users().insertProjectPermissionOnUser(userDto, UserRole.CODEVIEWER, project);
+    db.users().insertPermissionOnUser(organization, userDto, PROVISION_PROJECTS);
+
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.CODEVIEWER, project)).isFalse();
+    assertThat(newUserSession(userDto).hasPermission(PROVISION_PROJECTS, organization.getUuid())).isFalse();
+    assertThat(permissionCache.getHits()).isEqualTo(2);
+
+    permissionCache.invalidate();
+
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.CODEVIEWER, project)).isTrue();
+    assertThat(newUserSession(userDto).hasPermission(PROVISION_PROJECTS, organization.getUuid())).isTrue();
+  }
+
+  @Test
+  public void permissions_of_anonymous_are_not_shared_with_users() {
+    permissionCache = new PermissionCache(new MapSettings());
+    ComponentDto project = db.components().insertProject();
+    db.users().insertProjectPermissionOnUser(userDto, UserRole.CODEVIEWER, project);
+
+    assertThat(newAnonymousSession().hasComponentPermission(UserRole.CODEVIEWER, project)).isFalse();
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.CODEVIEWER, project)).isTrue();
+  }
+
   private ServerUserSession newUserSession(@Nullable UserDto userDto) {
-    return new ServerUserSession(dbClient, organizationFlags, defaultOrganizationProvider, userDto);
+    return new ServerUserSession(dbClient, organizationFlags, defaultOrganizationProvider, permissionCache, userDto);
   }
 
   private ServerUserSession newAnonymousSession() {
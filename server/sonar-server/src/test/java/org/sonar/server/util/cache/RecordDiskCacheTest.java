@@ -0,0 +1,135 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.CloseableIterator;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class RecordDiskCacheTest {
+
+  private static final RecordCodec<String> STRING_CODEC = new RecordCodec<String>() {
+    @Override
+    public void write(String object, DataOutput output) throws IOException {
+      output.writeUTF(object);
+    }
+
+    @Override
+    public String read(DataInput input) throws IOException {
+      return input.readUTF();
+    }
+  };
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void write_and_read() throws Exception {
+    RecordDiskCache<String> cache = new RecordDiskCache<>(temp.newFile(), System2.INSTANCE, STRING_CODEC, false);
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender()
+      .append("foo")
+      .append("bar")
+      .close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar");
+    }
+  }
+
+  @Test
+  public void write_and_read_with_many_appenders() throws Exception {
+    RecordDiskCache<String> cache = new RecordDiskCache<>(temp.newFile(), System2.INSTANCE, STRING_CODEC, true);
+
+    cache.newAppender().append("foo").close();
+    cache.newAppender().close();
+    cache.newAppender().append("bar").append("baz").close();
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar", "baz");
+    }
+  }
+
+  @Test
+  public void write_and_read_many_frames() throws Exception {
+    verifyManyFrames(false);
+    verifyManyFrames(true);
+  }
+
+  private void verifyManyFrames(boolean compressed) throws IOException {
+    RecordDiskCache<String> cache = new RecordDiskCache<>(temp.newFile(), System2.INSTANCE, STRING_CODEC, compressed);
+    List<String> expected = new ArrayList<>();
+    try (RecordDiskCache<String>.DiskAppender appender = cache.newAppender()) {
+      for (int i = 0; i < 50_000; i++) {
+        String s = "record_" + i;
+        expected.add(s);
+        appender.append(s);
+      }
+    }
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(newArrayList(traverse)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void compressed_file_is_smaller() throws Exception {
+    File rawFile = temp.newFile();
+    File compressedFile = temp.newFile();
+    RecordDiskCache<String> raw = new RecordDiskCache<>(rawFile, System2.INSTANCE, STRING_CODEC, false);
+    RecordDiskCache<String> compressed = new RecordDiskCache<>(compressedFile, System2.INSTANCE, STRING_CODEC, true);
+    try (RecordDiskCache<String>.DiskAppender rawAppender = raw.newAppender();
+      RecordDiskCache<String>.DiskAppender compressedAppender = compressed.newAppender()) {
+      for (int i = 0; i < 10_000; i++) {
+        rawAppender.append("the same message of issue");
+        compressedAppender.append("the same message of issue");
+      }
+    }
+
+    try (CloseableIterator<String> traverse = compressed.traverse()) {
+      assertThat(newArrayList(traverse)).hasSize(10_000).containsOnly("the same message of issue");
+    }
+    assertThat(compressedFile.length()).isLessThan(rawFile.length() / 2);
+  }
+
+  @Test
+  public void fail_if_file_is_not_writable() throws Exception {
+    try {
+      new RecordDiskCache<>(temp.newFolder(), System2.INSTANCE, STRING_CODEC, false);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Fail to write into file");
+    }
+  }
+}
@@ -20,15 +20,18 @@
 package org.sonar.server.ws;
 
 import java.io.IOException;
+import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.log.LogTester;
+import org.sonar.core.util.ProtobufJsonFormat;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonarqube.ws.Issues;
 import org.sonarqube.ws.MediaTypes;
 import org.sonarqube.ws.WsPermissions;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.test.ExceptionCauseMatcher.hasType;
 
@@ -68,6 +71,32 @@ public class WsUtilsTest {
     assertThat(Issues.Issue.parseFrom(response.getFlushedOutput()).getKey()).isEqualTo("I1");
   }
 
+  @Test
+  public void write_protobuf_with_elements_of_repeated_field_provided_by_iterator() throws Exception {
+    TestRequest request = new TestRequest();
+    request.setMediaType(MediaTypes.PROTOBUF);
+    DumbResponse response = new DumbResponse();
+
+    Issues.SearchWsResponse msg = Issues.SearchWsResponse.newBuilder().setTotal(2L).addComponents(Issues.Component.newBuilder().setKey("C1")).build();
+    List<Issues.Issue> issues = asList(Issues.Issue.newBuilder().setKey("I1").build(), Issues.Issue.newBuilder().setKey("I2").build());
+    WsUtils.writeProtobuf(msg, Issues.SearchWsResponse.ISSUES_FIELD_NUMBER, issues.iterator(), request, response);
+
+    assertThat(response.stream().mediaType()).isEqualTo(MediaTypes.PROTOBUF);
+    assertThat(Issues.SearchWsResponse.parseFrom(response.getFlushedOutput())).isEqualTo(msg.toBuilder().addAllIssues(issues).build());
+  }
+
+  @Test
+  public void write_json_with_elements_of_repeated_field_provided_by_iterator() throws Exception {
+    DumbResponse response = new DumbResponse();
+
+    Issues.SearchWsResponse msg = Issues.SearchWsResponse.newBuilder().setTotal(2L).addComponents(Issues.Component.newBuilder().setKey("C1")).build();
+    List<Issues.Issue> issues = asList(Issues.Issue.newBuilder().setKey("I1").build(), Issues.Issue.newBuilder().setKey("I2").build());
+    WsUtils.writeProtobuf(msg, Issues.SearchWsResponse.ISSUES_FIELD_NUMBER, issues.iterator(), new TestRequest(), response);
+
+    assertThat(response.stream().mediaType()).isEqualTo(MediaTypes.JSON);
+    assertThat(response.outputAsString()).isEqualTo(ProtobufJsonFormat.toJson(msg.toBuilder().addAllIssues(issues).build()));
+  }
+
   @Test
   public void log_message_when_error_writing_message() throws IOException {
     TestRequest request = new TestRequest();
@@ -100,6 +100,30 @@ public final class PurgeProperties {
         .category(CoreProperties.CATEGORY_GENERAL)
         .subCategory(CoreProperties.SUBCATEGORY_DATABASE_CLEANER)
         .index(6)
+        .build(),
+
+      PropertyDefinition.builder(PurgeConstants.CHUNK_SIZE)
+        .defaultValue("1000")
+        .name("Chunk size")
+        .description("Maximum number of analyses, components or issues which data is deleted by a single statement. "
+          + "Changes are committed after each chunk.")
+        .type(PropertyType.INTEGER)
+        .category(CoreProperties.CATEGORY_GENERAL)
+        .subCategory(CoreProperties.SUBCATEGORY_DATABASE_CLEANER)
+        .index(7)
+        .build(),
+
+      PropertyDefinition.builder(PurgeConstants.MAX_ROWS_PER_SECOND)
+        .defaultValue("0")
+        .name("Maximum number of rows deleted per second")
+        .description("The DbCleaner pauses between chunks so that it does not delete more rows per second than this number. "
+          + "Set to 0 to disable the limit. Note that a throttled purge runs as a background task and occupies a Compute Engine worker "
+          + "for its whole duration, whatever the number of workers. To not delay the analysis of the project, the purge stops at the end "
+          + "of the current chunk when an analysis report of the project is pending, and resumes after it.")
+        .type(PropertyType.INTEGER)
+        .category(CoreProperties.CATEGORY_GENERAL)
+        .subCategory(CoreProperties.SUBCATEGORY_DATABASE_CLEANER)
+        .index(8)
         .build()
       );
   }
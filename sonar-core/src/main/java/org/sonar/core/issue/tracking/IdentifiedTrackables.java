@@ -0,0 +1,106 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.rule.RuleKey;
+
+/**
+ * Trackables of a file with the int ids of their attributes, so that they can be compared
+ * on primitive values. Ids are given by a {@link Ids}, which must be shared by all the trackables compared
+ * together.
+ */
+final class IdentifiedTrackables<T extends Trackable> {
+  /**
+   * Id of the line of trackables which do not relate to a line
+   */
+  static final int NO_LINE = Integer.MIN_VALUE;
+
+  private final List<T> trackables;
+  private final int[] rules;
+  private final int[] lines;
+  private final int[] lineHashes;
+  private final int[] messages;
+
+  IdentifiedTrackables(Collection<T> trackables, Ids ids) {
+    this.trackables = new ArrayList<>(trackables);
+    int size = this.trackables.size();
+    this.rules = new int[size];
+    this.lines = new int[size];
+    this.lineHashes = new int[size];
+    this.messages = new int[size];
+    for (int i = 0; i < size; i++) {
+      T trackable = this.trackables.get(i);
+      Integer line = trackable.getLine();
+      rules[i] = idOf(ids.ruleIds, trackable.getRuleKey());
+      lines[i] = line == null ? NO_LINE : line;
+      lineHashes[i] = idOf(ids.lineHashIds, StringUtils.defaultString(trackable.getLineHash(), ""));
+      messages[i] = idOf(ids.messageIds, trackable.getMessage());
+    }
+  }
+
+  int size() {
+    return trackables.size();
+  }
+
+  T get(int index) {
+    return trackables.get(index);
+  }
+
+  int rule(int index) {
+    return rules[index];
+  }
+
+  int line(int index) {
+    return lines[index];
+  }
+
+  int lineHash(int index) {
+    return lineHashes[index];
+  }
+
+  int message(int index) {
+    return messages[index];
+  }
+
+  /**
+   * Gives the same id to equal rule keys, line hashes and messages. Not thread safe.
+   */
+  static final class Ids {
+    private final Map<RuleKey, Integer> ruleIds = new HashMap<>();
+    private final Map<String, Integer> lineHashIds = new HashMap<>();
+    private final Map<String, Integer> messageIds = new HashMap<>();
+  }
+
+  private static <K> int idOf(Map<K, Integer> ids, @Nullable K value) {
+    Integer id = ids.get(value);
+    if (id == null) {
+      id = ids.size();
+      ids.put(value, id);
+    }
+    return id;
+  }
+}
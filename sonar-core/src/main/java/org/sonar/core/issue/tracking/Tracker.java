@@ -19,15 +19,9 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import java.util.Collection;
-import java.util.Objects;
-import javax.annotation.Nonnull;
-import org.apache.commons.lang.StringUtils;
+import java.util.Arrays;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.InstantiationStrategy;
-import org.sonar.api.rule.RuleKey;
 
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 @ScannerSide
@@ -35,22 +29,30 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
 
   public Tracking<RAW, BASE> track(Input<RAW> rawInput, Input<BASE> baseInput) {
     Tracking<RAW, BASE> tracking = new Tracking<>(rawInput, baseInput);
+    if (tracking.isComplete()) {
+      return tracking;
+    }
+
+    // rule keys, line hashes and messages are compared through ids computed once for all the passes
+    IdentifiedTrackables.Ids ids = new IdentifiedTrackables.Ids();
+    IdentifiedTrackables<RAW> raws = new IdentifiedTrackables<>(rawInput.getIssues(), ids);
+    IdentifiedTrackables<BASE> bases = new IdentifiedTrackables<>(baseInput.getIssues(), ids);
 
     // 1. match issues with same rule, same line and same line hash, but not necessarily with same message
-    match(tracking, LineAndLineHashKeyFactory.INSTANCE);
+    match(tracking, raws, bases, SearchKey.LINE_AND_LINE_HASH);
 
     // 2. detect code moves by comparing blocks of codes
     detectCodeMoves(rawInput, baseInput, tracking);
 
     // 3. match issues with same rule, same message and same line hash
-    match(tracking, LineHashAndMessageKeyFactory.INSTANCE);
+    match(tracking, raws, bases, SearchKey.LINE_HASH_AND_MESSAGE);
 
     // 4. match issues with same rule, same line and same message
-    match(tracking, LineAndMessageKeyFactory.INSTANCE);
+    match(tracking, raws, bases, SearchKey.LINE_AND_MESSAGE);
 
     // 5. match issues with same rule and same line hash but different line and different message.
     // See SONAR-2812
-    match(tracking, LineHashKeyFactory.INSTANCE);
+    match(tracking, raws, bases, SearchKey.LINE_HASH);
 
     return tracking;
   }
@@ -61,189 +63,157 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
     }
   }
 
-  private void match(Tracking<RAW, BASE> tracking, SearchKeyFactory factory) {
+  private void match(Tracking<RAW, BASE> tracking, IdentifiedTrackables<RAW> raws, IdentifiedTrackables<BASE> bases, SearchKey key) {
     if (tracking.isComplete()) {
       return;
     }
 
-    Multimap<SearchKey, BASE> baseSearch = ArrayListMultimap.create();
-    for (BASE base : tracking.getUnmatchedBases()) {
-      baseSearch.put(factory.create(base), base);
+    BaseSearch baseSearch = new BaseSearch(bases.size());
+    for (int i = 0; i < bases.size(); i++) {
+      if (tracking.containsUnmatchedBase(bases.get(i))) {
+        baseSearch.add(i, bases.rule(i), key.first(bases, i), key.second(bases, i));
+      }
     }
 
-    for (RAW raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = factory.create(raw);
-      Collection<BASE> bases = baseSearch.get(rawKey);
-      if (!bases.isEmpty()) {
+    for (int i = 0; i < raws.size(); i++) {
+      RAW raw = raws.get(i);
+      if (tracking.baseFor(raw) == null) {
         // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
         // Message could be checked to take the best one.
-        BASE match = bases.iterator().next();
-        tracking.match(raw, match);
-        baseSearch.remove(rawKey, match);
+        int match = baseSearch.poll(raws.rule(i), key.first(raws, i), key.second(raws, i));
+        if (match != BaseSearch.NONE) {
+          tracking.match(raw, bases.get(match));
+        }
       }
     }
   }
 
-  private interface SearchKey {
-  }
-
-  private interface SearchKeyFactory {
-    SearchKey create(Trackable trackable);
-  }
-
-  private static class LineAndLineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-    private final Integer line;
-
-    LineAndLineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+  /**
+   * Attributes, in addition to the rule, which must be equal for a raw and a base to match
+   */
+  private enum SearchKey {
+    LINE_AND_LINE_HASH {
+      @Override
+      int first(IdentifiedTrackables<?> trackables, int index) {
+        return trackables.line(index);
       }
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
-
-  private enum LineAndLineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndLineHashKey(t);
-    }
-  }
-
-  private static class LineHashAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final String lineHash;
-
-    LineHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      @Override
+      int second(IdentifiedTrackables<?> trackables, int index) {
+        return trackables.lineHash(index);
+      }
+    },
+    LINE_HASH_AND_MESSAGE {
+      @Override
+      int first(IdentifiedTrackables<?> trackables, int index) {
+        return trackables.lineHash(index);
       }
-      LineHashAndMessageKey that = (LineHashAndMessageKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
-    }
-  }
-
-  private enum LineHashAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashAndMessageKey(t);
-    }
-  }
 
-  private static class LineAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final Integer line;
+      @Override
+      int second(IdentifiedTrackables<?> trackables, int index) {
+        return trackables.message(index);
+      }
+    },
+    LINE_AND_MESSAGE {
+      @Override
+      int first(IdentifiedTrackables<?> trackables, int index) {
+        return trackables.line(index);
+      }
 
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
-    }
+      @Override
+      int second(IdentifiedTrackables<?> trackables, int index) {
+        return trackables.message(index);
+      }
+    },
+    LINE_HASH {
+      @Override
+      int first(IdentifiedTrackables<?> trackables, int index) {
+        return trackables.lineHash(index);
+      }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      @Override
+      int second(IdentifiedTrackables<?> trackables, int index) {
+        return 0;
       }
-      LineAndMessageKey that = (LineAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
+    };
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
+    abstract int first(IdentifiedTrackables<?> trackables, int index);
 
-  private enum LineAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndMessageKey(t);
-    }
+    abstract int second(IdentifiedTrackables<?> trackables, int index);
   }
 
-  private static class LineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+  /**
+   * Open addressing hash table of the indices of bases by key, which does not allocate any object per base.
+   * Bases of the same key are returned in the order they were added.
+   */
+  private static final class BaseSearch {
+    private static final int NONE = -1;
+
+    private final int mask;
+    private final int[] rules;
+    private final int[] firsts;
+    private final int[] seconds;
+    // first and last indices of not yet returned bases of each slot, linked by next
+    private final int[] heads;
+    private final int[] tails;
+    private final int[] next;
+
+    BaseSearch(int maxSize) {
+      int capacity = 2;
+      while (capacity < 2 * maxSize) {
+        capacity <<= 1;
       }
-      LineHashKey that = (LineHashKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
+      this.mask = capacity - 1;
+      this.rules = new int[capacity];
+      this.firsts = new int[capacity];
+      this.seconds = new int[capacity];
+      this.heads = new int[capacity];
+      this.tails = new int[capacity];
+      Arrays.fill(tails, NONE);
+      this.next = new int[maxSize];
+    }
+
+    void add(int index, int rule, int first, int second) {
+      int slot = slotOf(rule, first, second);
+      next[index] = NONE;
+      if (tails[slot] == NONE) {
+        rules[slot] = rule;
+        firsts[slot] = first;
+        seconds[slot] = second;
+        heads[slot] = index;
+      } else if (heads[slot] == NONE) {
+        heads[slot] = index;
+      } else {
+        next[tails[slot]] = index;
+      }
+      tails[slot] = index;
     }
-  }
 
-  private enum LineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashKey(t);
+    /**
+     * Removes and returns the first added index of the given key, {@link #NONE} if there is none.
+     */
+    int poll(int rule, int first, int second) {
+      int slot = slotOf(rule, first, second);
+      int index = tails[slot] == NONE ? NONE : heads[slot];
+      if (index != NONE) {
+        heads[slot] = next[index];
+      }
+      return index;
+    }
+
+    /**
+     * Slot of the key, which is either free or already used by the same key
+     */
+    private int slotOf(int rule, int first, int second) {
+      int hash = 31 * (31 * rule + first) + second;
+      hash ^= hash >>> 16;
+      hash *= 0x85ebca6b;
+      hash ^= hash >>> 13;
+      int slot = hash & mask;
+      while (tails[slot] != NONE && (rules[slot] != rule || firsts[slot] != first || seconds[slot] != second)) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
     }
   }
 }
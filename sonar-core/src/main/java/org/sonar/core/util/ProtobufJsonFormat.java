@@ -24,10 +24,13 @@ import com.google.protobuf.MapEntry;
 import com.google.protobuf.Message;
 import java.io.StringWriter;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.sonar.api.utils.text.JsonWriter;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
  * Converts a Protocol Buffers message to JSON. Unknown fields, binary fields and groups
  * are not supported. Absent fields are ignored, so it's possible to distinguish
@@ -132,7 +135,8 @@ public class ProtobufJsonFormat {
   }
 
   static class MessageType {
-    private static final Map<Class<? extends Message>, MessageType> TYPES_BY_CLASS = new HashMap<>();
+    // messages are written concurrently by web requests
+    private static final Map<Class<? extends Message>, MessageType> TYPES_BY_CLASS = new ConcurrentHashMap<>();
 
     private final Descriptors.FieldDescriptor[] fieldDescriptors;
     private final boolean doesWrapRepeated;
@@ -143,12 +147,7 @@ public class ProtobufJsonFormat {
     }
 
     static MessageType of(Message message) {
-      MessageType type = TYPES_BY_CLASS.get(message.getClass());
-      if (type == null) {
-        type = new MessageType(message.getDescriptorForType());
-        TYPES_BY_CLASS.put(message.getClass(), type);
-      }
-      return type;
+      return TYPES_BY_CLASS.computeIfAbsent(message.getClass(), c -> new MessageType(message.getDescriptorForType()));
     }
   }
 
@@ -159,6 +158,39 @@ public class ProtobufJsonFormat {
     writer.endObject();
   }
 
+  /**
+   * Same as {@link #write(Message, JsonWriter)} for a message whose repeated field {@code repeatedFieldNumber} is
+   * provided by {@code elements} instead of being set in {@code message}. Elements are written as soon as they are
+   * provided, so that they don't have to be all kept in memory.
+   *
+   * @param message the message without the elements of the repeated field
+   * @param repeatedFieldNumber number of a repeated field of messages
+   * @throws IllegalArgumentException if the field is not a repeated field of messages, or if it is not empty in {@code message}
+   */
+  public static void write(Message message, int repeatedFieldNumber, Iterator<? extends Message> elements, JsonWriter writer) {
+    Descriptors.FieldDescriptor streamedField = message.getDescriptorForType().findFieldByNumber(repeatedFieldNumber);
+    checkArgument(streamedField != null && streamedField.isRepeated() && !streamedField.isMapField()
+      && streamedField.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE,
+      "Field %s of %s is not a repeated field of messages", repeatedFieldNumber, message.getDescriptorForType().getFullName());
+    checkArgument(message.getRepeatedFieldCount(streamedField) == 0, "Field %s must be empty in message", streamedField.getName());
+
+    writer.setSerializeNulls(false).setSerializeEmptys(true);
+    writer.beginObject();
+    for (Descriptors.FieldDescriptor fieldDescriptor : MessageType.of(message).fieldDescriptors) {
+      if (fieldDescriptor.equals(streamedField)) {
+        writer.name(fieldDescriptor.getName());
+        writer.beginArray();
+        while (elements.hasNext()) {
+          writeMessageValue(elements.next(), writer);
+        }
+        writer.endArray();
+      } else {
+        writeField(message, fieldDescriptor, writer);
+      }
+    }
+    writer.endObject();
+  }
+
   public static String toJson(Message message) {
     StringWriter json = new StringWriter();
     try (JsonWriter jsonWriter = JsonWriter.of(json)) {
@@ -170,18 +202,22 @@ public class ProtobufJsonFormat {
   private static void writeMessage(Message message, JsonWriter writer) {
     MessageType type = MessageType.of(message);
     for (Descriptors.FieldDescriptor fieldDescriptor : type.fieldDescriptors) {
-      if (fieldDescriptor.isRepeated()) {
-        writer.name(fieldDescriptor.getName());
-        if (fieldDescriptor.isMapField()) {
-          writeMap((Collection<MapEntry>) message.getField(fieldDescriptor), writer);
-        } else {
-          writeArray(writer, fieldDescriptor, (Collection) message.getField(fieldDescriptor));
-        }
-      } else if (message.hasField(fieldDescriptor)) {
-        writer.name(fieldDescriptor.getName());
-        Object fieldValue = message.getField(fieldDescriptor);
-        writeFieldValue(fieldDescriptor, fieldValue, writer);
+      writeField(message, fieldDescriptor, writer);
+    }
+  }
+
+  private static void writeField(Message message, Descriptors.FieldDescriptor fieldDescriptor, JsonWriter writer) {
+    if (fieldDescriptor.isRepeated()) {
+      writer.name(fieldDescriptor.getName());
+      if (fieldDescriptor.isMapField()) {
+        writeMap((Collection<MapEntry>) message.getField(fieldDescriptor), writer);
+      } else {
+        writeArray(writer, fieldDescriptor, (Collection) message.getField(fieldDescriptor));
       }
+    } else if (message.hasField(fieldDescriptor)) {
+      writer.name(fieldDescriptor.getName());
+      Object fieldValue = message.getField(fieldDescriptor);
+      writeFieldValue(fieldDescriptor, fieldValue, writer);
     }
   }
 
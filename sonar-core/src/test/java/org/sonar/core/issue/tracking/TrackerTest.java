@@ -351,6 +351,59 @@ public class TrackerTest {
     assertThat(tracking.getUnmatchedBases()).containsOnly(base2);
   }
 
+  @Test
+  public void issues_with_same_attributes_are_matched_in_order() {
+    FakeInput baseInput = new FakeInput("H1");
+    Issue base1 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue base2 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+
+    FakeInput rawInput = new FakeInput("H1");
+    Issue raw1 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue raw2 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue raw3 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    assertThat(tracking.baseFor(raw1)).isSameAs(base1);
+    assertThat(tracking.baseFor(raw2)).isSameAs(base2);
+    assertThat(tracking.baseFor(raw3)).isNull();
+  }
+
+  @Test
+  public void match_issues_of_file_with_many_issues_after_lines_are_shifted() {
+    RuleKey[] rules = {RULE_SYSTEM_PRINT, RULE_UNUSED_LOCAL_VARIABLE, RULE_UNUSED_PRIVATE_METHOD};
+    int lines = 5_000;
+    String[] baseHashes = new String[lines];
+    String[] rawHashes = new String[lines + 10];
+    for (int i = 0; i < 10; i++) {
+      rawHashes[i] = "N" + i;
+    }
+    for (int i = 0; i < lines; i++) {
+      baseHashes[i] = "H" + i;
+      rawHashes[i + 10] = "H" + i;
+    }
+    FakeInput baseInput = new FakeInput(baseHashes);
+    FakeInput rawInput = new FakeInput(rawHashes);
+    List<Issue> bases = new ArrayList<>();
+    List<Issue> raws = new ArrayList<>();
+    for (int line = 1; line <= lines; line++) {
+      for (int i = 0; i < 2; i++) {
+        RuleKey rule = rules[(line + i) % rules.length];
+        // messages change on odd lines, so that matching relies on either message or line hash
+        bases.add(baseInput.createIssueOnLine(line, rule, "msg " + i));
+        raws.add(rawInput.createIssueOnLine(line + 10, rule, line % 2 == 0 ? ("msg " + i) : ("new msg " + i)));
+      }
+    }
+    Issue newRaw = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg 0");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+
+    for (int i = 0; i < raws.size(); i++) {
+      assertThat(tracking.baseFor(raws.get(i))).isSameAs(bases.get(i));
+    }
+    assertThat(tracking.baseFor(newRaw)).isNull();
+    assertThat(tracking.getUnmatchedBases()).isEmpty();
+  }
+
   /**
    * https://jira.sonarsource.com/browse/SONAR-7595
    */
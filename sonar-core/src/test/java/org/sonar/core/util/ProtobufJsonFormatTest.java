@@ -21,6 +21,8 @@ package org.sonar.core.util;
 
 import com.google.protobuf.ByteString;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -38,6 +40,7 @@ import org.sonar.core.test.Test.TestNullableMap;
 import org.sonar.core.test.Test.Translations;
 import org.sonar.test.TestUtils;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.core.util.ProtobufJsonFormat.toJson;
 
@@ -104,6 +107,49 @@ public class ProtobufJsonFormatTest {
       .isEqualTo("{\"strings\":[\"one\",\"two\"],\"nesteds\":[{\"label\":\"nestedOne\"},{\"label\":\"nestedTwo\"}]}");
   }
 
+  @Test
+  public void write_elements_of_repeated_field_provided_by_iterator() {
+    TestArray msg = TestArray.newBuilder().addStrings("one").addStrings("two").build();
+    List<NestedMsg> nesteds = asList(NestedMsg.newBuilder().setLabel("nestedOne").build(), NestedMsg.newBuilder().setLabel("nestedTwo").build());
+
+    StringWriter json = new StringWriter();
+    try (JsonWriter jsonWriter = JsonWriter.of(json)) {
+      ProtobufJsonFormat.write(msg, TestArray.NESTEDS_FIELD_NUMBER, nesteds.iterator(), jsonWriter);
+    }
+
+    assertThat(json.toString()).isEqualTo(toJson(msg.toBuilder().addAllNesteds(nesteds).build()));
+  }
+
+  @Test
+  public void write_empty_repeated_field_provided_by_iterator() {
+    TestArray msg = TestArray.newBuilder().addStrings("one").build();
+
+    StringWriter json = new StringWriter();
+    try (JsonWriter jsonWriter = JsonWriter.of(json)) {
+      ProtobufJsonFormat.write(msg, TestArray.NESTEDS_FIELD_NUMBER, Collections.emptyIterator(), jsonWriter);
+    }
+
+    assertThat(json.toString()).isEqualTo("{\"strings\":[\"one\"],\"nesteds\":[]}");
+  }
+
+  @Test
+  public void fail_to_write_elements_of_field_which_is_not_repeated_field_of_messages() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Field 1 of TestArray is not a repeated field of messages");
+
+    ProtobufJsonFormat.write(TestArray.newBuilder().build(), TestArray.STRINGS_FIELD_NUMBER, Collections.emptyIterator(), JsonWriter.of(new StringWriter()));
+  }
+
+  @Test
+  public void fail_to_write_elements_of_repeated_field_which_is_not_empty() {
+    TestArray msg = TestArray.newBuilder().addNesteds(NestedMsg.newBuilder().setLabel("nestedOne")).build();
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Field nesteds must be empty in message");
+
+    ProtobufJsonFormat.write(msg, TestArray.NESTEDS_FIELD_NUMBER, Collections.emptyIterator(), JsonWriter.of(new StringWriter()));
+  }
+
   @Test
   public void write_empty_array() {
     TestArray msg = TestArray.newBuilder().build();
@@ -0,0 +1,381 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+import org.sonar.duplications.utils.FastStringComparator;
+
+/**
+ * Same as {@link PackedMemoryCloneIndex}, except that blocks are stored in files mapped in memory rather than in
+ * heap, so that large indexes do not require a large heap. Only the identifiers of resources, one per file, are kept
+ * in heap.
+ * <p>
+ * Blocks are sorted by hash in place, within the mapped segments. Blocks of a given resource are then found through a
+ * second mapped array, which groups positions of blocks by resource.
+ * </p>
+ * <p>
+ * Once the index is sorted, which is the case after a call to {@link #iterator()}, {@link #getBySequenceHash(ByteArray)}
+ * can be called by several threads concurrently.
+ * </p>
+ * <p>
+ * Files are created in the given directory and deleted by {@link #close()}.
+ * </p>
+ */
+public class MappedCloneIndex extends AbstractCloneIndex implements Closeable {
+
+  /**
+   * 64Mb
+   */
+  private static final int DEFAULT_SEGMENT_INTS = 1 << 24;
+
+  /**
+   * Resource, index in file, start line, end line, start unit and end unit
+   */
+  private static final int BLOCK_INTS = 6;
+
+  private final int hashInts;
+  private final int blockInts;
+  private final MappedIntArray blockData;
+  private final MappedIntArray positionsByResource;
+
+  private final List<String> resourceIds = new ArrayList<>();
+  private final Map<String, Integer> resourceOrdinals = new HashMap<>();
+
+  /**
+   * Indicates that index requires sorting to perform queries.
+   */
+  private boolean sorted;
+
+  /**
+   * Current number of blocks in index.
+   */
+  private int size;
+
+  /**
+   * Rank of each resource, by ordinal, when resources are sorted by identifier
+   */
+  private int[] resourceRanks;
+  private String[] sortedResourceIds;
+
+  /**
+   * Position in {@link #positionsByResource} of the first block of each resource, by rank
+   */
+  private int[] resourceOffsets;
+
+  public MappedCloneIndex(Path dir) {
+    this(dir, 8, DEFAULT_SEGMENT_INTS);
+  }
+
+  /**
+   * @param dir directory of the mapped files
+   * @param hashBytes size of hash in bytes
+   * @param segmentInts number of ints mapped at once
+   */
+  public MappedCloneIndex(Path dir, int hashBytes, int segmentInts) {
+    this.hashInts = hashBytes / 4;
+    this.blockInts = hashInts + BLOCK_INTS;
+    this.blockData = new MappedIntArray(createFile(dir, "blocks"), segmentInts);
+    this.positionsByResource = new MappedIntArray(createFile(dir, "positions"), segmentInts);
+  }
+
+  private static Path createFile(Path dir, String prefix) {
+    try {
+      return Files.createTempFile(dir, prefix, ".bin");
+    } catch (IOException e) {
+      throw new UncheckedIOException("Fail to create file in " + dir, e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation does not guarantee that blocks would be sorted by index.</strong>
+   * </p>
+   */
+  @Override
+  public Collection<Block> getByResourceId(String resourceId) {
+    ensureSorted();
+
+    Integer ordinal = resourceOrdinals.get(resourceId);
+    if (ordinal == null) {
+      return Collections.emptyList();
+    }
+    return getByRank(resourceRanks[ordinal], resourceId);
+  }
+
+  private List<Block> getByRank(int rank, String resourceId) {
+    List<Block> result = new ArrayList<>(resourceOffsets[rank + 1] - resourceOffsets[rank]);
+    for (int i = resourceOffsets[rank]; i < resourceOffsets[rank + 1]; i++) {
+      result.add(createBlock(positionsByResource.get(i), resourceId, null));
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+    ensureSorted();
+
+    int[] hash = toIntArray(sequenceHash);
+    int index = binarySearchByHash(hash);
+
+    List<Block> result = new ArrayList<>();
+    while (index < size && compareHash(index, hash) == 0) {
+      int ordinal = blockData.get((long) index * blockInts + hashInts);
+      result.add(createBlock(index, resourceIds.get(ordinal), sequenceHash));
+      index++;
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation allows insertion of two blocks with same index for one resource.</strong>
+   * </p>
+   */
+  @Override
+  public void insert(Block block) {
+    sorted = false;
+    int[] hash = toIntArray(block.getBlockHash());
+    int ordinal = resourceOrdinals.computeIfAbsent(block.getResourceId(), resourceId -> {
+      resourceIds.add(resourceId);
+      return resourceIds.size() - 1;
+    });
+
+    blockData.ensureCapacity((size + 1L) * blockInts);
+    long offset = (long) size * blockInts;
+    for (int i = 0; i < hashInts; i++) {
+      blockData.set(offset++, hash[i]);
+    }
+    blockData.set(offset++, ordinal);
+    blockData.set(offset++, block.getIndexInFile());
+    blockData.set(offset++, block.getStartLine());
+    blockData.set(offset++, block.getEndLine());
+    blockData.set(offset++, block.getStartUnit());
+    blockData.set(offset, block.getEndUnit());
+
+    size++;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<ResourceBlocks> iterator() {
+    ensureSorted();
+    return new ResourceIterator();
+  }
+
+  @Override
+  public int noResources() {
+    return resourceIds.size();
+  }
+
+  @Override
+  public void close() {
+    blockData.close();
+    positionsByResource.close();
+  }
+
+  private int[] toIntArray(ByteArray hash) {
+    int[] ints = hash.toIntArray();
+    if (ints.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + ints.length);
+    }
+    return ints;
+  }
+
+  private Block createBlock(int index, String resourceId, @Nullable ByteArray byteHash) {
+    long offset = (long) index * blockInts;
+    ByteArray blockHash;
+
+    if (byteHash == null) {
+      int[] hash = new int[hashInts];
+      for (int j = 0; j < hashInts; j++) {
+        hash[j] = blockData.get(offset++);
+      }
+      blockHash = new ByteArray(hash);
+    } else {
+      blockHash = byteHash;
+      offset += hashInts;
+    }
+    // skip resource
+    offset++;
+
+    int indexInFile = blockData.get(offset++);
+    int firstLineNumber = blockData.get(offset++);
+    int lastLineNumber = blockData.get(offset++);
+    int startUnit = blockData.get(offset++);
+    int endUnit = blockData.get(offset);
+
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(blockHash)
+      .setIndexInFile(indexInFile)
+      .setLines(firstLineNumber, lastLineNumber)
+      .setUnit(startUnit, endUnit)
+      .build();
+  }
+
+  /**
+   * @return position of the first block with a hash greater than or equal to the given one
+   */
+  private int binarySearchByHash(int[] hash) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  private int compareHash(int index, int[] hash) {
+    long offset = (long) index * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      int value = blockData.get(offset);
+      if (value != hash[k]) {
+        return value < hash[k] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Performs sorting, if necessary.
+   */
+  private void ensureSorted() {
+    if (sorted) {
+      return;
+    }
+
+    DataUtils.sort(byBlockHash);
+
+    // resources are iterated in the same order as in PackedMemoryCloneIndex
+    int resources = resourceIds.size();
+    sortedResourceIds = resourceIds.toArray(new String[resources]);
+    Arrays.sort(sortedResourceIds, FastStringComparator.INSTANCE);
+    resourceRanks = new int[resources];
+    for (int rank = 0; rank < resources; rank++) {
+      resourceRanks[resourceOrdinals.get(sortedResourceIds[rank])] = rank;
+    }
+
+    // counting sort of blocks by rank of resource
+    resourceOffsets = new int[resources + 1];
+    for (int i = 0; i < size; i++) {
+      resourceOffsets[rankAt(i) + 1]++;
+    }
+    for (int rank = 0; rank < resources; rank++) {
+      resourceOffsets[rank + 1] += resourceOffsets[rank];
+    }
+    int[] nextOffsets = Arrays.copyOf(resourceOffsets, resources);
+    positionsByResource.ensureCapacity(size);
+    for (int i = 0; i < size; i++) {
+      positionsByResource.set(nextOffsets[rankAt(i)]++, i);
+    }
+
+    sorted = true;
+  }
+
+  private int rankAt(int index) {
+    return resourceRanks[blockData.get((long) index * blockInts + hashInts)];
+  }
+
+  private final DataUtils.Sortable byBlockHash = new DataUtils.Sortable() {
+    @Override
+    public void swap(int i, int j) {
+      long i2 = (long) i * blockInts;
+      long j2 = (long) j * blockInts;
+      for (int k = 0; k < blockInts; k++, i2++, j2++) {
+        int x = blockData.get(i2);
+        blockData.set(i2, blockData.get(j2));
+        blockData.set(j2, x);
+      }
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      long i2 = (long) i * blockInts;
+      long j2 = (long) j * blockInts;
+      for (int k = 0; k < hashInts; k++, i2++, j2++) {
+        int x = blockData.get(i2);
+        int y = blockData.get(j2);
+        if (x != y) {
+          return x < y;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  };
+
+  private class ResourceIterator implements Iterator<ResourceBlocks> {
+    private int rank = 0;
+
+    @Override
+    public boolean hasNext() {
+      return rank < sortedResourceIds.length;
+    }
+
+    @Override
+    public ResourceBlocks next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      String resourceId = sortedResourceIds[rank];
+      List<Block> blocks = getByRank(rank, resourceId);
+      rank++;
+      return new ResourceBlocks(resourceId, blocks);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
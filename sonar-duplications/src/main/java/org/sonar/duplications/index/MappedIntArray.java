@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Growable array of ints stored in a file mapped in memory by segments, so that it does not use heap and can be paged
+ * out by the operating system. Capacity is not limited to 2^31 bytes, however indexes of elements are.
+ */
+class MappedIntArray implements Closeable {
+
+  private final Path file;
+  private final FileChannel channel;
+  private final int segmentInts;
+  private final List<IntBuffer> segments = new ArrayList<>();
+
+  /**
+   * @param file existing file, it is deleted on {@link #close()}
+   * @param segmentInts number of ints mapped at once
+   */
+  MappedIntArray(Path file, int segmentInts) {
+    this.file = file;
+    this.segmentInts = segmentInts;
+    try {
+      this.channel = FileChannel.open(file, READ, WRITE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Fail to create " + file, e);
+    }
+  }
+
+  int get(long index) {
+    return segments.get((int) (index / segmentInts)).get((int) (index % segmentInts));
+  }
+
+  void set(long index, int value) {
+    segments.get((int) (index / segmentInts)).put((int) (index % segmentInts), value);
+  }
+
+  long capacity() {
+    return (long) segments.size() * segmentInts;
+  }
+
+  void ensureCapacity(long capacity) {
+    while (capacity() < capacity) {
+      long position = capacity() * Integer.BYTES;
+      try {
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, (long) segmentInts * Integer.BYTES)
+          .order(ByteOrder.nativeOrder())
+          .asIntBuffer());
+      } catch (IOException e) {
+        throw new UncheckedIOException("Fail to map " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Mapped segments are released by the garbage collector only. The file is deleted as soon as possible, which is
+   * immediately except on Windows.
+   */
+  @Override
+  public void close() {
+    segments.clear();
+    try {
+      channel.close();
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      file.toFile().deleteOnExit();
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedCloneIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private File dir;
+  private MappedCloneIndex index;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = temp.newFolder();
+    // small segments, so that some blocks span two segments
+    index = new MappedCloneIndex(dir.toPath(), 8, 100);
+  }
+
+  @After
+  public void tearDown() {
+    index.close();
+  }
+
+  @Test
+  public void search_by_hash_and_by_resource() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("a", 2));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("d", 1));
+    index.insert(newBlock("e", 1));
+    index.insert(newBlock("e", 2));
+    index.insert(newBlock("e", 3));
+
+    assertThat(index.noResources()).isEqualTo(5);
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(5);
+    assertThat(index.getBySequenceHash(new ByteArray(2L))).hasSize(2);
+    assertThat(index.getBySequenceHash(new ByteArray(3L))).hasSize(1);
+    assertThat(index.getBySequenceHash(new ByteArray(4L))).isEmpty();
+    assertThat(index.getByResourceId("a")).hasSize(2);
+    assertThat(index.getByResourceId("b")).hasSize(1);
+    assertThat(index.getByResourceId("e")).hasSize(3);
+    assertThat(index.getByResourceId("does not exist")).isEmpty();
+  }
+
+  @Test
+  public void store_all_attributes_of_blocks() {
+    Block block = Block.builder()
+      .setResourceId("a")
+      .setBlockHash(new ByteArray(42L))
+      .setIndexInFile(3)
+      .setLines(10, 20)
+      .setUnit(100, 200)
+      .build();
+    index.insert(block);
+
+    Block found = index.getByResourceId("a").iterator().next();
+    assertThat(found).isEqualTo(block);
+    assertThat(found.getStartUnit()).isEqualTo(100);
+    assertThat(found.getEndUnit()).isEqualTo(200);
+    assertThat(index.getBySequenceHash(new ByteArray(42L))).containsExactly(block);
+  }
+
+  @Test
+  public void construct_blocks_with_normalized_hash() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("b", 1));
+    ByteArray requestedHash = new ByteArray(1L);
+
+    assertThat(index.getBySequenceHash(requestedHash)).extracting(Block::getBlockHash).containsOnly(requestedHash);
+  }
+
+  @Test
+  public void iterate_resources_in_same_order_than_packed_index() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 2));
+    index.insert(newBlock("a", 2));
+
+    List<ResourceBlocks> resourcesBlocks = new ArrayList<>();
+    index.iterator().forEachRemaining(resourcesBlocks::add);
+
+    assertThat(resourcesBlocks).extracting(ResourceBlocks::resourceId).containsExactly("a", "b", "c");
+    assertThat(resourcesBlocks).extracting(r -> r.blocks().size()).containsExactly(2, 1, 2);
+  }
+
+  @Test
+  public void insert_after_search() {
+    index.insert(newBlock("a", 1));
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(1);
+
+    index.insert(newBlock("b", 1));
+
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(2);
+    assertThat(index.getByResourceId("b")).hasSize(1);
+  }
+
+  @Test
+  public void return_same_blocks_as_packed_index() {
+    PackedMemoryCloneIndex packedIndex = new PackedMemoryCloneIndex();
+    Random random = new Random(42);
+    for (int i = 0; i < 5_000; i++) {
+      Block block = Block.builder()
+        .setResourceId("resource" + random.nextInt(50))
+        .setBlockHash(new ByteArray((long) random.nextInt(1_000)))
+        .setIndexInFile(i)
+        .setLines(i, i + 10)
+        .setUnit(i * 5, i * 5 + 50)
+        .build();
+      index.insert(block);
+      packedIndex.insert(block);
+    }
+
+    assertThat(index.noResources()).isEqualTo(packedIndex.noResources());
+    Iterator<ResourceBlocks> expected = packedIndex.iterator();
+    Iterator<ResourceBlocks> actual = index.iterator();
+    while (expected.hasNext()) {
+      ResourceBlocks expectedBlocks = expected.next();
+      ResourceBlocks actualBlocks = actual.next();
+      assertThat(actualBlocks.resourceId()).isEqualTo(expectedBlocks.resourceId());
+      assertThat(sorted(actualBlocks.blocks())).isEqualTo(sorted(expectedBlocks.blocks()));
+    }
+    assertThat(actual.hasNext()).isFalse();
+    for (long hash = 0; hash < 1_001; hash++) {
+      ByteArray byteArray = new ByteArray(hash);
+      assertThat(sorted(index.getBySequenceHash(byteArray))).isEqualTo(sorted(packedIndex.getBySequenceHash(byteArray)));
+    }
+  }
+
+  @Test
+  public void search_by_hash_concurrently() {
+    for (int i = 0; i < 1000; i++) {
+      for (int j = 0; j <= i % 10; j++) {
+        index.insert(newBlock("resource" + j, i));
+      }
+    }
+    index.iterator();
+
+    IntStream.range(0, 1000).parallel().forEach(i -> {
+      Collection<Block> blocks = index.getBySequenceHash(new ByteArray((long) i));
+      if (blocks.size() != i % 10 + 1) {
+        throw new AssertionError("Unexpected number of blocks for hash " + i + ": " + blocks.size());
+      }
+    });
+  }
+
+  @Test
+  public void delete_files_when_closed() {
+    index.insert(newBlock("a", 1));
+    index.iterator();
+    assertThat(dir.list()).hasSize(2);
+
+    index.close();
+
+    assertThat(dir.list()).isEmpty();
+  }
+
+  @Test
+  public void fail_to_insert_hash_of_incorrect_size() {
+    MappedCloneIndex otherIndex = new MappedCloneIndex(dir.toPath(), 4, 100);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Expected 1 ints in hash, but got 2");
+
+    try {
+      otherIndex.insert(newBlock("a", 1));
+    } finally {
+      otherIndex.close();
+    }
+  }
+
+  private static List<Block> sorted(Collection<Block> blocks) {
+    return blocks.stream()
+      .sorted(Comparator.comparing(Block::getResourceId).thenComparing(Block::getIndexInFile))
+      .collect(Collectors.toList());
+  }
+
+  private static Block newBlock(String resourceId, long hash) {
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(1)
+      .setLines(1, 2)
+      .build();
+  }
+}
@@ -28,6 +28,7 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -110,6 +111,23 @@ public class PackedMemoryCloneIndexTest {
     
   }
 
+  @Test
+  public void search_by_hash_concurrently() {
+    for (int i = 0; i < 1000; i++) {
+      for (int j = 0; j <= i % 10; j++) {
+        index.insert(newBlock("resource" + j, i));
+      }
+    }
+    index.iterator();
+
+    IntStream.range(0, 1000).parallel().forEach(i -> {
+      Collection<Block> blocks = index.getBySequenceHash(new ByteArray((long) i));
+      if (blocks.size() != i % 10 + 1) {
+        throw new AssertionError("Unexpected number of blocks for hash " + i + ": " + blocks.size());
+      }
+    });
+  }
+
   /**
    * Given: index with initial capacity 1.
    * Expected: size and capacity should be increased after insertion of two blocks.
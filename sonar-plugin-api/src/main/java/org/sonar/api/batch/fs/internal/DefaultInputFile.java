@@ -51,7 +51,7 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
     this.publish = false;
   }
 
-  public void checkMetadata() {
+  public synchronized void checkMetadata() {
     if (metadata == null) {
       metadataGenerator.accept(this);
     }
@@ -84,4 +84,12 @@ public interface SensorDescriptor {
    * @since 6.4
    */
   SensorDescriptor global();
+
+  /**
+   * Declares that this {@link Sensor} can be executed concurrently with other thread-safe sensors. Only
+   * taken into account when parallel execution of sensors is enabled on scanner side. Such a sensor must not
+   * rely on mutable state shared with other sensors.
+   * @since 6.4
+   */
+  SensorDescriptor threadSafe();
 }
@@ -98,6 +98,21 @@ public class ScannerExtensionDictionnary {
     return sort(result);
   }
 
+  /**
+   * Phase in which the extension is executed.
+   */
+  public Phase.Name phaseOf(Object extension) {
+    return evaluatePhase(extension);
+  }
+
+  /**
+   * Whether the extension declares dependencies on other extensions or is declared as a dependency
+   * of other extensions.
+   */
+  public boolean hasDependencies(Object extension) {
+    return !getDependencies(extension).isEmpty() || !getDependents(extension).isEmpty();
+  }
+
   private static Phase.Name evaluatePhase(Object extension) {
     Object extensionToEvaluate;
     if (extension instanceof SensorWrapper) {
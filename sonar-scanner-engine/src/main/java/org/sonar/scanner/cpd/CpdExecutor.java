@@ -22,7 +22,10 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -30,7 +33,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputComponent;
@@ -42,6 +45,7 @@ import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgori
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
 import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+import org.sonar.scanner.cpd.index.CpdBlockCache;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplicate;
@@ -56,8 +60,13 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p>
+ * Detection of the duplications of each file can be executed concurrently on a pool of {@link #THREADS_PROPERTY} threads
+ * (1 by default). Results are written to the report in the order of the index, by the calling thread only.
  */
 public class CpdExecutor {
+  public static final String THREADS_PROPERTY = "sonar.scanner.cpdThreads";
+
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
   // timeout for the computation of duplicates in a file (seconds)
   private static final int TIMEOUT = 5 * 60 * 1000;
@@ -65,19 +74,23 @@ public class CpdExecutor {
   static final int MAX_CLONE_PART_PER_GROUP = 100;
 
   private final SonarCpdBlockIndex index;
+  private final CpdBlockCache blockCache;
   private final ReportPublisher publisher;
   private final InputComponentStore componentStore;
   private final Settings settings;
   private final ProgressReport progressReport;
+  private final int threads;
   private int count;
   private int total;
 
-  public CpdExecutor(Settings settings, SonarCpdBlockIndex index, ReportPublisher publisher, InputComponentStore inputComponentCache) {
+  public CpdExecutor(Settings settings, SonarCpdBlockIndex index, CpdBlockCache blockCache, ReportPublisher publisher, InputComponentStore inputComponentCache) {
     this.settings = settings;
     this.index = index;
+    this.blockCache = blockCache;
     this.publisher = publisher;
     this.componentStore = inputComponentCache;
     this.progressReport = new ProgressReport("CPD computation", TimeUnit.SECONDS.toMillis(10));
+    this.threads = Math.max(1, settings.getInt(THREADS_PROPERTY));
   }
 
   public void execute() {
@@ -88,46 +101,86 @@ public class CpdExecutor {
   void execute(long timeout) {
     total = index.noResources();
     progressReport.start(String.format("Calculating CPD for %d files", total));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    if (threads > 1) {
+      LOG.info("CPD is computed on {} threads", threads);
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("CPD-%d").setDaemon(true).build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
-
+      // never more pending detections than threads, so that each one starts running as soon as submitted and its
+      // timeout can be counted from submission
+      Deque<PendingDetection> pendingDetections = new ArrayDeque<>(threads);
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
-        count++;
+        PendingDetection pendingDetection = submitCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
+        if (pendingDetection == null) {
+          count++;
+        } else {
+          pendingDetections.add(pendingDetection);
+        }
+        if (pendingDetections.size() >= threads) {
+          completeCpdAnalysis(pendingDetections.poll());
+        }
+      }
+      while (!pendingDetections.isEmpty()) {
+        completeCpdAnalysis(pendingDetections.poll());
       }
       progressReport.stop("CPD calculation finished");
+      blockCache.logStatistics();
+      blockCache.purgeUnusedEntries();
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
     }
   }
 
   @VisibleForTesting
   void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+    PendingDetection pendingDetection = submitCpdAnalysis(executorService, componentKey, fileBlocks, timeout);
+    if (pendingDetection != null) {
+      completeCpdAnalysis(pendingDetection);
+    }
+  }
+
+  @CheckForNull
+  private PendingDetection submitCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
     DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
-      return;
+      return null;
     }
 
     InputFile inputFile = (InputFile) component;
     LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
+    return new PendingDetection(component, futureResult, deadline);
+  }
+
+  /**
+   * Waits for the detection, then saves the duplications to the report. Always called by the thread executing
+   * {@link #execute()}, so that the report is never written concurrently.
+   */
+  private void completeCpdAnalysis(PendingDetection pendingDetection) {
+    InputFile inputFile = (InputFile) pendingDetection.component;
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
+      duplications = pendingDetection.future.get(Math.max(0L, pendingDetection.deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
+      pendingDetection.future.cancel(true);
       return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during detection of duplication for " + inputFile.absolutePath(), e);
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
+    } finally {
+      count++;
     }
 
     List<CloneGroup> filtered;
@@ -138,7 +191,7 @@ public class CpdExecutor {
       filtered = duplications;
     }
 
-    saveDuplications(component, filtered);
+    saveDuplications(pendingDetection.component, filtered);
   }
 
   @VisibleForTesting
@@ -213,4 +266,16 @@ public class CpdExecutor {
     }
     return dupBuilder.build();
   }
+
+  private static class PendingDetection {
+    private final DefaultInputComponent component;
+    private final Future<List<CloneGroup>> future;
+    private final long deadline;
+
+    PendingDetection(DefaultInputComponent component, Future<List<CloneGroup>> future, long deadline) {
+      this.component = component;
+      this.future = future;
+      this.deadline = deadline;
+    }
+  }
 }
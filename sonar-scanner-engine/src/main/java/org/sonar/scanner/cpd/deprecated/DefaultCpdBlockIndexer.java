@@ -22,6 +22,8 @@ package org.sonar.scanner.cpd.deprecated;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.CpdMapping;
 import org.sonar.api.batch.fs.FilePredicates;
@@ -33,6 +35,7 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.internal.pmd.TokenizerBridge;
+import org.sonar.scanner.cpd.index.CpdBlockCache;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
 
 public class DefaultCpdBlockIndexer extends CpdBlockIndexer {
@@ -43,12 +46,14 @@ public class DefaultCpdBlockIndexer extends CpdBlockIndexer {
   private final FileSystem fs;
   private final Settings settings;
   private final SonarCpdBlockIndex index;
+  private final CpdBlockCache blockCache;
 
-  public DefaultCpdBlockIndexer(CpdMappings mappings, FileSystem fs, Settings settings, SonarCpdBlockIndex index) {
+  public DefaultCpdBlockIndexer(CpdMappings mappings, FileSystem fs, Settings settings, SonarCpdBlockIndex index, CpdBlockCache blockCache) {
     this.mappings = mappings;
     this.fs = fs;
     this.settings = settings;
     this.index = index;
+    this.blockCache = blockCache;
   }
 
   @Override
@@ -80,17 +85,39 @@ public class DefaultCpdBlockIndexer extends CpdBlockIndexer {
   }
 
   private void populateIndex(String languageKey, List<InputFile> sourceFiles, CpdMapping mapping) {
-    TokenizerBridge bridge = new TokenizerBridge(mapping.getTokenizer(), fs.encoding().name(), getBlockSize(languageKey));
+    int blockSize = getBlockSize(languageKey);
+    TokenizerBridge bridge = new TokenizerBridge(mapping.getTokenizer(), fs.encoding().name(), blockSize);
+    String chunkerKey = getChunkerKey(languageKey, blockSize);
     for (InputFile inputFile : sourceFiles) {
       if (!index.isIndexed(inputFile)) {
         LOG.debug("Populating index from {}", inputFile.absolutePath());
-        String resourceEffectiveKey = ((DefaultInputFile) inputFile).key();
-        List<Block> blocks = bridge.chunk(resourceEffectiveKey, inputFile.file());
+        DefaultInputFile defaultInputFile = (DefaultInputFile) inputFile;
+        List<Block> blocks = blockCache.getOrCompute(defaultInputFile, mapping.getTokenizer().getClass(), chunkerKey,
+          () -> bridge.chunk(defaultInputFile.key(), inputFile.file()));
         index.insert(inputFile, blocks);
       }
     }
   }
 
+  /**
+   * Key of the blocks computed by the tokenizer of the language in {@link CpdBlockCache}. Besides the block size and
+   * the encoding, it includes the properties of the language ({@code sonar.<language>.*}) and of its copy-paste
+   * detection ({@code sonar.cpd.<language>.*}), which may configure the tokenizer provided by the plugin.
+   * Tokenizers depending on other properties must not be used with the cache.
+   */
+  @VisibleForTesting
+  String getChunkerKey(String languageKey, int blockSize) {
+    String languagePrefix = "sonar." + languageKey + ".";
+    String cpdPrefix = "sonar.cpd." + languageKey + ".";
+    Map<String, String> tokenizerProperties = new TreeMap<>();
+    settings.getProperties().forEach((key, value) -> {
+      if (key.startsWith(languagePrefix) || key.startsWith(cpdPrefix)) {
+        tokenizerProperties.put(key, value);
+      }
+    });
+    return languageKey + ":" + blockSize + ":" + fs.encoding().name() + ":" + tokenizerProperties;
+  }
+
   @VisibleForTesting
   int getBlockSize(String languageKey) {
     int blockSize = settings.getInt("sonar.cpd." + languageKey + ".minimumLines");
@@ -42,6 +42,7 @@ import org.sonar.duplications.java.JavaTokenProducer;
 import org.sonar.duplications.statement.Statement;
 import org.sonar.duplications.statement.StatementChunker;
 import org.sonar.duplications.token.TokenChunker;
+import org.sonar.scanner.cpd.index.CpdBlockCache;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
 
 public class JavaCpdBlockIndexer extends CpdBlockIndexer {
@@ -53,11 +54,13 @@ public class JavaCpdBlockIndexer extends CpdBlockIndexer {
   private final FileSystem fs;
   private final Settings settings;
   private final SonarCpdBlockIndex index;
+  private final CpdBlockCache blockCache;
 
-  public JavaCpdBlockIndexer(FileSystem fs, Settings settings, SonarCpdBlockIndex index) {
+  public JavaCpdBlockIndexer(FileSystem fs, Settings settings, SonarCpdBlockIndex index, CpdBlockCache blockCache) {
     this.fs = fs;
     this.settings = settings;
     this.index = index;
+    this.blockCache = blockCache;
   }
 
   @Override
@@ -84,24 +87,25 @@ public class JavaCpdBlockIndexer extends CpdBlockIndexer {
     TokenChunker tokenChunker = JavaTokenProducer.build();
     StatementChunker statementChunker = JavaStatementBuilder.build();
     BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+    String chunkerKey = "java:" + BLOCK_SIZE + ":" + fs.encoding().name();
 
     for (InputFile inputFile : sourceFiles) {
       LOG.debug("Populating index from {}", inputFile);
-      String resourceEffectiveKey = ((DefaultInputFile) inputFile).key();
-
-      List<Statement> statements;
-
-      try (InputStream is = new FileInputStream(inputFile.file());
-        Reader reader = new InputStreamReader(is, fs.encoding())) {
-        statements = statementChunker.chunk(tokenChunker.chunk(reader));
-      } catch (FileNotFoundException e) {
-        throw new IllegalStateException("Cannot find file " + inputFile.file(), e);
-      } catch (IOException e) {
-        throw new IllegalStateException("Exception handling file: " + inputFile.file(), e);
-      }
-
-      List<Block> blocks = blockChunker.chunk(resourceEffectiveKey, statements);
+      DefaultInputFile defaultInputFile = (DefaultInputFile) inputFile;
+      List<Block> blocks = blockCache.getOrCompute(defaultInputFile, JavaTokenProducer.class, chunkerKey,
+        () -> blockChunker.chunk(defaultInputFile.key(), chunkStatements(tokenChunker, statementChunker, inputFile)));
       index.insert(inputFile, blocks);
     }
   }
+
+  private List<Statement> chunkStatements(TokenChunker tokenChunker, StatementChunker statementChunker, InputFile inputFile) {
+    try (InputStream is = new FileInputStream(inputFile.file());
+      Reader reader = new InputStreamReader(is, fs.encoding())) {
+      return statementChunker.chunk(tokenChunker.chunk(reader));
+    } catch (FileNotFoundException e) {
+      throw new IllegalStateException("Cannot find file " + inputFile.file(), e);
+    } catch (IOException e) {
+      throw new IllegalStateException("Exception handling file: " + inputFile.file(), e);
+    }
+  }
 }
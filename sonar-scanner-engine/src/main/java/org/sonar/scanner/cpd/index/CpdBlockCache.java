@@ -0,0 +1,217 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.cpd.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.SonarRuntime;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.scanner.bootstrap.ScannerPluginRepository;
+
+/**
+ * Blocks computed by the CPD block indexers of the scanner, stored in the working directory of the project so that
+ * files which did not change since the previous analysis are not tokenized again.
+ * <p>
+ * Entries are addressed by the hash of the content of the file and by a key describing how blocks are computed
+ * (chunker and version of the plugin or scanner providing it, language, block size, encoding...), so that they never
+ * have to be invalidated. Entries which are not
+ * used by an analysis are removed at its end, see {@link #purgeUnusedEntries()}.
+ * </p>
+ */
+public class CpdBlockCache {
+
+  public static final String DIR_NAME = "cpd-cache";
+
+  private static final Logger LOG = Loggers.get(CpdBlockCache.class);
+
+  /**
+   * Must be incremented whenever the format of entries changes
+   */
+  private static final int VERSION = 1;
+
+  private final Path dir;
+  private final ScannerPluginRepository pluginRepository;
+  private final SonarRuntime runtime;
+  private final Map<Class<?>, String> implementationKeys = new ConcurrentHashMap<>();
+  private final Set<String> usedEntries = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  public CpdBlockCache(ProjectReactor projectReactor, ScannerPluginRepository pluginRepository, SonarRuntime runtime) {
+    this.dir = projectReactor.getRoot().getWorkDir().toPath().resolve(DIR_NAME);
+    this.pluginRepository = pluginRepository;
+    this.runtime = runtime;
+  }
+
+  /**
+   * Blocks of the given file, read from the cache when they were computed with the same {@code chunkerKey} by the
+   * same version of {@code implementation} for the same content of file, otherwise computed by {@code chunker} then
+   * stored in the cache.
+   *
+   * @param implementation class which tokenizes the file. Entries computed by another version of the plugin which
+   * provides it, or by another version of the scanner if it is not provided by a plugin, are not used.
+   * @param chunkerKey must include every setting which changes the blocks computed by {@code chunker}, as entries
+   * are not invalidated when other settings change
+   */
+  public List<Block> getOrCompute(DefaultInputFile inputFile, Class<?> implementation, String chunkerKey, Supplier<List<Block>> chunker) {
+    String fileHash = inputFile.hash();
+    if (fileHash == null) {
+      return chunker.get();
+    }
+    String entry = DigestUtils.md5Hex(VERSION + "|" + implementationKey(implementation) + "|" + chunkerKey + "|" + fileHash);
+    usedEntries.add(entry);
+    Path file = dir.resolve(entry.substring(0, 2)).resolve(entry);
+    List<Block> blocks = read(file, inputFile.key());
+    if (blocks != null) {
+      hits.incrementAndGet();
+      return blocks;
+    }
+    misses.incrementAndGet();
+    blocks = chunker.get();
+    write(file, blocks);
+    return blocks;
+  }
+
+  private String implementationKey(Class<?> implementation) {
+    return implementationKeys.computeIfAbsent(implementation, c -> {
+      String pluginKey = pluginRepository.getPluginKey(c.getClassLoader());
+      String version;
+      if (pluginKey == null) {
+        version = "scanner:" + runtime.getApiVersion();
+      } else {
+        version = pluginKey + ":" + pluginRepository.getPluginInfo(pluginKey).getVersion();
+      }
+      return c.getName() + ":" + version;
+    });
+  }
+
+  public int getHits() {
+    return hits.get();
+  }
+
+  public int getMisses() {
+    return misses.get();
+  }
+
+  public void logStatistics() {
+    if (hits.get() + misses.get() > 0) {
+      LOG.info("CPD block cache: {} files read from cache, {} files tokenized", hits.get(), misses.get());
+    }
+  }
+
+  /**
+   * Removes the entries which were not used since this instance was created, for example the ones of files which
+   * were modified or deleted.
+   */
+  public void purgeUnusedEntries() {
+    if (!Files.isDirectory(dir)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(dir)) {
+      files
+        .filter(Files::isRegularFile)
+        .filter(file -> !usedEntries.contains(file.getFileName().toString()))
+        .forEach(CpdBlockCache::deleteQuietly);
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Fail to purge CPD block cache " + dir, e);
+    }
+  }
+
+  @CheckForNull
+  private static List<Block> read(Path file, String resourceId) {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      int count = input.readInt();
+      List<Block> blocks = new ArrayList<>(count);
+      Block.Builder builder = Block.builder().setResourceId(resourceId);
+      for (int i = 0; i < count; i++) {
+        byte[] hash = new byte[input.readUnsignedShort()];
+        input.readFully(hash);
+        blocks.add(builder
+          .setBlockHash(new ByteArray(hash))
+          .setIndexInFile(input.readInt())
+          .setLines(input.readInt(), input.readInt())
+          .setUnit(input.readInt(), input.readInt())
+          .build());
+      }
+      return blocks;
+    } catch (IOException | RuntimeException e) {
+      // corrupted entry, blocks are computed again and the entry overwritten
+      LOG.debug("Fail to read CPD block cache entry " + file, e);
+      return null;
+    }
+  }
+
+  private static void write(Path file, List<Block> blocks) {
+    try {
+      Files.createDirectories(file.getParent());
+      Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        output.writeInt(blocks.size());
+        for (Block block : blocks) {
+          byte[] hash = block.getBlockHash().getBytes();
+          output.writeShort(hash.length);
+          output.write(hash);
+          output.writeInt(block.getIndexInFile());
+          output.writeInt(block.getStartLine());
+          output.writeInt(block.getEndLine());
+          output.writeInt(block.getStartUnit());
+          output.writeInt(block.getEndUnit());
+        }
+      }
+      // entries are never partially written, even if the scanner is killed
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      // the cache is an optimization only
+      LOG.debug("Fail to write CPD block cache entry " + file, e);
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOG.debug("Fail to delete CPD block cache entry " + file, e);
+    }
+  }
+}
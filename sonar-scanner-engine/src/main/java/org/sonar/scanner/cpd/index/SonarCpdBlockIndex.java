@@ -25,31 +25,56 @@ import java.util.Iterator;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.commons.lang.StringUtils;
+import org.picocontainer.Startable;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.config.Settings;
+import org.sonar.api.utils.TempFolder;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.AbstractCloneIndex;
 import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.MappedCloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.report.ReportPublisher;
 
-public class SonarCpdBlockIndex extends AbstractCloneIndex {
+public class SonarCpdBlockIndex extends AbstractCloneIndex implements Startable {
 
-  private final CloneIndex mem = new PackedMemoryCloneIndex();
+  /**
+   * Blocks are stored in files mapped in memory rather than in heap when enabled, see {@link MappedCloneIndex}
+   */
+  public static final String MAPPED_INDEX_PROPERTY = "sonar.scanner.cpdMappedIndex";
+
+  private final CloneIndex mem;
   private final ReportPublisher publisher;
   private final Settings settings;
   // Files already tokenized
   private final Set<InputFile> indexedFiles = new HashSet<>();
 
-  public SonarCpdBlockIndex(ReportPublisher publisher, Settings settings) {
+  public SonarCpdBlockIndex(ReportPublisher publisher, Settings settings, TempFolder tempFolder) {
     this.publisher = publisher;
     this.settings = settings;
+    if (settings.getBoolean(MAPPED_INDEX_PROPERTY)) {
+      this.mem = new MappedCloneIndex(tempFolder.newDir("cpd-index").toPath());
+    } else {
+      this.mem = new PackedMemoryCloneIndex();
+    }
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    if (mem instanceof MappedCloneIndex) {
+      ((MappedCloneIndex) mem).close();
+    }
   }
 
   public void insert(InputFile inputFile, Collection<Block> blocks) {
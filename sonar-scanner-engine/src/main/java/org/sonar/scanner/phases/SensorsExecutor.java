@@ -20,32 +20,56 @@
 package org.sonar.scanner.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
 import org.sonar.scanner.sensor.SensorStrategy;
+import org.sonar.scanner.sensor.SensorWrapper;
 
+/**
+ * Executes the sensors of a module. By default sensors are executed sequentially. When property
+ * {@link #THREADS_PROPERTY} is greater than 1, consecutive sensors that are declared thread-safe
+ * ({@link org.sonar.api.batch.sensor.SensorDescriptor#threadSafe()}), that belong to the same phase and that
+ * have no declared dependencies are executed concurrently on a pool of that size. Other sensors act as barriers: they
+ * are executed alone, once all the previous sensors are done.
+ */
 @ScannerSide
 public class SensorsExecutor {
+  public static final String THREADS_PROPERTY = "sonar.scanner.sensorThreads";
+
+  private static final Logger LOG = Loggers.get(SensorsExecutor.class);
+
   private final ScannerExtensionDictionnary selector;
   private final DefaultInputModule module;
   private final EventBus eventBus;
   private final SensorStrategy strategy;
   private final boolean isRoot;
+  private final int threads;
 
-  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, EventBus eventBus, SensorStrategy strategy) {
+  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, EventBus eventBus, SensorStrategy strategy, Settings settings) {
     this.selector = selector;
     this.module = module;
     this.eventBus = eventBus;
     this.strategy = strategy;
     this.isRoot = module.definition().getParent() == null;
+    this.threads = Math.max(1, settings.getInt(THREADS_PROPERTY));
   }
 
   public void execute(SensorContext context) {
@@ -64,21 +88,88 @@ public class SensorsExecutor {
     allSensors.addAll(globalSensors);
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(allSensors), true));
 
-    execute(context, perModuleSensors);
+    ExecutorService executor = createExecutor();
+    try {
+      execute(context, perModuleSensors, executor);
 
-    if (isRoot) {
-      boolean orig = strategy.isGlobal();
-      strategy.setGlobal(true);
-      execute(context, globalSensors);
-      strategy.setGlobal(orig);
+      if (isRoot) {
+        boolean orig = strategy.isGlobal();
+        strategy.setGlobal(true);
+        execute(context, globalSensors, executor);
+        strategy.setGlobal(orig);
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
     }
 
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(allSensors), false));
   }
 
-  private void execute(SensorContext context, Collection<Sensor> sensors) {
+  @Nullable
+  private ExecutorService createExecutor() {
+    if (threads <= 1) {
+      return null;
+    }
+    LOG.info("Thread-safe sensors are executed on {} threads", threads);
+    return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("Sensor-%d").build());
+  }
+
+  private void execute(SensorContext context, Collection<Sensor> sensors, @Nullable ExecutorService executor) {
+    if (executor == null) {
+      for (Sensor sensor : sensors) {
+        executeSensor(context, sensor);
+      }
+      return;
+    }
+
+    List<Sensor> batch = new ArrayList<>();
+    for (Sensor sensor : sensors) {
+      boolean concurrent = canBeExecutedConcurrently(sensor);
+      if (!batch.isEmpty() && !(concurrent && selector.phaseOf(batch.get(0)) == selector.phaseOf(sensor))) {
+        executeConcurrently(context, batch, executor);
+        batch.clear();
+      }
+      if (concurrent) {
+        batch.add(sensor);
+      } else {
+        executeSensor(context, sensor);
+      }
+    }
+    executeConcurrently(context, batch, executor);
+  }
+
+  private boolean canBeExecutedConcurrently(Sensor sensor) {
+    return sensor instanceof SensorWrapper && ((SensorWrapper) sensor).isThreadSafe() && !selector.hasDependencies(sensor);
+  }
+
+  private void executeConcurrently(SensorContext context, List<Sensor> sensors, ExecutorService executor) {
+    if (sensors.size() <= 1) {
+      sensors.forEach(sensor -> executeSensor(context, sensor));
+      return;
+    }
+    List<Future<?>> futures = new ArrayList<>(sensors.size());
     for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+      futures.add(executor.submit(() -> executeSensor(context, sensor)));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while executing sensors", e);
+    } catch (ExecutionException e) {
+      futures.forEach(future -> future.cancel(false));
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Fail to execute sensor", cause);
     }
   }
 
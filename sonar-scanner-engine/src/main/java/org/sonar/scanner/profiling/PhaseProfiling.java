@@ -19,17 +19,17 @@
  */
 package org.sonar.scanner.profiling;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import org.sonar.api.utils.System2;
 
 public class PhaseProfiling extends AbstractTimeProfiling {
 
   private final Phase phase;
 
-  private Map<String, ItemProfiling> profilingPerItem = new HashMap<>();
+  private Map<String, ItemProfiling> profilingPerItem = new ConcurrentHashMap<>();
 
   PhaseProfiling(System2 system, Phase phase) {
     super(system);
@@ -76,6 +76,7 @@ public class PhaseProfiling extends AbstractTimeProfiling {
     double percent = this.totalTime() / 100.0;
     for (ItemProfiling itemProfiling : profilingPerItem.values()) {
       props.setProperty(itemProfiling.itemName(), Long.toString(itemProfiling.totalTime()));
+      props.setProperty(itemProfiling.itemName() + ".cpu", Long.toString(itemProfiling.cpuTime()));
     }
     for (ItemProfiling itemProfiling : truncate(sortByDescendingTotalTime(profilingPerItem).values())) {
       println("   o " + itemProfiling.itemName() + ": ", percent, itemProfiling);
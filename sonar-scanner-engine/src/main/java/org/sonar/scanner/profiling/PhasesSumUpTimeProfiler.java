@@ -84,6 +84,9 @@ public class PhasesSumUpTimeProfiler implements ProjectAnalysisHandler, SensorEx
     if (percent != null) {
       sb.append(" (").append((int) (phaseProfiling.totalTime() / percent)).append("%)");
     }
+    if (phaseProfiling instanceof ItemProfiling) {
+      sb.append(" [CPU: ").append(((ItemProfiling) phaseProfiling).cpuTimeAsString()).append("]");
+    }
     println(sb.toString());
   }
 
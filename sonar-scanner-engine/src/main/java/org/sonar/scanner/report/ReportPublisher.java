@@ -47,6 +47,7 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.protocol.output.ReportContainer;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
 import org.sonar.scanner.scan.ImmutableProjectReactor;
 import org.sonarqube.ws.MediaTypes;
@@ -65,6 +66,10 @@ public class ReportPublisher implements Startable {
   public static final String KEEP_REPORT_PROP_KEY = "sonar.batch.keepReport";
   public static final String VERBOSE_KEY = "sonar.verbose";
   public static final String METADATA_DUMP_FILENAME = "report-task.txt";
+  /**
+   * Report is uploaded as a zip of the report directory rather than as a {@link ReportContainer}
+   */
+  public static final String ZIP_REPORT_PROP_KEY = "sonar.scanner.zipReport";
 
   private final Settings settings;
   private final ScannerWsClient wsClient;
@@ -134,6 +139,10 @@ public class ReportPublisher implements Startable {
     logSuccess(taskId);
   }
 
+  private boolean shouldZipReport() {
+    return settings.getBoolean(ZIP_REPORT_PROP_KEY);
+  }
+
   private boolean shouldKeepReport() {
     return settings.getBoolean(KEEP_REPORT_PROP_KEY) || settings.getBoolean(VERBOSE_KEY);
   }
@@ -148,11 +157,18 @@ public class ReportPublisher implements Startable {
       LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
 
       startTime = System.currentTimeMillis();
-      File reportZip = temp.newFile("batch-report", ".zip");
-      ZipUtils.zipDir(reportDir, reportZip);
+      if (shouldZipReport()) {
+        File reportZip = temp.newFile("batch-report", ".zip");
+        ZipUtils.zipDir(reportDir, reportZip);
+        stopTime = System.currentTimeMillis();
+        LOG.info("Analysis reports compressed in {}ms, zip size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(reportZip)));
+        return reportZip;
+      }
+      File reportContainer = temp.newFile("batch-report", ".bin");
+      ReportContainer.write(reportDir, reportContainer);
       stopTime = System.currentTimeMillis();
-      LOG.info("Analysis reports compressed in {}ms, zip size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(reportZip)));
-      return reportZip;
+      LOG.info("Analysis reports compressed in {}ms, container size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(reportContainer)));
+      return reportContainer;
     } catch (IOException e) {
       throw new IllegalStateException("Unable to prepare analysis report", e);
     }
@@ -166,7 +182,7 @@ public class ReportPublisher implements Startable {
     LOG.debug("Upload report");
     long startTime = System.currentTimeMillis();
     ProjectDefinition projectDefinition = projectReactor.getRoot();
-    PostRequest.Part filePart = new PostRequest.Part(MediaTypes.ZIP, report);
+    PostRequest.Part filePart = new PostRequest.Part(shouldZipReport() ? MediaTypes.ZIP : MediaTypes.DEFAULT, report);
     PostRequest post = new PostRequest("api/ce/submit")
       .setMediaType(MediaTypes.PROTOBUF)
       .setParam("organization", settings.getString(CoreProperties.PROJECT_ORGANIZATION_PROPERTY))
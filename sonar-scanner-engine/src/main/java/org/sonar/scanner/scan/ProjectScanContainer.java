@@ -43,6 +43,7 @@ import org.sonar.scanner.bootstrap.ExtensionMatcher;
 import org.sonar.scanner.bootstrap.ExtensionUtils;
 import org.sonar.scanner.bootstrap.MetricProvider;
 import org.sonar.scanner.cpd.CpdExecutor;
+import org.sonar.scanner.cpd.index.CpdBlockCache;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
 import org.sonar.scanner.deprecated.test.TestPlanBuilder;
 import org.sonar.scanner.deprecated.test.TestableBuilder;
@@ -201,6 +202,7 @@ public class ProjectScanContainer extends ComponentContainer {
       // Cpd
       CpdExecutor.class,
       SonarCpdBlockIndex.class,
+      CpdBlockCache.class,
 
       ScanTaskObservers.class,
       UserRepositoryLoader.class);
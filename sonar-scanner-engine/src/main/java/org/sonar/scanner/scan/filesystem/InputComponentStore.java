@@ -20,17 +20,19 @@
 package org.sonar.scanner.scan.filesystem;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.SetMultimap;
-import com.google.common.collect.Table;
-import com.google.common.collect.TreeBasedTable;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import javax.annotation.CheckForNull;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.fs.InputComponent;
@@ -47,22 +49,30 @@ import org.sonar.api.scan.filesystem.PathResolver;
 /**
  * Store of all files and dirs. This cache is shared amongst all project modules. Inclusion and
  * exclusion patterns are already applied.
+ * <p>
+ * This store is thread-safe, so that sensors executed in parallel can read and add components.
+ * Iterables on files and dirs are weakly consistent: they never fail but may not reflect concurrent changes.
+ * </p>
  */
 @ScannerSide
 public class InputComponentStore {
 
   private final PathResolver pathResolver;
-  private final SortedSet<String> globalLanguagesCache = new TreeSet<>();
-  private final Map<String, SortedSet<String>> languagesCache = new HashMap<>();
-  private final Map<String, InputFile> globalInputFileCache = new HashMap<>();
-  private final Table<String, String, InputFile> inputFileCache = TreeBasedTable.create();
-  private final Map<String, InputDir> globalInputDirCache = new HashMap<>();
-  private final Table<String, String, InputDir> inputDirCache = TreeBasedTable.create();
-  private final Map<String, InputModule> inputModuleCache = new HashMap<>();
-  private final Map<String, InputComponent> inputComponents = new HashMap<>();
+  private final SortedSet<String> globalLanguagesCache = new ConcurrentSkipListSet<>();
+  private final Map<String, SortedSet<String>> languagesCache = new ConcurrentHashMap<>();
+  private final Map<String, InputFile> globalInputFileCache = new ConcurrentHashMap<>();
+  // module key -> relative path -> file
+  private final SortedMap<String, SortedMap<String, InputFile>> inputFileCache = new ConcurrentSkipListMap<>();
+  private final Map<String, InputDir> globalInputDirCache = new ConcurrentHashMap<>();
+  // module key -> relative path -> dir
+  private final SortedMap<String, SortedMap<String, InputDir>> inputDirCache = new ConcurrentSkipListMap<>();
+  private final Map<String, InputModule> inputModuleCache = new ConcurrentHashMap<>();
+  private final Map<String, InputComponent> inputComponents = new ConcurrentHashMap<>();
+  // guarded by itself, copied when read
   private final SetMultimap<String, InputFile> filesByNameCache = LinkedHashMultimap.create();
+  // guarded by itself, copied when read
   private final SetMultimap<String, InputFile> filesByExtensionCache = LinkedHashMultimap.create();
-  private InputModule root;
+  private volatile InputModule root;
 
   public InputComponentStore(PathResolver pathResolver) {
     this.pathResolver = pathResolver;
@@ -74,16 +84,17 @@ public class InputComponentStore {
 
   public Iterable<DefaultInputFile> allFilesToPublish() {
     return inputFileCache.values().stream()
+      .flatMap(files -> files.values().stream())
       .map(f -> (DefaultInputFile) f)
       .filter(DefaultInputFile::publish)::iterator;
   }
 
   public Iterable<InputFile> allFiles() {
-    return inputFileCache.values();
+    return Iterables.concat(Iterables.transform(inputFileCache.values(), Map::values));
   }
 
   public Iterable<InputDir> allDirs() {
-    return inputDirCache.values();
+    return Iterables.concat(Iterables.transform(inputDirCache.values(), Map::values));
   }
 
   public InputComponent getByKey(String key) {
@@ -96,39 +107,49 @@ public class InputComponentStore {
   }
 
   public Iterable<InputFile> filesByModule(String moduleKey) {
-    return inputFileCache.row(moduleKey).values();
+    return inputFileCache.getOrDefault(moduleKey, Collections.emptySortedMap()).values();
   }
 
   public Iterable<InputDir> dirsByModule(String moduleKey) {
-    return inputDirCache.row(moduleKey).values();
+    return inputDirCache.getOrDefault(moduleKey, Collections.emptySortedMap()).values();
   }
 
   public InputComponentStore removeModule(String moduleKey) {
-    inputFileCache.row(moduleKey).clear();
-    inputDirCache.row(moduleKey).clear();
+    inputFileCache.remove(moduleKey);
+    inputDirCache.remove(moduleKey);
     return this;
   }
 
   public InputComponentStore remove(InputFile inputFile) {
     DefaultInputFile file = (DefaultInputFile) inputFile;
-    inputFileCache.remove(file.moduleKey(), inputFile.relativePath());
+    SortedMap<String, InputFile> moduleFiles = inputFileCache.get(file.moduleKey());
+    if (moduleFiles != null) {
+      moduleFiles.remove(inputFile.relativePath());
+    }
     return this;
   }
 
   public InputComponentStore remove(InputDir inputDir) {
     DefaultInputDir dir = (DefaultInputDir) inputDir;
-    inputDirCache.remove(dir.moduleKey(), inputDir.relativePath());
+    SortedMap<String, InputDir> moduleDirs = inputDirCache.get(dir.moduleKey());
+    if (moduleDirs != null) {
+      moduleDirs.remove(inputDir.relativePath());
+    }
     return this;
   }
 
   public InputComponentStore put(InputFile inputFile) {
     DefaultInputFile file = (DefaultInputFile) inputFile;
     addToLanguageCache(file);
-    inputFileCache.put(file.moduleKey(), inputFile.relativePath(), inputFile);
+    inputFileCache.computeIfAbsent(file.moduleKey(), k -> new ConcurrentSkipListMap<>()).put(inputFile.relativePath(), inputFile);
     globalInputFileCache.put(getProjectRelativePath(file), inputFile);
     inputComponents.put(inputFile.key(), inputFile);
-    filesByNameCache.put(FilenamePredicate.getFilename(inputFile), inputFile);
-    filesByExtensionCache.put(FileExtensionPredicate.getExtension(inputFile), inputFile);
+    synchronized (filesByNameCache) {
+      filesByNameCache.put(FilenamePredicate.getFilename(inputFile), inputFile);
+    }
+    synchronized (filesByExtensionCache) {
+      filesByExtensionCache.put(FileExtensionPredicate.getExtension(inputFile), inputFile);
+    }
     return this;
   }
 
@@ -136,13 +157,13 @@ public class InputComponentStore {
     String language = inputFile.language();
     if (language != null) {
       globalLanguagesCache.add(language);
-      languagesCache.computeIfAbsent(inputFile.moduleKey(), k -> new TreeSet<>()).add(language);
+      languagesCache.computeIfAbsent(inputFile.moduleKey(), k -> new ConcurrentSkipListSet<>()).add(language);
     }
   }
 
   public InputComponentStore put(InputDir inputDir) {
     DefaultInputDir dir = (DefaultInputDir) inputDir;
-    inputDirCache.put(dir.moduleKey(), inputDir.relativePath(), inputDir);
+    inputDirCache.computeIfAbsent(dir.moduleKey(), k -> new ConcurrentSkipListMap<>()).put(inputDir.relativePath(), inputDir);
     globalInputDirCache.put(getProjectRelativePath(dir), inputDir);
     inputComponents.put(inputDir.key(), inputDir);
     return this;
@@ -162,7 +183,7 @@ public class InputComponentStore {
 
   @CheckForNull
   public InputFile getFile(String moduleKey, String relativePath) {
-    return inputFileCache.get(moduleKey, relativePath);
+    return inputFileCache.getOrDefault(moduleKey, Collections.emptySortedMap()).get(relativePath);
   }
 
   @CheckForNull
@@ -172,7 +193,7 @@ public class InputComponentStore {
 
   @CheckForNull
   public InputDir getDir(String moduleKey, String relativePath) {
-    return inputDirCache.get(moduleKey, relativePath);
+    return inputDirCache.getOrDefault(moduleKey, Collections.emptySortedMap()).get(relativePath);
   }
 
   @CheckForNull
@@ -185,7 +206,7 @@ public class InputComponentStore {
     return inputModuleCache.get(moduleKey);
   }
 
-  public void put(DefaultInputModule inputModule) {
+  public synchronized void put(DefaultInputModule inputModule) {
     String key = inputModule.key();
     Preconditions.checkState(!inputComponents.containsKey(key), "Module '%s' already indexed", key);
     Preconditions.checkState(!inputModuleCache.containsKey(key), "Module '%s' already indexed", key);
@@ -200,11 +221,15 @@ public class InputComponentStore {
   }
 
   public Iterable<InputFile> getFilesByName(String filename) {
-    return filesByNameCache.get(filename);
+    synchronized (filesByNameCache) {
+      return new ArrayList<>(filesByNameCache.get(filename));
+    }
   }
 
   public Iterable<InputFile> getFilesByExtension(String extension) {
-    return filesByExtensionCache.get(extension);
+    synchronized (filesByExtensionCache) {
+      return new ArrayList<>(filesByExtensionCache.get(extension));
+    }
   }
 
   public SortedSet<String> getLanguages() {
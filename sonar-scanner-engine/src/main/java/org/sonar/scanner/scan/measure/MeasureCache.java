@@ -37,10 +37,15 @@ public class MeasureCache {
   private final Storage<DefaultMeasure<?>> cache;
 
   public MeasureCache(Storages caches, MetricFinder metricFinder) {
-    caches.registerValueCoder(DefaultMeasure.class, new MeasureValueCoder(metricFinder));
+    caches.registerValueCodec(measureType(), new MeasureValueCodec(metricFinder));
     cache = caches.createCache("measures");
   }
 
+  @SuppressWarnings("unchecked")
+  private static Class<DefaultMeasure<?>> measureType() {
+    return (Class<DefaultMeasure<?>>) (Class<?>) DefaultMeasure.class;
+  }
+
   public Iterable<Entry<DefaultMeasure<?>>> entries() {
     return cache.entries();
   }
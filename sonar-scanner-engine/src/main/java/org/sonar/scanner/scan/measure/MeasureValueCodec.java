@@ -19,38 +19,48 @@
  */
 package org.sonar.scanner.scan.measure;
 
-import com.persistit.Value;
-import com.persistit.encoding.CoderContext;
-import com.persistit.encoding.ValueCoder;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
+import org.sonar.api.batch.measure.Metric;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
+import org.sonar.scanner.storage.ObjectCodec;
+import org.sonar.scanner.storage.ValueCodec;
 
-class MeasureValueCoder implements ValueCoder {
+class MeasureValueCodec implements ValueCodec<DefaultMeasure<?>> {
 
   private final MetricFinder metricFinder;
 
-  public MeasureValueCoder(MetricFinder metricFinder) {
+  public MeasureValueCodec(MetricFinder metricFinder) {
     this.metricFinder = metricFinder;
   }
 
   @Override
-  public void put(Value value, Object object, CoderContext context) {
-    DefaultMeasure<?> m = (DefaultMeasure<?>) object;
-    org.sonar.api.batch.measure.Metric<?> metric = m.metric();
-    value.putString(metric.key());
-    value.put(m.value());
+  public void write(DataOutput out, DefaultMeasure<?> m) throws IOException {
+    Metric<?> metric = m.metric();
+    out.writeUTF(metric.key());
+    ObjectCodec.INSTANCE.write(out, m.value());
   }
 
   @Override
-  public Object get(Value value, Class clazz, CoderContext context) {
-    String metricKey = value.getString();
-    org.sonar.api.batch.measure.Metric<?> metric = metricFinder.findByKey(metricKey);
+  public DefaultMeasure<?> read(DataInput in) throws IOException {
+    String metricKey = in.readUTF();
+    Metric<?> metric = metricFinder.findByKey(metricKey);
     if (metric == null) {
       throw new IllegalStateException("Unknow metric with key " + metricKey);
     }
-    return new DefaultMeasure()
+    return newMeasure(metric, (Serializable) ObjectCodec.INSTANCE.read(in));
+  }
+
+  /**
+   * The value has been written from a measure of the same metric, so it is of the type of the metric
+   */
+  @SuppressWarnings("unchecked")
+  private static <G extends Serializable> DefaultMeasure<G> newMeasure(Metric<G> metric, Serializable value) {
+    return new DefaultMeasure<G>()
       .forMetric(metric)
-      .withValue((Serializable) value.get());
+      .withValue((G) value);
   }
 }
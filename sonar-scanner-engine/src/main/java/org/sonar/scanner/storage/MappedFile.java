@@ -0,0 +1,139 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
+/**
+ * Append-only file of records, mapped in memory by segments. Each record is stored as its length followed
+ * by its bytes and is identified by an address made of the index of its segment and of its position in
+ * the segment. A record never spans over two segments.
+ */
+class MappedFile {
+
+  static final int DEFAULT_SEGMENT_SIZE = 32 * 1024 * 1024;
+  private static final int LENGTH_SIZE = 4;
+
+  private final File file;
+  private final int segmentSize;
+  private final RandomAccessFile randomAccessFile;
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+  private MappedByteBuffer currentSegment;
+  private long length = 0L;
+
+  MappedFile(File file, int segmentSize) {
+    this.file = file;
+    this.segmentSize = segmentSize;
+    try {
+      this.randomAccessFile = new RandomAccessFile(file, "rw");
+      this.randomAccessFile.setLength(0L);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create file " + file, e);
+    }
+  }
+
+  /**
+   * @return the address of the record
+   */
+  long append(byte[] bytes, int offset, int count) {
+    int recordSize = LENGTH_SIZE + count;
+    if (currentSegment == null || currentSegment.remaining() < recordSize) {
+      newSegment(Math.max(segmentSize, recordSize));
+    }
+    int position = currentSegment.position();
+    currentSegment.putInt(count);
+    currentSegment.put(bytes, offset, count);
+    return ((long) (segments.size() - 1) << 32) | position;
+  }
+
+  InputStream read(long address) {
+    ByteBuffer segment = segments.get((int) (address >>> 32)).duplicate();
+    int position = (int) address;
+    int count = segment.getInt(position);
+    segment.limit(position + LENGTH_SIZE + count);
+    segment.position(position + LENGTH_SIZE);
+    return new ByteBufferInputStream(segment);
+  }
+
+  private void newSegment(int size) {
+    try {
+      currentSegment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, length, size);
+      segments.add(currentSegment);
+      length += size;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to map a new segment of file " + file, e);
+    }
+  }
+
+  void close() {
+    segments.clear();
+    currentSegment = null;
+    try {
+      randomAccessFile.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to close file " + file, e);
+    } finally {
+      // mapped segments are released on garbage collection, deletion may fail until then
+      // on some platforms. The parent temp directory is deleted by StoragesManager anyway.
+      deleteQuietly(file);
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int count) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int read = Math.min(count, buffer.remaining());
+      buffer.get(bytes, offset, read);
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
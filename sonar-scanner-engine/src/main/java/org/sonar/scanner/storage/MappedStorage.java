@@ -0,0 +1,524 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * {@link Storage} which appends encoded values to a {@link MappedFile}. Only the index of keys, which references
+ * the addresses of values as primitive longs, is kept on heap. Values are decoded on each read.
+ * <p>
+ * Space of the values which are replaced or removed is not reclaimed before the storage is closed.
+ * </p>
+ * <p>
+ * This storage is not thread-safe.
+ * </p>
+ */
+class MappedStorage<V> extends Storage<V> {
+
+  private static final long NO_VALUE = -1L;
+  /**
+   * Keys of same type are sorted by natural order, keys of different types by name of type.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final Comparator<Object> KEY_COMPARATOR = (o1, o2) -> {
+    if (o1.getClass() == o2.getClass() && o1 instanceof Comparable) {
+      return ((Comparable) o1).compareTo(o2);
+    }
+    return o1.getClass().getName().compareTo(o2.getClass().getName());
+  };
+
+  private final String name;
+  private final MappedFile file;
+  private final ValueCodecs codecs;
+  private final Buffer buffer = new Buffer();
+  private final DataOutputStream bufferOutput = new DataOutputStream(buffer);
+  private Node root = new Node();
+
+  MappedStorage(String name, MappedFile file, ValueCodecs codecs) {
+    this.name = name;
+    this.file = file;
+    this.codecs = codecs;
+  }
+
+  @Override
+  void doPut(Object[] key, V value) {
+    Node node = root;
+    for (Object keyPart : key) {
+      node = node.getOrCreateChild(keyPart);
+    }
+    node.address = write(value);
+  }
+
+  @CheckForNull
+  @Override
+  V doGet(Object[] key) {
+    Node node = find(key);
+    if (node == null || node.address == NO_VALUE) {
+      return null;
+    }
+    return read(node.address);
+  }
+
+  @Override
+  boolean doContainsKey(Object[] key) {
+    Node node = find(key);
+    return node != null && node.address != NO_VALUE;
+  }
+
+  @Override
+  boolean doRemove(Object[] key) {
+    Node node = find(key);
+    if (node == null || node.address == NO_VALUE) {
+      return false;
+    }
+    node.address = NO_VALUE;
+    prune(key);
+    return true;
+  }
+
+  @Override
+  void doClear(Object[] prefix) {
+    if (prefix.length == 0) {
+      clear();
+      return;
+    }
+    Node parent = find(Arrays.copyOf(prefix, prefix.length - 1));
+    if (parent != null) {
+      Node node = parent.removeChild(prefix[prefix.length - 1]);
+      if (node != null) {
+        node.detach();
+        prune(prefix);
+      }
+    }
+  }
+
+  @Override
+  public void clear() {
+    root.detach();
+    root = new Node();
+  }
+
+  @Override
+  Set<Object> doKeySet(Object[] prefix) {
+    Node node = find(prefix);
+    if (node == null) {
+      return new LinkedHashSet<>();
+    }
+    return new LinkedHashSet<>(Arrays.asList(node.sortedChildKeys()));
+  }
+
+  @Override
+  Iterable<V> doValues(Object[] prefix) {
+    return () -> Iterators.transform(new Traversal(prefix), this::read);
+  }
+
+  @Override
+  Iterable<Entry<V>> doEntries(Object[] prefix) {
+    return () -> {
+      Traversal traversal = new Traversal(prefix);
+      return Iterators.transform(traversal, address -> new Entry<>(traversal.currentKey(), read(address)));
+    };
+  }
+
+  @Override
+  void close() {
+    root = new Node();
+    file.close();
+  }
+
+  @CheckForNull
+  private Node find(Object[] key) {
+    Node node = root;
+    for (int i = 0; i < key.length && node != null; i++) {
+      node = node.child(key[i]);
+    }
+    return node;
+  }
+
+  /**
+   * Removes the nodes of the given key which have neither value nor children anymore
+   */
+  private void prune(Object[] key) {
+    for (int depth = key.length; depth > 0; depth--) {
+      Node parent = find(Arrays.copyOf(key, depth - 1));
+      if (parent == null) {
+        return;
+      }
+      Node node = parent.child(key[depth - 1]);
+      if (node == null || !node.isEmpty()) {
+        return;
+      }
+      parent.removeChild(key[depth - 1]);
+    }
+  }
+
+  private long write(V value) {
+    buffer.reset();
+    int codecId = codecs.idOf(value);
+    try {
+      bufferOutput.writeByte(codecId);
+      codecs.<V>get(codecId).write(bufferOutput, value);
+      bufferOutput.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to put element in the storage '" + name + "'", e);
+    }
+    return file.append(buffer.bytes(), 0, buffer.size());
+  }
+
+  private V read(long address) {
+    try (DataInputStream in = new DataInputStream(file.read(address))) {
+      return codecs.<V>get(in.readByte()).read(in);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to get element from cache " + name, e);
+    }
+  }
+
+  /**
+   * Children are indexed by open-addressing tables of primitive keys for {@link Integer} and {@link Long} key parts,
+   * which are the most frequent ones (ids and line numbers), so that they are not boxed. A map is used only for the
+   * keys of other types, usually strings.
+   */
+  private static final class Node {
+    private long address = NO_VALUE;
+    @CheckForNull
+    private LongKeyedNodes intChildren;
+    @CheckForNull
+    private LongKeyedNodes longChildren;
+    @CheckForNull
+    private Map<Object, Node> otherChildren;
+
+    @CheckForNull
+    private Node child(Object key) {
+      if (key instanceof Integer) {
+        return intChildren == null ? null : intChildren.get((Integer) key);
+      }
+      if (key instanceof Long) {
+        return longChildren == null ? null : longChildren.get((Long) key);
+      }
+      return otherChildren == null ? null : otherChildren.get(key);
+    }
+
+    private Node getOrCreateChild(Object key) {
+      if (key instanceof Integer) {
+        if (intChildren == null) {
+          intChildren = new LongKeyedNodes();
+        }
+        return intChildren.getOrCreate((Integer) key);
+      }
+      if (key instanceof Long) {
+        if (longChildren == null) {
+          longChildren = new LongKeyedNodes();
+        }
+        return longChildren.getOrCreate((Long) key);
+      }
+      if (otherChildren == null) {
+        otherChildren = new HashMap<>();
+      }
+      return otherChildren.computeIfAbsent(key, k -> new Node());
+    }
+
+    @CheckForNull
+    private Node removeChild(Object key) {
+      if (key instanceof Integer) {
+        return intChildren == null ? null : intChildren.remove((Integer) key);
+      }
+      if (key instanceof Long) {
+        return longChildren == null ? null : longChildren.remove((Long) key);
+      }
+      return otherChildren == null ? null : otherChildren.remove(key);
+    }
+
+    private boolean isEmpty() {
+      return address == NO_VALUE && countChildren() == 0;
+    }
+
+    private int countChildren() {
+      return (intChildren == null ? 0 : intChildren.size())
+        + (longChildren == null ? 0 : longChildren.size())
+        + (otherChildren == null ? 0 : otherChildren.size());
+    }
+
+    private Object[] sortedChildKeys() {
+      Object[] keys = new Object[countChildren()];
+      int count = 0;
+      if (intChildren != null) {
+        for (long key : intChildren.sortedKeys()) {
+          keys[count] = (int) key;
+          count++;
+        }
+      }
+      if (longChildren != null) {
+        for (long key : longChildren.sortedKeys()) {
+          keys[count] = key;
+          count++;
+        }
+      }
+      if (otherChildren != null && !otherChildren.isEmpty()) {
+        for (Object key : otherChildren.keySet()) {
+          keys[count] = key;
+          count++;
+        }
+        // keys of primitive tables are already sorted, but other types may be ordered between them
+        Arrays.sort(keys, KEY_COMPARATOR);
+      }
+      return keys;
+    }
+
+    private void forEachChild(Consumer<Node> consumer) {
+      if (intChildren != null) {
+        intChildren.forEach(consumer);
+      }
+      if (longChildren != null) {
+        longChildren.forEach(consumer);
+      }
+      if (otherChildren != null) {
+        otherChildren.values().forEach(consumer);
+      }
+    }
+
+    /**
+     * Removes the values of this node and of its descendants, so that pending iterations skip them
+     */
+    private void detach() {
+      Deque<Node> nodes = new ArrayDeque<>();
+      nodes.push(this);
+      while (!nodes.isEmpty()) {
+        Node node = nodes.pop();
+        node.address = NO_VALUE;
+        node.forEachChild(nodes::push);
+      }
+    }
+  }
+
+  /**
+   * Open-addressing hash table of nodes by primitive key, with linear probing. Slots of removed entries are
+   * filled by shifting back the following entries of the probe sequence, so that no tombstone is needed.
+   */
+  private static final class LongKeyedNodes {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Node[] nodes = new Node[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private int size() {
+      return size;
+    }
+
+    @CheckForNull
+    private Node get(long key) {
+      int slot = indexOf(key);
+      return slot < 0 ? null : nodes[slot];
+    }
+
+    private Node getOrCreate(long key) {
+      int slot = indexOf(key);
+      if (slot >= 0) {
+        return nodes[slot];
+      }
+      if ((size + 1) * 2 > nodes.length) {
+        grow();
+      }
+      Node node = new Node();
+      insert(key, node);
+      size++;
+      return node;
+    }
+
+    @CheckForNull
+    private Node remove(long key) {
+      int slot = indexOf(key);
+      if (slot < 0) {
+        return null;
+      }
+      Node removed = nodes[slot];
+      int mask = nodes.length - 1;
+      int hole = slot;
+      int i = slot;
+      while (true) {
+        i = (i + 1) & mask;
+        if (nodes[i] == null) {
+          break;
+        }
+        // the entry can fill the hole if the hole is between its home slot and its current slot
+        int home = home(keys[i], mask);
+        if (((i - home) & mask) >= ((i - hole) & mask)) {
+          keys[hole] = keys[i];
+          nodes[hole] = nodes[i];
+          hole = i;
+        }
+      }
+      nodes[hole] = null;
+      size--;
+      return removed;
+    }
+
+    private long[] sortedKeys() {
+      long[] result = new long[size];
+      int count = 0;
+      for (int i = 0; i < nodes.length; i++) {
+        if (nodes[i] != null) {
+          result[count] = keys[i];
+          count++;
+        }
+      }
+      Arrays.sort(result);
+      return result;
+    }
+
+    private void forEach(Consumer<Node> consumer) {
+      for (Node node : nodes) {
+        if (node != null) {
+          consumer.accept(node);
+        }
+      }
+    }
+
+    private int indexOf(long key) {
+      int mask = nodes.length - 1;
+      int i = home(key, mask);
+      while (nodes[i] != null) {
+        if (keys[i] == key) {
+          return i;
+        }
+        i = (i + 1) & mask;
+      }
+      return -1;
+    }
+
+    private void insert(long key, Node node) {
+      int mask = nodes.length - 1;
+      int i = home(key, mask);
+      while (nodes[i] != null) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      nodes[i] = node;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      Node[] oldNodes = nodes;
+      keys = new long[oldKeys.length * 2];
+      nodes = new Node[oldNodes.length * 2];
+      for (int i = 0; i < oldNodes.length; i++) {
+        if (oldNodes[i] != null) {
+          insert(oldKeys[i], oldNodes[i]);
+        }
+      }
+    }
+
+    private static int home(long key, int mask) {
+      long hash = key * 0x9E3779B97F4A7C15L;
+      return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+  }
+
+  /**
+   * Depth-first traversal of the descendants of a key, in order of keys, returning the addresses of values.
+   * Children of a node are listed when the traversal reaches the node, so that values can be
+   * put or removed during the traversal.
+   */
+  private final class Traversal extends AbstractIterator<Long> {
+    private final Object[] prefix;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    private Traversal(Object[] prefix) {
+      this.prefix = prefix;
+      Node start = find(prefix);
+      if (start != null) {
+        frames.push(new Frame(null, start));
+      }
+    }
+
+    @Override
+    protected Long computeNext() {
+      while (!frames.isEmpty()) {
+        Frame frame = frames.peek();
+        if (frame.index < frame.childKeys.length) {
+          Object childKey = frame.childKeys[frame.index];
+          frame.index++;
+          Node child = frame.node.child(childKey);
+          if (child != null) {
+            frames.push(new Frame(childKey, child));
+            if (child.address != NO_VALUE) {
+              return child.address;
+            }
+          }
+        } else {
+          frames.pop();
+        }
+      }
+      return endOfData();
+    }
+
+    /**
+     * Key of the last returned value
+     */
+    private Object[] currentKey() {
+      Object[] key = Arrays.copyOf(prefix, prefix.length + frames.size() - 1);
+      int i = key.length - 1;
+      Iterator<Frame> it = frames.iterator();
+      while (i >= prefix.length) {
+        key[i] = it.next().key;
+        i--;
+      }
+      return key;
+    }
+  }
+
+  private static final class Frame {
+    @CheckForNull
+    private final Object key;
+    private final Node node;
+    private final Object[] childKeys;
+    private int index = 0;
+
+    private Frame(@Nullable Object key, Node node) {
+      this.key = key;
+      this.node = node;
+      this.childKeys = node.sortedChildKeys();
+    }
+  }
+
+  private static final class Buffer extends ByteArrayOutputStream {
+    private byte[] bytes() {
+      return buf;
+    }
+  }
+}
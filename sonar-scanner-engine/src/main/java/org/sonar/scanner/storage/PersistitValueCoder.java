@@ -0,0 +1,62 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.persistit.Value;
+import com.persistit.encoding.CoderContext;
+import com.persistit.encoding.ValueCoder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Stores values in Persistit as byte arrays encoded by a {@link ValueCodec}.
+ */
+class PersistitValueCoder<T> implements ValueCoder {
+
+  private final ValueCodec<T> codec;
+
+  PersistitValueCoder(ValueCodec<T> codec) {
+    this.codec = codec;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void put(Value value, Object object, CoderContext context) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      codec.write(out, (T) object);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to encode value", e);
+    }
+    value.putByteArray(bytes.toByteArray());
+  }
+
+  @Override
+  public Object get(Value value, Class<?> clazz, CoderContext context) {
+    try {
+      return codec.read(new DataInputStream(new ByteArrayInputStream(value.getByteArray())));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to decode value", e);
+    }
+  }
+}
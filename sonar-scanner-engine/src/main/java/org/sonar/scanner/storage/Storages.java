@@ -24,23 +24,28 @@ import com.persistit.Exchange;
 import com.persistit.Persistit;
 import com.persistit.Value;
 import com.persistit.Volume;
-import com.persistit.encoding.CoderManager;
-import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
-
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
 
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
 @ScannerSide
 public class Storages implements Startable {
-  private final Map<String, Exchange> cacheMap = new HashMap<>();
+  private final Map<String, Storage<?>> cacheMap = new HashMap<>();
+  private final ValueCodecs codecs = new ValueCodecs();
+  private final StoragesManager storagesManager;
   private Persistit persistit;
   private Volume volume;
+  private File mappedDir;
 
   public Storages(StoragesManager storagesManager) {
+    this.storagesManager = storagesManager;
     persistit = storagesManager.persistit();
     doStart();
   }
@@ -52,36 +57,58 @@ public class Storages implements Startable {
 
   private void doStart() {
     try {
-      persistit.flush();
-      volume = persistit.createTemporaryVolume();
+      if (storagesManager.isMemoryMapped()) {
+        mappedDir = Files.createTempDirectory(storagesManager.tempDir().toPath(), "storages").toFile();
+      } else {
+        persistit.flush();
+        volume = persistit.createTemporaryVolume();
+      }
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create a cache volume", e);
     }
   }
 
-  public void registerValueCoder(Class<?> clazz, ValueCoder coder) {
-    CoderManager cm = persistit.getCoderManager();
-    cm.registerValueCoder(clazz, coder);
+  /**
+   * Registers the codec of the values of the given type, whatever the storage they are put into.
+   */
+  public <T> void registerValueCodec(Class<T> clazz, ValueCodec<T> codec) {
+    codecs.register(clazz, codec);
+    if (persistit != null) {
+      persistit.getCoderManager().registerValueCoder(clazz, new PersistitValueCoder<>(codec));
+    }
   }
 
   public <V> Storage<V> createCache(String cacheName) {
-    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
     Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: %s", cacheName);
+    Storage<V> cache = mappedDir == null ? createPersistitCache(cacheName) : createMappedCache(cacheName);
+    cacheMap.put(cacheName, cache);
+    return cache;
+  }
+
+  private <V> Storage<V> createPersistitCache(String cacheName) {
+    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
     try {
       Exchange exchange = persistit.getExchange(volume, cacheName, true);
       exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Storage<V> cache = new Storage<>(cacheName, exchange);
-      cacheMap.put(cacheName, exchange);
-      return cache;
+      return new PersistitStorage<>(cacheName, persistit, exchange);
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create cache: " + cacheName, e);
     }
   }
 
+  private <V> Storage<V> createMappedCache(String cacheName) {
+    try {
+      File file = File.createTempFile("storage", ".dat", mappedDir);
+      return new MappedStorage<>(cacheName, new MappedFile(file, MappedFile.DEFAULT_SEGMENT_SIZE), codecs);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create cache: " + cacheName, e);
+    }
+  }
+
   @Override
   public void stop() {
-    for (Entry<String, Exchange> e : cacheMap.entrySet()) {
-      persistit.releaseExchange(e.getValue());
+    for (Storage<?> cache : cacheMap.values()) {
+      cache.close();
     }
 
     cacheMap.clear();
@@ -95,5 +122,9 @@ public class Storages implements Startable {
       }
       volume = null;
     }
+    if (mappedDir != null) {
+      deleteQuietly(mappedDir);
+      mappedDir = null;
+    }
   }
 }
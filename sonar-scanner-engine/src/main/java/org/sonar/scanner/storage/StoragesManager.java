@@ -24,32 +24,60 @@ import com.persistit.exception.PersistitException;
 import com.persistit.logging.Slf4jAdapter;
 import java.io.File;
 import java.util.Properties;
+import javax.annotation.CheckForNull;
+import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.sonar.core.util.FileUtils.deleteQuietly;
 
 /**
- * Factory of storages
+ * Factory of storages. The engine of storages is selected by the property {@value #ENGINE_PROPERTY}:
+ * <ul>
+ *   <li>{@value #PERSISTIT_ENGINE} (default): storages are B-trees of a temporary Persistit volume</li>
+ *   <li>{@value #MMAP_ENGINE}: values are appended to files mapped in memory and only their index is kept on heap</li>
+ * </ul>
  *
  * @since 3.6
  */
 @ScannerSide
 public class StoragesManager implements Startable {
+  public static final String ENGINE_PROPERTY = "sonar.scanner.storage";
+  public static final String PERSISTIT_ENGINE = "persistit";
+  public static final String MMAP_ENGINE = "mmap";
+
   private File tempDir;
   private Persistit persistit;
   private final TempFolder tempFolder;
+  private final boolean memoryMapped;
 
-  public StoragesManager(TempFolder tempFolder) {
+  public StoragesManager(TempFolder tempFolder, GlobalProperties properties) {
     this.tempFolder = tempFolder;
-    initPersistit();
+    this.memoryMapped = isMemoryMapped(properties);
+    tempDir = tempFolder.newDir("caches");
+    if (!memoryMapped) {
+      initPersistit();
+    }
+  }
+
+  private static boolean isMemoryMapped(GlobalProperties properties) {
+    String engine = StringUtils.defaultIfBlank(properties.property(ENGINE_PROPERTY), PERSISTIT_ENGINE);
+    if (MMAP_ENGINE.equals(engine)) {
+      return true;
+    }
+    if (PERSISTIT_ENGINE.equals(engine)) {
+      return false;
+    }
+    throw MessageException.of(String.format("Unsupported value '%s' for property '%s'. Supported values are: %s, %s",
+      engine, ENGINE_PROPERTY, PERSISTIT_ENGINE, MMAP_ENGINE));
   }
 
   private void initPersistit() {
     try {
-      tempDir = tempFolder.newDir("caches");
       persistit = new Persistit();
       persistit.setPersistitLogger(new Slf4jAdapter(LoggerFactory.getLogger("PERSISTIT")));
       Properties props = new Properties();
@@ -92,6 +120,14 @@ public class StoragesManager implements Startable {
     return tempDir;
   }
 
+  boolean isMemoryMapped() {
+    return memoryMapped;
+  }
+
+  /**
+   * @return null if storages are memory-mapped
+   */
+  @CheckForNull
   Persistit persistit() {
     return persistit;
   }
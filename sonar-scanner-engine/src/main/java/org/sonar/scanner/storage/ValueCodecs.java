@@ -0,0 +1,81 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Codecs registered by type of value. Each codec is identified by a number, so that an encoded value
+ * can be decoded without knowing its type. Number 0 identifies {@link ObjectCodec}, used for
+ * values which type has no registered codec.
+ */
+class ValueCodecs {
+
+  private static final int MAX_CODECS = Byte.MAX_VALUE;
+
+  private final List<ValueCodec<?>> codecs = new ArrayList<>();
+  private final Map<Class<?>, Integer> idsByType = new HashMap<>();
+
+  ValueCodecs() {
+    codecs.add(ObjectCodec.INSTANCE);
+  }
+
+  <T> void register(Class<T> type, ValueCodec<T> codec) {
+    Integer id = idsByType.get(type);
+    if (id == null) {
+      checkState(codecs.size() < MAX_CODECS, "Too many codecs are registered");
+      idsByType.put(type, codecs.size());
+      codecs.add(codec);
+    } else {
+      codecs.set(id, codec);
+    }
+  }
+
+  /**
+   * Identifier of the codec of the given value, looked up by type then by super-types.
+   */
+  int idOf(@Nullable Object value) {
+    if (value == null) {
+      return 0;
+    }
+    Class<?> type = value.getClass();
+    while (type != null) {
+      Integer id = idsByType.get(type);
+      if (id != null) {
+        return id;
+      }
+      type = type.getSuperclass();
+    }
+    return 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  <T> ValueCodec<T> get(int id) {
+    checkArgument(id >= 0 && id < codecs.size(), "Unknown codec %s", id);
+    return (ValueCodec<T>) codecs.get(id);
+  }
+}
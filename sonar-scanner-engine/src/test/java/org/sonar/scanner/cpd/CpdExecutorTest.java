@@ -36,6 +36,7 @@ import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.config.MapSettings;
 import org.sonar.api.config.Settings;
 import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.api.utils.internal.DefaultTempFolder;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.util.CloseableIterator;
@@ -43,6 +44,7 @@ import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
+import org.sonar.scanner.cpd.index.CpdBlockCache;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplicate;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplication;
@@ -52,7 +54,9 @@ import org.sonar.scanner.report.ReportPublisher;
 import org.sonar.scanner.scan.filesystem.InputComponentStore;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class CpdExecutorTest {
@@ -85,9 +89,9 @@ public class CpdExecutorTest {
     settings = new MapSettings();
     publisher = mock(ReportPublisher.class);
     when(publisher.getWriter()).thenReturn(new ScannerReportWriter(outputDir));
-    index = new SonarCpdBlockIndex(publisher, settings);
+    index = new SonarCpdBlockIndex(publisher, settings, new DefaultTempFolder(temp.newFolder()));
     componentStore = new InputComponentStore(new PathResolver());
-    executor = new CpdExecutor(settings, index, publisher, componentStore);
+    executor = new CpdExecutor(settings, index, mock(CpdBlockCache.class), publisher, componentStore);
     reader = new ScannerReportReader(outputDir);
 
     componentStore.put(TestInputFileBuilder.newDefaultInputModule("foo", baseDir));
@@ -239,6 +243,85 @@ public class CpdExecutorTest {
         "Timeout during detection of duplications for .*Foo2.php");
   }
 
+  @Test
+  public void detect_duplications_of_files_concurrently() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, 3);
+    executor = new CpdExecutor(settings, index, mock(CpdBlockCache.class), publisher, componentStore);
+    List<DefaultInputFile> files = insertDuplicatedFiles(4);
+
+    executor.execute();
+
+    assertDuplicatedFiles(files);
+  }
+
+  @Test
+  public void detect_duplications_with_index_mapped_in_memory() throws IOException {
+    settings.setProperty(SonarCpdBlockIndex.MAPPED_INDEX_PROPERTY, true);
+    index = new SonarCpdBlockIndex(publisher, settings, new DefaultTempFolder(temp.newFolder()));
+    executor = new CpdExecutor(settings, index, mock(CpdBlockCache.class), publisher, componentStore);
+    List<DefaultInputFile> files = insertDuplicatedFiles(4);
+
+    try {
+      executor.execute();
+    } finally {
+      index.stop();
+    }
+
+    assertDuplicatedFiles(files);
+  }
+
+  @Test
+  public void log_statistics_and_purge_block_cache_after_detection() {
+    CpdBlockCache blockCache = mock(CpdBlockCache.class);
+    List<String> logsAtPurge = new ArrayList<>();
+    doAnswer(invocation -> logsAtPurge.addAll(logTester.logs())).when(blockCache).purgeUnusedEntries();
+    executor = new CpdExecutor(settings, index, blockCache, publisher, componentStore);
+    List<DefaultInputFile> files = insertDuplicatedFiles(2);
+
+    executor.execute();
+
+    assertDuplicatedFiles(files);
+    verify(blockCache).logStatistics();
+    assertThat(logsAtPurge).contains("CPD calculation finished");
+  }
+
+  private List<DefaultInputFile> insertDuplicatedFiles(int count) {
+    List<DefaultInputFile> files = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      DefaultInputFile file = new TestInputFileBuilder("foo", "src/Bar" + i + ".java")
+        .setModuleBaseDir(baseDir.toPath())
+        .setLanguage("java")
+        .setLines(20)
+        .build();
+      componentStore.put(file);
+      List<Block> blocks = new ArrayList<>();
+      for (int j = 1; j <= 10; j++) {
+        blocks.add(Block.builder()
+          .setResourceId(file.key())
+          .setIndexInFile(j)
+          .setLines(j, j + 1)
+          .setUnit(j, j + 1)
+          .setBlockHash(new ByteArray((long) j))
+          .build());
+      }
+      index.insert((InputFile) file, blocks);
+      files.add(file);
+    }
+    return files;
+  }
+
+  private void assertDuplicatedFiles(List<DefaultInputFile> files) {
+    for (DefaultInputFile file : files) {
+      try (CloseableIterator<Duplication> dups = reader.readComponentDuplications(file.batchId())) {
+        assertThat(dups.hasNext()).isTrue();
+        Duplication duplication = dups.next();
+        assertThat(duplication.getOriginPosition().getStartLine()).isEqualTo(1);
+        assertThat(duplication.getDuplicateList()).hasSize(files.size() - 1);
+        assertThat(dups.hasNext()).isFalse();
+      }
+    }
+  }
+
   private Duplication[] readDuplications(int expected) {
     assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
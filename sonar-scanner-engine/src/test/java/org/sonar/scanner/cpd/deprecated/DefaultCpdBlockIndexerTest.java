@@ -19,14 +19,18 @@
  */
 package org.sonar.scanner.cpd.deprecated;
 
+import java.nio.charset.StandardCharsets;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.config.MapSettings;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.LogTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class DefaultCpdBlockIndexerTest {
 
@@ -39,7 +43,9 @@ public class DefaultCpdBlockIndexerTest {
   @Before
   public void init() {
     settings = new MapSettings();
-    engine = new DefaultCpdBlockIndexer(null, null, settings, null);
+    FileSystem fs = mock(FileSystem.class);
+    when(fs.encoding()).thenReturn(StandardCharsets.UTF_8);
+    engine = new DefaultCpdBlockIndexer(null, fs, settings, null, null);
   }
 
   @Test
@@ -75,4 +81,21 @@ public class DefaultCpdBlockIndexerTest {
     assertThat(engine.getBlockSize("cobol")).isEqualTo(42);
   }
 
+  @Test
+  public void chunkerKeyIncludesLanguageProperties() {
+    String key = engine.getChunkerKey("cobol", 30);
+    assertThat(key).startsWith("cobol:30:UTF-8:");
+
+    settings.setProperty("sonar.java.source", "8");
+    settings.setProperty("sonar.cobolx.foo", "bar");
+    assertThat(engine.getChunkerKey("cobol", 30)).isEqualTo(key);
+
+    settings.setProperty("sonar.cobol.tab.width", "4");
+    String keyWithTabWidth = engine.getChunkerKey("cobol", 30);
+    assertThat(keyWithTabWidth).isNotEqualTo(key).contains("sonar.cobol.tab.width=4");
+
+    settings.setProperty("sonar.cpd.cobol.ignoreLiteral", "true");
+    assertThat(engine.getChunkerKey("cobol", 30)).isNotEqualTo(keyWithTabWidth).contains("sonar.cpd.cobol.ignoreLiteral=true");
+  }
+
 }
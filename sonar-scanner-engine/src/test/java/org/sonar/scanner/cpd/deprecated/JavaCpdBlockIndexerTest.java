@@ -32,13 +32,21 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.sonar.api.CoreProperties;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.config.Settings;
 import org.sonar.api.config.MapSettings;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.Version;
 import org.sonar.duplications.block.Block;
+import org.sonar.scanner.bootstrap.ScannerPluginRepository;
+import org.sonar.scanner.cpd.index.CpdBlockCache;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -59,6 +67,8 @@ public class JavaCpdBlockIndexerTest {
   private Settings settings;
   private JavaCpdBlockIndexer engine;
   private InputFile file;
+  private File workDir;
+  private DefaultFileSystem fs;
 
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
@@ -68,21 +78,24 @@ public class JavaCpdBlockIndexerTest {
     MockitoAnnotations.initMocks(this);
 
     File baseDir = temp.newFolder();
-    DefaultFileSystem fs = new DefaultFileSystem(baseDir);
+    fs = new DefaultFileSystem(baseDir);
     file = new TestInputFileBuilder("foo", "src/ManyStatements.java")
       .setModuleBaseDir(baseDir.toPath())
-      .setLanguage(JAVA).build();
+      .setLanguage(JAVA)
+      .setHash("0123456789abcdef")
+      .build();
     fs.add(file);
     File ioFile = file.file();
     FileUtils.copyURLToFile(this.getClass().getResource("ManyStatements.java"), ioFile);
 
     settings = new MapSettings();
-    engine = new JavaCpdBlockIndexer(fs, settings, index);
+    workDir = temp.newFolder();
+    engine = new JavaCpdBlockIndexer(fs, settings, index, newBlockCache());
   }
 
   @Test
   public void languageSupported() {
-    JavaCpdBlockIndexer engine = new JavaCpdBlockIndexer(mock(FileSystem.class), new MapSettings(), index);
+    JavaCpdBlockIndexer engine = new JavaCpdBlockIndexer(mock(FileSystem.class), new MapSettings(), index, newBlockCache());
     assertThat(engine.isLanguageSupported(JAVA)).isTrue();
     assertThat(engine.isLanguageSupported("php")).isFalse();
   }
@@ -103,4 +116,28 @@ public class JavaCpdBlockIndexerTest {
 
     assertThat(blockList).hasSize(26);
   }
+
+  @Test
+  public void reuse_blocks_of_unchanged_file_computed_by_previous_analysis() throws Exception {
+    engine.index(JAVA);
+    verify(index).insert(eq(file), blockCaptor.capture());
+    List<Block> computedBlocks = blockCaptor.getValue();
+
+    // previous blocks are reused even if file can not be read anymore
+    FileUtils.write(file.file(), "class Foo {}");
+    CpdBlockCache blockCache = newBlockCache();
+    SonarCpdBlockIndex otherIndex = mock(SonarCpdBlockIndex.class);
+    new JavaCpdBlockIndexer(fs, settings, otherIndex, blockCache).index(JAVA);
+
+    verify(otherIndex).insert(eq(file), blockCaptor.capture());
+    assertThat(blockCaptor.getValue()).hasSize(26).isEqualTo(computedBlocks);
+    assertThat(blockCaptor.getValue()).extracting(Block::getResourceId).containsOnly(((DefaultInputFile) file).key());
+    assertThat(blockCache.getHits()).isEqualTo(1);
+    assertThat(blockCache.getMisses()).isEqualTo(0);
+  }
+
+  private CpdBlockCache newBlockCache() {
+    return new CpdBlockCache(new ProjectReactor(ProjectDefinition.create().setWorkDir(workDir)), mock(ScannerPluginRepository.class),
+      SonarRuntimeImpl.forSonarQube(Version.parse("6.3"), SonarQubeSide.SCANNER));
+  }
 }
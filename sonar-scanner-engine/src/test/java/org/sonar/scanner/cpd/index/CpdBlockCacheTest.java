@@ -0,0 +1,199 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.cpd.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.SonarRuntime;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.Version;
+import org.sonar.core.platform.PluginInfo;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.scanner.bootstrap.ScannerPluginRepository;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CpdBlockCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static final Class<?> CHUNKER = CpdBlockCacheTest.class;
+
+  private ScannerPluginRepository pluginRepository = mock(ScannerPluginRepository.class);
+  private SonarRuntime runtime = SonarRuntimeImpl.forSonarQube(Version.parse("6.3"), SonarQubeSide.SCANNER);
+  private File workDir;
+  private AtomicInteger chunkings = new AtomicInteger();
+
+  @Before
+  public void setUp() throws IOException {
+    workDir = temp.newFolder();
+  }
+
+  @Test
+  public void compute_blocks_once_per_content_of_file() {
+    CpdBlockCache cache = newCache();
+    DefaultInputFile file = newFile("src/Foo.php", "hash1");
+
+    List<Block> blocks = cache.getOrCompute(file, CHUNKER, "php:10", () -> chunk(file));
+    assertThat(cache.getOrCompute(file, CHUNKER, "php:10", () -> chunk(file))).isEqualTo(blocks);
+    // same content in another file
+    DefaultInputFile copy = newFile("src/Copy.php", "hash1");
+    assertThat(cache.getOrCompute(copy, CHUNKER, "php:10", () -> chunk(copy)))
+      .extracting(Block::getResourceId).containsOnly(copy.key());
+
+    assertThat(chunkings.get()).isEqualTo(1);
+    assertThat(cache.getHits()).isEqualTo(2);
+    assertThat(cache.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void compute_blocks_again_when_content_of_file_or_chunker_changes() {
+    CpdBlockCache cache = newCache();
+
+    cache.getOrCompute(newFile("src/Foo.php", "hash1"), CHUNKER, "php:10", () -> chunk(newFile("src/Foo.php", "hash1")));
+    cache.getOrCompute(newFile("src/Foo.php", "hash2"), CHUNKER, "php:10", () -> chunk(newFile("src/Foo.php", "hash2")));
+    cache.getOrCompute(newFile("src/Foo.php", "hash2"), CHUNKER, "php:20", () -> chunk(newFile("src/Foo.php", "hash2")));
+
+    assertThat(chunkings.get()).isEqualTo(3);
+    assertThat(cache.getHits()).isEqualTo(0);
+  }
+
+  @Test
+  public void compute_blocks_again_when_version_of_plugin_providing_chunker_changes() {
+    DefaultInputFile file = newFile("src/Foo.php", "hash1");
+    when(pluginRepository.getPluginKey(CHUNKER.getClassLoader())).thenReturn("php");
+    when(pluginRepository.getPluginInfo("php")).thenReturn(new PluginInfo("php").setVersion(org.sonar.updatecenter.common.Version.create("2.9")));
+    newCache().getOrCompute(file, CHUNKER, "php:10", () -> chunk(file));
+
+    when(pluginRepository.getPluginInfo("php")).thenReturn(new PluginInfo("php").setVersion(org.sonar.updatecenter.common.Version.create("2.10")));
+    CpdBlockCache cache = newCache();
+    cache.getOrCompute(file, CHUNKER, "php:10", () -> chunk(file));
+
+    assertThat(chunkings.get()).isEqualTo(2);
+    assertThat(cache.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void compute_blocks_again_when_version_of_scanner_changes() {
+    DefaultInputFile file = newFile("src/Foo.php", "hash1");
+    newCache().getOrCompute(file, CHUNKER, "php:10", () -> chunk(file));
+
+    runtime = SonarRuntimeImpl.forSonarQube(Version.parse("6.4"), SonarQubeSide.SCANNER);
+    CpdBlockCache cache = newCache();
+    cache.getOrCompute(file, CHUNKER, "php:10", () -> chunk(file));
+
+    assertThat(chunkings.get()).isEqualTo(2);
+    assertThat(cache.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void do_not_cache_blocks_of_file_without_hash() {
+    CpdBlockCache cache = newCache();
+    DefaultInputFile file = newFile("src/Foo.php", null);
+
+    cache.getOrCompute(file, CHUNKER, "php:10", () -> chunk(file));
+    cache.getOrCompute(file, CHUNKER, "php:10", () -> chunk(file));
+
+    assertThat(chunkings.get()).isEqualTo(2);
+    assertThat(cache.getHits() + cache.getMisses()).isEqualTo(0);
+  }
+
+  @Test
+  public void compute_blocks_again_when_entry_is_corrupted() throws IOException {
+    DefaultInputFile file = newFile("src/Foo.php", "hash1");
+    List<Block> blocks = newCache().getOrCompute(file, CHUNKER, "php:10", () -> chunk(file));
+    for (Path entry : entries()) {
+      Files.write(entry, new byte[] {0, 0, 0, 5, 1});
+    }
+
+    CpdBlockCache cache = newCache();
+    assertThat(cache.getOrCompute(file, CHUNKER, "php:10", () -> chunk(file))).isEqualTo(blocks);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(newCache().getOrCompute(file, CHUNKER, "php:10", () -> chunk(file))).isEqualTo(blocks);
+    assertThat(chunkings.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void purge_entries_not_used_by_analysis() throws IOException {
+    DefaultInputFile foo = newFile("src/Foo.php", "hash1");
+    DefaultInputFile bar = newFile("src/Bar.php", "hash2");
+    CpdBlockCache cache = newCache();
+    cache.getOrCompute(foo, CHUNKER, "php:10", () -> chunk(foo));
+    cache.getOrCompute(bar, CHUNKER, "php:10", () -> chunk(bar));
+    assertThat(entries()).hasSize(2);
+
+    cache = newCache();
+    cache.getOrCompute(foo, CHUNKER, "php:10", () -> chunk(foo));
+    cache.purgeUnusedEntries();
+
+    assertThat(entries()).hasSize(1);
+    cache = newCache();
+    cache.getOrCompute(foo, CHUNKER, "php:10", () -> chunk(foo));
+    assertThat(cache.getHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void purge_does_not_fail_if_cache_does_not_exist() {
+    newCache().purgeUnusedEntries();
+
+    assertThat(new File(workDir, CpdBlockCache.DIR_NAME)).doesNotExist();
+  }
+
+  private List<Path> entries() throws IOException {
+    try (Stream<Path> files = Files.walk(workDir.toPath().resolve(CpdBlockCache.DIR_NAME))) {
+      return files.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+  }
+
+  private CpdBlockCache newCache() {
+    return new CpdBlockCache(new ProjectReactor(ProjectDefinition.create().setWorkDir(workDir)), pluginRepository, runtime);
+  }
+
+  private static DefaultInputFile newFile(String relativePath, String hash) {
+    return new TestInputFileBuilder("foo", relativePath).setHash(hash).build();
+  }
+
+  private List<Block> chunk(DefaultInputFile file) {
+    chunkings.incrementAndGet();
+    return asList(
+      Block.builder().setResourceId(file.key()).setBlockHash(new ByteArray(1L)).setIndexInFile(0).setLines(1, 10).setUnit(0, 40).build(),
+      Block.builder().setResourceId(file.key()).setBlockHash(new ByteArray(2L)).setIndexInFile(1).setLines(2, 11).setUnit(3, 45).build());
+  }
+}
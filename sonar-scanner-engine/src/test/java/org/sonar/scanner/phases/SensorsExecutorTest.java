@@ -20,17 +20,25 @@
 package org.sonar.scanner.phases;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.*;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.sensor.SensorOptimizer;
 import org.sonar.scanner.sensor.SensorStrategy;
+import org.sonar.scanner.sensor.SensorWrapper;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -38,10 +46,14 @@ import static org.mockito.Mockito.*;
 public class SensorsExecutorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
 
   private SensorsExecutor rootModuleExecutor;
   private SensorsExecutor subModuleExecutor;
   private SensorContext context;
+  private ScannerExtensionDictionnary selector;
+  private DefaultInputModule rootModule;
 
   private SensorStrategy strategy = new SensorStrategy();
 
@@ -74,16 +86,16 @@ public class SensorsExecutorTest {
   public void setUp() throws IOException {
     context = mock(SensorContext.class);
 
-    ScannerExtensionDictionnary selector = mock(ScannerExtensionDictionnary.class);
+    selector = mock(ScannerExtensionDictionnary.class);
     when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Collections.singleton(perModuleSensor));
     when(selector.selectSensors(any(DefaultInputModule.class), eq(true))).thenReturn(Collections.singleton(globalSensor));
 
-    DefaultInputModule rootModule = TestInputFileBuilder.newDefaultInputModule("root", temp.newFolder());
-    rootModuleExecutor = new SensorsExecutor(selector, rootModule, mock(EventBus.class), strategy);
+    rootModule = TestInputFileBuilder.newDefaultInputModule("root", temp.newFolder());
+    rootModuleExecutor = new SensorsExecutor(selector, rootModule, mock(EventBus.class), strategy, new MapSettings());
 
     DefaultInputModule subModule = TestInputFileBuilder.newDefaultInputModule("sub", temp.newFolder());
     rootModule.definition().addSubProject(subModule.definition());
-    subModuleExecutor = new SensorsExecutor(selector, subModule, mock(EventBus.class), strategy);
+    subModuleExecutor = new SensorsExecutor(selector, subModule, mock(EventBus.class), strategy, new MapSettings());
   }
 
   @Test
@@ -104,4 +116,130 @@ public class SensorsExecutorTest {
     assertThat(globalSensor.called).isTrue();
     assertThat(globalSensor.global).isTrue();
   }
+
+  @Test
+  public void should_execute_thread_safe_sensors_concurrently_when_enabled() {
+    CountDownLatch latch = new CountDownLatch(2);
+    LatchSensor first = new LatchSensor(latch, true);
+    LatchSensor second = new LatchSensor(latch, true);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(first), wrap(second)));
+
+    parallelExecutor().execute(context);
+
+    // each sensor waits for the other one to be started, which can succeed only if they are executed concurrently
+    assertThat(latch.getCount()).isZero();
+    assertThat(first.released).isTrue();
+    assertThat(second.released).isTrue();
+    assertThat(first.thread).isNotEqualTo(Thread.currentThread());
+    assertThat(second.thread).isNotEqualTo(first.thread);
+  }
+
+  @Test
+  public void should_execute_sensors_sequentially_by_default() {
+    LatchSensor first = new LatchSensor(new CountDownLatch(1), true);
+    LatchSensor second = new LatchSensor(new CountDownLatch(1), true);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(first), wrap(second)));
+
+    rootModuleExecutor.execute(context);
+
+    assertThat(first.thread).isEqualTo(Thread.currentThread());
+    assertThat(second.thread).isEqualTo(Thread.currentThread());
+  }
+
+  @Test
+  public void should_execute_sensors_that_are_not_thread_safe_alone() {
+    // sensors do not wait for each other, as they are not expected to be executed concurrently
+    LatchSensor first = new LatchSensor(new CountDownLatch(1), true);
+    LatchSensor notThreadSafe = new LatchSensor(new CountDownLatch(1), false);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(first), wrap(notThreadSafe)));
+
+    parallelExecutor().execute(context);
+
+    assertThat(first.thread).isNotEqualTo(Thread.currentThread());
+    assertThat(notThreadSafe.thread).isEqualTo(Thread.currentThread());
+  }
+
+  @Test
+  public void should_not_execute_concurrently_sensors_with_dependencies() {
+    CountDownLatch latch = new CountDownLatch(2);
+    LatchSensor first = new LatchSensor(latch, true);
+    LatchSensor second = new LatchSensor(latch, true);
+    LatchSensor withDependencies = new LatchSensor(new CountDownLatch(1), true);
+    SensorWrapper withDependenciesWrapper = wrap(withDependencies);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(first), wrap(second), withDependenciesWrapper));
+    when(selector.hasDependencies(withDependenciesWrapper)).thenReturn(true);
+
+    parallelExecutor().execute(context);
+
+    assertThat(latch.getCount()).isZero();
+    assertThat(first.released).isTrue();
+    assertThat(second.released).isTrue();
+    assertThat(withDependencies.thread).isEqualTo(Thread.currentThread());
+  }
+
+  @Test
+  public void should_propagate_failure_of_concurrent_sensor() {
+    LatchSensor first = new LatchSensor(new CountDownLatch(0), true);
+    org.sonar.api.batch.sensor.Sensor failing = new org.sonar.api.batch.sensor.Sensor() {
+      @Override
+      public void describe(SensorDescriptor descriptor) {
+        descriptor.threadSafe();
+      }
+
+      @Override
+      public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+        throw new IllegalArgumentException("failure");
+      }
+    };
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(first), wrap(failing)));
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("failure");
+
+    parallelExecutor().execute(context);
+  }
+
+  private SensorsExecutor parallelExecutor() {
+    MapSettings settings = new MapSettings();
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 2);
+    return new SensorsExecutor(selector, rootModule, mock(EventBus.class), strategy, settings);
+  }
+
+  private static SensorWrapper wrap(org.sonar.api.batch.sensor.Sensor sensor) {
+    return new SensorWrapper(sensor, mock(org.sonar.api.batch.sensor.SensorContext.class), mock(SensorOptimizer.class));
+  }
+
+  /**
+   * Waits for the other sensors sharing its latch to be started. The timeout is only a safety net, so that a failing
+   * test does not hang, and is never reached by sensors which are executed concurrently.
+   */
+  private static class LatchSensor implements org.sonar.api.batch.sensor.Sensor {
+    private final CountDownLatch latch;
+    private final boolean threadSafe;
+    private volatile boolean released;
+    private volatile Thread thread;
+
+    LatchSensor(CountDownLatch latch, boolean threadSafe) {
+      this.latch = latch;
+      this.threadSafe = threadSafe;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      if (threadSafe) {
+        descriptor.threadSafe();
+      }
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      thread = Thread.currentThread();
+      latch.countDown();
+      try {
+        released = latch.await(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
 }
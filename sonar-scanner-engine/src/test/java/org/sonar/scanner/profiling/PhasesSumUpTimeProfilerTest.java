@@ -120,6 +120,22 @@ public class PhasesSumUpTimeProfilerTest {
     assertThat(profiling.totalTimeAsString()).isEqualTo("5min");
   }
 
+  @Test
+  public void item_profiling_records_cpu_time() {
+    ItemProfiling first = new ItemProfiling(clock, "foo");
+    clock.sleep(10);
+    first.stop();
+    ItemProfiling second = new ItemProfiling(clock, "foo");
+    second.stop();
+
+    assertThat(first.totalTime()).isEqualTo(10L);
+    assertThat(first.cpuTime()).isGreaterThanOrEqualTo(0L);
+
+    long expectedCpuTime = first.cpuTime() + second.cpuTime();
+    first.add(second);
+    assertThat(first.cpuTime()).isEqualTo(expectedCpuTime);
+  }
+
   private class MockedSystem extends System2 {
     private long now = 0;
 
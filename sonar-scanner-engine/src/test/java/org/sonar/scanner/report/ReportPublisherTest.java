@@ -19,12 +19,14 @@
  */
 package org.sonar.scanner.report;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.zip.ZipFile;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -45,9 +47,13 @@ import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.config.CorePropertyDefinitions;
 import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.protocol.output.ReportContainer;
+import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.scan.ImmutableProjectReactor;
+import org.sonarqube.ws.MediaTypes;
 import org.sonarqube.ws.WsCe;
 import org.sonarqube.ws.client.HttpException;
+import org.sonarqube.ws.client.PostRequest;
 import org.sonarqube.ws.client.WsRequest;
 import org.sonarqube.ws.client.WsResponse;
 
@@ -55,6 +61,7 @@ import static org.apache.commons.io.FileUtils.readFileToString;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -219,4 +226,43 @@ public class ReportPublisherTest {
       entry("projectKey", "struts"));
   }
 
+  @Test
+  public void upload_report_as_container_by_default() throws Exception {
+    PostRequest.Part part = executeAndGetUploadedReport();
+
+    assertThat(part.getMediaType()).isEqualTo(MediaTypes.DEFAULT);
+    try (ReportContainer container = ReportContainer.open(part.getFile())) {
+      assertThat(container.entryNames()).contains("metadata.pb");
+    }
+  }
+
+  @Test
+  public void upload_report_as_zip_if_property_is_set() throws Exception {
+    settings.setProperty(ReportPublisher.ZIP_REPORT_PROP_KEY, true);
+
+    PostRequest.Part part = executeAndGetUploadedReport();
+
+    assertThat(part.getMediaType()).isEqualTo(MediaTypes.ZIP);
+    try (ZipFile zip = new ZipFile(part.getFile())) {
+      assertThat(zip.getEntry("metadata.pb")).isNotNull();
+    }
+  }
+
+  private PostRequest.Part executeAndGetUploadedReport() throws IOException {
+    TempFolder tempFolder = mock(TempFolder.class);
+    when(tempFolder.newFile(anyString(), anyString())).thenAnswer(invocation -> temp.newFile());
+    ReportPublisherStep publisher = writer -> writer.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("struts").build());
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, tempFolder, new ReportPublisherStep[] {publisher});
+    WsResponse response = mock(WsResponse.class);
+    when(response.failIfNotSuccessful()).thenReturn(response);
+    when(response.contentStream()).thenReturn(new ByteArrayInputStream(WsCe.SubmitResponse.newBuilder().setTaskId("TASK-123").build().toByteArray()));
+    when(wsClient.call(any(WsRequest.class))).thenReturn(response);
+
+    underTest.start();
+    underTest.execute();
+
+    ArgumentCaptor<WsRequest> capture = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient).call(capture.capture());
+    return ((PostRequest) capture.getValue()).getParts().get("report");
+  }
 }
@@ -26,6 +26,7 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.home.cache.DirectoryLock;
+import org.sonar.scanner.cpd.index.CpdBlockCache;
 import org.sonar.scanner.scan.WorkDirectoryCleaner;
 import java.io.File;
 import java.io.IOException;
@@ -76,4 +77,16 @@ public class WorkDirectoryCleanerTest {
     assertThat(temp.getRoot().list()).containsOnly(DirectoryLock.LOCK_FILE_NAME);
   }
 
+  @Test
+  public void keep_cpd_block_cache() throws IOException {
+    File cpdCache = new File(temp.getRoot(), CpdBlockCache.DIR_NAME);
+    new File(cpdCache, "entry").getParentFile().mkdirs();
+    new File(cpdCache, "entry").createNewFile();
+
+    cleaner.execute();
+
+    assertThat(temp.getRoot().list()).containsOnly(DirectoryLock.LOCK_FILE_NAME, CpdBlockCache.DIR_NAME);
+    assertThat(new File(cpdCache, "entry")).exists();
+  }
+
 }
@@ -24,6 +24,9 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -140,4 +143,20 @@ public class InputComponentStoreTest {
     assertThat(tester.filesByModule(mod2Key)).containsExactly(mod2File);
     assertThat(tester.allFiles()).containsExactlyInAnyOrder(mod1File, mod2File);
   }
+
+  @Test
+  public void should_support_concurrent_additions() throws Exception {
+    InputComponentStoreTester tester = new InputComponentStoreTester();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 200; i++) {
+      String relpath = "src/main/java/Foo" + i + ".java";
+      executor.submit(() -> tester.addFile("mod" + (relpath.length() % 3), relpath, "java"));
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(tester.allFiles()).hasSize(200);
+    assertThat(tester.getFilesByName("Foo42.java")).hasSize(1);
+    assertThat(tester.getFilesByExtension("java")).hasSize(200);
+  }
 }
@@ -0,0 +1,102 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedFileTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void read_appended_records() throws IOException {
+    MappedFile underTest = new MappedFile(temp.newFile(), 1024);
+
+    long first = append(underTest, "first");
+    long second = append(underTest, "second");
+    long empty = append(underTest, "");
+
+    assertThat(read(underTest, second)).isEqualTo("second");
+    assertThat(read(underTest, first)).isEqualTo("first");
+    assertThat(read(underTest, empty)).isEmpty();
+    underTest.close();
+  }
+
+  @Test
+  public void records_are_appended_to_new_segment_when_current_one_is_full() throws IOException {
+    MappedFile underTest = new MappedFile(temp.newFile(), 16);
+
+    long first = append(underTest, "0123456789");
+    long second = append(underTest, "abcdefghij");
+
+    assertThat(first >>> 32).isEqualTo(0L);
+    assertThat(second >>> 32).isEqualTo(1L);
+    assertThat(read(underTest, first)).isEqualTo("0123456789");
+    assertThat(read(underTest, second)).isEqualTo("abcdefghij");
+    underTest.close();
+  }
+
+  @Test
+  public void record_bigger_than_segment_size_is_appended_to_a_dedicated_segment() throws IOException {
+    MappedFile underTest = new MappedFile(temp.newFile(), 16);
+
+    long small = append(underTest, "a");
+    long big = append(underTest, "this record is bigger than a segment");
+    long next = append(underTest, "b");
+
+    assertThat(read(underTest, small)).isEqualTo("a");
+    assertThat(read(underTest, big)).isEqualTo("this record is bigger than a segment");
+    assertThat(read(underTest, next)).isEqualTo("b");
+    assertThat(next >>> 32).isEqualTo(2L);
+    underTest.close();
+  }
+
+  @Test
+  public void close_deletes_file() throws IOException {
+    File file = temp.newFile();
+    MappedFile underTest = new MappedFile(file, 1024);
+    append(underTest, "foo");
+
+    underTest.close();
+
+    assertThat(file).doesNotExist();
+  }
+
+  private static long append(MappedFile file, String value) {
+    byte[] bytes = value.getBytes(UTF_8);
+    return file.append(bytes, 0, bytes.length);
+  }
+
+  private static String read(MappedFile file, long address) throws IOException {
+    try (InputStream input = file.read(address)) {
+      return IOUtils.toString(input, UTF_8);
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.collect.Iterables;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Iterator;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the tests of {@link StorageTest} on memory-mapped storages
+ */
+public class MappedStorageTest extends StorageTest {
+
+  private static StoragesManager mappedStoragesManager;
+
+  @BeforeClass
+  public static void startMappedStorages() {
+    mappedStoragesManager = createCacheOnTemp(StoragesManager.MMAP_ENGINE);
+  }
+
+  @AfterClass
+  public static void stopMappedStorages() {
+    mappedStoragesManager.stop();
+  }
+
+  @Before
+  public void useMappedStorages() {
+    caches.stop();
+    caches = new Storages(mappedStoragesManager);
+    caches.start();
+  }
+
+  @Test
+  public void storages_are_memory_mapped() {
+    assertThat(caches.createCache("foo")).isInstanceOf(MappedStorage.class);
+    assertThat(mappedStoragesManager.persistit()).isNull();
+  }
+
+  @Test
+  public void put_replaces_value() {
+    Storage<String> cache = caches.createCache("capitals");
+
+    cache.put("europe", "france", "lyon");
+    cache.put("europe", "france", "paris");
+
+    assertThat(cache.get("europe", "france")).isEqualTo("paris");
+    assertThat(cache.values()).containsExactly("paris");
+  }
+
+  @Test
+  public void keys_of_different_types_are_supported() {
+    Storage<String> cache = caches.createCache("issues");
+
+    cache.put(2, "b", "two");
+    cache.put(10, "a", "ten");
+    cache.put("component", "c", "component");
+
+    assertThat(cache.get(10, "a")).isEqualTo("ten");
+    assertThat(cache.keySet()).containsExactly(2, 10, "component");
+    assertThat(cache.values()).containsExactly("two", "ten", "component");
+    assertThat(cache.values(10)).containsExactly("ten");
+  }
+
+  @Test
+  public void integer_and_long_keys_are_distinct_and_sorted_before_other_types() {
+    Storage<String> cache = caches.createCache("lines");
+
+    cache.put("component", "c", "component");
+    cache.put(3L, "b", "three as long");
+    cache.put(3, "a", "three");
+    cache.put(-1, "a", "minus one");
+
+    assertThat(cache.keySet()).containsExactly(-1, 3, 3L, "component");
+    assertThat(cache.get(3, "a")).isEqualTo("three");
+    assertThat(cache.get(3L, "b")).isEqualTo("three as long");
+    assertThat(cache.get(3L, "a")).isNull();
+  }
+
+  @Test
+  public void many_integer_keys_can_be_put_and_removed() {
+    Storage<Integer> cache = caches.createCache("lines");
+    for (int line = 1; line <= 1_000; line++) {
+      cache.put("file", line, line);
+    }
+    for (int line = 1; line <= 1_000; line += 2) {
+      assertThat(cache.remove("file", line)).isTrue();
+    }
+
+    assertThat(cache.containsKey("file", 1)).isFalse();
+    assertThat(cache.get("file", 2)).isEqualTo(2);
+    assertThat(cache.keySet("file")).hasSize(500).startsWith(2, 4, 6).endsWith(998, 1_000);
+    assertThat(cache.values("file")).hasSize(500).startsWith(2, 4, 6);
+
+    for (int line = 2; line <= 1_000; line += 2) {
+      assertThat(cache.remove("file", line)).isTrue();
+    }
+    assertThat(cache.keySet()).isEmpty();
+  }
+
+  @Test
+  public void values_can_be_put_and_removed_during_iteration() {
+    Storage<String> cache = caches.createCache("capitals");
+    cache.put("europe", "france", "paris");
+    cache.put("europe", "italy", "rome");
+    cache.put("europe", "spain", "madrid");
+
+    Iterator<String> values = cache.values("europe").iterator();
+    assertThat(values.next()).isEqualTo("paris");
+    cache.put("europe", "france", "lyon");
+    cache.remove("europe", "italy");
+
+    assertThat(values.next()).isEqualTo("madrid");
+    assertThat(values.hasNext()).isFalse();
+    assertThat(cache.values("europe")).containsExactly("lyon", "madrid");
+  }
+
+  @Test
+  public void clear_stops_pending_iterations() {
+    Storage<String> cache = caches.createCache("capitals");
+    cache.put("europe", "france", "paris");
+    cache.put("europe", "italy", "rome");
+
+    Iterator<String> values = cache.values().iterator();
+    assertThat(values.next()).isEqualTo("paris");
+    cache.clear();
+
+    assertThat(values.hasNext()).isFalse();
+  }
+
+  @Test
+  public void values_of_registered_types_are_encoded_by_their_codec() {
+    caches.registerValueCodec(Capital.class, new CapitalCodec());
+    Storage<Object> cache = caches.createCache("capitals");
+
+    cache.put("france", new Capital("paris", 2_200_000));
+    cache.put("italy", "rome");
+
+    Capital paris = (Capital) cache.get("france");
+    assertThat(paris.name).isEqualTo("paris");
+    assertThat(paris.population).isEqualTo(2_200_000);
+    assertThat(cache.get("italy")).isEqualTo("rome");
+    assertThat(Iterables.size(cache.entries())).isEqualTo(2);
+  }
+
+  private static class Capital {
+    private final String name;
+    private final int population;
+
+    private Capital(String name, int population) {
+      this.name = name;
+      this.population = population;
+    }
+  }
+
+  private static class CapitalCodec implements ValueCodec<Capital> {
+    @Override
+    public void write(DataOutput out, Capital value) throws IOException {
+      out.writeUTF(value.name);
+      out.writeInt(value.population);
+    }
+
+    @Override
+    public Capital read(DataInput in) throws IOException {
+      return new Capital(in.readUTF(), in.readInt());
+    }
+  }
+}
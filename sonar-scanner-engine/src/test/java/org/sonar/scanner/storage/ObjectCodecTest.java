@@ -0,0 +1,64 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ObjectCodecTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void encode_and_decode_values() throws IOException {
+    assertThat(encodeAndDecode(null)).isNull();
+    assertThat(encodeAndDecode("")).isEqualTo("");
+    assertThat(encodeAndDecode("été")).isEqualTo("été");
+    assertThat(encodeAndDecode(42)).isEqualTo(42);
+    assertThat(encodeAndDecode(42L)).isEqualTo(42L);
+    assertThat(encodeAndDecode(4.2)).isEqualTo(4.2);
+    assertThat(encodeAndDecode(true)).isEqualTo(true);
+    assertThat(encodeAndDecode(new Date(1_500_000_000_000L))).isEqualTo(new Date(1_500_000_000_000L));
+  }
+
+  @Test
+  public void fail_if_value_is_not_serializable() throws IOException {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Value of type java.lang.Object is not serializable");
+
+    encodeAndDecode(new Object());
+  }
+
+  private static Object encodeAndDecode(Object value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectCodec.INSTANCE.write(new DataOutputStream(bytes), value);
+    return ObjectCodec.INSTANCE.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+}
@@ -19,13 +19,19 @@
  */
 package org.sonar.scanner.storage;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.MessageException;
 import org.sonar.scanner.index.AbstractCachesTest;
 import java.io.File;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class StoragesManagerTest extends AbstractCachesTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   @Test
   public void should_stop_and_clean_temp_dir() {
     File tempDir = cachesManager.tempDir();
@@ -39,4 +45,24 @@ public class StoragesManagerTest extends AbstractCachesTest {
     assertThat(cachesManager.tempDir()).isNull();
     assertThat(cachesManager.persistit()).isNull();
   }
+
+  @Test
+  public void persistit_is_not_started_when_storages_are_memory_mapped() {
+    StoragesManager underTest = createCacheOnTemp(StoragesManager.MMAP_ENGINE);
+
+    assertThat(underTest.isMemoryMapped()).isTrue();
+    assertThat(underTest.persistit()).isNull();
+    assertThat(underTest.tempDir()).isDirectory();
+
+    underTest.stop();
+    assertThat(underTest.tempDir()).isNull();
+  }
+
+  @Test
+  public void fail_if_storage_engine_is_not_supported() {
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("Unsupported value 'foo' for property 'sonar.scanner.storage'. Supported values are: persistit, mmap");
+
+    createCacheOnTemp("foo");
+  }
 }
@@ -0,0 +1,155 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.InputStream;
+import javax.annotation.CheckForNull;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.Protobuf;
+
+import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
+
+/**
+ * Reads the entries of an analysis report, named like the files of {@link FileStructure}, whatever the way
+ * the report is stored.
+ *
+ * @see ScannerReportReader
+ * @see ReportArchiveReader
+ */
+public abstract class AbstractScannerReportReader {
+
+  public ScannerReport.Metadata readMetadata() {
+    if (!contains(FileStructure.METADATA)) {
+      throw new IllegalStateException("Metadata file is missing in analysis report: " + locationOf(FileStructure.METADATA));
+    }
+    return read(FileStructure.METADATA, ScannerReport.Metadata.parser());
+  }
+
+  public CloseableIterator<ScannerReport.ActiveRule> readActiveRules() {
+    return readStreamIfExists(FileStructure.ACTIVE_RULES, ScannerReport.ActiveRule.parser());
+  }
+
+  public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
+    return readStreamIfExists(FileStructure.nameFor(FileStructure.Domain.MEASURES, componentRef), ScannerReport.Measure.parser());
+  }
+
+  @CheckForNull
+  public ScannerReport.Changesets readChangesets(int componentRef) {
+    String name = FileStructure.nameFor(FileStructure.Domain.CHANGESETS, componentRef);
+    if (contains(name)) {
+      return read(name, ScannerReport.Changesets.parser());
+    }
+    return null;
+  }
+
+  public ScannerReport.Component readComponent(int componentRef) {
+    String name = FileStructure.nameFor(FileStructure.Domain.COMPONENT, componentRef);
+    if (!contains(name)) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + locationOf(name));
+    }
+    return read(name, ScannerReport.Component.parser());
+  }
+
+  public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
+    return readStreamIfExists(FileStructure.nameFor(FileStructure.Domain.ISSUES, componentRef), ScannerReport.Issue.parser());
+  }
+
+  public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
+    return readStreamIfExists(FileStructure.nameFor(FileStructure.Domain.DUPLICATIONS, componentRef), ScannerReport.Duplication.parser());
+  }
+
+  public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
+    return readStreamIfExists(FileStructure.nameFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef), ScannerReport.CpdTextBlock.parser());
+  }
+
+  public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
+    return readStreamIfExists(FileStructure.nameFor(FileStructure.Domain.SYMBOLS, componentRef), ScannerReport.Symbol.parser());
+  }
+
+  public boolean hasSyntaxHighlighting(int componentRef) {
+    return contains(FileStructure.nameFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef));
+  }
+
+  public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
+    return readStreamIfExists(FileStructure.nameFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef), ScannerReport.SyntaxHighlightingRule.parser());
+  }
+
+  public boolean hasCoverage(int componentRef) {
+    return contains(FileStructure.nameFor(FileStructure.Domain.COVERAGES, componentRef));
+  }
+
+  public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
+    return readStreamIfExists(FileStructure.nameFor(FileStructure.Domain.COVERAGES, fileRef), ScannerReport.LineCoverage.parser());
+  }
+
+  public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
+    return readStreamIfExists(FileStructure.CONTEXT_PROPERTIES, ScannerReport.ContextProperty.parser());
+  }
+
+  @CheckForNull
+  public InputStream openFileSource(int fileRef) {
+    return open(FileStructure.nameFor(FileStructure.Domain.SOURCE, fileRef));
+  }
+
+  @CheckForNull
+  public InputStream openTests(int testFileRef) {
+    return open(FileStructure.nameFor(FileStructure.Domain.TESTS, testFileRef));
+  }
+
+  @CheckForNull
+  public InputStream openCoverageDetails(int testFileRef) {
+    return open(FileStructure.nameFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef));
+  }
+
+  @CheckForNull
+  public InputStream openAnalysisLog() {
+    return open(FileStructure.ANALYSIS_LOG);
+  }
+
+  private <MSG extends Message> CloseableIterator<MSG> readStreamIfExists(String name, Parser<MSG> parser) {
+    if (contains(name)) {
+      return readStream(name, parser);
+    }
+    return emptyCloseableIterator();
+  }
+
+  protected abstract boolean contains(String name);
+
+  /**
+   * Content of the entry, or {@code null} if the report does not contain it
+   */
+  @CheckForNull
+  protected abstract InputStream open(String name);
+
+  /**
+   * Location of the entry in error messages
+   */
+  protected abstract String locationOf(String name);
+
+  protected <MSG extends Message> MSG read(String name, Parser<MSG> parser) {
+    return Protobuf.read(open(name), parser);
+  }
+
+  protected <MSG extends Message> CloseableIterator<MSG> readStream(String name, Parser<MSG> parser) {
+    return Protobuf.readStream(open(name), parser);
+  }
+}
@@ -22,10 +22,15 @@ package org.sonar.scanner.protocol.output;
 import java.io.File;
 
 /**
- * Structure of files in the zipped report
+ * Structure of files in the zipped report. Entries of a {@link ReportArchive} are named like these files.
  */
 public class FileStructure {
 
+  static final String METADATA = "metadata.pb";
+  static final String ANALYSIS_LOG = "analysis.log";
+  static final String ACTIVE_RULES = "activerules.pb";
+  static final String CONTEXT_PROPERTIES = "context-props.pb";
+
   public enum Domain {
     ISSUES("issues-", Domain.PB),
     COMPONENT("component-", Domain.PB),
@@ -60,23 +65,27 @@ public class FileStructure {
   }
 
   public File metadataFile() {
-    return new File(dir, "metadata.pb");
+    return new File(dir, METADATA);
   }
 
   public File analysisLog() {
-    return new File(dir, "analysis.log");
+    return new File(dir, ANALYSIS_LOG);
   }
 
   public File activeRules() {
-    return new File(dir, "activerules.pb");
+    return new File(dir, ACTIVE_RULES);
   }
 
   public File fileFor(Domain domain, int componentRef) {
-    return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
+    return new File(dir, nameFor(domain, componentRef));
+  }
+
+  static String nameFor(Domain domain, int componentRef) {
+    return domain.filePrefix + componentRef + domain.fileSuffix;
   }
 
   public File contextProperties() {
-    return new File(dir, "context-props.pb");
+    return new File(dir, CONTEXT_PROPERTIES);
   }
   
   public File root() {
@@ -0,0 +1,64 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+
+/**
+ * Analysis report stored in a single file, which entries are read on demand instead of being extracted. Entries are
+ * named like the files of {@link FileStructure}.
+ *
+ * @see ReportContainer
+ * @see ZipReportArchive
+ */
+public interface ReportArchive extends Closeable {
+
+  File getFile();
+
+  /**
+   * Size of the archive, in bytes
+   */
+  long length();
+
+  Set<String> entryNames();
+
+  boolean contains(String name);
+
+  /**
+   * Uncompressed content of the entry, or {@code null} if the archive does not contain it. Several entries can be
+   * read concurrently.
+   */
+  @CheckForNull
+  InputStream openEntry(String name);
+
+  /**
+   * Number of entries opened so far by {@link #openEntry(String)}, including entries opened several times
+   */
+  long getEntriesRead();
+
+  /**
+   * Compressed size of the entries opened so far by {@link #openEntry(String)}, to be compared with {@link #length()}
+   */
+  long getBytesRead();
+}
@@ -0,0 +1,52 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.InputStream;
+import javax.annotation.CheckForNull;
+
+/**
+ * Reads a report from a {@link ReportArchive}, without extracting it. As entries are not files, this reader
+ * only gives access to them as streams, for example {@link #openFileSource(int)}.
+ */
+public class ReportArchiveReader extends AbstractScannerReportReader {
+
+  private final ReportArchive archive;
+
+  public ReportArchiveReader(ReportArchive archive) {
+    this.archive = archive;
+  }
+
+  @Override
+  protected boolean contains(String name) {
+    return archive.contains(name);
+  }
+
+  @Override
+  @CheckForNull
+  protected InputStream open(String name) {
+    return archive.openEntry(name);
+  }
+
+  @Override
+  protected String locationOf(String name) {
+    return archive.getFile() + "!" + name;
+  }
+}
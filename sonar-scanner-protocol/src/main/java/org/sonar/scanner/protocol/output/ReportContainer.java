@@ -0,0 +1,319 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+
+/**
+ * Analysis report stored in a single file, as an alternative to a zip of the report directory, so that it can be
+ * read without being extracted.
+ * <p>
+ * Files of the report directory are appended one after the other, each one compressed by LZ4 blocks. They are
+ * followed by an index of entries, by name of file, so that an entry is read without reading the others. Entries
+ * are read by positional reads of the file, which is kept open until the container is closed.
+ * </p>
+ * <pre>
+ *   int magic number
+ *   int version
+ *   entries
+ *   int number of entries, then for each entry: UTF name, long offset, int length
+ *   long offset of index
+ *   int magic number
+ * </pre>
+ */
+public class ReportContainer implements ReportArchive {
+
+  static final int MAGIC_NUMBER = 0x53515243;
+  private static final int VERSION = 1;
+  private static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES;
+
+  private final File file;
+  private final FileChannel channel;
+  private final long length;
+  private final Map<String, Entry> entries;
+  private final AtomicLong entriesRead = new AtomicLong();
+  private final AtomicLong bytesRead = new AtomicLong();
+
+  private ReportContainer(File file, FileChannel channel, long length, Map<String, Entry> entries) {
+    this.file = file;
+    this.channel = channel;
+    this.length = length;
+    this.entries = entries;
+  }
+
+  /**
+   * Whether the stream is the content of a container rather than, for example, a zip of the report. The stream
+   * is reset to its current position.
+   *
+   * @param input a stream which supports {@link InputStream#mark(int)}
+   */
+  public static boolean isContainer(InputStream input) throws IOException {
+    input.mark(Integer.BYTES);
+    try {
+      return new DataInputStream(input).readInt() == MAGIC_NUMBER;
+    } catch (EOFException e) {
+      return false;
+    } finally {
+      input.reset();
+    }
+  }
+
+  /**
+   * Writes the files of the report directory to a container
+   */
+  public static void write(File reportDir, File toFile) {
+    File[] files = reportDir.listFiles(File::isFile);
+    if (files == null) {
+      throw new IllegalArgumentException("Directory of analysis report does not exist: " + reportDir);
+    }
+    Arrays.sort(files);
+    try (CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(toFile)));
+      DataOutputStream output = new DataOutputStream(counting)) {
+      output.writeInt(MAGIC_NUMBER);
+      output.writeInt(VERSION);
+      Map<String, Entry> index = new LinkedHashMap<>();
+      for (File entryFile : files) {
+        long offset = counting.count;
+        LZ4BlockOutputStream compressed = new LZ4BlockOutputStream(output);
+        Files.copy(entryFile.toPath(), compressed);
+        compressed.finish();
+        index.put(entryFile.getName(), new Entry(offset, (int) (counting.count - offset)));
+      }
+      long indexOffset = counting.count;
+      output.writeInt(index.size());
+      for (Map.Entry<String, Entry> entry : index.entrySet()) {
+        output.writeUTF(entry.getKey());
+        output.writeLong(entry.getValue().offset);
+        output.writeInt(entry.getValue().length);
+      }
+      output.writeLong(indexOffset);
+      output.writeInt(MAGIC_NUMBER);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write report container " + toFile, e);
+    }
+  }
+
+  public static ReportContainer open(File file) {
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      long length = channel.size();
+      ReportContainer container = new ReportContainer(file, channel, length, readIndex(file, channel, length));
+      channel = null;
+      return container;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open report container " + file, e);
+    } finally {
+      closeQuietly(channel);
+    }
+  }
+
+  private static Map<String, Entry> readIndex(File file, FileChannel channel, long length) throws IOException {
+    if (length < 2 * Integer.BYTES + TRAILER_BYTES || read(channel, 0, Integer.BYTES).getInt() != MAGIC_NUMBER) {
+      throw new IllegalStateException("File is not a report container: " + file);
+    }
+    ByteBuffer trailer = read(channel, length - TRAILER_BYTES, TRAILER_BYTES);
+    long indexOffset = trailer.getLong();
+    if (trailer.getInt() != MAGIC_NUMBER || indexOffset < 2 * Integer.BYTES || indexOffset > length - TRAILER_BYTES) {
+      throw new IllegalStateException("Report container is truncated or corrupted: " + file);
+    }
+    ByteBuffer index = read(channel, indexOffset, (int) (length - TRAILER_BYTES - indexOffset));
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(index.array(), 0, index.limit()));
+    int count = input.readInt();
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    for (int i = 0; i < count; i++) {
+      entries.put(input.readUTF(), new Entry(input.readLong(), input.readInt()));
+    }
+    return entries;
+  }
+
+  @Override
+  public File getFile() {
+    return file;
+  }
+
+  @Override
+  public long length() {
+    return length;
+  }
+
+  @Override
+  public Set<String> entryNames() {
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  @Override
+  public boolean contains(String name) {
+    return entries.containsKey(name);
+  }
+
+  @CheckForNull
+  @Override
+  public InputStream openEntry(String name) {
+    if (!channel.isOpen()) {
+      throw new IllegalStateException("Report container is closed: " + file);
+    }
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      return null;
+    }
+    entriesRead.incrementAndGet();
+    bytesRead.addAndGet(entry.length);
+    return new LZ4BlockInputStream(new BufferedInputStream(new ChannelInputStream(channel, entry.offset, entry.offset + entry.length)));
+  }
+
+  @Override
+  public long getEntriesRead() {
+    return entriesRead.get();
+  }
+
+  @Override
+  public long getBytesRead() {
+    return bytesRead.get();
+  }
+
+  /**
+   * Closes the file. Entries can't be opened anymore and the streams of the entries which are still open fail
+   * on next read.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void closeQuietly(@Nullable Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // ignored, the failure to open the container is reported instead
+      }
+    }
+  }
+
+  private static class Entry {
+    private final long offset;
+    private final int length;
+
+    private Entry(long offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Positional reads of a range of the file, so that several entries can be read concurrently
+   */
+  private static class ChannelInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+    private ChannelInputStream(FileChannel channel, long start, long end) {
+      this.channel = channel;
+      this.position = start;
+      this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] bytes = new byte[1];
+      return read(bytes, 0, 1) < 0 ? -1 : (bytes[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (position >= end) {
+        return -1;
+      }
+      int read = channel.read(ByteBuffer.wrap(bytes, off, (int) Math.min(len, end - position)), position);
+      if (read < 0) {
+        throw new EOFException("Report container is truncated");
+      }
+      position += read;
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    private CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+      out.write(bytes, off, len);
+      count += len;
+    }
+  }
+}
@@ -19,14 +19,24 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import javax.annotation.CheckForNull;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.Protobuf;
 
-import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
-
-public class ScannerReportReader {
+/**
+ * Reads a report extracted to a directory, which files are also available through
+ * {@link #getFileStructure()}.
+ *
+ * @see ReportArchiveReader
+ */
+public class ScannerReportReader extends AbstractScannerReportReader {
 
   private final FileStructure fileStructure;
 
@@ -34,105 +44,6 @@ public class ScannerReportReader {
     this.fileStructure = new FileStructure(dir);
   }
 
-  public ScannerReport.Metadata readMetadata() {
-    File file = fileStructure.metadataFile();
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Metadata file is missing in analysis report: " + file);
-    }
-    return Protobuf.read(file, ScannerReport.Metadata.parser());
-  }
-
-  public CloseableIterator<ScannerReport.ActiveRule> readActiveRules() {
-    File file = fileStructure.activeRules();
-    if (!fileExists(file)) {
-      return emptyCloseableIterator();
-    }
-    return Protobuf.readStream(file, ScannerReport.ActiveRule.parser());
-  }
-
-  public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Measure.parser());
-    }
-    return emptyCloseableIterator();
-  }
-
-  @CheckForNull
-  public ScannerReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, ScannerReport.Changesets.parser());
-    }
-    return null;
-  }
-
-  public ScannerReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
-    }
-    return Protobuf.read(file, ScannerReport.Component.parser());
-  }
-
-  public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Issue.parser());
-    }
-    return emptyCloseableIterator();
-  }
-
-  public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Duplication.parser());
-    }
-    return emptyCloseableIterator();
-  }
-
-  public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
-  }
-
-  public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Symbol.parser());
-    }
-    return emptyCloseableIterator();
-  }
-
-  public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
-  }
-
-  public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.SyntaxHighlightingRule.parser());
-    }
-    return emptyCloseableIterator();
-  }
-
-  public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
-  }
-
-  public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.LineCoverage.parser());
-    }
-    return emptyCloseableIterator();
-  }
-
   @CheckForNull
   public File readFileSource(int fileRef) {
     File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
@@ -162,19 +73,49 @@ public class ScannerReportReader {
     return null;
   }
 
-  public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
-    File file = fileStructure.contextProperties();
+  public FileStructure getFileStructure() {
+    return fileStructure;
+  }
+
+  @Override
+  protected boolean contains(String name) {
+    return fileExists(fileOf(name));
+  }
+
+  @Override
+  @CheckForNull
+  protected InputStream open(String name) {
+    File file = fileOf(name);
     if (!fileExists(file)) {
-      return emptyCloseableIterator();
+      return null;
+    }
+    try {
+      return new BufferedInputStream(new FileInputStream(file));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open file " + file, e);
     }
-    return Protobuf.readStream(file, ScannerReport.ContextProperty.parser());
   }
 
-  private static boolean fileExists(File file) {
-    return file.exists() && file.isFile();
+  @Override
+  protected String locationOf(String name) {
+    return fileOf(name).toString();
   }
 
-  public FileStructure getFileStructure() {
-    return fileStructure;
+  @Override
+  protected <MSG extends Message> MSG read(String name, Parser<MSG> parser) {
+    return Protobuf.read(fileOf(name), parser);
+  }
+
+  @Override
+  protected <MSG extends Message> CloseableIterator<MSG> readStream(String name, Parser<MSG> parser) {
+    return Protobuf.readStream(fileOf(name), parser);
+  }
+
+  private File fileOf(String name) {
+    return new File(fileStructure.root(), name);
+  }
+
+  private static boolean fileExists(File file) {
+    return file.exists() && file.isFile();
   }
 }
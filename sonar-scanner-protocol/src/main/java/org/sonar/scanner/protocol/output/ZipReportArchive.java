@@ -0,0 +1,119 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.CheckForNull;
+
+/**
+ * Zip of the report directory, as uploaded by scanners which do not write a {@link ReportContainer}. Entries are
+ * read from the central directory of the zip, so that the zip does not need to be extracted.
+ */
+public class ZipReportArchive implements ReportArchive {
+
+  private final File file;
+  private final ZipFile zipFile;
+  private final AtomicLong entriesRead = new AtomicLong();
+  private final AtomicLong bytesRead = new AtomicLong();
+
+  private ZipReportArchive(File file, ZipFile zipFile) {
+    this.file = file;
+    this.zipFile = zipFile;
+  }
+
+  public static ZipReportArchive open(File file) {
+    try {
+      return new ZipReportArchive(file, new ZipFile(file));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open report zip " + file, e);
+    }
+  }
+
+  @Override
+  public File getFile() {
+    return file;
+  }
+
+  @Override
+  public long length() {
+    return file.length();
+  }
+
+  @Override
+  public Set<String> entryNames() {
+    Set<String> names = new LinkedHashSet<>();
+    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    while (entries.hasMoreElements()) {
+      ZipEntry entry = entries.nextElement();
+      if (!entry.isDirectory()) {
+        names.add(entry.getName());
+      }
+    }
+    return Collections.unmodifiableSet(names);
+  }
+
+  @Override
+  public boolean contains(String name) {
+    ZipEntry entry = zipFile.getEntry(name);
+    return entry != null && !entry.isDirectory();
+  }
+
+  @CheckForNull
+  @Override
+  public InputStream openEntry(String name) {
+    ZipEntry entry = zipFile.getEntry(name);
+    if (entry == null || entry.isDirectory()) {
+      return null;
+    }
+    try {
+      InputStream input = new BufferedInputStream(zipFile.getInputStream(entry));
+      entriesRead.incrementAndGet();
+      bytesRead.addAndGet(Math.max(0L, entry.getCompressedSize()));
+      return input;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read entry " + name + " of report zip " + file, e);
+    }
+  }
+
+  @Override
+  public long getEntriesRead() {
+    return entriesRead.get();
+  }
+
+  @Override
+  public long getBytesRead() {
+    return bytesRead.get();
+  }
+
+  @Override
+  public void close() throws IOException {
+    zipFile.close();
+  }
+}
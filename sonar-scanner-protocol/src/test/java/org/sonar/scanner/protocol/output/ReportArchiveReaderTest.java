@@ -0,0 +1,86 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReportArchiveReaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private File dir;
+  private File containerFile;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder();
+    containerFile = temp.newFile();
+  }
+
+  @Test
+  public void read_report_from_container() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("PROJECT_A").build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().build()));
+    try (FileOutputStream outputStream = new FileOutputStream(writer.getSourceFile(1))) {
+      IOUtils.write("line1\nline2", outputStream);
+    }
+    ReportContainer.write(dir, containerFile);
+    FileUtils.deleteDirectory(dir);
+
+    ReportArchiveReader underTest = new ReportArchiveReader(ReportContainer.open(containerFile));
+
+    assertThat(underTest.readMetadata().getProjectKey()).isEqualTo("PROJECT_A");
+    assertThat(underTest.readComponent(1).getRef()).isEqualTo(1);
+    assertThat(underTest.readComponentIssues(1)).hasSize(1);
+    assertThat(underTest.readComponentIssues(2)).isEmpty();
+    assertThat(underTest.readChangesets(1)).isNull();
+    try (InputStream inputStream = underTest.openFileSource(1)) {
+      assertThat(IOUtils.readLines(inputStream)).containsOnly("line1", "line2");
+    }
+    assertThat(underTest.openFileSource(2)).isNull();
+  }
+
+  @Test
+  public void fail_if_missing_metadata_entry() {
+    ReportContainer.write(dir, containerFile);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Metadata file is missing in analysis report: " + containerFile + "!metadata.pb");
+
+    new ReportArchiveReader(ReportContainer.open(containerFile)).readMetadata();
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ReportContainerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void read_entries_written_from_report_directory() throws Exception {
+    File dir = temp.newFolder();
+    FileUtils.write(new File(dir, "metadata.pb"), "metadata", UTF_8);
+    FileUtils.write(new File(dir, "source-1.txt"), "line1\nline2", UTF_8);
+    FileUtils.write(new File(dir, "empty.pb"), "", UTF_8);
+    File file = temp.newFile();
+
+    ReportContainer.write(dir, file);
+    ReportContainer underTest = ReportContainer.open(file);
+
+    assertThat(underTest.getFile()).isEqualTo(file);
+    assertThat(underTest.length()).isEqualTo(file.length());
+    assertThat(underTest.entryNames()).containsOnly("metadata.pb", "source-1.txt", "empty.pb");
+    assertThat(underTest.contains("metadata.pb")).isTrue();
+    assertThat(underTest.contains("source-2.txt")).isFalse();
+    assertThat(underTest.getEntriesRead()).isZero();
+    assertThat(readEntry(underTest, "metadata.pb")).isEqualTo("metadata");
+    assertThat(underTest.getEntriesRead()).isEqualTo(1);
+    assertThat(underTest.getBytesRead()).isPositive().isLessThan(underTest.length());
+    assertThat(readEntry(underTest, "source-1.txt")).isEqualTo("line1\nline2");
+    assertThat(readEntry(underTest, "empty.pb")).isEmpty();
+    // entries can be read several times
+    assertThat(readEntry(underTest, "metadata.pb")).isEqualTo("metadata");
+  }
+
+  @Test
+  public void openEntry_returns_null_if_entry_does_not_exist() throws Exception {
+    File file = temp.newFile();
+    ReportContainer.write(temp.newFolder(), file);
+
+    ReportContainer underTest = ReportContainer.open(file);
+
+    assertThat(underTest.entryNames()).isEmpty();
+    assertThat(underTest.openEntry("metadata.pb")).isNull();
+  }
+
+  @Test
+  public void read_entry_larger_than_lz4_block() throws Exception {
+    File dir = temp.newFolder();
+    byte[] bytes = new byte[200_000];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (i * 31);
+    }
+    FileUtils.writeByteArrayToFile(new File(dir, "big.pb"), bytes);
+    File file = temp.newFile();
+    ReportContainer.write(dir, file);
+
+    try (InputStream input = ReportContainer.open(file).openEntry("big.pb")) {
+      assertThat(IOUtils.toByteArray(input)).isEqualTo(bytes);
+    }
+  }
+
+  @Test
+  public void entries_can_not_be_read_once_container_is_closed() throws Exception {
+    File dir = temp.newFolder();
+    FileUtils.write(new File(dir, "metadata.pb"), "metadata", UTF_8);
+    File file = temp.newFile();
+    ReportContainer.write(dir, file);
+    ReportContainer underTest = ReportContainer.open(file);
+    InputStream pendingInput = underTest.openEntry("metadata.pb");
+
+    underTest.close();
+
+    try {
+      pendingInput.read();
+      fail("Stream of entry should be closed");
+    } catch (IOException e) {
+      // expected
+    }
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Report container is closed: " + file);
+
+    underTest.openEntry("metadata.pb");
+  }
+
+  @Test
+  public void isContainer_does_not_consume_stream() throws Exception {
+    File file = temp.newFile();
+    ReportContainer.write(temp.newFolder(), file);
+
+    try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+      assertThat(ReportContainer.isContainer(input)).isTrue();
+      assertThat(IOUtils.toByteArray(input)).isEqualTo(FileUtils.readFileToByteArray(file));
+    }
+  }
+
+  @Test
+  public void zip_and_empty_stream_are_not_containers() throws Exception {
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    try (ZipOutputStream zipOutput = new ZipOutputStream(zip)) {
+      zipOutput.putNextEntry(new ZipEntry("metadata.pb"));
+      zipOutput.write("metadata".getBytes(UTF_8));
+    }
+
+    assertThat(ReportContainer.isContainer(new ByteArrayInputStream(zip.toByteArray()))).isFalse();
+    assertThat(ReportContainer.isContainer(new ByteArrayInputStream(new byte[0]))).isFalse();
+  }
+
+  @Test
+  public void fail_to_open_file_which_is_not_a_container() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "not a container at all", UTF_8);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("File is not a report container");
+
+    ReportContainer.open(file);
+  }
+
+  @Test
+  public void fail_to_open_truncated_container() throws Exception {
+    File dir = temp.newFolder();
+    FileUtils.write(new File(dir, "metadata.pb"), "metadata", UTF_8);
+    File file = temp.newFile();
+    ReportContainer.write(dir, file);
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(file.length() - 2);
+    }
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Report container is truncated or corrupted");
+
+    ReportContainer.open(file);
+  }
+
+  private static String readEntry(ReportContainer container, String name) throws Exception {
+    try (InputStream input = container.openEntry(name)) {
+      return IOUtils.toString(input, UTF_8);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ZipReportArchiveTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void read_entries_of_zip() throws Exception {
+    File zip = temp.newFile();
+    try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip))) {
+      output.putNextEntry(new ZipEntry("metadata.pb"));
+      output.write("metadata".getBytes(UTF_8));
+      output.putNextEntry(new ZipEntry("source-1.txt"));
+      output.write("line1\nline2".getBytes(UTF_8));
+      output.putNextEntry(new ZipEntry("dir/"));
+    }
+
+    try (ZipReportArchive underTest = ZipReportArchive.open(zip)) {
+      assertThat(underTest.getFile()).isEqualTo(zip);
+      assertThat(underTest.length()).isEqualTo(zip.length());
+      assertThat(underTest.entryNames()).containsOnly("metadata.pb", "source-1.txt");
+      assertThat(underTest.contains("metadata.pb")).isTrue();
+      assertThat(underTest.contains("dir/")).isFalse();
+      assertThat(underTest.contains("source-2.txt")).isFalse();
+      assertThat(underTest.openEntry("source-2.txt")).isNull();
+      assertThat(underTest.getEntriesRead()).isZero();
+      assertThat(underTest.getBytesRead()).isZero();
+
+      assertThat(readEntry(underTest, "source-1.txt")).isEqualTo("line1\nline2");
+      assertThat(underTest.getEntriesRead()).isEqualTo(1);
+      assertThat(underTest.getBytesRead()).isPositive().isLessThan(zip.length());
+    }
+  }
+
+  @Test
+  public void fail_to_open_file_which_is_not_a_zip() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "not a zip", UTF_8);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to open report zip " + file);
+
+    ZipReportArchive.open(file);
+  }
+
+  private static String readEntry(ReportArchive archive, String name) throws Exception {
+    try (InputStream input = archive.openEntry(name)) {
+      return IOUtils.toString(input, UTF_8);
+    }
+  }
+}